@@ -128,4 +128,27 @@ public interface AnalyticalEngine {
      *             the card chain.
      */
     void run() throws BadCard;
+
+    /**
+     * Runs at most the specified number of cards of the program specified by
+     * the card chain in the card reader.
+     * 
+     * This method behaves like {@link #run()}, except that it stops after
+     * executing {@code maxCards} cards if the program has not halted by then.
+     * In that case, the state of the Engine is left as is, so invoking this
+     * method again resumes the program from the next card. This allows the
+     * caller to bound the number of cards a program may execute, or the time
+     * it may take, and to interleave several programs on a single thread,
+     * each running on its own Engine.
+     * 
+     * @param maxCards
+     *            The maximum number of cards to execute; must be positive.
+     * @return {@link RunStatus#HALTED} if the program halted, or
+     *         {@link RunStatus#SUSPENDED} if the Engine executed
+     *         {@code maxCards} cards without halting.
+     * @throws BadCard
+     *             if the Engine encounters an invalid card as it is processing
+     *             the card chain.
+     */
+    RunStatus run(long maxCards) throws BadCard;
 }
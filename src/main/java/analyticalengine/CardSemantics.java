@@ -0,0 +1,289 @@
+/**
+ * CardSemantics.java - the effect of each card on the mill, store, and
+ * attendant
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine;
+
+import java.math.BigInteger;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import analyticalengine.attendant.Attendant;
+import analyticalengine.attendant.WriteDirection;
+import analyticalengine.cards.BadCard;
+import analyticalengine.cards.Card;
+import analyticalengine.components.Mill;
+import analyticalengine.components.Operation;
+import analyticalengine.components.Printer;
+import analyticalengine.components.Store;
+
+/**
+ * Performs the effect of a single card on a mill, a store, and an attendant.
+ * 
+ * The Engine and the ensemble differ in how they read cards and move through
+ * the card chain, but once a card has been read it has the same effect on
+ * each set of components, so both apply it with these methods.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+final class CardSemantics {
+
+    /**
+     * The logger for this class.
+     */
+    private static final transient Logger LOG = LoggerFactory
+            .getLogger(CardSemantics.class);
+
+    /**
+     * Instructs the specified attendant to perform the action specified by
+     * the card.
+     * 
+     * This includes annotating and formatting numbers printed to the final
+     * report.
+     * 
+     * @param card
+     *            An attendant action card.
+     * @param attendant
+     *            The attendant.
+     * @throws IllegalArgumentException
+     *             if the card is not an attendant action card.
+     */
+    static void applyAttendantAction(final Card card,
+            final Attendant attendant) {
+        switch (card.type()) {
+        case ANNOTATE:
+            String message = card.argument(0);
+            LOG.debug("Annotating in final report: {}", message);
+            attendant.annotate(message);
+            break;
+        case NEWLINE:
+            LOG.debug("Writing a new line in the final report.");
+            attendant.writeNewline();
+            break;
+        case WRITECOLUMNS:
+            LOG.debug("Writing in rows.");
+            attendant.writeInDirection(WriteDirection.COLUMNS);
+            break;
+        case WRITEROWS:
+            LOG.debug("Writing in columns.");
+            attendant.writeInDirection(WriteDirection.ROWS);
+            break;
+        case WRITEPICTURE:
+            String format = card.argument(0);
+            LOG.debug("Setting format string for numbers in final report: {}",
+                    format);
+            attendant.setFormat(format);
+            break;
+        default:
+            throw new IllegalArgumentException(
+                    "Expected attendant action card, not " + card);
+        }
+    }
+
+    /**
+     * Performs the memory access specified by the given card.
+     * 
+     * This includes reading from and writing to memory.
+     * 
+     * @param card
+     *            A memory access card.
+     * @param address
+     *            The column of the store named by the card.
+     * @param number
+     *            The number placed in the store, if the card is a number
+     *            card; ignored otherwise.
+     * @param mill
+     *            The mill.
+     * @param store
+     *            The store.
+     * @throws IllegalArgumentException
+     *             if the card is not a memory access card.
+     */
+    static void applyMemoryAccess(final Card card, final int address,
+            final BigInteger number, final Mill mill, final Store store) {
+        BigInteger value;
+        switch (card.type()) {
+        case LOAD:
+            value = store.get(address);
+            LOG.debug("Loading from {} into ingress axis: {}", address, value);
+            mill.transferIn(value);
+            break;
+        case LOADPRIME:
+            value = store.get(address);
+            LOG.debug("Loading from {} into prime axis: {}", address, value);
+            mill.transferIn(value, true);
+            break;
+        case NUMBER:
+            LOG.debug("Loading number {} into address {}", number, address);
+            store.put(address, number);
+            break;
+        case STORE:
+            store.put(address, mill.transferOut());
+            break;
+        case STOREPRIME:
+            store.put(address, mill.transferOut(true));
+            break;
+        case ZLOAD:
+            value = store.get(address);
+            store.put(address, BigInteger.ZERO);
+            mill.transferIn(value);
+            break;
+        case ZLOADPRIME:
+            value = store.get(address);
+            store.put(address, BigInteger.ZERO);
+            mill.transferIn(value, true);
+            break;
+        default:
+            throw new IllegalArgumentException(
+                    "Expected memory access card, not " + card);
+        }
+    }
+
+    /**
+     * Performs the left or right shift specified by the given card.
+     * 
+     * @param card
+     *            A left or right shift card.
+     * @param shift
+     *            The number of places to shift, as given on the card.
+     * @param mill
+     *            The mill.
+     * @throws BadCard
+     *             if the shift is out of bounds.
+     * @throws IllegalArgumentException
+     *             if the card is not a shift card.
+     */
+    static void applyShift(final Card card, final int shift, final Mill mill)
+            throws BadCard {
+        switch (card.type()) {
+        case LSHIFTN:
+            LOG.debug("Performing left shift on mill by {}", shift);
+            try {
+                mill.leftShift(shift);
+            } catch (IllegalArgumentException e) {
+                throw new BadCard("Shift value is out of bounds", card, e);
+            }
+            break;
+        case RSHIFTN:
+            LOG.debug("Performing right shift on mill by {}", shift);
+            try {
+                mill.rightShift(shift);
+            } catch (IllegalArgumentException e) {
+                throw new BadCard("Shift value is out of bounds", card, e);
+            }
+            break;
+        default:
+            throw new IllegalArgumentException("Expected shift card, not "
+                    + card);
+        }
+    }
+
+    /**
+     * Parses the number that the specified number card places in the store.
+     * 
+     * @param card
+     *            A number card.
+     * @return The number.
+     * @throws BadCard
+     *             if the number cannot be parsed.
+     */
+    static BigInteger number(final Card card) throws BadCard {
+        try {
+            return new BigInteger(card.argument(1));
+        } catch (NumberFormatException e) {
+            throw new BadCard("Illegal number format", card, e);
+        }
+    }
+
+    /**
+     * Parses the first argument of the specified card as an integer.
+     * 
+     * @param card
+     *            A card whose first argument is an integer.
+     * @param message
+     *            The message of the exception to throw if it is not.
+     * @return The integer.
+     * @throws BadCard
+     *             if the argument is not an integer.
+     */
+    static int operand(final Card card, final String message)
+            throws BadCard {
+        try {
+            return Integer.parseInt(card.argument(0));
+        } catch (NumberFormatException e) {
+            throw new BadCard(message, card, e);
+        }
+    }
+
+    /**
+     * Returns the operation that the specified arithmetic card sets.
+     * 
+     * @param card
+     *            An arithmetic card.
+     * @return The operation.
+     * @throws IllegalArgumentException
+     *             if the card is not an arithmetic card.
+     */
+    static Operation operation(final Card card) {
+        switch (card.type()) {
+        case ADD:
+            return Operation.ADD;
+        case DIVIDE:
+            return Operation.DIVIDE;
+        case MULTIPLY:
+            return Operation.MULTIPLY;
+        case SUBTRACT:
+            return Operation.SUBTRACT;
+        default:
+            throw new IllegalArgumentException("Expected arithmetic card: "
+                    + card);
+        }
+    }
+
+    /**
+     * Sends the most recent value of the specified mill to the specified
+     * attendant for printing, if there is one.
+     * 
+     * @param mill
+     *            The mill.
+     * @param attendant
+     *            The attendant.
+     * @param printer
+     *            The printer on which the attendant prints the value.
+     */
+    static void print(final Mill mill, final Attendant attendant,
+            final Printer printer) {
+        Optional<BigInteger> value = mill.mostRecentValue();
+        if (!value.isPresent()) {
+            LOG.error("No value is available for printing. Not printing.");
+            return;
+        }
+        LOG.debug("Attendant received value from printer: {}", value.get());
+        attendant.receiveOutput(value.get(), printer);
+    }
+
+    /** Instantiation disallowed. */
+    private CardSemantics() {
+        // intentionally unimplemented
+    }
+}
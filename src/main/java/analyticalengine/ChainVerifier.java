@@ -0,0 +1,258 @@
+/**
+ * ChainVerifier.java - finds errors in a card chain before it is run
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import analyticalengine.cards.BadCard;
+import analyticalengine.cards.Card;
+import analyticalengine.cards.InvalidChain;
+import analyticalengine.components.EngineConfig;
+
+/**
+ * Examines every card of a mounted card chain for errors that the Analytical
+ * Engine would otherwise discover only when it reads the card.
+ * 
+ * The verifier checks that
+ * <ul>
+ * <li>every address, number, shift, and card count on a card can be
+ * parsed,</li>
+ * <li>every address is a column of the store,</li>
+ * <li>every number placed in the store fits in a column,</li>
+ * <li>every shift is between zero and the width of the double-width axes of
+ * the mill,</li>
+ * <li>every advance or reverse stays within the card chain, and</li>
+ * <li>no card remains that the attendant should have replaced.</li>
+ * </ul>
+ * 
+ * Errors that depend on the values computed by the program, such as division
+ * by zero, are not detected.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public final class ChainVerifier {
+
+    /** The dimensions of the store and the mill of the Engine. */
+    private final EngineConfig config;
+
+    /**
+     * Creates a new verifier for an Engine with the specified configuration.
+     * 
+     * @param config
+     *            The configuration of the Engine that will run the chain.
+     */
+    public ChainVerifier(final EngineConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Checks that the specified card has the integer argument shared by
+     * memory access, shift, and combinatorial cards, and returns it.
+     * 
+     * @param card
+     *            The card to check.
+     * @param index
+     *            The index of the card in the chain.
+     * @param problems
+     *            The list to which a problem is added if the argument is
+     *            missing or malformed.
+     * @return The argument, or {@code null} if it is missing or malformed.
+     */
+    private static Integer integerArgument(final Card card, final int index,
+            final List<BadCard> problems) {
+        if (card.numArguments() < 1) {
+            problems.add(problem(index, "Missing argument", card));
+            return null;
+        }
+        try {
+            return Integer.parseInt(card.argument(0));
+        } catch (NumberFormatException exception) {
+            problems.add(problem(index, "Illegal number format", card));
+            return null;
+        }
+    }
+
+    /**
+     * Creates an exception describing a problem with a card.
+     * 
+     * @param index
+     *            The index of the card in the chain.
+     * @param message
+     *            The description of the problem.
+     * @param card
+     *            The bad card.
+     * @return An exception describing the problem.
+     */
+    private static BadCard problem(final int index, final String message,
+            final Card card) {
+        return new BadCard("Card " + index + ": " + message, card);
+    }
+
+    /**
+     * Checks the address on a memory access card and, for a number card, the
+     * number to be stored.
+     * 
+     * @param card
+     *            A memory access card.
+     * @param index
+     *            The index of the card in the chain.
+     * @param problems
+     *            The list to which any problems are added.
+     * @return The address, or zero if the card is invalid.
+     */
+    private int checkMemoryAccess(final Card card, final int index,
+            final List<BadCard> problems) {
+        Integer address = integerArgument(card, index, problems);
+        if (address == null) {
+            return 0;
+        }
+        boolean valid = true;
+        if (address < 0 || address > this.config.maxAddress()) {
+            problems.add(problem(index, "Address out of bounds", card));
+            valid = false;
+        }
+        if (card.numArguments() > 1) {
+            try {
+                BigInteger value = new BigInteger(card.argument(1));
+                if (value.abs().compareTo(this.config.maxValue()) > 0) {
+                    problems.add(problem(index,
+                            "Number does not fit in a column", card));
+                    valid = false;
+                }
+            } catch (NumberFormatException exception) {
+                problems.add(problem(index, "Illegal number format", card));
+                valid = false;
+            }
+        }
+        if (valid) {
+            return address;
+        }
+        return 0;
+    }
+
+    /**
+     * Finds every problem in the specified card chain and decodes the integer
+     * argument of each card.
+     * 
+     * The returned array is indexed by the position of each card in the
+     * chain. For memory access cards it holds the address, for shift cards
+     * the number of digits by which to shift, and for combinatorial cards the
+     * number of cards by which to advance or reverse. Every other element is
+     * zero.
+     * 
+     * @param chain
+     *            The card chain, as mounted in the card reader.
+     * @return The integer argument of each card.
+     * @throws InvalidChain
+     *             if any card in the chain would cause an error when read;
+     *             the exception lists every such card.
+     */
+    public int[] verify(final List<Card> chain) throws InvalidChain {
+        int[] operands = new int[chain.size()];
+        List<BadCard> problems = new ArrayList<BadCard>();
+        int maxShift = 2 * this.config.width();
+        for (int i = 0; i < operands.length; i++) {
+            Card card = chain.get(i);
+            Integer argument;
+            switch (card.type()) {
+            case LOAD:
+            case LOADPRIME:
+            case STORE:
+            case STOREPRIME:
+            case ZLOAD:
+            case ZLOADPRIME:
+                operands[i] = this.checkMemoryAccess(card, i, problems);
+                break;
+            case NUMBER:
+                if (card.numArguments() < 2) {
+                    problems.add(problem(i, "Missing number", card));
+                } else {
+                    operands[i] = this.checkMemoryAccess(card, i, problems);
+                }
+                break;
+            case LSHIFTN:
+            case RSHIFTN:
+                argument = integerArgument(card, i, problems);
+                if (argument == null) {
+                    break;
+                }
+                if (argument < 0 || argument > maxShift) {
+                    problems.add(problem(i, "Shift value is out of bounds",
+                            card));
+                    break;
+                }
+                operands[i] = argument;
+                break;
+            case CFORWARD:
+            case FORWARD:
+                argument = integerArgument(card, i, problems);
+                if (argument == null) {
+                    break;
+                }
+                if (i + argument < -1 || i + argument >= operands.length) {
+                    problems.add(problem(i,
+                            "Advance beyond end of card chain", card));
+                    break;
+                }
+                operands[i] = argument;
+                break;
+            case CBACKWARD:
+            case BACKWARD:
+                argument = integerArgument(card, i, problems);
+                if (argument == null) {
+                    break;
+                }
+                if (i - argument < -1 || i - argument >= operands.length) {
+                    problems.add(problem(i,
+                            "Reverse beyond beginning of card chain", card));
+                    break;
+                }
+                operands[i] = argument;
+                break;
+            case ALTERNATION:
+            case BACKEND:
+            case BACKSTART:
+            case DECIMALEXPAND:
+            case CBACKSTART:
+            case CFORWARDSTART:
+            case FORWARDEND:
+            case FORWARDSTART:
+            case INCLUDE:
+            case INCLUDELIB:
+            case LSHIFT:
+            case RSHIFT:
+            case WRITEDECIMAL:
+                problems.add(problem(i, "Attendant failed to remove card",
+                        card));
+                break;
+            default:
+                break;
+            }
+        }
+        if (!problems.isEmpty()) {
+            throw new InvalidChain(problems);
+        }
+        return operands;
+    }
+}
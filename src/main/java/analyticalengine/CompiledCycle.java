@@ -0,0 +1,688 @@
+/**
+ * CompiledCycle.java - a cycle of cards translated for faster execution
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import analyticalengine.attendant.Attendant;
+import analyticalengine.attendant.WriteDirection;
+import analyticalengine.cards.BadCard;
+import analyticalengine.cards.Card;
+import analyticalengine.components.CardReader;
+import analyticalengine.components.CurvePrinter;
+import analyticalengine.components.Mill;
+import analyticalengine.components.Operation;
+import analyticalengine.components.Printer;
+import analyticalengine.components.Store;
+
+/**
+ * A cycle of cards, ending with a card that reverses the card reader to the
+ * beginning of the cycle, translated into a sequence of steps that act on the
+ * components of the Engine directly.
+ * 
+ * Each step is a function whose operands (addresses, numbers, shift amounts,
+ * and so on) have been parsed from its card once, when the cycle is
+ * compiled, so executing a step involves neither dispatching on the type of
+ * the card nor parsing its arguments. Executing the steps has exactly the
+ * same effect as executing the cards in the interpreter of
+ * {@link DefaultAnalyticalEngine}: the card reader is left positioned as if
+ * each card had been read in turn, and the same exceptions are thrown.
+ * 
+ * A column of the store that no card of the cycle changes, other than number
+ * cards that all place the same number in it, is invariant while the cycle
+ * runs. Each invariant column is read from the store at most once per
+ * execution of the compiled cycle, and each of its number cards writes to the
+ * store at most once; after that, the value of the column is kept with the
+ * compiled cycle, so loading a constant into the mill involves neither the
+ * store nor a new {@link BigInteger}.
+ * 
+ * Only cycles consisting of arithmetic, shift, memory access, print, curve
+ * drawing, attendant action, debugging, and combinatorial cards can be
+ * compiled. Combinatorial cards whose destination lies outside of the cycle
+ * leave the compiled code and return to the interpreter.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+final class CompiledCycle {
+
+    /**
+     * A single card of a compiled cycle.
+     * 
+     * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+     * @since 0.0.1
+     */
+    @FunctionalInterface
+    private interface Step {
+
+        /**
+         * Executes the card.
+         * 
+         * @return The offset from the beginning of the cycle of the next card
+         *         to execute, or {@link CompiledCycle#EXIT} if the card has
+         *         repositioned the card reader outside of the cycle.
+         * @throws BadCard
+         *             if the card induces a runtime error in the Engine.
+         */
+        int execute() throws BadCard;
+    }
+
+    /**
+     * The value returned by a step that has repositioned the card reader
+     * outside of the cycle.
+     */
+    private static final int EXIT = -1;
+
+    /**
+     * The logger for this class.
+     */
+    private static final transient Logger LOG = LoggerFactory
+            .getLogger(CompiledCycle.class);
+
+    /**
+     * Compiles the cycle of cards between the specified indices, inclusive,
+     * in the specified card chain.
+     * 
+     * @param chain
+     *            The card chain mounted in the card reader.
+     * @param start
+     *            The index of the first card of the cycle.
+     * @param end
+     *            The index of the last card of the cycle, the card that
+     *            reverses the card reader to the first card.
+     * @param engine
+     *            The Engine whose components the compiled steps act on.
+     * @return The compiled cycle, or {@code null} if the cycle contains a
+     *         card that cannot be compiled.
+     */
+    static CompiledCycle compile(final List<Card> chain, final int start,
+            final int end, final DefaultAnalyticalEngine engine) {
+        CompiledCycle cycle = new CompiledCycle(chain, start, end, engine);
+        try {
+            cycle.findInvariantColumns();
+        } catch (RuntimeException exception) {
+            // the interpreter will report the malformed card
+            LOG.debug("Cannot compile cycle {} to {}", start, end);
+            return null;
+        }
+        for (int i = start; i <= end; i++) {
+            Step step;
+            try {
+                step = cycle.compileCard(chain.get(i), i - start);
+            } catch (RuntimeException exception) {
+                // the interpreter will report the malformed card
+                step = null;
+            }
+            if (step == null) {
+                LOG.debug("Cannot compile card {} in cycle {} to {}",
+                        chain.get(i), start, end);
+                return null;
+            }
+            cycle.steps[i - start] = step;
+        }
+        LOG.debug("Compiled cycle from card {} to card {}", start, end);
+        return cycle;
+    }
+
+    /** The attendant to which output is sent. */
+    private final Attendant attendant;
+
+    /** The cards of the cycle, as they were when it was compiled. */
+    private final Card[] cards;
+
+    /** The card reader from which the cards of the cycle were read. */
+    private final CardReader cardReader;
+
+    /** The curve printer on which curves are drawn. */
+    private final CurvePrinter curvePrinter;
+
+    /**
+     * The number placed in each invariant column by the number cards of this
+     * cycle, keyed by address, or {@code null} for an invariant column that
+     * is only read.
+     */
+    private final Map<Integer, BigInteger> invariantNumbers =
+            new HashMap<Integer, BigInteger>();
+
+    /**
+     * The index in {@link #invariants} of each invariant column, keyed by
+     * address.
+     */
+    private final Map<Integer, Integer> invariantSlots =
+            new HashMap<Integer, Integer>();
+
+    /**
+     * The value of each invariant column, if it is known during the current
+     * execution of this cycle, or {@code null} otherwise.
+     */
+    private BigInteger[] invariants = new BigInteger[0];
+
+    /** The mill of the Engine. */
+    private final Mill mill;
+
+    /** The printer that converts values to text. */
+    private final Printer printer;
+
+    /** The index in the card chain of the first card of the cycle. */
+    private final int start;
+
+    /** The compiled cards, indexed by offset from the start of the cycle. */
+    private final Step[] steps;
+
+    /** The store of the Engine. */
+    private final Store store;
+
+    /**
+     * Creates a new cycle, whose steps have not yet been compiled.
+     * 
+     * @param chain
+     *            The card chain mounted in the card reader.
+     * @param start
+     *            The index of the first card of the cycle.
+     * @param end
+     *            The index of the last card of the cycle.
+     * @param engine
+     *            The Engine whose components the compiled steps act on.
+     */
+    private CompiledCycle(final List<Card> chain, final int start,
+            final int end, final DefaultAnalyticalEngine engine) {
+        this.start = start;
+        this.cards = chain.subList(start, end + 1).toArray(new Card[0]);
+        this.steps = new Step[this.cards.length];
+        this.attendant = engine.attendant();
+        this.cardReader = engine.cardReader();
+        this.curvePrinter = engine.curvePrinter();
+        this.mill = engine.mill();
+        this.printer = engine.printer();
+        this.store = engine.store();
+    }
+
+    /**
+     * Compiles an advance or reverse card.
+     * 
+     * If the destination is within this cycle, the step simply returns its
+     * offset. Otherwise, the step repositions the card reader just as the
+     * interpreter would and leaves the cycle.
+     * 
+     * @param offset
+     *            The offset of the card from the start of this cycle.
+     * @param n
+     *            The number of cards by which to advance (if positive) or
+     *            reverse (if negative).
+     * @param conditional
+     *            Whether the advance or reverse happens only if the run up
+     *            lever is set.
+     * @return The compiled card.
+     */
+    private Step compileCombinatorial(final int offset, final int n,
+            final boolean conditional) {
+        final int destination = offset + n + 1;
+        final int next = offset + 1;
+        final boolean inside = destination >= 0
+                && destination < this.steps.length;
+        return () -> {
+            if (conditional && !this.mill.hasRunUp()) {
+                return next;
+            }
+            if (inside) {
+                return destination;
+            }
+            this.moveReaderTo(this.start + offset);
+            if (n >= 0) {
+                this.cardReader.advance(n);
+            } else {
+                this.cardReader.reverse(-n);
+            }
+            return EXIT;
+        };
+    }
+
+    /**
+     * Compiles the specified card.
+     * 
+     * @param card
+     *            The card to compile.
+     * @param offset
+     *            The offset of the card from the start of this cycle.
+     * @return The compiled card, or {@code null} if the card cannot be
+     *         compiled.
+     */
+    private Step compileCard(final Card card, final int offset) {
+        final int next = offset + 1;
+        switch (card.type()) {
+        case ADD:
+            return this.compileOperation(Operation.ADD, next);
+        case DIVIDE:
+            return this.compileOperation(Operation.DIVIDE, next);
+        case MULTIPLY:
+            return this.compileOperation(Operation.MULTIPLY, next);
+        case SUBTRACT:
+            return this.compileOperation(Operation.SUBTRACT, next);
+        case LSHIFTN:
+            return this.compileShift(card, true, next);
+        case RSHIFTN:
+            return this.compileShift(card, false, next);
+        case BACKWARD:
+            return this.compileCombinatorial(offset,
+                    -Integer.parseInt(card.argument(0)), false);
+        case CBACKWARD:
+            return this.compileCombinatorial(offset,
+                    -Integer.parseInt(card.argument(0)), true);
+        case FORWARD:
+            return this.compileCombinatorial(offset,
+                    Integer.parseInt(card.argument(0)), false);
+        case CFORWARD:
+            return this.compileCombinatorial(offset,
+                    Integer.parseInt(card.argument(0)), true);
+        case LOAD:
+        case LOADPRIME:
+        case NUMBER:
+        case STORE:
+        case STOREPRIME:
+        case ZLOAD:
+        case ZLOADPRIME:
+            return this.compileMemoryAccess(card, next);
+        case PRINT:
+            return () -> {
+                Optional<BigInteger> value = this.mill.mostRecentValue();
+                if (value.isPresent()) {
+                    this.attendant.receiveOutput(value.get(), this.printer);
+                } else {
+                    LOG.error("No value is available for printing."
+                            + " Not printing.");
+                }
+                return next;
+            };
+        case DRAW:
+            return () -> {
+                this.curvePrinter.draw();
+                return next;
+            };
+        case MOVE:
+            return () -> {
+                this.curvePrinter.move();
+                return next;
+            };
+        case SETX:
+            return () -> {
+                Optional<BigInteger> value = this.mill.mostRecentValue();
+                if (value.isPresent()) {
+                    this.curvePrinter.setX(value.get());
+                } else {
+                    LOG.error("No value is available for setting the x value"
+                            + " of the curve printer; not setting a value.");
+                }
+                return next;
+            };
+        case SETY:
+            return () -> {
+                Optional<BigInteger> value = this.mill.mostRecentValue();
+                if (value.isPresent()) {
+                    this.curvePrinter.setY(value.get());
+                } else {
+                    LOG.error("No value is available for setting the y value"
+                            + " of the curve printer; not setting a value.");
+                }
+                return next;
+            };
+        case ANNOTATE:
+            final String message = card.argument(0);
+            return () -> {
+                this.attendant.annotate(message);
+                return next;
+            };
+        case NEWLINE:
+            return () -> {
+                this.attendant.writeNewline();
+                return next;
+            };
+        case WRITECOLUMNS:
+            return () -> {
+                this.attendant.writeInDirection(WriteDirection.COLUMNS);
+                return next;
+            };
+        case WRITEROWS:
+            return () -> {
+                this.attendant.writeInDirection(WriteDirection.ROWS);
+                return next;
+            };
+        case WRITEPICTURE:
+            final String format = card.argument(0);
+            return () -> {
+                this.attendant.setFormat(format);
+                return next;
+            };
+        case COMMENT:
+        case TRACEON:
+        case TRACEOFF:
+            return () -> next;
+        default:
+            // halt and bell cards end the cycle, and every other card should
+            // have been removed by the attendant
+            return null;
+        }
+    }
+
+    /**
+     * Compiles a memory access card.
+     * 
+     * @param card
+     *            A memory access card.
+     * @param next
+     *            The offset of the following card from the start of this
+     *            cycle.
+     * @return The compiled card.
+     * @throws NumberFormatException
+     *             if the address or number on the card is malformed.
+     */
+    private Step compileMemoryAccess(final Card card, final int next) {
+        final int address = Integer.parseInt(card.argument(0));
+        Integer slot = this.invariantSlots.get(address);
+        if (slot != null) {
+            return this.compileInvariantAccess(card, address, slot, next);
+        }
+        switch (card.type()) {
+        case LOAD:
+            return () -> {
+                this.mill.transferIn(this.store.get(address));
+                return next;
+            };
+        case LOADPRIME:
+            return () -> {
+                this.mill.transferIn(this.store.get(address), true);
+                return next;
+            };
+        case NUMBER:
+            final BigInteger number = new BigInteger(card.argument(1));
+            return () -> {
+                this.store.put(address, number);
+                return next;
+            };
+        case STORE:
+            return () -> {
+                this.store.put(address, this.mill.transferOut());
+                return next;
+            };
+        case STOREPRIME:
+            return () -> {
+                this.store.put(address, this.mill.transferOut(true));
+                return next;
+            };
+        case ZLOAD:
+            return () -> {
+                BigInteger value = this.store.get(address);
+                this.store.put(address, BigInteger.ZERO);
+                this.mill.transferIn(value);
+                return next;
+            };
+        case ZLOADPRIME:
+            return () -> {
+                BigInteger value = this.store.get(address);
+                this.store.put(address, BigInteger.ZERO);
+                this.mill.transferIn(value, true);
+                return next;
+            };
+        default:
+            throw new IllegalArgumentException(
+                    "Expected memory access card, not " + card);
+        }
+    }
+
+    /**
+     * Compiles a card that reads or writes an invariant column.
+     * 
+     * @param card
+     *            A load or number card.
+     * @param address
+     *            The address of the invariant column.
+     * @param slot
+     *            The index of the column in {@link #invariants}.
+     * @param next
+     *            The offset of the following card from the start of this
+     *            cycle.
+     * @return The compiled card.
+     */
+    private Step compileInvariantAccess(final Card card, final int address,
+            final int slot, final int next) {
+        switch (card.type()) {
+        case LOAD:
+            return () -> {
+                this.mill.transferIn(this.invariant(address, slot));
+                return next;
+            };
+        case LOADPRIME:
+            return () -> {
+                this.mill.transferIn(this.invariant(address, slot), true);
+                return next;
+            };
+        case NUMBER:
+            final BigInteger number = this.invariantNumbers.get(address);
+            return () -> {
+                // if the column already holds this very number, the store
+                // holds it too
+                if (this.invariants[slot] != number) {
+                    this.store.put(address, number);
+                    this.invariants[slot] = number;
+                }
+                return next;
+            };
+        default:
+            throw new IllegalArgumentException(
+                    "Expected load or number card, not " + card);
+        }
+    }
+
+    /**
+     * Compiles an arithmetic card.
+     * 
+     * @param operation
+     *            The operation to set on the mill.
+     * @param next
+     *            The offset of the following card from the start of this
+     *            cycle.
+     * @return The compiled card.
+     */
+    private Step compileOperation(final Operation operation, final int next) {
+        return () -> {
+            this.mill.setOperation(operation);
+            return next;
+        };
+    }
+
+    /**
+     * Compiles a shift card.
+     * 
+     * @param card
+     *            A left or right shift card.
+     * @param left
+     *            Whether the card is a left shift card.
+     * @param next
+     *            The offset of the following card from the start of this
+     *            cycle.
+     * @return The compiled card.
+     * @throws NumberFormatException
+     *             if the shift amount on the card is malformed.
+     */
+    private Step compileShift(final Card card, final boolean left,
+            final int next) {
+        final int shift = Integer.parseInt(card.argument(0));
+        return () -> {
+            try {
+                if (left) {
+                    this.mill.leftShift(shift);
+                } else {
+                    this.mill.rightShift(shift);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new BadCard("Shift value is out of bounds", card, e);
+            }
+            return next;
+        };
+    }
+
+    /**
+     * Executes this cycle, starting from its first card, until control leaves
+     * the cycle or the specified number of cards has been executed.
+     * 
+     * The card reader must be positioned so that the next card to be read is
+     * the first card of this cycle. When this method returns or throws an
+     * exception, the card reader is positioned as if the executed cards had
+     * been read from it one at a time.
+     * 
+     * @param maxCards
+     *            The maximum number of cards to execute.
+     * @return The number of cards executed.
+     * @throws BadCard
+     *             if a card induces a runtime error in the Engine.
+     */
+    long execute(final long maxCards) throws BadCard {
+        // cards outside of the cycle may have changed the invariant columns
+        Arrays.fill(this.invariants, null);
+        long executed = 0;
+        int offset = 0;
+        try {
+            while (executed < maxCards) {
+                offset = this.steps[offset].execute();
+                executed++;
+                if (offset == EXIT) {
+                    return executed;
+                }
+                if (offset == this.steps.length) {
+                    break;
+                }
+            }
+        } catch (BadCard | RuntimeException exception) {
+            this.moveReaderTo(this.start + offset);
+            throw exception;
+        }
+        this.moveReaderTo(this.start + offset - 1);
+        return executed;
+    }
+
+    /**
+     * Finds the columns of the store that are invariant while this cycle
+     * runs, and assigns each of them a slot in {@link #invariants}.
+     * 
+     * @throws NumberFormatException
+     *             if an address or number on a card is malformed.
+     */
+    private void findInvariantColumns() {
+        Set<Integer> changed = new HashSet<Integer>();
+        for (Card card : this.cards) {
+            switch (card.type()) {
+            case LOAD:
+            case LOADPRIME:
+                this.invariantNumbers.putIfAbsent(
+                        Integer.parseInt(card.argument(0)), null);
+                break;
+            case NUMBER:
+                int address = Integer.parseInt(card.argument(0));
+                BigInteger number = new BigInteger(card.argument(1));
+                BigInteger previous = this.invariantNumbers.get(address);
+                if (previous == null) {
+                    this.invariantNumbers.put(address, number);
+                } else if (!previous.equals(number)) {
+                    changed.add(address);
+                }
+                break;
+            case STORE:
+            case STOREPRIME:
+            case ZLOAD:
+            case ZLOADPRIME:
+                changed.add(Integer.parseInt(card.argument(0)));
+                break;
+            default:
+                break;
+            }
+        }
+        this.invariantNumbers.keySet().removeAll(changed);
+        for (Integer address : this.invariantNumbers.keySet()) {
+            this.invariantSlots.put(address, this.invariantSlots.size());
+        }
+        this.invariants = new BigInteger[this.invariantSlots.size()];
+    }
+
+    /**
+     * Returns the value of the specified invariant column, reading it from
+     * the store if it is not yet known during the current execution.
+     * 
+     * @param address
+     *            The address of the invariant column.
+     * @param slot
+     *            The index of the column in {@link #invariants}.
+     * @return The value of the column.
+     */
+    private BigInteger invariant(final int address, final int slot) {
+        BigInteger value = this.invariants[slot];
+        if (value == null) {
+            value = this.store.get(address);
+            this.invariants[slot] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Returns whether the specified card chain contains the cards from which
+     * this cycle was compiled, at the same position.
+     * 
+     * @param chain
+     *            The card chain mounted in the card reader.
+     * @return Whether this cycle is a faithful translation of the cards at
+     *         its position in the specified card chain.
+     */
+    boolean matches(final List<Card> chain) {
+        if (this.start + this.cards.length > chain.size()) {
+            return false;
+        }
+        for (int i = 0; i < this.cards.length; i++) {
+            if (chain.get(this.start + i) != this.cards[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Positions the card reader so that the card at the specified index is the
+     * most recently read card.
+     * 
+     * @param index
+     *            The index of the card in the card chain.
+     */
+    private void moveReaderTo(final int index) {
+        int n = index - this.cardReader.position();
+        if (n >= 0) {
+            this.cardReader.advance(n);
+        } else {
+            this.cardReader.reverse(-n);
+        }
+    }
+}
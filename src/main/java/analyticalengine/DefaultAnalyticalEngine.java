@@ -21,23 +21,30 @@
 package analyticalengine;
 
 import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import analyticalengine.attendant.Attendant;
-import analyticalengine.attendant.WriteDirection;
 import analyticalengine.cards.BadCard;
-import analyticalengine.cards.Bell;
 import analyticalengine.cards.Card;
+import analyticalengine.cards.CardType;
 import analyticalengine.cards.Halt;
+import analyticalengine.cards.InvalidChain;
 import analyticalengine.components.CardReader;
 import analyticalengine.components.CurvePrinter;
+import analyticalengine.components.EngineConfig;
 import analyticalengine.components.Mill;
 import analyticalengine.components.Operation;
 import analyticalengine.components.Printer;
 import analyticalengine.components.Store;
+import analyticalengine.metrics.Histogram;
+import analyticalengine.metrics.Metrics;
 
 /**
  * A basic implementation of the Analytical Engine interface.
@@ -56,21 +63,181 @@ public class DefaultAnalyticalEngine implements AnalyticalEngine {
     /** The attendant that operates the Analytical Engine. */
     private Attendant attendant = null;
 
+    /**
+     * The number of times each reverse card has caused the card reader to
+     * reverse, keyed by the index of the card in the card chain.
+     */
+    private final Map<Integer, Integer> backEdges =
+            new HashMap<Integer, Integer>();
+
     /** The device that maintains the sequence of cards being read. */
     private CardReader cardReader = null;
 
+    /**
+     * The number of cards of each type executed one at a time, indexed by
+     * ordinal, or {@code null} if metrics are not recorded.
+     */
+    private LongAdder[] cardsExecuted = null;
+
+    /**
+     * The number of times a cycle must be repeated before it is compiled, or
+     * zero if cycles are never compiled.
+     */
+    private int compileThreshold = 0;
+
+    /**
+     * The cycles that have been compiled, keyed by the index in the card
+     * chain of the reverse card that ends the cycle.
+     * 
+     * A cycle that cannot be compiled is mapped to {@code null}.
+     */
+    private final Map<Integer, CompiledCycle> compiled =
+            new HashMap<Integer, CompiledCycle>();
+
+    /**
+     * The number of cards executed as part of compiled cycles, or
+     * {@code null} if metrics are not recorded.
+     */
+    private LongAdder compiledCardsExecuted = null;
+
     /** The device that plots curves as output. */
     private CurvePrinter curvePrinter = null;
 
+    /**
+     * The blocks of library functions in the card chain identified by
+     * {@link #libraryMount} whose results may be remembered, keyed by the
+     * index of the first card of the block that is not a comment.
+     */
+    private Map<Integer, LibraryBlock> libraryBlocks = null;
+
+    /**
+     * The value of {@link CardReader#mounts()} when the card chain in which
+     * {@link #libraryBlocks} were found was mounted, or -1 if they have not
+     * been found.
+     */
+    private long libraryMount = -1;
+
+    /**
+     * The memo in which the results of library functions are remembered, or
+     * {@code null} if library functions are always run.
+     */
+    private LibraryMemo libraryMemo = null;
+
+    /**
+     * The registry in which metrics are recorded, or {@code null} if metrics
+     * are not recorded.
+     */
+    private Metrics metrics = null;
+
     /** The mill that performs the arithmetic logic for the Engine. */
     private Mill mill = null;
 
+    /**
+     * The number on each number card in the card chain currently being run,
+     * if that chain has been verified, or {@code null} otherwise.
+     */
+    private BigInteger[] numbers = null;
+
+    /**
+     * The integer argument of each card in the card chain currently being
+     * run, if that chain has been verified, or {@code null} otherwise.
+     */
+    private int[] operands = null;
+
     /** The device that prints numbers as output. */
     private Printer printer = null;
 
+    /**
+     * The block of a library function currently being run whose result will
+     * be remembered once the block is left, or {@code null} if there is none.
+     */
+    private LibraryBlock recording = null;
+
+    /** The key with which the result of {@link #recording} is remembered. */
+    private List<Object> recordingKey = null;
+
+    /**
+     * The time taken by each invocation of {@link #run(long)}, or
+     * {@code null} if metrics are not recorded.
+     */
+    private Histogram runTimes = null;
+
     /** The memory for the Engine. */
     private Store store = null;
 
+    /**
+     * The value of {@link CardReader#mounts()} when the card chain that was
+     * most recently verified was mounted, or -1 if no chain has been
+     * verified.
+     */
+    private long verifiedMount = -1;
+
+    /**
+     * The number on each number card in the card chain most recently
+     * verified, or {@code null} for every other card.
+     */
+    private BigInteger[] verifiedNumbers = null;
+
+    /**
+     * The integer argument of each card in the card chain most recently
+     * verified.
+     */
+    private int[] verifiedOperands = null;
+
+    /**
+     * Returns the attendant that operates this Engine.
+     * 
+     * @return The attendant that operates this Engine.
+     */
+    Attendant attendant() {
+        return this.attendant;
+    }
+
+    /**
+     * Returns the device that maintains the sequence of cards being read.
+     * 
+     * @return The card reader of this Engine.
+     */
+    CardReader cardReader() {
+        return this.cardReader;
+    }
+
+    /**
+     * Returns the device that plots curves as output.
+     * 
+     * @return The curve printer of this Engine.
+     */
+    CurvePrinter curvePrinter() {
+        return this.curvePrinter;
+    }
+
+    /**
+     * Returns the mill that performs the arithmetic logic for this Engine.
+     * 
+     * @return The mill of this Engine.
+     */
+    Mill mill() {
+        return this.mill;
+    }
+
+    /**
+     * Returns the device that prints numbers as output.
+     * 
+     * @return The printer of this Engine.
+     */
+    Printer printer() {
+        return this.printer;
+    }
+
+    /**
+     * Returns the memory for this Engine.
+     * 
+     * @return The store of this Engine.
+     */
+    Store store() {
+        return this.store;
+    }
+
     /**
      * Performs the advance or reverse specified by the given card.
      * 
@@ -78,11 +245,18 @@ public class DefaultAnalyticalEngine implements AnalyticalEngine {
      * 
      * @param card
      *            A combinatorial card.
+     * @param position
+     *            The index of the card in the card chain.
      * @throws IllegalArgumentException
      *             if the card is not a combinatorial card.
      */
-    private void applyCombinatorialCard(final Card card) {
-        int numCards = Integer.parseInt(card.argument(0));
+    private void applyCombinatorialCard(final Card card, final int position) {
+        int numCards;
+        if (this.operands != null) {
+            numCards = this.operands[position];
+        } else {
+            numCards = Integer.parseInt(card.argument(0));
+        }
         boolean hasRunUp = this.mill.hasRunUp();
         switch (card.type()) {
         case CBACKWARD:
@@ -118,18 +292,21 @@ public class DefaultAnalyticalEngine implements AnalyticalEngine {
     /**
      * Performs the instruction specified by the given card.
      * 
+     * A card that rings the bell notifies the attendant directly, and a card
+     * that halts the Engine is reported by the return value, so that neither
+     * requires an exception to be thrown.
+     * 
      * @param card
      *            The card containing the instruction for the Engine.
-     * @throws Bell
-     *             if the card indicates that a bell on the Analytical Engine
-     *             should be rung.
-     * @throws Halt
-     *             if the card indicates that the Engine should halt execution
-     *             immediately.
+     * @param position
+     *            The index of the card in the card chain.
+     * @return {@code false} if the card indicates that the Engine should halt
+     *         execution immediately, {@code true} otherwise.
      * @throws BadCard
      *             If the specified card has invalid syntax.
      */
-    private void executeCard(final Card card) throws Bell, Halt, BadCard {
+    private boolean executeCard(final Card card, final int position)
+            throws BadCard {
         switch (card.type()) {
         // Instructions affecting the mill: arithmetic and shift instructions
         case ADD:
@@ -140,14 +317,14 @@ public class DefaultAnalyticalEngine implements AnalyticalEngine {
             break;
         case RSHIFTN:
         case LSHIFTN:
-            this.setShift(card);
+            this.setShift(card, position);
             break;
         // Control flow instructions: advance and reverse instructions
         case CBACKWARD:
         case CFORWARD:
         case BACKWARD:
         case FORWARD:
-            this.applyCombinatorialCard(card);
+            this.applyCombinatorialCard(card, position);
             break;
         // Memory access instructions: store, load, and zero-load
         case LOAD:
@@ -157,7 +334,7 @@ public class DefaultAnalyticalEngine implements AnalyticalEngine {
         case STOREPRIME:
         case ZLOAD:
         case ZLOADPRIME:
-            this.handleMemoryAccess(card);
+            this.handleMemoryAccess(card, position);
             break;
         // Curve printer instructions
         case DRAW:
@@ -170,8 +347,7 @@ public class DefaultAnalyticalEngine implements AnalyticalEngine {
         case BELL:
         case HALT:
         case PRINT:
-            this.handleActionCard(card);
-            break;
+            return this.handleActionCard(card);
         // Attendant action instructions
         case ANNOTATE:
         case NEWLINE:
@@ -204,6 +380,7 @@ public class DefaultAnalyticalEngine implements AnalyticalEngine {
         default:
             break;
         }
+        return true;
     }
 
     /**
@@ -215,34 +392,27 @@ public class DefaultAnalyticalEngine implements AnalyticalEngine {
      * 
      * @param card
      *            The action to perform.
-     * @throws Bell
-     *             if the card indicates the bell should be rung.
-     * @throws Halt
-     *             if the card indicates the machine should halt.
+     * @return {@code false} if the card indicates the machine should halt,
+     *         {@code true} otherwise.
      * @throws IllegalArgumentException
      *             if the card is not an action card.
      */
-    private void handleActionCard(final Card card) throws Bell, Halt {
+    private boolean handleActionCard(final Card card) {
         switch (card.type()) {
         case BELL:
-            throw new Bell("Card indicated bell", card);
+            this.attendant.onBell(card);
+            break;
         case HALT:
             LOG.debug("Received halt card.");
-            throw new Halt("Card indicated halt", card);
+            return false;
         case PRINT:
-            Optional<BigInteger> value = this.mill.mostRecentValue();
-            if (!value.isPresent()) {
-                LOG.error("No value is available for printing. Not printing.");
-                break;
-            }
-            String printed = this.printer.print(value.get());
-            LOG.debug("Attendant received value from printer: {}", printed);
-            this.attendant.receiveOutput(printed);
+            CardSemantics.print(this.mill, this.attendant, this.printer);
             break;
         default:
             throw new IllegalArgumentException("Expected action card, not "
                     + card);
         }
+        return true;
     }
 
     /**
@@ -257,35 +427,7 @@ public class DefaultAnalyticalEngine implements AnalyticalEngine {
      *             if the card is not an attendant action card.
      */
     private void handleAttendantAction(final Card card) {
-        switch (card.type()) {
-        case ANNOTATE:
-            String message = card.argument(0);
-            LOG.debug("Annotating in final report: {}", message);
-            this.attendant.annotate(message);
-            break;
-        case NEWLINE:
-            LOG.debug("Writing a new line in the final report.");
-            this.attendant.writeNewline();
-            break;
-        case WRITECOLUMNS:
-            LOG.debug("Writing in rows.");
-            this.attendant.writeInDirection(WriteDirection.COLUMNS);
-            break;
-        case WRITEROWS:
-            LOG.debug("Writing in columns.");
-            this.attendant.writeInDirection(WriteDirection.ROWS);
-            break;
-        case WRITEPICTURE:
-            String format = card.argument(0);
-            LOG.debug("Setting format string for numbers in final report: {}",
-                    format);
-            this.attendant.setFormat(format);
-            break;
-        default:
-            throw new IllegalArgumentException(
-                    "Expected attendant action card, not " + card);
-        }
-
+        CardSemantics.applyAttendantAction(card, this.attendant);
     }
 
     /**
@@ -369,59 +511,80 @@ public class DefaultAnalyticalEngine implements AnalyticalEngine {
      * 
      * @param card
      *            A memory access card.
+     * @param position
+     *            The index of the card in the card chain.
      * @throws BadCard
      *             if the card has a syntax error or induces a runtime error in
      *             the Analytical Engine.
      * @throws IllegalArgumentException
      *             if the card is not a memory access card.
      */
-    private void handleMemoryAccess(final Card card) throws BadCard {
+    private void handleMemoryAccess(final Card card, final int position)
+            throws BadCard {
         int address;
-        try {
-            address = Integer.parseInt(card.argument(0));
-        } catch (NumberFormatException e) {
-            throw new BadCard("Illegal number format", card, e);
+        if (this.operands != null) {
+            address = this.operands[position];
+        } else {
+            address = CardSemantics.operand(card, "Illegal number format");
         }
-        BigInteger value;
-        switch (card.type()) {
-        case LOAD:
-            value = this.store.get(address);
-            LOG.debug("Loading from {} into ingress axis: {}", address, value);
-            this.mill.transferIn(value);
-            break;
-        case LOADPRIME:
-            value = this.store.get(address);
-            LOG.debug("Loading from {} into prime axis: {}", address, value);
-            this.mill.transferIn(value, true);
-            break;
-        case NUMBER:
-            value = new BigInteger(card.argument(1));
-            LOG.debug("Loading number {} into address {}", value, address);
-            this.store.put(address, value);
-            break;
-        case STORE:
-            value = this.mill.transferOut();
-            this.store.put(address, value);
-            break;
-        case STOREPRIME:
-            value = this.mill.transferOut(true);
-            this.store.put(address, value);
-            break;
-        case ZLOAD:
-            value = this.store.get(address);
-            this.store.put(address, BigInteger.ZERO);
-            this.mill.transferIn(value);
-            break;
-        case ZLOADPRIME:
-            value = this.store.get(address);
-            this.store.put(address, BigInteger.ZERO);
-            this.mill.transferIn(value, true);
-            break;
-        default:
-            throw new IllegalArgumentException(
-                    "Expected memory access card, not " + card);
+        BigInteger number = null;
+        if (card.type() == CardType.NUMBER) {
+            if (this.numbers != null) {
+                number = this.numbers[position];
+            } else {
+                number = CardSemantics.number(card);
+            }
         }
+        CardSemantics.applyMemoryAccess(card, address, number, this.mill,
+                this.store);
+    }
 
+    /**
+     * Remembers the result of the library function being run, if the
+     * specified card is the first card after it, and skips the library
+     * function beginning with the specified card, if its result is
+     * remembered.
+     * 
+     * This method must be invoked just after the card has been read, before
+     * it is executed.
+     * 
+     * @param position
+     *            The index in the card chain of the card just read.
+     * @return Whether the card reader has been advanced past the end of a
+     *         library function beginning with the specified card, so that the
+     *         card must not be executed.
+     */
+    private boolean recallLibraryFunction(final int position) {
+        if (this.recording != null) {
+            if (this.recording.contains(position)) {
+                return false;
+            }
+            this.libraryMemo.remember(this.recordingKey,
+                    this.recording.outputs(this.store), this.mill.state());
+            this.recording = null;
+        }
+        LibraryBlock block = this.libraryBlocks.get(position);
+        if (block == null) {
+            return false;
+        }
+        List<Object> key;
+        try {
+            key = block.key(this.store);
+        } catch (RuntimeException exception) {
+            // the interpreter will report the invalid address
+            return false;
+        }
+        LibraryMemo.Entry entry = this.libraryMemo.recall(key);
+        if (entry == null) {
+            this.recording = block;
+            this.recordingKey = key;
+            return false;
+        }
+        LOG.debug("Skipping library function at {}", position);
+        block.restore(this.store, entry.outputs());
+        this.mill.restore(entry.mill());
+        this.cardReader.advance(block.end() - position);
+        return true;
     }
 
     /**
@@ -429,6 +592,8 @@ public class DefaultAnalyticalEngine implements AnalyticalEngine {
      */
     @Override
     public void reset() {
+        this.forgetCompiledCycles();
+        this.recording = null;
         this.mill.reset();
         this.store.reset();
         this.curvePrinter.reset();
@@ -442,29 +607,145 @@ public class DefaultAnalyticalEngine implements AnalyticalEngine {
      */
     @Override
     public void run() throws BadCard {
+        RunStatus status = this.run(Long.MAX_VALUE);
+        while (status == RunStatus.SUSPENDED) {
+            status = this.run(Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param maxCards
+     *            {@inheritDoc}
+     * @return {@inheritDoc}
+     * @throws BadCard
+     *             {@inheritDoc}
+     */
+    @Override
+    public RunStatus run(final long maxCards) throws BadCard {
+        if (maxCards <= 0) {
+            throw new IllegalArgumentException(
+                    "Maximum number of cards must be positive: " + maxCards);
+        }
+        this.operands = this.verifiedOperands();
+        this.numbers = null;
+        if (this.operands != null) {
+            this.numbers = this.verifiedNumbers;
+        }
+        long start = 0;
+        if (this.runTimes != null) {
+            start = System.nanoTime();
+        }
+        if (this.libraryMemo != null
+                && this.libraryMount != this.cardReader.mounts()) {
+            this.libraryBlocks = LibraryBlock.find(this.cardReader.cards());
+            this.libraryMount = this.cardReader.mounts();
+            this.recording = null;
+        }
         try {
-            while (true) {
+            long executed = 0;
+            while (executed < maxCards) {
                 Card currentCard = this.cardReader.readAndAdvance();
-                try {
-                    this.executeCard(currentCard);
-                } catch (Bell bell) {
-                    this.attendant.onBell(currentCard);
+                int position = this.cardReader.position();
+                if (this.libraryMemo != null
+                        && this.recallLibraryFunction(position)) {
+                    executed++;
+                    continue;
+                }
+                if (!this.executeCard(currentCard, position)) {
+                    LOG.info("Program halted.");
+                    return RunStatus.HALTED;
+                }
+                executed++;
+                if (this.cardsExecuted != null) {
+                    this.cardsExecuted[currentCard.type().ordinal()]
+                            .increment();
+                }
+                if (this.compileThreshold > 0
+                        && (currentCard.type() == CardType.BACKWARD
+                                || currentCard.type() == CardType.CBACKWARD)
+                        && this.cardReader.position() < position) {
+                    long compiledCards = this.runCompiledCycle(position,
+                            maxCards - executed);
+                    executed += compiledCards;
+                    if (this.compiledCardsExecuted != null) {
+                        this.compiledCardsExecuted.add(compiledCards);
+                    }
                 }
             }
+            LOG.debug("Suspended after {} cards.", maxCards);
+            return RunStatus.SUSPENDED;
         } catch (BadCard e) {
             // LOG.error("Program error", e);
             throw e;
         } catch (Halt e) {
-            // This would print the stack trace for the Halt exception.
-            // LOG.info("Program halted.", e);
+            // the card reader has no more cards to read
             LOG.info("Program halted.");
+            return RunStatus.HALTED;
         } catch (IndexOutOfBoundsException e) {
             // LOG.error("Advance or reverse beyond boundary of card chain.",
             // e);
             throw e;
+        } finally {
+            if (this.runTimes != null) {
+                this.runTimes.record(System.nanoTime() - start);
+            }
         }
     }
 
+    /**
+     * Counts a repetition of the cycle ending with the specified reverse card
+     * and, once the cycle is hot, runs its compiled form.
+     * 
+     * This method must be invoked just after the reverse card has reversed
+     * the card reader to the beginning of the cycle.
+     * 
+     * @param end
+     *            The index in the card chain of the reverse card.
+     * @param maxCards
+     *            The maximum number of cards to execute.
+     * @return The number of cards executed by the compiled cycle, or zero if
+     *         the cycle was not run in compiled form.
+     * @throws BadCard
+     *             if a card induces a runtime error in the Engine.
+     */
+    private long runCompiledCycle(final int end, final long maxCards)
+            throws BadCard {
+        if (maxCards <= 0) {
+            return 0;
+        }
+        List<Card> chain = this.cardReader.cards();
+        int start = this.cardReader.position() + 1;
+        CompiledCycle cycle = this.compiled.get(end);
+        if (cycle == null && this.compiled.containsKey(end)) {
+            // this cycle cannot be compiled
+            return 0;
+        }
+        if (cycle == null || !cycle.matches(chain)) {
+            int count = this.backEdges.getOrDefault(end, 0) + 1;
+            this.backEdges.put(end, count);
+            if (count < this.compileThreshold) {
+                return 0;
+            }
+            cycle = CompiledCycle.compile(chain, start, end, this);
+            this.compiled.put(end, cycle);
+            if (cycle == null) {
+                return 0;
+            }
+        }
+        return cycle.execute(maxCards);
+    }
+
+    /**
+     * Discards all compiled cycles and repetition counts, for example because
+     * a component of the Engine has been replaced.
+     */
+    private void forgetCompiledCycles() {
+        this.backEdges.clear();
+        this.compiled.clear();
+    }
+
     /**
      * {@inheritDoc}
      * 
@@ -473,6 +754,7 @@ public class DefaultAnalyticalEngine implements AnalyticalEngine {
      */
     @Override
     public void setAttendant(final Attendant attendant) {
+        this.forgetCompiledCycles();
         this.attendant = attendant;
     }
 
@@ -484,7 +766,30 @@ public class DefaultAnalyticalEngine implements AnalyticalEngine {
      */
     @Override
     public void setCardReader(final CardReader reader) {
+        this.forgetCompiledCycles();
         this.cardReader = reader;
+        this.libraryMount = -1;
+        this.verifiedMount = -1;
+    }
+
+    /**
+     * Sets the number of times a cycle of cards must be repeated before it is
+     * compiled into a form that runs faster than the interpreter.
+     * 
+     * Compiled cycles have exactly the same effect as the cards from which
+     * they were compiled. They are discarded when the Engine is reset or any
+     * of its components is replaced.
+     * 
+     * @param threshold
+     *            The number of repetitions after which a cycle is compiled, or
+     *            zero to never compile cycles.
+     */
+    public void setCompileThreshold(final int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException(
+                    "Threshold must be nonnegative: " + threshold);
+        }
+        this.compileThreshold = threshold;
     }
 
     /**
@@ -495,9 +800,67 @@ public class DefaultAnalyticalEngine implements AnalyticalEngine {
      */
     @Override
     public void setCurvePrinter(final CurvePrinter printer) {
+        this.forgetCompiledCycles();
         this.curvePrinter = printer;
     }
 
+    /**
+     * Sets the memo in which the Engine remembers the results of library
+     * functions interpolated into the card chain by the attendant.
+     * 
+     * When the Engine reaches the cards of a library function whose effect
+     * depends only on the values of the columns of the store it reads, and
+     * the memo remembers the result of the function for the current values of
+     * those columns, the Engine writes the remembered values to the columns
+     * written by the function, restores the state of the mill to the state
+     * the function left it in, and skips the cards of the function. The
+     * attendant must not strip comment cards from the chain, since the
+     * Engine recognizes library functions by the comment cards that surround
+     * them.
+     * 
+     * @param memo
+     *            The memo in which to remember results, or {@code null} to
+     *            always run library functions.
+     */
+    public void setLibraryMemo(final LibraryMemo memo) {
+        this.libraryMemo = memo;
+        this.libraryMount = -1;
+        this.recording = null;
+    }
+
+    /**
+     * Records the cards executed by this Engine and the time taken to run
+     * them in the specified registry, along with the activity of the mill
+     * and the store of this Engine, or stops recording them if the registry
+     * is {@code null}.
+     * 
+     * A mill or store given to this Engine after this method is invoked with
+     * a registry also records its activity in that registry.
+     * 
+     * @param metrics
+     *            The registry of metrics, or {@code null}.
+     */
+    public void setMetrics(final Metrics metrics) {
+        this.metrics = metrics;
+        if (metrics == null) {
+            this.cardsExecuted = null;
+            this.compiledCardsExecuted = null;
+            this.runTimes = null;
+        } else {
+            this.cardsExecuted = metrics.counters(Metrics.CARDS_EXECUTED,
+                    "type", CardType.values());
+            this.compiledCardsExecuted = metrics
+                    .counter(Metrics.COMPILED_CARDS_EXECUTED);
+            this.runTimes = metrics.histogram(Metrics.RUN_NANOSECONDS);
+        }
+        if (this.mill != null) {
+            this.mill.setMetrics(metrics);
+        }
+        if (this.store != null) {
+            this.store.setMetrics(metrics);
+        }
+    }
+
     /**
      * {@inheritDoc}
      * 
@@ -506,7 +869,11 @@ public class DefaultAnalyticalEngine implements AnalyticalEngine {
      */
     @Override
     public void setMill(final Mill mill) {
+        this.forgetCompiledCycles();
         this.mill = mill;
+        if (this.metrics != null) {
+            mill.setMetrics(this.metrics);
+        }
     }
 
     /**
@@ -525,30 +892,8 @@ public class DefaultAnalyticalEngine implements AnalyticalEngine {
      *             arithmetic operations.
      */
     private void setOperation(final Card card) {
-        Operation operation;
-        String name;
-        switch (card.type()) {
-        case ADD:
-            operation = Operation.ADD;
-            name = "addition";
-            break;
-        case DIVIDE:
-            operation = Operation.DIVIDE;
-            name = "division";
-            break;
-        case MULTIPLY:
-            operation = Operation.MULTIPLY;
-            name = "multiplication";
-            break;
-        case SUBTRACT:
-            operation = Operation.SUBTRACT;
-            name = "subtraction";
-            break;
-        default:
-            throw new IllegalArgumentException("Expected arithmetic card: "
-                    + card);
-        }
-        LOG.debug("Setting operation on mill: {}", name);
+        Operation operation = CardSemantics.operation(card);
+        LOG.debug("Setting operation on mill: {}", operation);
         this.mill.setOperation(operation);
     }
 
@@ -560,6 +905,7 @@ public class DefaultAnalyticalEngine implements AnalyticalEngine {
      */
     @Override
     public void setPrinter(final Printer printer) {
+        this.forgetCompiledCycles();
         this.printer = printer;
     }
 
@@ -568,40 +914,23 @@ public class DefaultAnalyticalEngine implements AnalyticalEngine {
      * 
      * @param card
      *            A left or right shift card.
+     * @param position
+     *            The index of the card in the card chain.
      * @throws BadCard
      *             if there is a syntax error on the card.
      * @throws IllegalArgumentException
      *             if the card is not a shift card.
      */
-    private void setShift(final Card card) throws BadCard {
+    private void setShift(final Card card, final int position)
+            throws BadCard {
         int shift;
-        try {
-            shift = Integer.parseInt(card.argument(0));
-        } catch (NumberFormatException e) {
-            throw new BadCard("Failed to parse step up value", card, e);
-        }
-
-        switch (card.type()) {
-        case LSHIFTN:
-            LOG.debug("Performing left shift on mill by {}", shift);
-            try {
-                this.mill.leftShift(shift);
-            } catch (IllegalArgumentException e) {
-                throw new BadCard("Shift value is out of bounds", card, e);
-            }
-            break;
-        case RSHIFTN:
-            LOG.debug("Performing right shift on mill by {}", shift);
-            try {
-                this.mill.rightShift(shift);
-            } catch (IllegalArgumentException e) {
-                throw new BadCard("Shift value is out of bounds", card, e);
-            }
-            break;
-        default:
-            throw new IllegalArgumentException("Expected shift card, not "
-                    + card);
+        if (this.operands != null) {
+            shift = this.operands[position];
+        } else {
+            shift = CardSemantics.operand(card,
+                    "Failed to parse step up value");
         }
+        CardSemantics.applyShift(card, shift, this.mill);
     }
 
     /**
@@ -612,6 +941,56 @@ public class DefaultAnalyticalEngine implements AnalyticalEngine {
      */
     @Override
     public void setStore(final Store store) {
+        this.forgetCompiledCycles();
         this.store = store;
+        if (this.metrics != null) {
+            store.setMetrics(this.metrics);
+        }
+    }
+
+    /**
+     * Returns the integer arguments decoded when the card chain mounted in
+     * the card reader was verified, if it is the chain most recently
+     * verified.
+     * 
+     * @return The integer argument of each card in the chain, or {@code null}
+     *         if the chain has not been verified.
+     */
+    private int[] verifiedOperands() {
+        if (this.verifiedMount != this.cardReader.mounts()) {
+            return null;
+        }
+        return this.verifiedOperands;
+    }
+
+    /**
+     * Checks every card in the mounted card chain for errors that would
+     * otherwise be discovered only when the card is read, as described in
+     * {@link ChainVerifier}.
+     * 
+     * If the chain is valid, the Engine runs it in a verified mode that uses
+     * the arguments decoded by the verifier, and the numbers on number cards
+     * decoded here, instead of parsing each card again every time it is
+     * read. The Engine leaves verified mode as soon as
+     * a different chain is mounted in the card reader.
+     * 
+     * @param config
+     *            The configuration with which the mill and the store of this
+     *            Engine were created.
+     * @throws InvalidChain
+     *             if any card in the chain would cause an error when read;
+     *             the exception lists every such card.
+     */
+    public void verify(final EngineConfig config) throws InvalidChain {
+        List<Card> chain = this.cardReader.cards();
+        this.verifiedOperands = new ChainVerifier(config).verify(chain);
+        this.verifiedMount = this.cardReader.mounts();
+        this.verifiedNumbers = new BigInteger[chain.size()];
+        for (int i = 0; i < this.verifiedNumbers.length; i++) {
+            if (chain.get(i).type() == CardType.NUMBER) {
+                this.verifiedNumbers[i] = new BigInteger(chain.get(i)
+                        .argument(1));
+            }
+        }
     }
 }
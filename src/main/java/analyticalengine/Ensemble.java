@@ -0,0 +1,459 @@
+/**
+ * Ensemble.java - runs one card chain over many stores in lockstep
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import analyticalengine.attendant.Attendant;
+import analyticalengine.attendant.DefaultAttendant;
+import analyticalengine.cards.BadCard;
+import analyticalengine.cards.Card;
+import analyticalengine.cards.CardType;
+import analyticalengine.components.EngineConfig;
+import analyticalengine.components.Mill;
+import analyticalengine.components.Operation;
+import analyticalengine.components.Printer;
+import analyticalengine.components.Store;
+import analyticalengine.components.StringPrinter;
+
+/**
+ * Runs one card chain, as mounted by the attendant, on many lanes at once,
+ * each with its own mill, store, and attendant, and each starting with some
+ * columns of its store overridden.
+ * 
+ * An override gives the initial value of a column in one lane. Every number
+ * card that sets an overridden column sets it to the override instead of the
+ * number on the card, so a program that sets its inputs with number cards can
+ * be run for many inputs without changing its cards.
+ * 
+ * Lanes that are at the same card form a group, and the components of the
+ * lanes are kept in parallel arrays indexed by lane. Each card is read,
+ * decoded, and dispatched once for the whole group, then applied to the mill,
+ * store, or attendant of each lane in the group. All lanes begin in one
+ * group; when the lanes of a group disagree on whether the mill has run up
+ * at a conditional advance or reverse card, the lanes that move leave as a
+ * new group and both groups continue independently. The cost of dispatching
+ * a card is therefore paid once per group rather than once per lane.
+ * 
+ * A group that splits is never merged again, even if its lanes later reach
+ * the same card as the lanes it left, because each group runs until it halts
+ * before the next one starts. A chain whose lanes disagree at many branches
+ * therefore degrades towards one group per lane, costing no more than
+ * running each lane on its own Engine.
+ * 
+ * The report of each lane is identical to the report of a single Engine
+ * running the chain with its overrides. Curve printer cards are ignored, as
+ * in a headless Engine. An ensemble runs one chain at a time, so it must not
+ * be shared among threads.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class Ensemble {
+
+    /**
+     * Lanes that are at the same card of the chain.
+     * 
+     * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+     * @since 0.0.1
+     */
+    private static final class Group {
+
+        /** The indices of the lanes in this group. */
+        private int[] lanes;
+
+        /** The index of the card most recently read by this group. */
+        private int position;
+
+        /**
+         * Creates a new group of the specified lanes.
+         * 
+         * @param lanes
+         *            The indices of the lanes.
+         * @param position
+         *            The index of the card most recently read.
+         */
+        Group(final int[] lanes, final int position) {
+            this.lanes = lanes;
+            this.position = position;
+        }
+    }
+
+    /**
+     * The logger for this class.
+     */
+    private static final transient Logger LOG = LoggerFactory
+            .getLogger(Ensemble.class);
+
+    /** The attendant of each lane. */
+    private Attendant[] attendants = null;
+
+    /** The card chain. */
+    private Card[] chain = null;
+
+    /** The configuration of each Engine. */
+    private final EngineConfig config;
+
+    /** The mill of each lane. */
+    private Mill[] mills = null;
+
+    /**
+     * For each overridden column, the override of each lane, or {@code null}
+     * for lanes that do not override it.
+     */
+    private Map<Integer, BigInteger[]> overrides = null;
+
+    /** The groups of lanes that have not yet halted. */
+    private final Deque<Group> pending = new ArrayDeque<Group>();
+
+    /** The printer of each lane. */
+    private Printer[] printers = null;
+
+    /** The store of each lane. */
+    private Store[] stores = null;
+
+    /**
+     * Creates a new ensemble whose lanes each have the specified
+     * configuration.
+     * 
+     * @param config
+     *            The configuration of the mill and the store of each lane.
+     */
+    public Ensemble(final EngineConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Performs the advance or reverse specified by the given card on the
+     * specified group, splitting the group if its lanes disagree on whether
+     * to move.
+     * 
+     * @param card
+     *            A combinatorial card.
+     * @param group
+     *            The group that read the card.
+     * @throws BadCard
+     *             if there is a syntax error on the card.
+     */
+    private void applyCombinatorialCard(final Card card, final Group group)
+            throws BadCard {
+        int numCards = CardSemantics.operand(card, "Illegal number format");
+        switch (card.type()) {
+        case CBACKWARD:
+            this.splitOnRunUp(group, -numCards);
+            break;
+        case CFORWARD:
+            this.splitOnRunUp(group, numCards);
+            break;
+        case FORWARD:
+            this.jump(group, numCards);
+            break;
+        case BACKWARD:
+            this.jump(group, -numCards);
+            break;
+        default:
+            throw new IllegalArgumentException(
+                    "Expected combinatorial card, not " + card);
+        }
+    }
+
+    /**
+     * Performs the instruction specified by the given card on every lane of
+     * the specified group.
+     * 
+     * @param card
+     *            The card containing the instruction.
+     * @param group
+     *            The group that read the card.
+     * @return {@code false} if the card halts the group, {@code true}
+     *         otherwise.
+     * @throws BadCard
+     *             if the card has a syntax error or induces a runtime error.
+     */
+    private boolean executeCard(final Card card, final Group group)
+            throws BadCard {
+        switch (card.type()) {
+        case ADD:
+        case DIVIDE:
+        case MULTIPLY:
+        case SUBTRACT:
+            Operation operation = CardSemantics.operation(card);
+            for (int lane : group.lanes) {
+                this.mills[lane].setOperation(operation);
+            }
+            break;
+        case RSHIFTN:
+        case LSHIFTN:
+            this.setShift(card, group);
+            break;
+        case CBACKWARD:
+        case CFORWARD:
+        case BACKWARD:
+        case FORWARD:
+            this.applyCombinatorialCard(card, group);
+            break;
+        case LOAD:
+        case LOADPRIME:
+        case NUMBER:
+        case STORE:
+        case STOREPRIME:
+        case ZLOAD:
+        case ZLOADPRIME:
+            this.handleMemoryAccess(card, group);
+            break;
+        case DRAW:
+        case MOVE:
+        case SETX:
+        case SETY:
+            // there is no curve printer
+            break;
+        case BELL:
+            for (int lane : group.lanes) {
+                this.attendants[lane].onBell(card);
+            }
+            break;
+        case HALT:
+            return false;
+        case PRINT:
+            for (int lane : group.lanes) {
+                CardSemantics.print(this.mills[lane], this.attendants[lane],
+                        this.printers[lane]);
+            }
+            break;
+        case ANNOTATE:
+        case NEWLINE:
+        case WRITECOLUMNS:
+        case WRITEROWS:
+        case WRITEPICTURE:
+            for (int lane : group.lanes) {
+                CardSemantics.applyAttendantAction(card,
+                        this.attendants[lane]);
+            }
+            break;
+        case COMMENT:
+        case TRACEON:
+        case TRACEOFF:
+            break;
+        default:
+            // every other card should be removed by the attendant
+            throw new BadCard("Attendant failed to remove card", card);
+        }
+        return true;
+    }
+
+    /**
+     * Performs the memory access specified by the given card on every lane of
+     * the specified group.
+     * 
+     * @param card
+     *            A memory access card.
+     * @param group
+     *            The group that read the card.
+     * @throws BadCard
+     *             if the card has a syntax error.
+     */
+    private void handleMemoryAccess(final Card card, final Group group)
+            throws BadCard {
+        int address = CardSemantics.operand(card, "Illegal number format");
+        BigInteger number = null;
+        BigInteger[] override = null;
+        if (card.type() == CardType.NUMBER) {
+            number = CardSemantics.number(card);
+            override = this.overrides.get(address);
+        }
+        for (int lane : group.lanes) {
+            BigInteger value = number;
+            if (override != null && override[lane] != null) {
+                value = override[lane];
+            }
+            CardSemantics.applyMemoryAccess(card, address, value,
+                    this.mills[lane], this.stores[lane]);
+        }
+    }
+
+    /**
+     * Advances or reverses the specified group by the specified number of
+     * cards, as a card reader would.
+     * 
+     * @param group
+     *            The group to move.
+     * @param n
+     *            The number of cards to advance, or the negation of the
+     *            number of cards to reverse.
+     * @throws IndexOutOfBoundsException
+     *             if the group would move beyond either end of the chain.
+     */
+    private void jump(final Group group, final int n) {
+        if ((long) group.position + n >= this.chain.length) {
+            throw new IndexOutOfBoundsException("No more cards to read.");
+        }
+        if ((long) group.position + n < -1) {
+            throw new IndexOutOfBoundsException(
+                    "Cannot reverse beyond beginning.");
+        }
+        group.position += n;
+    }
+
+    /**
+     * Runs the specified card chain once for each of the specified lists of
+     * overrides, and returns the report of each run.
+     * 
+     * @param cards
+     *            The card chain, as mounted by the attendant.
+     * @param lanes
+     *            For each lane, a map from column of the store to the
+     *            initial value of that column in the lane.
+     * @return The report of the attendant of each lane, in the order of the
+     *         lanes.
+     * @throws BadCard
+     *             if a card induces a runtime error in any lane.
+     */
+    public List<String> run(final List<Card> cards,
+            final List<Map<Integer, BigInteger>> lanes) throws BadCard {
+        int count = lanes.size();
+        this.chain = cards.toArray(new Card[cards.size()]);
+        this.attendants = new Attendant[count];
+        this.mills = new Mill[count];
+        this.printers = new Printer[count];
+        this.stores = new Store[count];
+        this.overrides = new HashMap<Integer, BigInteger[]>();
+        int[] all = new int[count];
+        for (int lane = 0; lane < count; lane++) {
+            all[lane] = lane;
+            this.attendants[lane] = new DefaultAttendant();
+            this.mills[lane] = this.config.newMill();
+            this.printers[lane] = new StringPrinter();
+            this.stores[lane] = this.config.newStore();
+            for (Map.Entry<Integer, BigInteger> entry : lanes.get(lane)
+                    .entrySet()) {
+                this.stores[lane].put(entry.getKey(), entry.getValue());
+                this.overrides.computeIfAbsent(entry.getKey(),
+                        k -> new BigInteger[count])[lane] = entry.getValue();
+            }
+        }
+        try {
+            this.pending.push(new Group(all, -1));
+            while (!this.pending.isEmpty()) {
+                this.run(this.pending.pop());
+            }
+            List<String> reports = new ArrayList<String>(count);
+            for (Attendant attendant : this.attendants) {
+                reports.add(attendant.finalReport());
+            }
+            return reports;
+        } finally {
+            this.pending.clear();
+            this.attendants = null;
+            this.chain = null;
+            this.mills = null;
+            this.overrides = null;
+            this.printers = null;
+            this.stores = null;
+        }
+    }
+
+    /**
+     * Runs the specified group until it halts, pushing any groups that split
+     * from it onto the stack of pending groups.
+     * 
+     * @param group
+     *            The group to run.
+     * @throws BadCard
+     *             if a card induces a runtime error in any lane.
+     */
+    private void run(final Group group) throws BadCard {
+        while (group.position + 1 < this.chain.length) {
+            group.position += 1;
+            if (!this.executeCard(this.chain[group.position], group)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Performs the left or right shift specified by the given card on every
+     * lane of the specified group.
+     * 
+     * @param card
+     *            A left or right shift card.
+     * @param group
+     *            The group that read the card.
+     * @throws BadCard
+     *             if there is a syntax error on the card or the shift is out
+     *             of bounds.
+     * @throws IllegalArgumentException
+     *             if the card is not a shift card.
+     */
+    private void setShift(final Card card, final Group group)
+            throws BadCard {
+        int shift = CardSemantics.operand(card,
+                "Failed to parse step up value");
+        for (int lane : group.lanes) {
+            CardSemantics.applyShift(card, shift, this.mills[lane]);
+        }
+    }
+
+    /**
+     * Moves the lanes of the specified group whose mill has run up by the
+     * specified number of cards, splitting them into a new group if the
+     * other lanes of the group have not run up.
+     * 
+     * @param group
+     *            The group that read a conditional advance or reverse card.
+     * @param numCards
+     *            The number of cards to advance, or the negation of the
+     *            number of cards to reverse.
+     */
+    private void splitOnRunUp(final Group group, final int numCards) {
+        int[] moving = new int[group.lanes.length];
+        int[] staying = new int[group.lanes.length];
+        int numMoving = 0;
+        int numStaying = 0;
+        for (int lane : group.lanes) {
+            if (this.mills[lane].hasRunUp()) {
+                moving[numMoving++] = lane;
+            } else {
+                staying[numStaying++] = lane;
+            }
+        }
+        if (numStaying == 0) {
+            this.jump(group, numCards);
+        } else if (numMoving > 0) {
+            LOG.debug("Splitting {} lanes from group of {} at card {}",
+                    numMoving, group.lanes.length, group.position);
+            Group split = new Group(Arrays.copyOf(moving, numMoving),
+                    group.position);
+            this.jump(split, numCards);
+            this.pending.push(split);
+            group.lanes = Arrays.copyOf(staying, numStaying);
+        }
+    }
+}
@@ -0,0 +1,411 @@
+/**
+ * LibraryBlock.java - cards of a library function interpolated in a chain
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import analyticalengine.attendant.DefaultAttendant;
+import analyticalengine.cards.Card;
+import analyticalengine.cards.CardType;
+import analyticalengine.components.Store;
+
+/**
+ * The cards of a function that the attendant interpolated from the library
+ * into a card chain, between the comment cards with which it surrounds them,
+ * whose effect is determined entirely by the values of a few columns of the
+ * store.
+ * 
+ * Such a block consists only of arithmetic, shift, memory access, and
+ * combinatorial cards, and every combinatorial card stays within the block.
+ * The cards of the block, once the attendant has expanded them, determine
+ * both the function and the number of decimal places with which it computes.
+ * The block must also complete an arithmetic operation before it uses any
+ * other part of the state of the mill, so that the state of the mill when
+ * the block is entered cannot affect its result.
+ * 
+ * The input columns of the block are those that it may load from before it
+ * has written them, along with any output column that it does not write on
+ * every path through it. The output columns are those that it may write,
+ * either with a number card or from the mill.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+final class LibraryBlock {
+
+    /**
+     * The logger for this class.
+     */
+    private static final transient Logger LOG = LoggerFactory
+            .getLogger(LibraryBlock.class);
+
+    /**
+     * Analyzes the cards of a library function between the specified
+     * indices, exclusive, in the specified card chain.
+     * 
+     * @param chain
+     *            The card chain mounted in the card reader.
+     * @param begin
+     *            The index of the comment card that precedes the function.
+     * @param end
+     *            The index of the comment card that follows the function.
+     * @param name
+     *            The name of the library function.
+     * @return The block, or {@code null} if the effect of the cards is not
+     *         determined by the values of their input columns.
+     */
+    private static LibraryBlock analyze(final List<Card> chain,
+            final int begin, final int end, final String name) {
+        int entry = begin + 1;
+        while (entry < end && chain.get(entry).type() == CardType.COMMENT) {
+            entry++;
+        }
+        if (entry == end) {
+            return null;
+        }
+        StringBuilder routine = new StringBuilder(name);
+        SortedSet<Integer> inputs = new TreeSet<Integer>();
+        SortedSet<Integer> outputs = new TreeSet<Integer>();
+        // columns written before any combinatorial card, which therefore
+        // have been written whenever a later card is read
+        Set<Integer> written = new HashSet<Integer>();
+        boolean straight = true;
+        // whether an arithmetic operation has been completed, so that every
+        // part of the state of the mill has been set by the block
+        boolean settled = false;
+        boolean operationSet = false;
+        boolean firstAxisLoaded = false;
+        int axis = 0;
+        try {
+            for (int i = entry; i < end; i++) {
+                Card card = chain.get(i);
+                routine.append(System.lineSeparator()).append(card);
+                int address;
+                switch (card.type()) {
+                case COMMENT:
+                    break;
+                case ADD:
+                case DIVIDE:
+                case MULTIPLY:
+                case SUBTRACT:
+                    operationSet = true;
+                    axis = 0;
+                    break;
+                case LOAD:
+                case ZLOAD:
+                    address = Integer.parseInt(card.argument(0));
+                    if (!written.contains(address)) {
+                        inputs.add(address);
+                    }
+                    if (card.type() == CardType.ZLOAD) {
+                        outputs.add(address);
+                        if (straight) {
+                            written.add(address);
+                        }
+                    }
+                    if (!settled && !operationSet) {
+                        return null;
+                    } else if (!settled && axis == 0) {
+                        firstAxisLoaded = true;
+                        axis = 1;
+                    } else if (!settled) {
+                        settled = true;
+                    }
+                    break;
+                case LOADPRIME:
+                case ZLOADPRIME:
+                    address = Integer.parseInt(card.argument(0));
+                    if (!written.contains(address)) {
+                        inputs.add(address);
+                    }
+                    if (card.type() == CardType.ZLOADPRIME) {
+                        outputs.add(address);
+                        if (straight) {
+                            written.add(address);
+                        }
+                    }
+                    break;
+                case NUMBER:
+                    address = Integer.parseInt(card.argument(0));
+                    new BigInteger(card.argument(1));
+                    outputs.add(address);
+                    if (straight) {
+                        written.add(address);
+                    }
+                    break;
+                case STORE:
+                case STOREPRIME:
+                    if (!settled) {
+                        return null;
+                    }
+                    address = Integer.parseInt(card.argument(0));
+                    outputs.add(address);
+                    if (straight) {
+                        written.add(address);
+                    }
+                    break;
+                case LSHIFTN:
+                    Integer.parseInt(card.argument(0));
+                    if (!settled && !firstAxisLoaded) {
+                        return null;
+                    }
+                    break;
+                case RSHIFTN:
+                    Integer.parseInt(card.argument(0));
+                    if (!settled) {
+                        return null;
+                    }
+                    break;
+                case BACKWARD:
+                case CBACKWARD:
+                case CFORWARD:
+                case FORWARD:
+                    if (!settled) {
+                        return null;
+                    }
+                    int n = Integer.parseInt(card.argument(0));
+                    int next;
+                    if (card.type() == CardType.BACKWARD
+                            || card.type() == CardType.CBACKWARD) {
+                        next = i - n + 1;
+                    } else {
+                        next = i + n + 1;
+                    }
+                    // the card after the block is a valid destination
+                    if (next < entry || next > end + 1) {
+                        return null;
+                    }
+                    straight = false;
+                    break;
+                default:
+                    return null;
+                }
+            }
+        } catch (RuntimeException exception) {
+            // the interpreter will report the malformed card
+            LOG.debug("Cannot memoize library function {} at {}", name,
+                    begin);
+            return null;
+        }
+        if (!settled) {
+            return null;
+        }
+        // a column written only on some paths keeps its value on the others,
+        // so that value is part of the result of the block
+        for (int address : outputs) {
+            if (!written.contains(address)) {
+                inputs.add(address);
+            }
+        }
+        return new LibraryBlock(begin, entry, end, routine.toString(),
+                inputs, outputs);
+    }
+
+    /**
+     * Finds the blocks of library functions in the specified card chain
+     * whose results may be remembered.
+     * 
+     * If a function includes another function, and both blocks begin at the
+     * same card, only the outer block is returned.
+     * 
+     * @param chain
+     *            The card chain mounted in the card reader.
+     * @return The blocks, keyed by the index in the card chain of the first
+     *         card of the block that is not a comment.
+     */
+    static Map<Integer, LibraryBlock> find(final List<Card> chain) {
+        Map<Integer, LibraryBlock> result =
+                new HashMap<Integer, LibraryBlock>();
+        Deque<Integer> begins = new ArrayDeque<Integer>();
+        Deque<String> names = new ArrayDeque<String>();
+        for (int i = 0; i < chain.size(); i++) {
+            Card card = chain.get(i);
+            if (card.type() != CardType.COMMENT || card.numArguments() == 0) {
+                continue;
+            }
+            String text = card.argument(0);
+            if (!text.endsWith(DefaultAttendant.LIBRARY_SUFFIX)) {
+                continue;
+            }
+            String name = text.substring(0,
+                    text.length() - DefaultAttendant.LIBRARY_SUFFIX.length());
+            if (name.startsWith(DefaultAttendant.LIBRARY_BEGIN)) {
+                begins.push(i);
+                names.push(name.substring(
+                        DefaultAttendant.LIBRARY_BEGIN.length()));
+            } else if (name.startsWith(DefaultAttendant.LIBRARY_END)
+                    && !names.isEmpty()
+                    && names.peek().equals(name.substring(
+                            DefaultAttendant.LIBRARY_END.length()))) {
+                LibraryBlock block = analyze(chain, begins.pop(), i,
+                        names.pop());
+                if (block != null) {
+                    result.put(block.entry, block);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The index in the card chain of the comment card that precedes the
+     * function.
+     */
+    private final int begin;
+
+    /**
+     * The index in the card chain of the comment card that follows the
+     * function.
+     */
+    private final int end;
+
+    /**
+     * The index in the card chain of the first card of the function that is
+     * not a comment.
+     */
+    private final int entry;
+
+    /** The addresses of the input columns, in increasing order. */
+    private final int[] inputs;
+
+    /** The addresses of the output columns, in increasing order. */
+    private final int[] outputs;
+
+    /**
+     * The name of the function followed by its cards, which identifies the
+     * function along with the number of decimal places it uses.
+     */
+    private final String routine;
+
+    /**
+     * Creates a new block of cards of a library function.
+     * 
+     * @param begin
+     *            The index of the comment card that precedes the function.
+     * @param entry
+     *            The index of the first card that is not a comment.
+     * @param end
+     *            The index of the comment card that follows the function.
+     * @param routine
+     *            The name of the function followed by its cards.
+     * @param inputs
+     *            The addresses of the input columns.
+     * @param outputs
+     *            The addresses of the output columns.
+     */
+    private LibraryBlock(final int begin, final int entry, final int end,
+            final String routine, final Set<Integer> inputs,
+            final Set<Integer> outputs) {
+        this.begin = begin;
+        this.entry = entry;
+        this.end = end;
+        this.routine = routine;
+        this.inputs = inputs.stream().mapToInt(Integer::intValue).toArray();
+        this.outputs = outputs.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Returns whether the card at the specified index in the card chain is
+     * one of the cards of this block.
+     * 
+     * @param position
+     *            The index of a card in the card chain.
+     * @return Whether the card lies between the comment cards that surround
+     *         this block.
+     */
+    boolean contains(final int position) {
+        return this.begin < position && position < this.end;
+    }
+
+    /**
+     * Returns the index in the card chain of the comment card that follows
+     * the function.
+     * 
+     * @return The index of the last card of this block.
+     */
+    int end() {
+        return this.end;
+    }
+
+    /**
+     * Returns a key that identifies the function of this block, the number
+     * of decimal places it uses, and the current values of its input
+     * columns.
+     * 
+     * @param store
+     *            The store of the Engine.
+     * @return A key that is equal to another key only if running this block
+     *         with the current contents of the store would have the same
+     *         effect.
+     */
+    List<Object> key(final Store store) {
+        List<Object> key = new ArrayList<Object>(this.inputs.length + 1);
+        key.add(this.routine);
+        for (int address : this.inputs) {
+            key.add(store.get(address));
+        }
+        return key;
+    }
+
+    /**
+     * Returns the current values of the output columns of this block.
+     * 
+     * @param store
+     *            The store of the Engine.
+     * @return The value of each output column, in increasing order of
+     *         address.
+     */
+    BigInteger[] outputs(final Store store) {
+        BigInteger[] values = new BigInteger[this.outputs.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = store.get(this.outputs[i]);
+        }
+        return values;
+    }
+
+    /**
+     * Writes the specified values to the output columns of this block.
+     * 
+     * @param store
+     *            The store of the Engine.
+     * @param values
+     *            The value of each output column, as returned by
+     *            {@link #outputs(Store)}.
+     */
+    void restore(final Store store, final BigInteger[] values) {
+        for (int i = 0; i < values.length; i++) {
+            store.put(this.outputs[i], values[i]);
+        }
+    }
+}
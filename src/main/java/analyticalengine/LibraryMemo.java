@@ -0,0 +1,218 @@
+/**
+ * LibraryMemo.java - remembers the results of library functions
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine;
+
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import analyticalengine.components.MillState;
+
+/**
+ * Remembers the effect of running the cards of a library function on the
+ * store and the mill, so that an Engine can skip those cards the next time
+ * the function is requested with the same inputs.
+ * 
+ * An entry is keyed by the function, the number of decimal places with which
+ * it computes, and the values of the columns of the store that it reads. Only
+ * functions whose effect is determined by those values are remembered; a
+ * function that prints, draws, annotates the report, rings the bell, halts
+ * the Engine, or depends on the state in which the mill was left before the
+ * function was requested is always run. When the number of entries would
+ * exceed the capacity of the memo, the entry used least recently is
+ * forgotten.
+ * 
+ * A memo may be shared by several Engines, even Engines running on
+ * different threads, as long as all their mills and stores have the same
+ * configuration.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class LibraryMemo {
+
+    /**
+     * The effect of running the cards of a library function once.
+     * 
+     * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+     * @since 0.0.1
+     */
+    static final class Entry {
+
+        /** The state of the mill after the function has been run. */
+        private final MillState mill;
+
+        /** The values of the output columns of the function. */
+        private final BigInteger[] outputs;
+
+        /**
+         * Creates a new entry.
+         * 
+         * @param outputs
+         *            The values of the output columns of the function.
+         * @param mill
+         *            The state of the mill after the function has been run.
+         */
+        Entry(final BigInteger[] outputs, final MillState mill) {
+            this.outputs = outputs;
+            this.mill = mill;
+        }
+
+        /**
+         * Returns the state of the mill after the function has been run.
+         * 
+         * @return The state of the mill.
+         */
+        MillState mill() {
+            return this.mill;
+        }
+
+        /**
+         * Returns the values of the output columns of the function.
+         * 
+         * @return The value of each output column, in increasing order of
+         *         address.
+         */
+        BigInteger[] outputs() {
+            return this.outputs;
+        }
+    }
+
+    /** The default maximum number of remembered results. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /** The remembered results, in order from least to most recently used. */
+    private final Map<List<Object>, Entry> entries;
+
+    /** The number of requests for a remembered result that succeeded. */
+    private long hits = 0;
+
+    /** The number of requests for a remembered result that failed. */
+    private long misses = 0;
+
+    /** Creates a new memo with the default capacity. */
+    public LibraryMemo() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new memo that remembers at most the specified number of
+     * results.
+     * 
+     * @param capacity
+     *            The maximum number of results to remember.
+     * @throws IllegalArgumentException
+     *             if the capacity is not positive.
+     */
+    public LibraryMemo(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException(
+                    "Capacity must be positive: " + capacity);
+        }
+        this.entries = new LinkedHashMap<List<Object>, Entry>(16, 0.75f,
+                true) {
+
+            /** Default generated serial version UID. */
+            private static final long serialVersionUID =
+                    4302567385640417561L;
+
+            /**
+             * Forgets the least recently used result once there are more
+             * results than the capacity of the memo.
+             * 
+             * @param eldest
+             *            The least recently used result.
+             * @return Whether to forget the least recently used result.
+             */
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<List<Object>, Entry> eldest) {
+                return this.size() > capacity;
+            }
+        };
+    }
+
+    /** Forgets every remembered result. */
+    public synchronized void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * Returns the number of requests for a remembered result that succeeded.
+     * 
+     * @return The number of hits.
+     */
+    public synchronized long hits() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of requests for a remembered result that failed.
+     * 
+     * @return The number of misses.
+     */
+    public synchronized long misses() {
+        return this.misses;
+    }
+
+    /**
+     * Returns the remembered result of running a library function.
+     * 
+     * @param key
+     *            The key of the function and its inputs, as returned by
+     *            {@link LibraryBlock#key(analyticalengine.components.Store)}.
+     * @return The remembered result, or {@code null} if there is none.
+     */
+    synchronized Entry recall(final List<Object> key) {
+        Entry entry = this.entries.get(key);
+        if (entry == null) {
+            this.misses++;
+        } else {
+            this.hits++;
+        }
+        return entry;
+    }
+
+    /**
+     * Remembers the result of running a library function.
+     * 
+     * @param key
+     *            The key of the function and its inputs.
+     * @param outputs
+     *            The values of the output columns of the function.
+     * @param mill
+     *            The state of the mill after the function has been run.
+     */
+    synchronized void remember(final List<Object> key,
+            final BigInteger[] outputs, final MillState mill) {
+        this.entries.put(key, new Entry(outputs, mill));
+    }
+
+    /**
+     * Returns the number of remembered results.
+     * 
+     * @return The number of remembered results.
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+}
@@ -0,0 +1,492 @@
+/**
+ * ParallelTable.java - runs the rows of a table on several Engines at once
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import analyticalengine.attendant.Attendant;
+import analyticalengine.attendant.DefaultAttendant;
+import analyticalengine.cards.BadCard;
+import analyticalengine.cards.Card;
+import analyticalengine.cards.Halt;
+import analyticalengine.components.CardReader;
+import analyticalengine.components.CompactingCardReader;
+import analyticalengine.components.EngineConfig;
+import analyticalengine.components.NullCurvePrinter;
+import analyticalengine.components.Store;
+import analyticalengine.components.StringPrinter;
+import analyticalengine.metrics.Metrics;
+
+/**
+ * Runs a card chain that computes a table on several Engines at once, one
+ * for each contiguous range of rows.
+ * 
+ * If the chain contains a {@link TableCycle}, that is, a cycle whose
+ * repetitions depend on one another only through a counter, the repetitions
+ * of the cycle are divided into contiguous ranges. Each range is run by a
+ * separate Engine, which first runs the cards before the cycle, as the
+ * original program would, then sets the counter to its value at the
+ * beginning of the range, and stops once the range is complete. The Engine
+ * running the last range also runs the rest of the program. The report is
+ * the concatenation of the output of each range, in order, so it is
+ * identical to the report of a single Engine running the whole chain.
+ * 
+ * Every Engine, as well as one more that first learns the value of the
+ * counter, runs all the cards before the cycle, so those cards are run once
+ * per range in addition to once in total. A table whose cycle is preceded
+ * by a long computation gains little from being divided.
+ * 
+ * If the chain contains no table cycle, it is run by a single Engine.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class ParallelTable {
+
+    /**
+     * A card reader that counts the repetitions of a table cycle and stops
+     * the Engine after a specified number of them.
+     * 
+     * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+     * @since 0.0.1
+     */
+    private static final class RangeReader implements CardReader {
+
+        /** The card reader that actually reads the cards. */
+        private final CardReader delegate = new CompactingCardReader();
+
+        /**
+         * The index of the card read at the beginning of each repetition, or
+         * -1 if repetitions are not counted.
+         */
+        private final int entry;
+
+        /** The number of repetitions begun so far. */
+        private long repetitions = 0;
+
+        /**
+         * The number of repetitions after which the Engine is stopped, or a
+         * negative number to let the program continue.
+         */
+        private final long limit;
+
+        /** The action to perform when the first repetition begins. */
+        private final Runnable onEntry;
+
+        /**
+         * Creates a new card reader.
+         * 
+         * @param entry
+         *            The index of the card read at the beginning of each
+         *            repetition, or -1.
+         * @param limit
+         *            The number of repetitions after which to stop the
+         *            Engine, or a negative number.
+         * @param onEntry
+         *            The action to perform when the first repetition
+         *            begins.
+         */
+        RangeReader(final int entry, final long limit,
+                final Runnable onEntry) {
+            this.entry = entry;
+            this.limit = limit;
+            this.onEntry = onEntry;
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @param n
+         *            {@inheritDoc}
+         */
+        @Override
+        public void advance(final int n) {
+            this.delegate.advance(n);
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @return {@inheritDoc}
+         */
+        @Override
+        public List<Card> cards() {
+            return this.delegate.cards();
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @param cardChain
+         *            {@inheritDoc}
+         */
+        @Override
+        public void mountCards(final List<Card> cardChain) {
+            this.delegate.mountCards(cardChain);
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @return {@inheritDoc}
+         */
+        @Override
+        public long mounts() {
+            return this.delegate.mounts();
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @return {@inheritDoc}
+         */
+        @Override
+        public int position() {
+            return this.delegate.position();
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @return {@inheritDoc}
+         * @throws Halt
+         *             {@inheritDoc}, or if the specified number of
+         *             repetitions have been completed.
+         */
+        @Override
+        public Card readAndAdvance() throws Halt {
+            Card card = this.delegate.readAndAdvance();
+            if (this.delegate.position() == this.entry) {
+                if (this.repetitions == 0) {
+                    this.onEntry.run();
+                }
+                if (this.repetitions == this.limit) {
+                    throw new Halt("Completed range of table");
+                }
+                this.repetitions++;
+            }
+            return card;
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @param n
+         *            {@inheritDoc}
+         */
+        @Override
+        public void reverse(final int n) {
+            this.delegate.reverse(n);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void unmountCards() {
+            this.delegate.unmountCards();
+        }
+    }
+
+    /**
+     * An Engine that runs the cards before a table cycle followed by a range
+     * of its repetitions.
+     * 
+     * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+     * @since 0.0.1
+     */
+    private final class Range implements Callable<String> {
+
+        /** The attendant that records the output of the Engine. */
+        private final Attendant attendant = new DefaultAttendant();
+
+        /** The value of the counter at the beginning of the range. */
+        private final BigInteger counterValue;
+
+        /** Whether the first repetition of the range has begun. */
+        private boolean entered = false;
+
+        /** The Engine. */
+        private final DefaultAnalyticalEngine engine =
+                new DefaultAnalyticalEngine();
+
+        /** Whether the output of the cards before the cycle is reported. */
+        private final boolean first;
+
+        /**
+         * The length of the report when the first repetition of the range
+         * began.
+         */
+        private int prefixLength = 0;
+
+        /** The store of the Engine. */
+        private final Store store = ParallelTable.this.config.newStore();
+
+        /**
+         * Creates a new range of a table cycle, or an Engine that runs the
+         * whole chain if the cycle is {@code null}.
+         * 
+         * @param chain
+         *            The card chain.
+         * @param cycle
+         *            The table cycle, or {@code null}.
+         * @param counterValue
+         *            The value of the counter at the beginning of the range,
+         *            or {@code null} to leave it unchanged.
+         * @param repetitions
+         *            The number of repetitions in the range, or a negative
+         *            number if the Engine should run the rest of the program.
+         * @param first
+         *            Whether the output of the cards before the cycle should
+         *            be reported.
+         */
+        Range(final List<Card> chain, final TableCycle cycle,
+                final BigInteger counterValue, final long repetitions,
+                final boolean first) {
+            this.counterValue = counterValue;
+            this.first = first;
+            int entry = -1;
+            if (cycle != null) {
+                entry = cycle.entry();
+            }
+            CardReader reader = new RangeReader(entry, repetitions,
+                    () -> this.enter(cycle));
+            reader.mountCards(chain);
+            this.attendant.setCardReader(reader);
+            this.engine.setAttendant(this.attendant);
+            this.engine.setCardReader(reader);
+            this.engine.setCompileThreshold(
+                    ParallelTable.this.compileThreshold);
+            this.engine.setLibraryMemo(ParallelTable.this.libraryMemo);
+            this.engine.setCurvePrinter(new NullCurvePrinter());
+            this.engine.setMill(ParallelTable.this.config.newMill());
+            this.engine.setPrinter(new StringPrinter());
+            this.engine.setStore(this.store);
+            this.engine.setMetrics(ParallelTable.this.metrics);
+        }
+
+        /**
+         * Runs the Engine and returns the output of the range.
+         * 
+         * @return The output of the cards before the cycle, if requested,
+         *         followed by the output of the range.
+         * @throws BadCard
+         *             if a card induces a runtime error in the Engine.
+         */
+        @Override
+        public String call() throws BadCard {
+            this.engine.run();
+            String report = this.attendant.finalReport();
+            if (this.first) {
+                return report;
+            }
+            return report.substring(this.prefixLength);
+        }
+
+        /**
+         * Sets the counter as the first repetition of the range begins.
+         * 
+         * @param cycle
+         *            The table cycle.
+         */
+        private void enter(final TableCycle cycle) {
+            this.entered = true;
+            if (this.counterValue != null) {
+                this.store.put(cycle.counter(), this.counterValue);
+            }
+            this.prefixLength = this.attendant.finalReport().length();
+        }
+    }
+
+    /**
+     * The maximum number of repetitions of a table cycle that are divided
+     * among Engines; a cycle that would repeat more often is assumed never to
+     * end, and the chain is run by a single Engine.
+     */
+    public static final int MAX_REPETITIONS = 1 << 20;
+
+    /**
+     * The logger for this class.
+     */
+    private static final transient Logger LOG = LoggerFactory
+            .getLogger(ParallelTable.class);
+
+    /**
+     * The number of times a cycle must be repeated before each Engine
+     * compiles it, or zero if cycles are never compiled.
+     */
+    private int compileThreshold = 0;
+
+    /** The configuration of each Engine. */
+    private final EngineConfig config;
+
+    /**
+     * The memo in which the Engines remember the results of library
+     * functions, or {@code null} if library functions are always run.
+     */
+    private LibraryMemo libraryMemo = null;
+
+    /**
+     * The registry in which the Engines record metrics, or {@code null} if
+     * metrics are not recorded.
+     */
+    private Metrics metrics = null;
+
+    /** The number of Engines to run at once. */
+    private final int threads;
+
+    /**
+     * Creates a new runner that uses at most the specified number of Engines
+     * at once, each with the specified configuration.
+     * 
+     * @param config
+     *            The configuration of each Engine.
+     * @param threads
+     *            The number of Engines to run at once.
+     * @throws IllegalArgumentException
+     *             if the number of threads is not positive.
+     */
+    public ParallelTable(final EngineConfig config, final int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException(
+                    "Number of threads must be positive: " + threads);
+        }
+        this.config = config;
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the number of times a cycle of cards must be repeated before each
+     * Engine compiles it, as described in
+     * {@link DefaultAnalyticalEngine#setCompileThreshold(int)}.
+     * 
+     * @param threshold
+     *            The number of repetitions, or zero to never compile cycles.
+     * @throws IllegalArgumentException
+     *             if the threshold is negative.
+     */
+    public void setCompileThreshold(final int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException(
+                    "Threshold must be nonnegative: " + threshold);
+        }
+        this.compileThreshold = threshold;
+    }
+
+    /**
+     * Sets the memo in which the Engines remember the results of library
+     * functions, as described in
+     * {@link DefaultAnalyticalEngine#setLibraryMemo(LibraryMemo)}.
+     * 
+     * @param memo
+     *            The memo, or {@code null} to always run library functions.
+     */
+    public void setLibraryMemo(final LibraryMemo memo) {
+        this.libraryMemo = memo;
+    }
+
+    /**
+     * Records the activity of every Engine in the specified registry, or
+     * stops recording it if the registry is {@code null}.
+     * 
+     * @param metrics
+     *            The registry of metrics, or {@code null}.
+     */
+    public void setMetrics(final Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Runs the specified card chain, as mounted by the attendant, and returns
+     * the report.
+     * 
+     * @param chain
+     *            The card chain.
+     * @return The report of the attendant.
+     * @throws BadCard
+     *             if a card induces a runtime error in the Engine.
+     */
+    public String run(final List<Card> chain) throws BadCard {
+        TableCycle cycle = TableCycle.find(chain);
+        if (cycle == null || this.threads == 1) {
+            LOG.debug("Running card chain on a single Engine");
+            return new Range(chain, null, null, -1, true).call();
+        }
+
+        // run the cards before the cycle to learn the value of the counter
+        Range probe = new Range(chain, cycle, null, 0, true);
+        String prefix = probe.call();
+        if (!probe.entered) {
+            return prefix;
+        }
+        List<BigInteger> values = cycle.counterValues(probe.store,
+                this.config, MAX_REPETITIONS);
+        if (values == null) {
+            LOG.debug("Table cycle does not end; running on a single Engine");
+            return new Range(chain, null, null, -1, true).call();
+        }
+
+        int ranges = Math.min(this.threads, values.size());
+        LOG.debug("Dividing {} repetitions into {} ranges", values.size(),
+                ranges);
+        List<Range> tasks = new ArrayList<Range>(ranges);
+        for (int i = 0; i < ranges; i++) {
+            int begin = (int) ((long) values.size() * i / ranges);
+            int end = (int) ((long) values.size() * (i + 1) / ranges);
+            long repetitions = end - begin;
+            if (i == ranges - 1) {
+                repetitions = -1;
+            }
+            tasks.add(new Range(chain, cycle, values.get(begin), repetitions,
+                    i == 0));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(ranges);
+        try {
+            List<Future<String>> results = executor.invokeAll(tasks);
+            StringBuilder report = new StringBuilder();
+            for (Future<String> result : results) {
+                report.append(result.get());
+            }
+            return report.toString();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running table",
+                    exception);
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof BadCard) {
+                throw (BadCard) exception.getCause();
+            } else if (exception.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exception.getCause();
+            }
+            throw new IllegalStateException(exception.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/**
+ * ParameterSweep.java - runs a program for many inputs on many threads
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import analyticalengine.attendant.Attendant;
+import analyticalengine.attendant.DefaultAttendant;
+import analyticalengine.cards.BadCard;
+import analyticalengine.components.CardReader;
+import analyticalengine.components.EngineConfig;
+import analyticalengine.components.NullCurvePrinter;
+import analyticalengine.components.Store;
+import analyticalengine.components.StringPrinter;
+
+/**
+ * Runs one program many times at once, each time with some columns of the
+ * store overridden, and collects the report of each run.
+ * 
+ * The program is prepared by the attendant only once, in
+ * {@link Program#load(java.util.List, analyticalengine.attendant.Library,
+ * boolean)}, and every run shares its cards. Each run has only its own
+ * Engine, mill, store, attendant to record output, and card reader holding
+ * its position in the program. The runs are divided among a fixed number of
+ * threads.
+ * 
+ * As in {@link Ensemble}, an override gives the initial value of a column,
+ * and every number card that sets that column sets it to the override
+ * instead. Curve printer cards are ignored.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class ParameterSweep {
+
+    /**
+     * A single run of the program.
+     * 
+     * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+     * @since 0.0.1
+     */
+    private final class Run implements Callable<String> {
+
+        /** A map from column of the store to its initial value. */
+        private final Map<Integer, BigInteger> overrides;
+
+        /** The program to run. */
+        private final Program program;
+
+        /**
+         * Creates a new run of the specified program.
+         * 
+         * @param program
+         *            The program to run.
+         * @param overrides
+         *            A map from column of the store to its initial value.
+         */
+        Run(final Program program, final Map<Integer, BigInteger> overrides) {
+            this.program = program;
+            this.overrides = overrides;
+        }
+
+        /**
+         * Creates the Engine, runs it, and returns the report.
+         * 
+         * The components of the Engine are created only when the run
+         * begins, so that only the runs in progress hold a store.
+         * 
+         * @return The report of the attendant.
+         * @throws BadCard
+         *             if a card induces a runtime error in the Engine.
+         */
+        @Override
+        public String call() throws BadCard {
+            EngineConfig config = ParameterSweep.this.config;
+            CardReader reader = this.program.newReader(this.overrides);
+            Store store = config.newStore();
+            for (Map.Entry<Integer, BigInteger> entry : this.overrides
+                    .entrySet()) {
+                store.put(entry.getKey(), entry.getValue());
+            }
+            Attendant attendant = new DefaultAttendant();
+            attendant.setCardReader(reader);
+            DefaultAnalyticalEngine engine = new DefaultAnalyticalEngine();
+            engine.setAttendant(attendant);
+            engine.setCardReader(reader);
+            engine.setCurvePrinter(new NullCurvePrinter());
+            engine.setMill(config.newMill());
+            engine.setPrinter(new StringPrinter());
+            engine.setStore(store);
+            engine.run();
+            return attendant.finalReport();
+        }
+    }
+
+    /**
+     * The logger for this class.
+     */
+    private static final transient Logger LOG = LoggerFactory
+            .getLogger(ParameterSweep.class);
+
+    /** The configuration of each Engine. */
+    private final EngineConfig config;
+
+    /** The number of runs to perform at once. */
+    private final int threads;
+
+    /**
+     * Creates a new sweep that performs at most the specified number of runs
+     * at once, each on an Engine with the specified configuration.
+     * 
+     * @param config
+     *            The configuration of each Engine.
+     * @param threads
+     *            The number of runs to perform at once.
+     * @throws IllegalArgumentException
+     *             if the number of threads is not positive.
+     */
+    public ParameterSweep(final EngineConfig config, final int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException(
+                    "Number of threads must be positive: " + threads);
+        }
+        this.config = config;
+        this.threads = threads;
+    }
+
+    /**
+     * Runs the specified program once for each of the specified maps of
+     * overrides and returns the report of each run.
+     * 
+     * @param program
+     *            The program to run.
+     * @param overrides
+     *            For each run, a map from column of the store to the initial
+     *            value of that column.
+     * @return The report of each run, in the order of the overrides.
+     * @throws BadCard
+     *             if a card induces a runtime error in any run.
+     */
+    public List<String> run(final Program program,
+            final List<Map<Integer, BigInteger>> overrides) throws BadCard {
+        List<Run> tasks = new ArrayList<Run>(overrides.size());
+        for (Map<Integer, BigInteger> values : overrides) {
+            tasks.add(new Run(program, values));
+        }
+        if (tasks.isEmpty()) {
+            return new ArrayList<String>();
+        }
+        int size = Math.min(this.threads, tasks.size());
+        LOG.debug("Running {} cards {} times on {} threads", program.size(),
+                tasks.size(), size);
+        ExecutorService executor = Executors.newFixedThreadPool(size);
+        try {
+            List<String> reports = new ArrayList<String>(tasks.size());
+            for (Future<String> result : executor.invokeAll(tasks)) {
+                reports.add(result.get());
+            }
+            return reports;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running sweep",
+                    exception);
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof BadCard) {
+                throw (BadCard) exception.getCause();
+            } else if (exception.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exception.getCause();
+            }
+            throw new IllegalStateException(exception.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,356 @@
+/**
+ * Program.java - a card chain prepared once and shared among runs
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import analyticalengine.attendant.Attendant;
+import analyticalengine.attendant.DefaultAttendant;
+import analyticalengine.attendant.Library;
+import analyticalengine.attendant.LibraryLookupException;
+import analyticalengine.cards.BadCard;
+import analyticalengine.cards.Card;
+import analyticalengine.cards.CardType;
+import analyticalengine.cards.Halt;
+import analyticalengine.cards.UnknownCard;
+import analyticalengine.components.ArrayListCardReader;
+import analyticalengine.components.CardReader;
+
+/**
+ * A card chain as mounted by the attendant, prepared once and then read by
+ * any number of Engines at once.
+ * 
+ * Loading a program with an attendant and a card reader changes the state of
+ * both, so a program run many times would otherwise be prepared and mounted
+ * again for each run. Instead, {@link #load(List, Library, boolean)} has a
+ * private attendant prepare the chain, and each run reads the shared chain
+ * through its own card reader from {@link #newReader(Map)}, which holds only
+ * the position of the run in the chain. Instances of this class are
+ * immutable, and so may be shared among threads.
+ * 
+ * A reader may override the values of some columns of the store. As in
+ * {@link Ensemble}, every number card that sets an overridden column reads
+ * as setting it to the override instead of the number on the card.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public final class Program {
+
+    /**
+     * A card reader that reads the chain of a program, with some number cards
+     * replaced.
+     * 
+     * The chain is shared with the program until another chain is mounted,
+     * which replaces it, without any replaced cards, for this reader only.
+     * 
+     * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+     * @since 0.0.1
+     */
+    private static final class Reader extends AbstractList<Card> implements
+            CardReader {
+
+        /** The cards of the mounted chain. */
+        private Card[] chain;
+
+        /**
+         * The index of the card before the next card to read in the card
+         * chain.
+         */
+        private int currentCard = -1;
+
+        /** The number of times the card chain has been changed. */
+        private long mounts = 0;
+
+        /** The cards read instead of the cards at some indices. */
+        private Map<Integer, Card> replaced;
+
+        /**
+         * Creates a new reader of the specified chain.
+         * 
+         * @param chain
+         *            The cards of the program.
+         * @param replaced
+         *            The cards to read instead of the cards at some indices.
+         */
+        Reader(final Card[] chain, final Map<Integer, Card> replaced) {
+            this.chain = chain;
+            this.replaced = replaced;
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @param n
+         *            {@inheritDoc}
+         * @throws IndexOutOfBoundsException
+         *             {@inheritDoc}
+         */
+        @Override
+        public void advance(final int n) {
+            if (this.currentCard + n >= this.chain.length) {
+                throw new IndexOutOfBoundsException("No more cards to read.");
+            }
+            this.currentCard += n;
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * The returned list includes any replaced cards.
+         * 
+         * @return {@inheritDoc}
+         */
+        @Override
+        public List<Card> cards() {
+            return this;
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @param index
+         *            {@inheritDoc}
+         * @return {@inheritDoc}
+         */
+        @Override
+        public Card get(final int index) {
+            Card card = this.replaced.get(index);
+            if (card == null) {
+                return this.chain[index];
+            }
+            return card;
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * The specified chain is copied, and no card of it is replaced.
+         * 
+         * @param cardChain
+         *            {@inheritDoc}
+         */
+        @Override
+        public void mountCards(final List<Card> cardChain) {
+            this.chain = cardChain.toArray(new Card[cardChain.size()]);
+            this.replaced = Collections.<Integer, Card> emptyMap();
+            this.mounts++;
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @return {@inheritDoc}
+         */
+        @Override
+        public long mounts() {
+            return this.mounts;
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @return {@inheritDoc}
+         */
+        @Override
+        public int position() {
+            return this.currentCard;
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @return {@inheritDoc}
+         * @throws Halt
+         *             {@inheritDoc}
+         */
+        @Override
+        public Card readAndAdvance() throws Halt {
+            if (this.currentCard + 1 == this.chain.length) {
+                throw Halt.END_OF_CHAIN;
+            }
+            this.currentCard += 1;
+            return this.get(this.currentCard);
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @param n
+         *            {@inheritDoc}
+         * @throws IndexOutOfBoundsException
+         *             {@inheritDoc}
+         */
+        @Override
+        public void reverse(final int n) {
+            if (this.currentCard - n < -1) {
+                throw new IndexOutOfBoundsException(
+                        "Cannot reverse beyond beginning.");
+            }
+            this.currentCard -= n;
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @return {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return this.chain.length;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void unmountCards() {
+            this.currentCard = -1;
+            this.chain = new Card[0];
+            this.replaced = Collections.<Integer, Card> emptyMap();
+            this.mounts++;
+        }
+    }
+
+    /**
+     * Prepares the specified cards as the attendant would before mounting
+     * them.
+     * 
+     * @param cards
+     *            The cards of the program, as written.
+     * @param library
+     *            The library from which to include library functions.
+     * @param stripComments
+     *            Whether to remove comment cards.
+     * @return The prepared program.
+     * @throws BadCard
+     *             if there is a syntax error in the program.
+     * @throws IOException
+     *             if the attendant fails to locate an included file.
+     * @throws UnknownCard
+     *             if an included file contains an unknown card.
+     * @throws LibraryLookupException
+     *             if a library function cannot be loaded.
+     */
+    public static Program load(final List<Card> cards, final Library library,
+            final boolean stripComments) throws BadCard, IOException,
+            UnknownCard, LibraryLookupException {
+        CardReader reader = new ArrayListCardReader();
+        Attendant attendant = new DefaultAttendant();
+        attendant.setCardReader(reader);
+        attendant.setLibrary(library);
+        attendant.setStripComments(stripComments);
+        attendant.loadProgram(cards);
+        return new Program(reader.cards());
+    }
+
+    /** The cards of this program. */
+    private final Card[] chain;
+
+    /**
+     * For each column set by a number card, the indices of the number cards
+     * that set it.
+     */
+    private final Map<Integer, int[]> numberCards;
+
+    /**
+     * Creates a new program from a card chain that has already been prepared
+     * by an attendant.
+     * 
+     * @param chain
+     *            The card chain, as mounted by the attendant.
+     */
+    public Program(final List<Card> chain) {
+        this.chain = chain.toArray(new Card[chain.size()]);
+        Map<Integer, List<Integer>> positions =
+                new HashMap<Integer, List<Integer>>();
+        for (int i = 0; i < this.chain.length; i++) {
+            if (this.chain[i].type() == CardType.NUMBER) {
+                try {
+                    int address = Integer.parseInt(this.chain[i].argument(0));
+                    positions.computeIfAbsent(address,
+                            k -> new ArrayList<Integer>()).add(i);
+                } catch (NumberFormatException exception) {
+                    // the Engine will report the bad card when it is read
+                }
+            }
+        }
+        Map<Integer, int[]> numbers = new HashMap<Integer, int[]>();
+        for (Map.Entry<Integer, List<Integer>> entry : positions.entrySet()) {
+            numbers.put(entry.getKey(), entry.getValue().stream()
+                    .mapToInt(Integer::intValue).toArray());
+        }
+        this.numberCards = numbers;
+    }
+
+    /**
+     * Returns an unmodifiable view of the cards of this program.
+     * 
+     * @return The cards of this program.
+     */
+    public List<Card> cards() {
+        return Collections.unmodifiableList(new Reader(this.chain,
+                Collections.<Integer, Card> emptyMap()));
+    }
+
+    /**
+     * Creates a new card reader of this program for a single run.
+     * 
+     * The reader reads the cards of this program without copying them, but
+     * every number card that sets a column in the specified map reads as
+     * setting it to the value in the map. Mounting another chain in the
+     * reader replaces this program for that reader only.
+     * 
+     * @param overrides
+     *            A map from column of the store to the value with which to
+     *            replace the number on every number card for that column.
+     * @return A new card reader, positioned before the first card.
+     */
+    public CardReader newReader(final Map<Integer, BigInteger> overrides) {
+        Map<Integer, Card> replaced = new HashMap<Integer, Card>();
+        for (Map.Entry<Integer, BigInteger> entry : overrides.entrySet()) {
+            int[] positions = this.numberCards.get(entry.getKey());
+            if (positions != null) {
+                for (int i : positions) {
+                    Card card = this.chain[i];
+                    replaced.put(i, new Card(CardType.NUMBER, new String[] {
+                            card.argument(0), entry.getValue().toString() },
+                            card.comment()));
+                }
+            }
+        }
+        return new Reader(this.chain, replaced);
+    }
+
+    /**
+     * Returns the number of cards in this program.
+     * 
+     * @return The number of cards.
+     */
+    public int size() {
+        return this.chain.length;
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * RunStatus.java - why the Analytical Engine stopped running
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine;
+
+/**
+ * The reason the Analytical Engine stopped running a program, as returned by
+ * {@link AnalyticalEngine#run(long)}.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public enum RunStatus {
+    /**
+     * The program halted, either because of a halt card or because the end of
+     * the card chain was reached.
+     */
+    HALTED,
+    /**
+     * The Engine executed the maximum number of cards it was allowed to; the
+     * program may be resumed from the next card.
+     */
+    SUSPENDED;
+}
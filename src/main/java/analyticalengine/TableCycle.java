@@ -0,0 +1,619 @@
+/**
+ * TableCycle.java - a cycle whose repetitions depend only on a counter
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import analyticalengine.cards.Card;
+import analyticalengine.cards.CardType;
+import analyticalengine.components.DefaultMill;
+import analyticalengine.components.EngineConfig;
+import analyticalengine.components.Mill;
+import analyticalengine.components.Operation;
+import analyticalengine.components.Store;
+
+/**
+ * A cycle of cards, such as the cycle that computes each row of a table of
+ * values, whose repetitions are independent of one another except through a
+ * single counter column.
+ * 
+ * A table cycle ends with a conditional reverse to its first card. On each
+ * path through the cycle, the counter is changed exactly once, by a card
+ * that no reverse within the cycle can repeat, by adding or subtracting a
+ * column that the cycle never changes, and the cycle ends by adding or
+ * subtracting the counter and a column that the cycle never changes, so
+ * that the run up lever decides whether the cycle repeats. Every
+ * other column that the cycle loads from is either never changed by the
+ * cycle or is written on every path through the cycle before it is loaded.
+ * The cycle completes an arithmetic operation before it uses any other part
+ * of the state of the mill.
+ * 
+ * Consequently, the effect of a repetition of the cycle depends only on the
+ * value of the counter when it begins, and the value of the counter in each
+ * repetition can be computed without running the cycle. A table cycle may
+ * print and annotate the report, but it may not change the format of the
+ * report, draw curves, ring the bell, or halt the Engine, and no card outside
+ * of the cycle may advance or reverse the card reader across it.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+final class TableCycle {
+
+    /**
+     * The logger for this class.
+     */
+    private static final transient Logger LOG = LoggerFactory
+            .getLogger(TableCycle.class);
+
+    /**
+     * Analyzes the cycle of cards between the specified indices, inclusive,
+     * in the specified card chain.
+     * 
+     * @param chain
+     *            The card chain mounted in the card reader.
+     * @param start
+     *            The index of the first card of the cycle.
+     * @param end
+     *            The index of the conditional reverse card that ends the
+     *            cycle.
+     * @return The table cycle, or {@code null} if the repetitions of the
+     *         cycle may depend on one another.
+     */
+    private static TableCycle analyze(final List<Card> chain,
+            final int start, final int end) {
+        int entry = start;
+        while (entry < end && isNoOp(chain.get(entry))) {
+            entry++;
+        }
+        int size = end - start + 1;
+        int[] reads = new int[size];
+        int[] writes = new int[size];
+        int[] targets = new int[size];
+        boolean[] conditional = new boolean[size];
+        BitSet written = new BitSet();
+        for (int i = start; i <= end; i++) {
+            Card card = chain.get(i);
+            int k = i - start;
+            reads[k] = -1;
+            writes[k] = -1;
+            targets[k] = -1;
+            switch (card.type()) {
+            case LOAD:
+            case LOADPRIME:
+                reads[k] = Integer.parseInt(card.argument(0));
+                break;
+            case ZLOAD:
+            case ZLOADPRIME:
+                reads[k] = Integer.parseInt(card.argument(0));
+                writes[k] = reads[k];
+                break;
+            case NUMBER:
+                new BigInteger(card.argument(1));
+                writes[k] = Integer.parseInt(card.argument(0));
+                break;
+            case STORE:
+            case STOREPRIME:
+                writes[k] = Integer.parseInt(card.argument(0));
+                break;
+            case BACKWARD:
+            case CBACKWARD:
+            case CFORWARD:
+            case FORWARD:
+                if (i == end) {
+                    break;
+                }
+                targets[k] = target(card, i);
+                conditional[k] = card.type() == CardType.CBACKWARD
+                        || card.type() == CardType.CFORWARD;
+                // only the reverse that ends the cycle may reach its entry
+                if (targets[k] <= entry || targets[k] > end) {
+                    return null;
+                }
+                break;
+            case ADD:
+            case ANNOTATE:
+            case COMMENT:
+            case DIVIDE:
+            case LSHIFTN:
+            case MULTIPLY:
+            case NEWLINE:
+            case PRINT:
+            case RSHIFTN:
+            case SUBTRACT:
+            case TRACEOFF:
+            case TRACEON:
+                break;
+            default:
+                return null;
+            }
+            if (writes[k] >= 0) {
+                written.set(writes[k]);
+            }
+        }
+        if (!settlesMill(chain, entry, end)) {
+            return null;
+        }
+
+        // the columns that have certainly been written before each card
+        BitSet[] before = mustBeWritten(start, end, writes, targets,
+                conditional, -1);
+        if (before[size - 1] == null) {
+            return null;
+        }
+        int counter = -1;
+        for (int k = 0; k < size; k++) {
+            int address = reads[k];
+            if (before[k] == null || address < 0 || before[k].get(address)
+                    || !written.get(address)) {
+                continue;
+            }
+            // this column is carried from the previous repetition
+            if (counter >= 0 && counter != address) {
+                return null;
+            }
+            counter = address;
+        }
+        if (counter < 0) {
+            return null;
+        }
+
+        // the counter must be changed exactly once on every path
+        int update = -1;
+        for (int k = 0; k < size; k++) {
+            if (writes[k] == counter && update >= 0) {
+                return null;
+            } else if (writes[k] == counter) {
+                update = k + start;
+            }
+        }
+        // an inner reverse across the update may repeat it
+        for (int k = 0; k < size - 1; k++) {
+            if (targets[k] >= 0 && targets[k] <= k + start
+                    && targets[k] <= update && update <= k + start) {
+                return null;
+            }
+        }
+        if (update - 3 < entry || chain.get(update).type() != CardType.STORE
+                || mustBeWritten(start, end, writes, targets, conditional,
+                        update)[size - 1] != null) {
+            return null;
+        }
+        if (update >= end - 3
+                || chain.get(end).type() != CardType.CBACKWARD) {
+            return null;
+        }
+        TableCycle cycle = new TableCycle(entry, counter);
+        cycle.stepOperation = arithmetic(chain, update - 3, targets, counter,
+                written, cycle.stepColumns);
+        cycle.testOperation = arithmetic(chain, end - 3, targets, counter,
+                written, cycle.testColumns);
+        if (cycle.stepOperation == null || cycle.testOperation == null) {
+            return null;
+        }
+
+        // columns written on only some paths must not be read afterward
+        BitSet unreliable = (BitSet) written.clone();
+        unreliable.andNot(before[size - 1]);
+        for (int i = end + 1; i < chain.size(); i++) {
+            Card card = chain.get(i);
+            switch (card.type()) {
+            case LOAD:
+            case LOADPRIME:
+            case ZLOAD:
+            case ZLOADPRIME:
+                if (unreliable.get(Integer.parseInt(card.argument(0)))) {
+                    return null;
+                }
+                break;
+            default:
+                break;
+            }
+        }
+        return cycle;
+    }
+
+    /**
+     * Decodes an addition or subtraction of the counter and a column that
+     * the cycle never changes, consisting of an operation card followed by
+     * two load cards, none of which may be reached by an advance or reverse
+     * card except the operation card.
+     * 
+     * @param chain
+     *            The card chain.
+     * @param index
+     *            The index of the operation card.
+     * @param targets
+     *            The index of the next card to read after each advance or
+     *            reverse card of the cycle, or -1.
+     * @param counter
+     *            The address of the counter column.
+     * @param written
+     *            The columns written by the cycle.
+     * @param columns
+     *            The array in which to place the addresses of the two loaded
+     *            columns.
+     * @return The operation, or {@code null} if the cards do not have this
+     *         form.
+     */
+    private static Operation arithmetic(final List<Card> chain,
+            final int index, final int[] targets, final int counter,
+            final BitSet written, final int[] columns) {
+        for (int target : targets) {
+            if (target > index && target <= index + 3) {
+                return null;
+            }
+        }
+        for (int i = 0; i < columns.length; i++) {
+            Card card = chain.get(index + 1 + i);
+            if (card.type() != CardType.LOAD) {
+                return null;
+            }
+            columns[i] = Integer.parseInt(card.argument(0));
+            if (columns[i] != counter && written.get(columns[i])) {
+                return null;
+            }
+        }
+        switch (chain.get(index).type()) {
+        case ADD:
+            return Operation.ADD;
+        case SUBTRACT:
+            return Operation.SUBTRACT;
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Finds the first cycle in the specified card chain whose repetitions
+     * are independent of one another except through a counter.
+     * 
+     * @param chain
+     *            The card chain mounted in the card reader.
+     * @return The first table cycle, or {@code null} if there is none.
+     */
+    static TableCycle find(final List<Card> chain) {
+        List<int[]> cycles = new ArrayList<int[]>();
+        List<int[]> jumps = new ArrayList<int[]>();
+        try {
+            for (int i = 0; i < chain.size(); i++) {
+                Card card = chain.get(i);
+                switch (card.type()) {
+                case BACKWARD:
+                case CBACKWARD:
+                case CFORWARD:
+                case FORWARD:
+                    int next = target(card, i);
+                    jumps.add(new int[] { i, next });
+                    if (card.type() == CardType.CBACKWARD && next < i) {
+                        cycles.add(new int[] { next, i });
+                    }
+                    break;
+                // curves are not merged, so they must be drawn in order
+                case DRAW:
+                case MOVE:
+                case SETX:
+                case SETY:
+                    return null;
+                default:
+                    break;
+                }
+            }
+        } catch (RuntimeException exception) {
+            // the interpreter will report the malformed card
+            return null;
+        }
+        cycles.sort((x, y) -> Integer.compare(x[0], y[0]));
+        for (int[] cycle : cycles) {
+            int start = cycle[0];
+            int end = cycle[1];
+            boolean crossed = false;
+            for (int[] jump : jumps) {
+                if ((jump[0] < start && jump[1] > start)
+                        || (jump[0] > end && jump[1] <= end)) {
+                    crossed = true;
+                }
+            }
+            if (crossed) {
+                continue;
+            }
+            try {
+                TableCycle result = analyze(chain, start, end);
+                if (result != null) {
+                    return result;
+                }
+            } catch (RuntimeException exception) {
+                LOG.debug("Cannot analyze cycle {} to {}", start, end);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the specified card has no effect on the Engine.
+     * 
+     * @param card
+     *            A card.
+     * @return Whether the card is a comment or a trace card.
+     */
+    private static boolean isNoOp(final Card card) {
+        return card.type() == CardType.COMMENT
+                || card.type() == CardType.TRACEON
+                || card.type() == CardType.TRACEOFF;
+    }
+
+    /**
+     * Computes the columns that have certainly been written before each card
+     * of the cycle is read, in the current repetition of the cycle.
+     * 
+     * @param start
+     *            The index of the first card of the cycle.
+     * @param end
+     *            The index of the last card of the cycle.
+     * @param writes
+     *            The column written by each card, or -1.
+     * @param targets
+     *            The index of the next card to read after each advance or
+     *            reverse card, or -1.
+     * @param conditional
+     *            Whether each card is a conditional advance or reverse.
+     * @param removed
+     *            The index of a card to treat as missing from the cycle, or
+     *            -1.
+     * @return The columns written before each card, or {@code null} for
+     *         each card that cannot be reached from the first card.
+     */
+    private static BitSet[] mustBeWritten(final int start, final int end,
+            final int[] writes, final int[] targets,
+            final boolean[] conditional, final int removed) {
+        int size = end - start + 1;
+        BitSet[] before = new BitSet[size];
+        before[0] = new BitSet();
+        Deque<Integer> work = new ArrayDeque<Integer>();
+        work.add(0);
+        while (!work.isEmpty()) {
+            int k = work.poll();
+            if (k + start == removed || k == size - 1) {
+                continue;
+            }
+            BitSet after = (BitSet) before[k].clone();
+            if (writes[k] >= 0) {
+                after.set(writes[k]);
+            }
+            List<Integer> next = new ArrayList<Integer>(2);
+            if (targets[k] >= 0) {
+                next.add(targets[k] - start);
+            }
+            if (targets[k] < 0 || conditional[k]) {
+                next.add(k + 1);
+            }
+            for (int n : next) {
+                if (before[n] == null) {
+                    before[n] = after;
+                    work.add(n);
+                } else {
+                    BitSet meet = (BitSet) before[n].clone();
+                    meet.and(after);
+                    if (!meet.equals(before[n])) {
+                        before[n] = meet;
+                        work.add(n);
+                    }
+                }
+            }
+        }
+        return before;
+    }
+
+    /**
+     * Returns whether a cycle beginning with the specified card completes an
+     * arithmetic operation before it uses any other part of the state of the
+     * mill.
+     * 
+     * @param chain
+     *            The card chain.
+     * @param entry
+     *            The index of the first card of the cycle that is not a
+     *            comment.
+     * @param end
+     *            The index of the last card of the cycle.
+     * @return Whether the state of the mill when the cycle begins cannot
+     *         affect it.
+     */
+    private static boolean settlesMill(final List<Card> chain,
+            final int entry, final int end) {
+        boolean operationSet = false;
+        int axis = 0;
+        for (int i = entry; i < end; i++) {
+            switch (chain.get(i).type()) {
+            case ADD:
+            case DIVIDE:
+            case MULTIPLY:
+            case SUBTRACT:
+                operationSet = true;
+                axis = 0;
+                break;
+            case LOAD:
+            case ZLOAD:
+                if (!operationSet) {
+                    return false;
+                } else if (axis == 1) {
+                    return true;
+                }
+                axis = 1;
+                break;
+            case ANNOTATE:
+            case COMMENT:
+            case LOADPRIME:
+            case NEWLINE:
+            case NUMBER:
+            case TRACEOFF:
+            case TRACEON:
+            case ZLOADPRIME:
+                break;
+            default:
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the index of the next card to read after the specified advance
+     * or reverse card is applied.
+     * 
+     * @param card
+     *            An advance or reverse card.
+     * @param position
+     *            The index of the card in the card chain.
+     * @return The index of the card that will be read next.
+     */
+    private static int target(final Card card, final int position) {
+        int n = Integer.parseInt(card.argument(0));
+        if (card.type() == CardType.BACKWARD
+                || card.type() == CardType.CBACKWARD) {
+            return position - n + 1;
+        }
+        return position + n + 1;
+    }
+
+    /** The address of the counter column. */
+    private final int counter;
+
+    /**
+     * The index of the first card of the cycle that is not a comment, which
+     * is read at the beginning of each repetition.
+     */
+    private final int entry;
+
+    /** The columns loaded to change the counter, in order. */
+    private final int[] stepColumns = new int[2];
+
+    /** The operation that changes the counter. */
+    private Operation stepOperation = null;
+
+    /** The columns loaded to decide whether to repeat, in order. */
+    private final int[] testColumns = new int[2];
+
+    /** The operation that decides whether to repeat the cycle. */
+    private Operation testOperation = null;
+
+    /**
+     * Creates a new table cycle.
+     * 
+     * @param entry
+     *            The index of the first card that is not a comment.
+     * @param counter
+     *            The address of the counter column.
+     */
+    private TableCycle(final int entry, final int counter) {
+        this.entry = entry;
+        this.counter = counter;
+    }
+
+    /**
+     * Returns the address of the counter column.
+     * 
+     * @return The address of the counter column.
+     */
+    int counter() {
+        return this.counter;
+    }
+
+    /**
+     * Computes the value of the counter at the beginning of each repetition
+     * of the cycle, in the same way as the mill of an Engine would.
+     * 
+     * @param store
+     *            The store of an Engine about to begin the first repetition.
+     * @param config
+     *            The configuration of the Engine.
+     * @param maxRepetitions
+     *            The maximum number of repetitions to compute.
+     * @return The value of the counter at the beginning of each repetition,
+     *         or {@code null} if the cycle would be repeated more than the
+     *         maximum number of times.
+     */
+    List<BigInteger> counterValues(final Store store,
+            final EngineConfig config, final int maxRepetitions) {
+        Mill mill = new DefaultMill(config);
+        List<BigInteger> result = new ArrayList<BigInteger>();
+        BigInteger value = store.get(this.counter);
+        while (result.size() < maxRepetitions) {
+            result.add(value);
+            value = this.evaluate(mill, store, this.stepOperation,
+                    this.stepColumns, value);
+            this.evaluate(mill, store, this.testOperation, this.testColumns,
+                    value);
+            if (!mill.hasRunUp()) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the index of the first card of the cycle that is not a
+     * comment, which is read at the beginning of each repetition.
+     * 
+     * @return The index of the entry of the cycle.
+     */
+    int entry() {
+        return this.entry;
+    }
+
+    /**
+     * Performs the specified operation on the mill, as the interpreter
+     * would.
+     * 
+     * @param mill
+     *            The mill.
+     * @param store
+     *            The store, which holds every column other than the counter.
+     * @param operation
+     *            The operation.
+     * @param columns
+     *            The addresses of the loaded columns.
+     * @param value
+     *            The current value of the counter.
+     * @return The result of the operation.
+     */
+    private BigInteger evaluate(final Mill mill, final Store store,
+            final Operation operation, final int[] columns,
+            final BigInteger value) {
+        mill.setOperation(operation);
+        for (int address : columns) {
+            if (address == this.counter) {
+                mill.transferIn(value);
+            } else {
+                mill.transferIn(store.get(address));
+            }
+        }
+        return mill.transferOut();
+    }
+}
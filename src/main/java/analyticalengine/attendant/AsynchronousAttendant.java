@@ -0,0 +1,471 @@
+/**
+ * AsynchronousAttendant.java - records printer output on a separate thread
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.attendant;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import analyticalengine.cards.BadCard;
+import analyticalengine.cards.Card;
+import analyticalengine.cards.UnknownCard;
+import analyticalengine.components.CardReader;
+import analyticalengine.components.Printer;
+
+/**
+ * An attendant that records the output of the Analytical Engine on a separate
+ * writer thread, so that the thread running the Engine does not wait on
+ * formatting or on the report.
+ * 
+ * This class wraps another attendant. Each request that affects the report
+ * (output from the printer, annotations, new lines, and changes to the
+ * format or the write direction) is placed on a bounded queue and applied to
+ * the wrapped attendant by the writer thread, in exactly the order in which
+ * the requests were made. If the queue is full, the thread running the Engine
+ * waits until the writer thread catches up. The writer thread removes
+ * requests from the queue in batches, so it only contends with the Engine
+ * when the queue runs dry.
+ * 
+ * Every other request, including {@link #finalReport()} and
+ * {@link #reset()}, first waits for all queued requests to be applied, then
+ * is passed directly to the wrapped attendant. If applying a queued request
+ * failed, the first such failure is thrown by the next {@link #flush()}, and
+ * so by the next request that waits for the queue.
+ * 
+ * Client code should invoke {@link #close()} once the attendant is no longer
+ * needed, in order to stop the writer thread. Closing is atomic with respect
+ * to queueing requests, so every request accepted before the attendant was
+ * closed is applied, and every later request is refused. If the writer
+ * thread stops for any other reason, waiting for the queue fails instead of
+ * blocking forever.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class AsynchronousAttendant implements Attendant, AutoCloseable {
+
+    /** The default maximum number of requests waiting to be applied. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * The logger for this class.
+     */
+    private static final transient Logger LOG = LoggerFactory
+            .getLogger(AsynchronousAttendant.class);
+
+    /**
+     * The number of milliseconds to wait on the queue or the writer thread
+     * before checking whether the writer thread has stopped.
+     */
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * A request that instructs the writer thread to stop.
+     * 
+     * This is compared by identity.
+     */
+    private static final Runnable STOP = () -> {
+        // intentionally unimplemented
+    };
+
+    /** The number of writer threads created so far, used to name them. */
+    private static int threadCount = 0;
+
+    /**
+     * Returns a unique name for a new writer thread.
+     * 
+     * @return A unique name for a new writer thread.
+     */
+    private static synchronized String nextThreadName() {
+        threadCount++;
+        return "attendant-writer-" + threadCount;
+    }
+
+    /** Whether this attendant has been closed, guarded by {@link #lock}. */
+    private boolean closed = false;
+
+    /** The attendant that actually records the output. */
+    private final Attendant delegate;
+
+    /**
+     * The first exception thrown while applying a queued request since the
+     * last {@link #flush()}, or {@code null} if there was none.
+     */
+    private volatile RuntimeException failure = null;
+
+    /**
+     * The lock that makes closing this attendant atomic with respect to
+     * queueing a request.
+     */
+    private final Object lock = new Object();
+
+    /** The requests waiting to be applied by the writer thread. */
+    private final BlockingQueue<Runnable> queue;
+
+    /**
+     * The thread that applies the queued requests to the wrapped attendant.
+     */
+    private final Thread writer;
+
+    /**
+     * Creates a new attendant with a queue of the default capacity that
+     * records output using the specified attendant.
+     * 
+     * @param delegate
+     *            The attendant that actually records the output.
+     */
+    public AsynchronousAttendant(final Attendant delegate) {
+        this(delegate, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new attendant with a queue of the specified capacity that
+     * records output using the specified attendant.
+     * 
+     * @param delegate
+     *            The attendant that actually records the output.
+     * @param capacity
+     *            The maximum number of requests that may wait to be applied
+     *            before the thread running the Engine must wait.
+     */
+    public AsynchronousAttendant(final Attendant delegate,
+            final int capacity) {
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<Runnable>(capacity);
+        this.writer = new Thread(() -> this.applyRequests(),
+                nextThreadName());
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param message
+     *            {@inheritDoc}
+     */
+    @Override
+    public void annotate(final String message) {
+        this.enqueue(() -> this.delegate.annotate(message));
+    }
+
+    /**
+     * Applies queued requests to the wrapped attendant until the stop request
+     * is encountered.
+     * 
+     * This method is run by the writer thread.
+     */
+    private void applyRequests() {
+        List<Runnable> batch = new ArrayList<Runnable>();
+        try {
+            while (true) {
+                batch.add(this.queue.take());
+                this.queue.drainTo(batch);
+                for (Runnable request : batch) {
+                    if (request == STOP) {
+                        return;
+                    }
+                    try {
+                        request.run();
+                    } catch (RuntimeException exception) {
+                        LOG.debug("Failed to record output", exception);
+                        if (this.failure == null) {
+                            this.failure = exception;
+                        }
+                    }
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException exception) {
+            LOG.warn("Writer thread interrupted; output may be lost");
+        }
+    }
+
+    /**
+     * Stops the writer thread after all queued requests have been applied.
+     * 
+     * The report remains available from {@link #finalReport()}, but no
+     * further output may be recorded.
+     */
+    @Override
+    public void close() {
+        synchronized (this.lock) {
+            if (!this.closed) {
+                this.closed = true;
+                if (this.writer.isAlive()) {
+                    this.put(STOP);
+                }
+            }
+        }
+        try {
+            this.writer.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Places the specified request on the queue, waiting for space to become
+     * available if necessary.
+     * 
+     * @param request
+     *            The request to be applied by the writer thread.
+     * @throws IllegalStateException
+     *             if this attendant has been closed, or if the writer thread
+     *             has stopped while the queue is full.
+     */
+    private void enqueue(final Runnable request) {
+        synchronized (this.lock) {
+            if (this.closed) {
+                throw new IllegalStateException("Attendant has been closed");
+            }
+            this.put(request);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @return {@inheritDoc}
+     * @throws RuntimeException
+     *             if applying a queued request failed, as described in
+     *             {@link #flush()}.
+     */
+    @Override
+    public String finalReport() {
+        this.flush();
+        return this.delegate.finalReport();
+    }
+
+    /**
+     * Waits until every request queued so far has been applied to the wrapped
+     * attendant.
+     * 
+     * If this attendant has been closed, this method waits for the writer
+     * thread to apply the requests accepted before it was closed.
+     * 
+     * @throws IllegalStateException
+     *             if the writer thread stopped before applying every request
+     *             queued so far.
+     * @throws RuntimeException
+     *             the first exception thrown while applying a request since
+     *             the last invocation of this method, if any; the output of
+     *             the failed request is missing from the report.
+     */
+    public void flush() {
+        final CountDownLatch latch = new CountDownLatch(1);
+        boolean queued = false;
+        synchronized (this.lock) {
+            if (!this.closed) {
+                this.put(() -> latch.countDown());
+                queued = true;
+            }
+        }
+        try {
+            if (queued) {
+                while (!latch.await(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (!this.writer.isAlive() && latch.getCount() > 0) {
+                        throw new IllegalStateException(
+                                "Writer thread stopped; output was lost");
+                    }
+                }
+            } else {
+                this.writer.join();
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        RuntimeException exception = this.failure;
+        if (exception != null) {
+            this.failure = null;
+            throw exception;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param cards
+     *            {@inheritDoc}
+     * @throws BadCard
+     *             {@inheritDoc}
+     * @throws IOException
+     *             {@inheritDoc}
+     * @throws UnknownCard
+     *             {@inheritDoc}
+     * @throws LibraryLookupException
+     *             {@inheritDoc}
+     */
+    @Override
+    public void loadProgram(final List<Card> cards)
+            throws BadCard, IOException, UnknownCard, LibraryLookupException {
+        this.flush();
+        this.delegate.loadProgram(cards);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param card
+     *            {@inheritDoc}
+     */
+    @Override
+    public void onBell(final Card card) {
+        this.enqueue(() -> this.delegate.onBell(card));
+    }
+
+    /**
+     * Places the specified request on the queue, waiting for space to become
+     * available if necessary, whether or not this attendant has been closed.
+     * 
+     * The caller must hold {@link #lock}.
+     * 
+     * @param request
+     *            The request to be applied by the writer thread.
+     * @throws IllegalStateException
+     *             if the writer thread has stopped while the queue is full.
+     */
+    private void put(final Runnable request) {
+        try {
+            while (!this.queue.offer(request, POLL_MILLIS,
+                    TimeUnit.MILLISECONDS)) {
+                if (!this.writer.isAlive()) {
+                    throw new IllegalStateException(
+                            "Writer thread stopped; output was lost");
+                }
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                    "Interrupted while waiting to record output", exception);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The value is converted to text by the writer thread.
+     * 
+     * @param value
+     *            {@inheritDoc}
+     * @param printer
+     *            {@inheritDoc}
+     */
+    @Override
+    public void receiveOutput(final BigInteger value, final Printer printer) {
+        this.enqueue(() -> this.delegate
+                .receiveOutput(printer.print(value)));
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param printed
+     *            {@inheritDoc}
+     */
+    @Override
+    public void receiveOutput(final String printed) {
+        this.enqueue(() -> this.delegate.receiveOutput(printed));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        this.flush();
+        this.delegate.reset();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param reader
+     *            {@inheritDoc}
+     */
+    @Override
+    public void setCardReader(final CardReader reader) {
+        this.flush();
+        this.delegate.setCardReader(reader);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param format
+     *            {@inheritDoc}
+     */
+    @Override
+    public void setFormat(final String format) {
+        this.enqueue(() -> this.delegate.setFormat(format));
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param library
+     *            {@inheritDoc}
+     */
+    @Override
+    public void setLibrary(final Library library) {
+        this.flush();
+        this.delegate.setLibrary(library);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param stripComments
+     *            {@inheritDoc}
+     */
+    @Override
+    public void setStripComments(final boolean stripComments) {
+        this.flush();
+        this.delegate.setStripComments(stripComments);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param direction
+     *            {@inheritDoc}
+     */
+    @Override
+    public void writeInDirection(final WriteDirection direction) {
+        this.enqueue(() -> this.delegate.writeInDirection(direction));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeNewline() {
+        this.enqueue(() -> this.delegate.writeNewline());
+    }
+}
@@ -21,12 +21,14 @@
 package analyticalengine.attendant;
 
 import java.io.IOException;
+import java.math.BigInteger;
 import java.util.List;
 
 import analyticalengine.cards.BadCard;
 import analyticalengine.cards.Card;
 import analyticalengine.cards.UnknownCard;
 import analyticalengine.components.CardReader;
+import analyticalengine.components.Printer;
 
 /**
  * The operator of the Analytical Engine.
@@ -116,6 +118,20 @@ public interface Attendant {
      */
     void receiveOutput(String printed);
 
+    /**
+     * Instructs the attendant to record a value sent to the Engine's printer.
+     * 
+     * The attendant may defer converting the value to text with the
+     * specified printer until the report is requested, but the value must be
+     * formatted as if it had been received at the time of this invocation.
+     * 
+     * @param value
+     *            The value sent to the printer.
+     * @param printer
+     *            The printer that converts the value to text.
+     */
+    void receiveOutput(BigInteger value, Printer printer);
+
     /**
      * Clears the current report and resets the card reader.
      */
@@ -0,0 +1,384 @@
+/**
+ * BracketResolver.java - translates cycles into explicit jumps
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.attendant;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import analyticalengine.cards.BadCard;
+import analyticalengine.cards.Card;
+import analyticalengine.cards.CardType;
+
+/**
+ * The stage of the preparation of a card chain that replaces implicit
+ * combinatorial cards, the brackets that begin and end cycles, with explicit
+ * forward and backward jump cards, and appends the resulting cards to the
+ * card chain.
+ * 
+ * The cycles that have begun but not yet ended are kept on a stack. A cycle
+ * that skips forward needs a jump card before its body, whose argument is
+ * not known until the end of the cycle is reached, so a place is reserved
+ * for the jump card in the card chain when the cycle begins and filled when
+ * it ends.
+ * 
+ * An end card that does not end any cycle is left in the card chain as is.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+final class BracketResolver implements CardSink {
+
+    /**
+     * A cycle that has begun but not yet ended.
+     * 
+     * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+     * @since 0.0.1
+     */
+    private static final class Cycle {
+
+        /**
+         * Whether the body of the cycle has ended and its else clause has
+         * begun.
+         */
+        private boolean alternative = false;
+
+        /**
+         * The number of the card that ended the body of the cycle and began
+         * its else clause, for error messages.
+         */
+        private int alternativeNumber = -1;
+
+        /**
+         * The index in the card chain of the place reserved for the forward
+         * jump card, or -1 if the cycle is a backward cycle.
+         */
+        private int jump = -1;
+
+        /**
+         * The number of the card that began the cycle, for error messages.
+         * 
+         * This is the index the card would have in a card chain that does
+         * not yet contain the jump cards of cycles that have not ended.
+         */
+        private final int number;
+
+        /**
+         * The index in the card chain from which the argument of a backward
+         * jump card is measured.
+         */
+        private final int origin;
+
+        /** The card that began the cycle. */
+        private final Card start;
+
+        /**
+         * Creates a new cycle that began with the specified card.
+         * 
+         * @param start
+         *            The card that began the cycle.
+         * @param number
+         *            The number of the card that began the cycle.
+         * @param origin
+         *            The index from which the argument of a backward jump
+         *            card is measured.
+         */
+        Cycle(final Card start, final int number, final int origin) {
+            this.start = start;
+            this.number = number;
+            this.origin = origin;
+        }
+
+        /**
+         * Returns whether the jump cards of this cycle depend on the run-up
+         * lever.
+         * 
+         * @return Whether this cycle is conditional.
+         */
+        boolean depends() {
+            return this.start.type() == CardType.CBACKSTART
+                    || this.start.type() == CardType.CFORWARDSTART;
+        }
+    }
+
+    /** Combinatorial card types that start a cycle. */
+    private static final Collection<CardType> CYCLE_START_TYPES = Collections
+            .unmodifiableCollection(
+                    Arrays.asList(CardType.BACKSTART, CardType.CBACKSTART,
+                            CardType.FORWARDSTART, CardType.CFORWARDSTART));
+
+    /** Combinatorial card types that end a cycle. */
+    private static final Collection<CardType> CYCLE_END_TYPES = Collections
+            .unmodifiableCollection(Arrays.asList(CardType.BACKEND,
+                    CardType.ALTERNATION, CardType.FORWARDEND));
+
+    /** The suffix of the comments that replace combinatorial cards. */
+    private static final String TRANSLATED = " Translated by attendant";
+
+    /**
+     * Returns {@code true} if and only if the cycle started by card of type
+     * {@code start} matches the cycle end specified by card of type {code
+     * end}.
+     * 
+     * @param start
+     *            A card type representing the start of a cycle.
+     * @param end
+     *            A card type representing the end of a cycle.
+     * @return {@code true} if and only if the cycle started by card with type
+     *         {@code start} matches the cycle end specified by type {code
+     *         end}.
+     */
+    private static boolean cyclesMatch(final CardType start,
+            final CardType end) {
+        switch (start) {
+        case BACKSTART:
+        case CBACKSTART:
+            // A ( or (? must be closed by a ).
+            switch (end) {
+            case BACKEND:
+                return true;
+            default:
+                return false;
+            }
+        case FORWARDSTART:
+        case CFORWARDSTART:
+            // A { or {? must be closed by a } or }{
+            switch (end) {
+            case FORWARDEND:
+            case ALTERNATION:
+                return true;
+            default:
+                return false;
+            }
+        default:
+            throw new IllegalArgumentException(
+                    "Cannot check cycle matching for cards " + start + " and "
+                            + end);
+        }
+    }
+
+    /** The card chain to which the translated cards are appended. */
+    private final List<Card> chain;
+
+    /** The cycles that have begun but not yet ended, innermost first. */
+    private final Deque<Cycle> cycles = new ArrayDeque<Cycle>();
+
+    /** The number of places reserved for jump cards but not yet filled. */
+    private int pending = 0;
+
+    /**
+     * Whether to omit the comments that otherwise replace combinatorial
+     * cards.
+     */
+    private final boolean stripComments;
+
+    /**
+     * Creates a new stage that appends cards to the specified card chain.
+     * 
+     * @param chain
+     *            The card chain to which cards are appended.
+     * @param stripComments
+     *            Whether to omit the comments that otherwise replace
+     *            combinatorial cards.
+     */
+    BracketResolver(final List<Card> chain, final boolean stripComments) {
+        this.chain = chain;
+        this.stripComments = stripComments;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param card
+     *            {@inheritDoc}
+     * @throws BadCard
+     *             if the card ends a cycle that it does not match.
+     */
+    @Override
+    public void accept(final Card card) throws BadCard {
+        if (CYCLE_START_TYPES.contains(card.type())) {
+            this.begin(card);
+        } else if (CYCLE_END_TYPES.contains(card.type())
+                && !this.cycles.isEmpty()) {
+            this.end(card);
+        } else {
+            this.chain.add(card);
+        }
+    }
+
+    /**
+     * Begins a new cycle with the specified card.
+     * 
+     * @param card
+     *            The card that begins the cycle.
+     */
+    private void begin(final Card card) {
+        int number = this.chain.size() - this.pending;
+        if (this.stripComments) {
+            number--;
+        } else {
+            this.chain.add(Card.commentCard(card + TRANSLATED));
+        }
+        Cycle cycle = new Cycle(card, number, this.chain.size() - 1);
+        if (card.type() == CardType.FORWARDSTART
+                || card.type() == CardType.CFORWARDSTART) {
+            cycle.jump = this.reserve();
+        }
+        this.cycles.push(cycle);
+    }
+
+    /**
+     * Ends the body or the else clause of the innermost cycle with the
+     * specified card.
+     * 
+     * @param card
+     *            The card that ends the cycle.
+     * @throws BadCard
+     *             if the card does not match the card that began the cycle.
+     */
+    private void end(final Card card) throws BadCard {
+        Cycle cycle = this.cycles.peek();
+        if (cycle.alternative) {
+            if (card.type() != CardType.FORWARDEND
+                    && card.type() != CardType.ALTERNATION) {
+                throw new BadCard("End of else cycle does not match "
+                        + cycle.start + " beginning on card "
+                        + cycle.alternativeNumber, card);
+            }
+            // the jump also skips the comment that replaced this card
+            int distance = this.chain.size() - cycle.jump - 1;
+            if (!this.stripComments) {
+                distance++;
+            }
+            this.fill(cycle.jump, CardType.FORWARD, distance);
+            this.endComment(card);
+            this.cycles.pop();
+            return;
+        }
+        if (!cyclesMatch(cycle.start.type(), card.type())) {
+            throw new BadCard("End of cycle does not match " + cycle.start
+                    + " beginning on card " + cycle.number, card);
+        }
+
+        // a backward cycle jumps back to the card that began it
+        if (cycle.jump < 0) {
+            CardType type = CardType.BACKWARD;
+            if (cycle.depends()) {
+                type = CardType.CBACKWARD;
+            }
+            int distance = this.chain.size() - cycle.origin;
+            this.chain.add(new Card(type,
+                    new String[] { Integer.toString(distance) }));
+            this.endComment(card);
+            this.cycles.pop();
+            return;
+        }
+
+        // a forward cycle skips its body, and the jump that skips the else
+        // clause, if present
+        boolean isElse = card.type() == CardType.ALTERNATION;
+        int number = this.chain.size() - this.pending;
+        int distance = this.chain.size() - cycle.jump;
+        if (isElse) {
+            distance++;
+        }
+        if (this.stripComments) {
+            distance--;
+        }
+        CardType type = CardType.FORWARD;
+        if (cycle.depends()) {
+            type = CardType.CFORWARD;
+        }
+        this.fill(cycle.jump, type, distance);
+        this.endComment(card);
+        if (isElse) {
+            cycle.alternative = true;
+            cycle.alternativeNumber = number;
+            cycle.jump = this.reserve();
+        } else {
+            this.cycles.pop();
+        }
+    }
+
+    /**
+     * Appends the comment that replaces the specified card that ends a
+     * cycle, unless comments are omitted.
+     * 
+     * @param card
+     *            The card that ends a cycle.
+     */
+    private void endComment(final Card card) {
+        if (!this.stripComments) {
+            this.chain.add(Card.commentCard(card + TRANSLATED));
+        }
+    }
+
+    /**
+     * Fills the specified reserved place with a jump card.
+     * 
+     * @param index
+     *            The index of the reserved place.
+     * @param type
+     *            The type of the jump card.
+     * @param distance
+     *            The argument of the jump card.
+     */
+    private void fill(final int index, final CardType type,
+            final int distance) {
+        this.chain.set(index,
+                new Card(type, new String[] { Integer.toString(distance) }));
+        this.pending--;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * An else clause that is never ended is left without a jump card.
+     * 
+     * @throws BadCard
+     *             if a cycle has begun but its body has not ended.
+     */
+    @Override
+    public void finish() throws BadCard {
+        while (!this.cycles.isEmpty()) {
+            Cycle cycle = this.cycles.pop();
+            if (!cycle.alternative) {
+                throw new BadCard("No matching end of cycle.", cycle.start);
+            }
+            this.chain.remove(cycle.jump);
+            this.pending--;
+        }
+    }
+
+    /**
+     * Reserves a place for a jump card at the end of the card chain.
+     * 
+     * @return The index of the reserved place.
+     */
+    private int reserve() {
+        this.chain.add(null);
+        this.pending++;
+        return this.chain.size() - 1;
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * CardSink.java - a stage in the preparation of a card chain
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.attendant;
+
+import java.io.IOException;
+
+import analyticalengine.cards.BadCard;
+import analyticalengine.cards.Card;
+import analyticalengine.cards.UnknownCard;
+
+/**
+ * Receives the cards of a program one at a time while the attendant prepares
+ * them for mounting in the card reader.
+ * 
+ * Each stage of the preparation, such as the inclusion of library functions
+ * or the translation of cycles, is a sink that passes the cards it produces
+ * on to the next stage, so that the program is never copied in full between
+ * stages.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+interface CardSink {
+
+    /**
+     * Receives the next card of the program.
+     * 
+     * @param card
+     *            The next card.
+     * @throws BadCard
+     *             if the card has invalid syntax or cannot be prepared.
+     * @throws IOException
+     *             if there is a problem reading a file requested by the card.
+     * @throws UnknownCard
+     *             if a file requested by the card contains an unknown card.
+     * @throws LibraryLookupException
+     *             if there is a problem reading a library function requested
+     *             by the card.
+     */
+    void accept(Card card)
+            throws BadCard, IOException, UnknownCard, LibraryLookupException;
+
+    /**
+     * Indicates that every card of the program has been received.
+     * 
+     * @throws BadCard
+     *             if the program ended before a card that required a later
+     *             card, like the start of a cycle without its end.
+     */
+    void finish() throws BadCard;
+}
@@ -22,13 +22,7 @@ package analyticalengine.attendant;
 
 import java.io.IOException;
 import java.math.BigInteger;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -39,6 +33,9 @@ import analyticalengine.cards.Card;
 import analyticalengine.cards.CardType;
 import analyticalengine.cards.UnknownCard;
 import analyticalengine.components.CardReader;
+import analyticalengine.components.Printer;
+import analyticalengine.metrics.Histogram;
+import analyticalengine.metrics.Metrics;
 
 /**
  * A basic implementation of the Attendant interface.
@@ -48,126 +45,109 @@ import analyticalengine.components.CardReader;
  */
 public class DefaultAttendant implements Attendant {
 
-    /** Combinatorial card types that start a cycle. */
-    private static final Collection<CardType> CYCLE_START_TYPES = Collections
-            .unmodifiableCollection(
-                    Arrays.asList(CardType.BACKSTART, CardType.CBACKSTART,
-                            CardType.FORWARDSTART, CardType.CFORWARDSTART));
-
-    /** Combinatorial card types that end a cycle. */
-    private static final Collection<CardType> CYCLE_END_TYPES = Collections
-            .unmodifiableCollection(Arrays.asList(CardType.BACKEND,
-                    CardType.ALTERNATION, CardType.FORWARDEND));
-
-    /** The logger for this class. */
-    private static final transient Logger LOG = LoggerFactory
-            .getLogger(DefaultAttendant.class);
-
     /**
-     * Returns {@code true} if and only if the cycle started by card of type
-     * {@code start} matches the cycle end specified by card of type {code
-     * end}.
+     * The stage of the preparation of a card chain that removes comment
+     * cards.
      * 
-     * @param start
-     *            A card type representing the start of a cycle.
-     * @param end
-     *            A card type representing the end of a cycle.
-     * @return {@code true} if and only if the cycle started by card with type
-     *         {@code start} matches the cycle end specified by type {code
-     *         end}.
+     * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+     * @since 0.0.1
      */
-    private static boolean cyclesMatch(final CardType start,
-            final CardType end) {
-        switch (start) {
-        case BACKSTART:
-        case CBACKSTART:
-            // A ( or (? must be closed by a ).
-            switch (end) {
-            case BACKEND:
-                return true;
-            default:
-                return false;
-            }
-        case FORWARDSTART:
-        case CFORWARDSTART:
-            // A { or {? must be closed by a } or }{
-            switch (end) {
-            case FORWARDEND:
-            case ALTERNATION:
-                return true;
-            default:
-                return false;
-            }
-        default:
-            throw new IllegalArgumentException(
-                    "Cannot check cycle matching for cards " + start + " and "
-                            + end);
-        }
-    }
+    private static final class CommentFilter implements CardSink {
 
-    /** The device in which the attendant loads the requested program. */
-    private CardReader cardReader = null;
+        /** The next stage. */
+        private final CardSink next;
 
-    /**
-     * The format in which the attendant should write the output printed from
-     * the Analytical Engine.
-     */
-    private String formatString = null;
-
-    /** The library of built-in functions maintained by the attendant. */
-    private Library library = null;
+        /**
+         * Creates a new stage that passes cards to the specified stage.
+         * 
+         * @param next
+         *            The next stage.
+         */
+        CommentFilter(final CardSink next) {
+            this.next = next;
+        }
 
-    /** The cumulative formatted output from the printer. */
-    private String report = "";
+        /**
+         * {@inheritDoc}
+         * 
+         * @param card
+         *            {@inheritDoc}
+         * @throws BadCard
+         *             {@inheritDoc}
+         * @throws IOException
+         *             {@inheritDoc}
+         * @throws UnknownCard
+         *             {@inheritDoc}
+         * @throws LibraryLookupException
+         *             {@inheritDoc}
+         */
+        @Override
+        public void accept(final Card card) throws BadCard, IOException,
+                UnknownCard, LibraryLookupException {
+            if (card.type() != CardType.COMMENT) {
+                this.next.accept(card);
+            }
+        }
 
-    /**
-     * Whether to remove comment cards from the program that will be loaded.
-     */
-    private boolean stripComments = false;
+        /**
+         * {@inheritDoc}
+         * 
+         * @throws BadCard
+         *             {@inheritDoc}
+         */
+        @Override
+        public void finish() throws BadCard {
+            this.next.finish();
+        }
+    }
 
     /**
-     * Whether to write the output from the Analytical Engine's printer in
-     * rows.
+     * The stage of the preparation of a card chain that looks for cards that
+     * specify a global number of decimal places and replaces any later cards
+     * that may be affected, like implicit shift or number cards.
      * 
-     * If this is false, the output will be written in columns.
+     * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+     * @since 0.0.1
      */
-    private boolean writeInRows = true;
+    private final class DecimalExpansion implements CardSink {
 
-    /**
-     * {@inheritDoc}
-     * 
-     * @param message
-     *            {@inheritDoc}
-     */
-    @Override
-    public void annotate(final String message) {
-        this.report += message;
-        if (this.writeInRows) {
-            this.report += System.lineSeparator();
+        /**
+         * The number of decimal places most recently set, or -1 if none has
+         * been set.
+         */
+        private int decimalPlace = -1;
+
+        /** The next stage. */
+        private final CardSink next;
+
+        /**
+         * Creates a new stage that passes cards to the specified stage.
+         * 
+         * @param next
+         *            The next stage.
+         */
+        DecimalExpansion(final CardSink next) {
+            this.next = next;
         }
-    }
 
-    /**
-     * Looks for cards that specify a global number of decimal places and
-     * replaces any later cards that may be affected, like implicit shift or
-     * number cards.
-     * 
-     * @param cards
-     *            The list of cards to scan for decimal expansion.
-     * @return A new list of cards representing the same program, but with the
-     *         implicit decimals expanded into explicit decimals.
-     * @throws BadCard
-     *             if a card related to decimal expansion has invalid syntax.
-     */
-    private List<Card> expandDecimal(final List<Card> cards) throws BadCard {
-        List<Card> result = new ArrayList<Card>();
-        int decimalPlace = -1;
-        for (Card card : cards) {
-            // This variable shows up in more than one case, but we cannot
-            // define it within each case because each case has the same
-            // (switch-level) scope, even though it would be more readable that
-            // way.
-            Card replacement = null;
+        /**
+         * {@inheritDoc}
+         * 
+         * @param card
+         *            {@inheritDoc}
+         * @throws BadCard
+         *             if a card related to decimal expansion has invalid
+         *             syntax.
+         * @throws IOException
+         *             {@inheritDoc}
+         * @throws UnknownCard
+         *             {@inheritDoc}
+         * @throws LibraryLookupException
+         *             {@inheritDoc}
+         */
+        @Override
+        public void accept(final Card card) throws BadCard, IOException,
+                UnknownCard, LibraryLookupException {
             switch (card.type()) {
             // A set decimal places to [+/-]n
             case DECIMALEXPAND:
@@ -175,7 +155,7 @@ public class DefaultAttendant implements Attendant {
                 int relative = 0;
 
                 if (dspec.charAt(0) == '+' || dspec.charAt(0) == '-') {
-                    if (decimalPlace == -1) {
+                    if (this.decimalPlace == -1) {
                         String msg = "I cannot accept a relative decimal place"
                                 + "setting\nwithout a prior absolute setting.";
                         throw new BadCard(msg, card);
@@ -196,72 +176,166 @@ public class DefaultAttendant implements Attendant {
                     throw new BadCard(msg, card, e);
                 }
                 if (relative != 0) {
-                    d = decimalPlace + d * relative;
+                    d = this.decimalPlace + d * relative;
                 }
 
-                if (!this.stripComments) {
-                    replacement = Card.commentCard(
-                            "A set decimal places to " + card.argument(0));
-                    result.add(replacement);
+                if (!DefaultAttendant.this.stripComments) {
+                    this.next.accept(Card.commentCard(
+                            "A set decimal places to " + card.argument(0)));
                 }
-                decimalPlace = d;
+                this.decimalPlace = d;
                 break;
             // Convert "A write numbers with decimal point" to a picture
             case WRITEDECIMAL:
-                if (decimalPlace < 0) {
-                    String msg = "I cannot add the number of decimal places"
-                            + " because\n you have not instructed me how many"
-                            + " decimal\nplaces to use in a prior \"A set"
-                            + " decimal places to\"\ninstruction.";
-                    throw new BadCard(msg, card);
-                }
-
-                replacement = this.expandWriteDecimal(decimalPlace);
-                result.add(replacement);
+                this.requireDecimalPlace(card);
+                this.next.accept(DefaultAttendant.this
+                        .expandWriteDecimal(this.decimalPlace));
                 break;
             /*
              * Replace number cards with decimal points with cards scaled to
              * the proper number of digits.
              */
             case NUMBER:
-                String number = card.argument(1);
-                int decimalIndex = number.indexOf('.');
                 // If the number has no decimal, just add the card as is.
-                if (decimalIndex < 0) {
-                    result.add(card);
+                if (card.argument(1).indexOf('.') < 0) {
+                    this.next.accept(card);
                     break;
                 }
-                if (decimalPlace < 0) {
-                    String msg = "I cannot add the number of decimal places"
-                            + " because\n you have not instructed me how many"
-                            + " decimal\nplaces to use in a prior \"A set"
-                            + " decimal places to\"\ninstruction.";
-                    throw new BadCard(msg, card);
-                }
-                replacement = this.expandNumber(decimalPlace, card);
-                result.add(replacement);
+                this.requireDecimalPlace(card);
+                this.next.accept(DefaultAttendant.this
+                        .expandNumber(this.decimalPlace, card));
                 break;
             // Add step up/down to "<" or ">" if not specified
             case LSHIFT:
             case RSHIFT:
-                if (decimalPlace < 0) {
-                    String msg = "I cannot add the number of decimal places"
-                            + " because\n you have not instructed me how many"
-                            + " decimal\nplaces to use in a prior \"A set"
-                            + " decimal places to\"\ninstruction.";
-                    throw new BadCard(msg, card);
-                }
-
-                replacement = this.expandShift(decimalPlace, card);
-                result.add(replacement);
+                this.requireDecimalPlace(card);
+                this.next.accept(DefaultAttendant.this
+                        .expandShift(this.decimalPlace, card));
                 break;
             default:
                 // If no change needs to be made, just add the card as-is.
-                result.add(card);
+                this.next.accept(card);
                 break;
             }
         }
-        return result;
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @throws BadCard
+         *             {@inheritDoc}
+         */
+        @Override
+        public void finish() throws BadCard {
+            this.next.finish();
+        }
+
+        /**
+         * Checks that a number of decimal places has been set before the
+         * specified card, which depends on it.
+         * 
+         * @param card
+         *            The card that depends on the number of decimal places.
+         * @throws BadCard
+         *             if no number of decimal places has been set.
+         */
+        private void requireDecimalPlace(final Card card) throws BadCard {
+            if (this.decimalPlace < 0) {
+                String msg = "I cannot add the number of decimal places"
+                        + " because\n you have not instructed me how many"
+                        + " decimal\nplaces to use in a prior \"A set"
+                        + " decimal places to\"\ninstruction.";
+                throw new BadCard(msg, card);
+            }
+        }
+    }
+
+
+    /**
+     * The text at the start of the comment card that precedes the cards of a
+     * function interpolated from the library, which is followed by the name
+     * of the function and {@link #LIBRARY_SUFFIX}.
+     */
+    public static final String LIBRARY_BEGIN = "Begin interpolation of ";
+
+    /**
+     * The text at the start of the comment card that follows the cards of a
+     * function interpolated from the library, which is followed by the name
+     * of the function and {@link #LIBRARY_SUFFIX}.
+     */
+    public static final String LIBRARY_END = "End interpolation of ";
+
+    /**
+     * The text at the end of the comment cards that surround the cards of a
+     * function interpolated from the library.
+     */
+    public static final String LIBRARY_SUFFIX = " from library by attendant";
+
+    /** The logger for this class. */
+    private static final transient Logger LOG = LoggerFactory
+            .getLogger(DefaultAttendant.class);
+
+    /** The device in which the attendant loads the requested program. */
+    private CardReader cardReader = null;
+
+    /**
+     * The format in which the attendant should write the output printed from
+     * the Analytical Engine.
+     */
+    private String formatString = null;
+
+    /**
+     * Whether the program may request the inclusion of files outside the
+     * library.
+     */
+    private boolean includeFiles = true;
+
+    /** The library of built-in functions maintained by the attendant. */
+    private Library library = null;
+
+    /**
+     * The time taken to prepare and mount each program, or {@code null} if
+     * metrics are not recorded.
+     */
+    private Histogram mountTimes = null;
+
+    /**
+     * The cumulative output from the printer, whose formatting is deferred
+     * until the report is requested.
+     */
+    private final Report report = new Report();
+
+    /**
+     * The number of characters in each final report, or {@code null} if
+     * metrics are not recorded.
+     */
+    private Histogram reportSizes = null;
+
+    /**
+     * Whether to remove comment cards from the program that will be loaded.
+     */
+    private boolean stripComments = false;
+
+    /**
+     * Whether to write the output from the Analytical Engine's printer in
+     * rows.
+     * 
+     * If this is false, the output will be written in columns.
+     */
+    private boolean writeInRows = true;
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param message
+     *            {@inheritDoc}
+     */
+    @Override
+    public void annotate(final String message) {
+        this.report.append(message);
+        if (this.writeInRows) {
+            this.report.append(System.lineSeparator());
+        }
     }
 
     /**
@@ -377,25 +451,31 @@ public class DefaultAttendant implements Attendant {
      */
     @Override
     public String finalReport() {
-        return this.report;
+        String result = this.report.render();
+        if (this.reportSizes != null) {
+            this.reportSizes.record(result.length());
+        }
+        return result;
     }
 
     /**
      * Returns a formatted version of the specified number (given as a string)
-     * according to the value specified previously by the
+     * according to the specified picture format, as set by the
      * {@link #setFormat(String)} method.
      * 
      * @param input
      *            A number to format, given as a string.
-     * @return The input number formatted according to the format specified by
-     *         a previous invocation of {@link #setFormat(String)}.
+     * @param formatString
+     *            The picture format, or {@code null} if the number should be
+     *            written as is.
+     * @return The input number formatted according to the specified format.
      */
-    private String formatted(final String input) {
+    static String formatted(final String input, final String formatString) {
         String s = input;
         boolean negative = input.charAt(0) == '-';
         boolean sign = false;
 
-        if (this.formatString != null) {
+        if (formatString != null) {
             // s = v.abs().toString();
             if (negative) {
                 s = input.substring(1);
@@ -403,11 +483,11 @@ public class DefaultAttendant implements Attendant {
                 s = input;
             }
 
-            int i = this.formatString.length();
+            int i = formatString.length();
             String o = "";
 
             while (--i >= 0) {
-                char c = this.formatString.charAt(i);
+                char c = formatString.charAt(i);
 
                 switch (c) {
                 case '9': // Digit, unconditionally
@@ -427,7 +507,7 @@ public class DefaultAttendant implements Attendant {
                     break;
 
                 case ',': // Comma if digits remain to output
-                    if (this.formatString.indexOf('9') >= 0
+                    if (formatString.indexOf('9') >= 0
                             || s.length() > 0) {
                         o = c + o;
                     }
@@ -500,22 +580,32 @@ public class DefaultAttendant implements Attendant {
     @Override
     public void loadProgram(final List<Card> cards)
             throws BadCard, IOException, UnknownCard, LibraryLookupException {
-        LOG.debug("Examining cards before loading: " + cards);
-        List<Card> result = cards;
+        long start = 0;
+        if (this.mountTimes != null) {
+            start = System.nanoTime();
+        }
+        // Each card passes through every stage before the next card is
+        // read, so the program is never copied in full between stages. The
+        // files requested by the program are read in the background while
+        // the cards before them pass through the stages.
+        //
         // Note: "A write numbers as ..." cards remain in the card chain.
-        LOG.debug("Transcluding requested library functions");
-        result = this.transcludeLibraryCards(result);
+        List<Card> chain = this.cardReader.newChain();
+        CardSink sink = new DecimalExpansion(
+                new BracketResolver(chain, this.stripComments));
         if (this.stripComments) {
-            LOG.debug("Remove comment cards");
-            result.removeIf(c -> c.type().equals(CardType.COMMENT));
+            sink = new CommentFilter(sink);
+        }
+        try (IncludeResolver includes = new IncludeResolver(this.library,
+                this.includeFiles)) {
+            includes.resolve(cards, sink);
+        }
+        sink.finish();
+        LOG.debug("Mounting cards in reader: {}", chain);
+        this.cardReader.mountCards(chain);
+        if (this.mountTimes != null) {
+            this.mountTimes.record(System.nanoTime() - start);
         }
-        LOG.debug("Making requested decimal expansions");
-        result = this.expandDecimal(result);
-        // TODO this method should return a new list like the others do
-        LOG.debug("Translating shorthand combinatoric cards");
-        translateCombinatorics(result);
-        LOG.debug("Mounting cards in reader: " + result);
-        this.cardReader.mountCards(result);
     }
 
     /**
@@ -540,9 +630,29 @@ public class DefaultAttendant implements Attendant {
      */
     @Override
     public void receiveOutput(final String printed) {
-        this.report += this.formatted(printed);
+        this.report.append(formatted(printed, this.formatString));
+        if (this.writeInRows) {
+            this.report.append(System.lineSeparator());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The value is not converted to text until the report is requested by
+     * {@link #finalReport()}; it will be formatted according to the format
+     * in effect when this method is invoked.
+     * 
+     * @param value
+     *            {@inheritDoc}
+     * @param printer
+     *            {@inheritDoc}
+     */
+    @Override
+    public void receiveOutput(final BigInteger value, final Printer printer) {
+        this.report.append(value, printer, this.formatString);
         if (this.writeInRows) {
-            this.report += System.lineSeparator();
+            this.report.append(System.lineSeparator());
         }
     }
 
@@ -551,7 +661,7 @@ public class DefaultAttendant implements Attendant {
      */
     @Override
     public void reset() {
-        this.report = "";
+        this.report.clear();
         this.cardReader.unmountCards();
         this.library.clear();
     }
@@ -579,270 +689,59 @@ public class DefaultAttendant implements Attendant {
     }
 
     /**
-     * {@inheritDoc}
+     * Sets whether the programs loaded by this attendant may request the
+     * inclusion of files outside the library.
      * 
-     * @param library
-     *            {@inheritDoc}
+     * If this is false, a program that includes a file by name is rejected
+     * when it is loaded, so that a program from an untrusted source cannot
+     * read arbitrary files.
+     * 
+     * @param includeFiles
+     *            Whether programs may include files by name.
      */
-    @Override
-    public void setLibrary(final Library library) {
-        this.library = library;
+    public void setIncludeFiles(final boolean includeFiles) {
+        this.includeFiles = includeFiles;
     }
 
     /**
      * {@inheritDoc}
      * 
-     * @param stripComments
+     * @param library
      *            {@inheritDoc}
-     * @see analyticalengine.attendant.Attendant#setStripComments(boolean)
      */
     @Override
-    public void setStripComments(final boolean stripComments) {
-        this.stripComments = stripComments;
-    }
-
-    /**
-     * Scans the list of cards for any inclusion requests and replaces those
-     * inclusion cards with the cards of the requested function.
-     * 
-     * @param cards
-     *            The list of cards to scan for include requests.
-     * @return A new list of cards representing the same program, but with the
-     *         include requests replaced with the cards necessary to execute
-     *         the requested function.
-     * @throws BadCard
-     *             if the requested file could not be found.
-     * @throws IOException
-     *             if there was a problem reading the file containing the
-     *             requested function.
-     * @throws UnknownCard
-     *             if there was a syntax error in the file containing the
-     *             requested function.
-     * @throws LibraryLookupException
-     *             if there was a problem reading the requested library
-     *             function.
-     */
-    private List<Card> transcludeLibraryCards(final List<Card> cards)
-            throws BadCard, IOException, UnknownCard, LibraryLookupException {
-
-        List<Card> result = new ArrayList<Card>();
-        for (Card card : cards) {
-            /*
-             * We recognise a card which begins with an "@" or the more
-             * Victorian " A include cards " as an instruction to the attendant
-             * to locate the chain of cards bearing that label and interpolate
-             * it into the chain, replacing the card requesting it. This allows
-             * commonly used sequences of calculation to be called out without
-             * having to physically copy them into the original card chain.
-             */
-            if (card.type() == CardType.INCLUDE) {
-                Path path = Paths.get(card.argument(0));
-                if (!Files.exists(path)) {
-                    throw new BadCard("Could not find file: " + path, card);
-                }
-
-                result.add(Card.commentCard(
-                        "Begin interpolation of " + card + " by attendant"));
-                for (String line : Files.readAllLines(path)) {
-                    result.add(Card.fromString(line));
-                }
-                result.add(Card.commentCard(
-                        "Endinterpolation of " + card + " by attendant"));
-                /*
-                 * The analyst can request the inclusion of a set of cards from
-                 * the machine's library with the request to the attendant:
-                 * 
-                 * A include from library cards for <whatever>
-                 * 
-                 * The attendant searches for a set of cards named <whatever>
-                 * and, if found, they are strung into the chain, replacing the
-                 * library request.
-                 */
-            } else if (card.type() == CardType.INCLUDELIB) {
-                String filename = card.argument(0);
-                List<Card> newCards;
-                newCards = this.library.find(filename);
-
-                result.add(Card.commentCard("Begin interpolation of "
-                        + filename + " from library by attendant"));
-                result.addAll(newCards);
-                result.add(Card.commentCard("End interpolation of " + filename
-                        + " from library by attendant"));
-            } else {
-                result.add(card);
-            }
-        }
-
-        return result;
+    public void setLibrary(final Library library) {
+        this.library = library;
     }
 
     /**
-     * Scans the list of cards for implicit combinatorial (control) cards and
-     * replaces them (in-place) with the corresponding explicit forward and
-     * backward jump cards.
+     * Records the time taken to prepare and mount each program and the
+     * number of characters in each final report in the specified registry,
+     * or stops recording them if the registry is {@code null}.
      * 
-     * @param cards
-     *            The list of cards to scan for implicit loops.
-     * @throws BadCard
-     *             if there is a syntax error in one of the implicit
-     *             combinatorial cards (for example, if a start card has no
-     *             corresponding end card).
+     * @param metrics
+     *            The registry of metrics, or {@code null}.
      */
-    private void translateCombinatorics(final List<Card> cards)
-            throws BadCard {
-        for (int i = 0; i < cards.size(); i++) {
-            if (CYCLE_START_TYPES.contains(cards.get(i).type())) {
-                LOG.debug("Translating cycle starting from " + cards.get(i)
-                        + " at index " + i);
-                this.translateCycle(cards, i);
-            }
+    public void setMetrics(final Metrics metrics) {
+        if (metrics == null) {
+            this.mountTimes = null;
+            this.reportSizes = null;
+        } else {
+            this.mountTimes = metrics.histogram(Metrics.MOUNT_NANOSECONDS);
+            this.reportSizes = metrics.histogram(Metrics.REPORT_CHARACTERS);
         }
     }
 
     /**
-     * Replaces the implicit cycle (loop) starting at the specified index in
-     * the given list of cards with explicit forward and/or backward jump
-     * cards.
+     * {@inheritDoc}
      * 
-     * @param cards
-     *            The list of cards containing the implicit loop to replace
-     *            (in-place).
-     * @param startIndex
-     *            The index of the implicit loop to replace.
-     * @throws BadCard
-     *             if there is a syntax error in one of the implicit
-     *             combinatorial cards (for example, if a start card has no
-     *             corresponding end card).
+     * @param stripComments
+     *            {@inheritDoc}
+     * @see analyticalengine.attendant.Attendant#setStripComments(boolean)
      */
-    private void translateCycle(final List<Card> cards, final int startIndex)
-            throws BadCard {
-        Card c = cards.get(startIndex);
-        boolean depends = false;
-        LOG.debug("Translating cycle starting at " + c);
-
-        depends = c.type() == CardType.CBACKSTART
-                || c.type() == CardType.CFORWARDSTART;
-        int start = startIndex;
-        if (this.stripComments) {
-            cards.remove(start);
-            start--;
-        } else {
-            cards.remove(start);
-            cards.add(start, Card.commentCard(c + " Translated by attendant"));
-        }
-
-        /*
-         * Search for the end of this cycle. If a sub-cycle is detected,
-         * recurse to translate it.
-         */
-
-        for (int i = start + 1; i < cards.size(); i++) {
-            Card u = cards.get(i);
-            LOG.debug("looking at card " + u);
-            if (CYCLE_START_TYPES.contains(u.type())) {
-                LOG.debug("Making a recursive call from new start index " + i);
-                translateCycle(cards, i);
-            }
-            if (CYCLE_END_TYPES.contains(u.type())) {
-                LOG.debug("  Found end of cycle starting with " + c);
-
-                if (!cyclesMatch(c.type(), u.type())) {
-                    throw new BadCard("End of cycle does not match " + c
-                            + " beginning on card " + start, u);
-                }
-                cards.remove(i);
-                if (!this.stripComments) {
-                    // cards.remove(i);
-                    cards.add(i,
-                            Card.commentCard(u + " Translated by attendant"));
-                }
-                if (c.type().equals(CardType.BACKSTART)
-                        || c.type().equals(CardType.CBACKSTART)) {
-                    // It's a loop
-                    CardType newType;
-                    if (depends) {
-                        newType = CardType.CBACKWARD;
-                    } else {
-                        newType = CardType.BACKWARD;
-                    }
-                    String[] newArgs = { Integer.toString(i - start) };
-                    cards.add(i, new Card(newType, newArgs));
-                    LOG.debug("  (replaced with " + cards.get(i) + ")");
-                    return;
-                }
-
-                // If we've reached this point, it's a forward skip, possibly
-                // with an else clause
-                CardType newType;
-                if (depends) {
-                    newType = CardType.CFORWARD;
-                } else {
-                    newType = CardType.FORWARD;
-                }
-
-                boolean isElse = u.type().equals(CardType.ALTERNATION);
-                int argument;
-                if (isElse) {
-                    if (this.stripComments) {
-                        argument = 0;
-                    } else {
-                        argument = 1;
-                    }
-                } else {
-                    if (this.stripComments) {
-                        argument = -1;
-                    } else {
-                        argument = 0;
-                    }
-                }
-                argument += Math.abs(i - start);
-                String[] newArgs = { Integer.toString(argument) };
-                cards.add(start + 1, new Card(newType, newArgs));
-
-                // Translate else branch of conditional, if present
-                if (isElse) {
-                    int j;
-
-                    for (j = i + 1; j < cards.size(); j++) {
-                        u = cards.get(j);
-                        CardType uType = u.type();
-                        if (CYCLE_START_TYPES.contains(uType)) {
-                            translateCycle(cards, j);
-                        }
-                        if (CYCLE_END_TYPES.contains(uType)) {
-                            if (!uType.equals(CardType.FORWARDEND)
-                                    && !uType.equals(CardType.ALTERNATION)) {
-                                throw new BadCard(
-                                        "End of else cycle does not match " + c
-                                                + " beginning on card " + i,
-                                        u);
-                            }
-                            cards.remove(j);
-                            if (!this.stripComments) {
-                                cards.add(j, Card.commentCard(
-                                        u + " Translated by attendant"));
-                            }
-                            CardType newType2 = CardType.FORWARD;
-                            String[] newArgs2 = {
-                                    Integer.toString(Math.abs(j - i) - 1) };
-                            int location = i;
-                            if (this.stripComments) {
-                                location += 1;
-                            } else {
-                                location += 2;
-                            }
-                            cards.add(location, new Card(newType2, newArgs2));
-                            return;
-                        }
-                    }
-                }
-                return;
-            }
-        }
-        for (Card card : cards) {
-            LOG.debug(card.toString());
-        }
-        throw new BadCard("No matching end of cycle.", c);
+    @Override
+    public void setStripComments(final boolean stripComments) {
+        this.stripComments = stripComments;
     }
 
     /**
@@ -861,7 +760,7 @@ public class DefaultAttendant implements Attendant {
      */
     @Override
     public void writeNewline() {
-        this.report += System.getProperty("line.separator");
+        this.report.append(System.getProperty("line.separator"));
     }
 
 }
@@ -20,23 +20,23 @@
  */
 package analyticalengine.attendant;
 
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.net.URI;
-import java.net.URISyntaxException;
+import java.io.InputStreamReader;
 import java.net.URL;
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import analyticalengine.cards.Card;
 import analyticalengine.cards.UnknownCard;
+import analyticalengine.metrics.Metrics;
 
 /**
  * A basic implementation of a library of built-in functions.
@@ -46,6 +46,31 @@ import analyticalengine.cards.UnknownCard;
  */
 public class DefaultLibrary implements Library {
 
+    /**
+     * The cards of each built-in library file that has been loaded so far,
+     * keyed by file name.
+     * 
+     * Built-in library files are resources bundled with this program, so
+     * they never change while it is running; this cache is shared by all
+     * instances of this class and is not affected by {@link #clear()}.
+     * Library files found in the library paths are not cached, since they
+     * may be edited between runs.
+     */
+    private static final Map<String, List<Card>> BUILTINS =
+            new ConcurrentHashMap<String, List<Card>>();
+
+    /**
+     * The number of built-in library files found in the cache, or
+     * {@code null} if metrics are not recorded.
+     */
+    private LongAdder hits = null;
+
+    /**
+     * The number of built-in library files loaded because they were not in
+     * the cache, or {@code null} if metrics are not recorded.
+     */
+    private LongAdder misses = null;
+
     /**
      * A list of paths to search when a card requesting a library function is
      * encountered.
@@ -77,22 +102,21 @@ public class DefaultLibrary implements Library {
     /**
      * Returns the cards contained in the program at the specified URL.
      * 
+     * The program is read from a stream opened on the URL, so it may be a
+     * file, a file within a JAR file, or a resource embedded in a native
+     * executable.
+     * 
      * @param fileurl
      *            The URL of the file containing the cards to return.
      * @return The cards contained in the program at the specified URL.
-     * @throws URISyntaxException
-     *             if the given URL has an unknown or invalid syntax.
      * @throws IOException
      *             if there is a problem reading the library file, or the JAR
      *             containing the library file.
      * @throws UnknownCard
      *             if the requested library file has a syntax error.
-     * @throws IllegalArgumentException
-     *             if the requested URL indicates a JAR file instead of a file
-     *             within a JAR file.
      */
     private List<Card> cardsFromResource(final URL fileurl)
-            throws URISyntaxException, IOException, UnknownCard {
+            throws IOException, UnknownCard {
         // Create some cards which will be placed at the beginning and end of
         // the card chain to indicate to the user that the intermediate cards
         // come from an included library file.
@@ -101,53 +125,18 @@ public class DefaultLibrary implements Library {
         Card terminalComment = Card.commentCard("End interpolation of "
                 + fileurl + " from library by attendant");
 
-        // Get the scheme and scheme-specific part of the given URL. Getting
-        // the raw scheme-specific part (that is, without URL-encoded
-        // characters) seems to be necessary due to limitations in Java.
-        URI uri = fileurl.toURI();
-        String scheme = uri.getScheme();
-        String spec = uri.getRawSchemeSpecificPart();
-
-        // If the scheme indicates that the file is inside a JAR file, as
-        // might happen if this code is running from an executable JAR and the
-        // requested library file is contained within the JAR, do some black
-        // magic to open the JAR file and read the program from a file
-        // contained within it.
-        //
-        // A jar:// scheme URL looks like
-        //
-        // jar:///path/to/jarfile!/path/within/jarfile
-        //
-        // The part before the "!/" is the path to the JAR file (which is just
-        // a zipped directory). The part after the "!/" is the path to the
-        // requested file relative to the root of the JAR file.
         List<Card> result = new ArrayList<Card>();
-        if (scheme.equals("jar")) {
-            int sep = spec.indexOf("!/");
-            if (sep == -1) {
-                throw new IllegalArgumentException(
-                        "Cannot load a JAR file directly.");
-            }
-            URI zipUri = new URI(scheme, spec.substring(0, sep), null);
-            Map<String, Object> env = Collections.<String, Object> emptyMap();
-            try (FileSystem zipFs = FileSystems.newFileSystem(zipUri, env)) {
-                Path programPath = Paths.get(uri);
-                for (String line : Files.readAllLines(programPath)) {
-                    result.add(Card.fromString(line));
-                }
-            }
-        } else {
-            // The scheme did not indicate a JAR file, so we get the path to
-            // the file as usual, without any black magic.
-            // Path programPath = Paths.get(new URI(scheme, spec, null));
-            Path programPath = Paths.get(uri);
-            for (String line : Files.readAllLines(programPath)) {
+        result.add(initialComment);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                fileurl.openStream(), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            while (line != null) {
                 result.add(Card.fromString(line));
+                line = reader.readLine();
             }
         }
 
         // Surround the cards from the resource with delimiting comment cards.
-        result.add(0, initialComment);
         result.add(terminalComment);
         return result;
     }
@@ -193,14 +182,25 @@ public class DefaultLibrary implements Library {
                 .getResource("analyticalengine/" + fileWithExt);
 
         // If the file exists as a resource available to the class loader, then
-        // load the cards from that location.
+        // load the cards from that location, unless they have been loaded
+        // before.
         if (fileurl != null) {
-            try {
-                return this.cardsFromResource(fileurl);
-            } catch (URISyntaxException | IOException | UnknownCard e) {
-                throw new LibraryLookupException("Failed to load library file",
-                        e);
+            List<Card> builtin = BUILTINS.get(fileWithExt);
+            if (this.hits != null && builtin == null) {
+                this.misses.increment();
+            } else if (this.hits != null) {
+                this.hits.increment();
             }
+            if (builtin == null) {
+                try {
+                    builtin = this.cardsFromResource(fileurl);
+                } catch (IOException | UnknownCard e) {
+                    throw new LibraryLookupException(
+                            "Failed to load library file", e);
+                }
+                BUILTINS.put(fileWithExt, builtin);
+            }
+            return new ArrayList<Card>(builtin);
         }
 
         // If the above resource did not exist, look for the file in the list
@@ -246,4 +246,23 @@ public class DefaultLibrary implements Library {
         }
         return Optional.empty();
     }
+
+    /**
+     * Records the number of built-in library files found in the cache shared
+     * by all libraries, and the number loaded because they were not in the
+     * cache, in the specified registry, or stops recording them if the
+     * registry is {@code null}.
+     * 
+     * @param metrics
+     *            The registry of metrics, or {@code null}.
+     */
+    public void setMetrics(final Metrics metrics) {
+        if (metrics == null) {
+            this.hits = null;
+            this.misses = null;
+        } else {
+            this.hits = metrics.counter(Metrics.LIBRARY_CACHE_HITS);
+            this.misses = metrics.counter(Metrics.LIBRARY_CACHE_MISSES);
+        }
+    }
 }
@@ -0,0 +1,411 @@
+/**
+ * IncludeResolver.java - loads the files included by a program in parallel
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.attendant;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import analyticalengine.cards.BadCard;
+import analyticalengine.cards.Card;
+import analyticalengine.cards.CardType;
+import analyticalengine.cards.UnknownCard;
+
+/**
+ * Replaces the inclusion requests of a program with the cards of the
+ * requested files and library functions.
+ * 
+ * Every requested file is read and parsed on a separate thread as soon as
+ * the request is found, so that reading one file does not wait for another.
+ * The files requested by an included file are included in the same way, so
+ * that they are read while earlier files are still being spliced into the
+ * card chain. The cards are then passed on in the order in which they
+ * appear in the program, each included file between a pair of comment cards.
+ * 
+ * A file that includes itself, directly or through other files, is
+ * rejected. A file may otherwise be included any number of times. Files
+ * outside the library may be refused altogether, in which case a request
+ * for one is rejected without reading it.
+ * 
+ * The files are read by a single pool of daemon threads shared by every
+ * resolver, so resolving a program starts no threads of its own.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+final class IncludeResolver implements AutoCloseable {
+
+    /**
+     * A program or an included file, with the files it requests being loaded
+     * in the background.
+     * 
+     * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+     * @since 0.0.1
+     */
+    private static final class Source {
+
+        /** The cards of the file, including the inclusion requests. */
+        private final List<Card> cards;
+
+        /** The file requested by each inclusion request, keyed by index. */
+        private final Map<Integer, Future<Source>> includes =
+                new HashMap<Integer, Future<Source>>();
+
+        /**
+         * Creates a new source containing the specified cards.
+         * 
+         * @param cards
+         *            The cards of the file.
+         */
+        Source(final List<Card> cards) {
+            this.cards = cards;
+        }
+    }
+
+    /** The number of files read at once. */
+    static final int THREADS = 16;
+
+    /** The daemon threads that read requested files for every resolver. */
+    private static final ExecutorService EXECUTOR = Executors
+            .newFixedThreadPool(THREADS, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(runnable, "include-resolver");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /**
+     * Returns whether the specified card requests the inclusion of a file or
+     * library function.
+     * 
+     * @param card
+     *            A card.
+     * @return Whether the card is an inclusion request.
+     */
+    private static boolean isInclude(final Card card) {
+        return card.type() == CardType.INCLUDE
+                || card.type() == CardType.INCLUDELIB;
+    }
+
+    /**
+     * Returns the name that identifies the file requested by the specified
+     * inclusion request, for detecting files that include themselves.
+     * 
+     * @param card
+     *            An inclusion request.
+     * @return The name of the requested file.
+     */
+    private static String key(final Card card) {
+        if (card.type() == CardType.INCLUDE) {
+            return Paths.get(card.argument(0)).toAbsolutePath().normalize()
+                    .toString();
+        }
+        // we assume library files have the .ae file extension
+        String filename = card.argument(0);
+        if (!filename.endsWith(".ae")) {
+            filename += ".ae";
+        }
+        return "library " + filename;
+    }
+
+    /** Whether this resolver has been closed. */
+    private boolean closed = false;
+
+    /** Whether files outside the library may be included. */
+    private final boolean includeFiles;
+
+    /** The library in which requested library functions are found. */
+    private final Library library;
+
+    /**
+     * The files requested so far, guarded by itself along with
+     * {@link #closed}.
+     */
+    private final List<Future<Source>> requested =
+            new ArrayList<Future<Source>>();
+
+    /**
+     * Creates a new resolver that finds library functions in the specified
+     * library.
+     * 
+     * @param library
+     *            The library of built-in functions.
+     * @param includeFiles
+     *            Whether files outside the library may be included.
+     */
+    IncludeResolver(final Library library, final boolean includeFiles) {
+        this.includeFiles = includeFiles;
+        this.library = library;
+    }
+
+    /**
+     * Waits for the specified file to be loaded.
+     * 
+     * @param future
+     *            The file being loaded.
+     * @return The loaded file.
+     * @throws BadCard
+     *             if the file could not be found or includes itself.
+     * @throws IOException
+     *             if there was a problem reading the file.
+     * @throws UnknownCard
+     *             if there was a syntax error in the file.
+     * @throws LibraryLookupException
+     *             if there was a problem reading a library function.
+     */
+    private Source await(final Future<Source> future) throws BadCard,
+            IOException, UnknownCard, LibraryLookupException {
+        try {
+            return future.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                    "Interrupted while including cards", exception);
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof BadCard) {
+                throw (BadCard) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof UnknownCard) {
+                throw (UnknownCard) cause;
+            } else if (cause instanceof LibraryLookupException) {
+                throw (LibraryLookupException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Stops reading any files that are no longer needed, for example because
+     * an earlier file could not be read.
+     */
+    @Override
+    public void close() {
+        synchronized (this.requested) {
+            this.closed = true;
+            for (Future<Source> future : this.requested) {
+                future.cancel(true);
+            }
+            this.requested.clear();
+        }
+    }
+
+    /**
+     * Passes the cards of the specified source to the specified stage,
+     * replacing each inclusion request with the cards of the requested file.
+     * 
+     * @param source
+     *            The program or included file.
+     * @param sink
+     *            The next stage.
+     * @throws BadCard
+     *             if a requested file could not be found or includes itself.
+     * @throws IOException
+     *             if there was a problem reading a requested file.
+     * @throws UnknownCard
+     *             if there was a syntax error in a requested file.
+     * @throws LibraryLookupException
+     *             if there was a problem reading a library function.
+     */
+    private void emit(final Source source, final CardSink sink)
+            throws BadCard, IOException, UnknownCard, LibraryLookupException {
+        for (int i = 0; i < source.cards.size(); i++) {
+            Card card = source.cards.get(i);
+            Future<Source> include = source.includes.get(i);
+            if (include == null) {
+                sink.accept(card);
+                continue;
+            }
+            Source included = this.await(include);
+            if (card.type() == CardType.INCLUDE) {
+                sink.accept(Card.commentCard(
+                        "Begin interpolation of " + card + " by attendant"));
+                this.emit(included, sink);
+                sink.accept(Card.commentCard(
+                        "Endinterpolation of " + card + " by attendant"));
+            } else {
+                String filename = card.argument(0);
+                sink.accept(Card.commentCard(DefaultAttendant.LIBRARY_BEGIN
+                        + filename + DefaultAttendant.LIBRARY_SUFFIX));
+                this.emit(included, sink);
+                sink.accept(Card.commentCard(DefaultAttendant.LIBRARY_END
+                        + filename + DefaultAttendant.LIBRARY_SUFFIX));
+            }
+        }
+    }
+
+    /**
+     * Starts loading every file requested by the specified cards.
+     * 
+     * @param cards
+     *            The cards of a program or included file.
+     * @param ancestors
+     *            The names of the files that include these cards, outermost
+     *            first.
+     * @return The cards, with the requested files being loaded.
+     */
+    private Source load(final List<Card> cards,
+            final List<String> ancestors) {
+        Source source = new Source(cards);
+        for (int i = 0; i < cards.size(); i++) {
+            Card card = cards.get(i);
+            if (isInclude(card)) {
+                source.includes.put(i, this.request(card, ancestors));
+            }
+        }
+        return source;
+    }
+
+    /**
+     * Reads the cards of the file requested by the specified card.
+     * 
+     * @param card
+     *            An inclusion request.
+     * @return The cards of the requested file.
+     * @throws BadCard
+     *             if the requested file could not be found.
+     * @throws IOException
+     *             if there was a problem reading the requested file.
+     * @throws UnknownCard
+     *             if there was a syntax error in the requested file.
+     * @throws LibraryLookupException
+     *             if there was a problem reading a library function.
+     */
+    private List<Card> read(final Card card) throws BadCard, IOException,
+            UnknownCard, LibraryLookupException {
+        /*
+         * We recognise a card which begins with an "@" or the more Victorian
+         * " A include cards " as an instruction to the attendant to locate
+         * the chain of cards bearing that label and interpolate it into the
+         * chain, replacing the card requesting it. This allows commonly used
+         * sequences of calculation to be called out without having to
+         * physically copy them into the original card chain.
+         */
+        if (card.type() == CardType.INCLUDE) {
+            Path path = Paths.get(card.argument(0));
+            if (!Files.exists(path)) {
+                throw new BadCard("Could not find file: " + path, card);
+            }
+            List<Card> cards = new ArrayList<Card>();
+            try (BufferedReader reader = Files.newBufferedReader(path)) {
+                String line = reader.readLine();
+                while (line != null) {
+                    cards.add(Card.fromString(line));
+                    line = reader.readLine();
+                }
+            }
+            return cards;
+        }
+        /*
+         * The analyst can request the inclusion of a set of cards from the
+         * machine's library with the request to the attendant:
+         * 
+         * A include from library cards for <whatever>
+         * 
+         * The attendant searches for a set of cards named <whatever> and, if
+         * found, they are strung into the chain, replacing the library
+         * request.
+         */
+        return this.library.find(card.argument(0));
+    }
+
+    /**
+     * Starts loading the file requested by the specified card.
+     * 
+     * @param card
+     *            An inclusion request.
+     * @param ancestors
+     *            The names of the files that include the card, outermost
+     *            first.
+     * @return The file being loaded.
+     */
+    private Future<Source> request(final Card card,
+            final List<String> ancestors) {
+        if (card.type() == CardType.INCLUDE && !this.includeFiles) {
+            CompletableFuture<Source> denied =
+                    new CompletableFuture<Source>();
+            denied.completeExceptionally(
+                    new BadCard("Including files is not allowed", card));
+            return denied;
+        }
+        String key = key(card);
+        if (ancestors.contains(key)) {
+            CompletableFuture<Source> cycle = new CompletableFuture<Source>();
+            cycle.completeExceptionally(
+                    new BadCard("File includes itself: " + key, card));
+            return cycle;
+        }
+        List<String> path = new ArrayList<String>(ancestors);
+        path.add(key);
+        synchronized (this.requested) {
+            if (this.closed) {
+                CompletableFuture<Source> cancelled =
+                        new CompletableFuture<Source>();
+                cancelled.cancel(true);
+                return cancelled;
+            }
+            Future<Source> future =
+                    EXECUTOR.submit(() -> this.load(this.read(card), path));
+            this.requested.add(future);
+            return future;
+        }
+    }
+
+    /**
+     * Passes the cards of the specified program to the specified stage,
+     * replacing each inclusion request with the cards of the requested file.
+     * 
+     * @param cards
+     *            The cards of the program.
+     * @param sink
+     *            The next stage.
+     * @throws BadCard
+     *             if a requested file could not be found or includes itself.
+     * @throws IOException
+     *             if there was a problem reading a requested file.
+     * @throws UnknownCard
+     *             if there was a syntax error in a requested file.
+     * @throws LibraryLookupException
+     *             if there was a problem reading a library function.
+     */
+    void resolve(final List<Card> cards, final CardSink sink)
+            throws BadCard, IOException, UnknownCard, LibraryLookupException {
+        this.emit(this.load(cards, Collections.<String> emptyList()), sink);
+    }
+}
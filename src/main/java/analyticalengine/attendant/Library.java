@@ -73,6 +73,10 @@ public interface Library {
      * {@link #addLibraryPath(Path)} and {@link #addLibraryPaths(List)} methods
      * for the specified file.
      * 
+     * The attendant may invoke this method from several threads at once
+     * while it mounts a program, but not while library paths are being added
+     * or cleared.
+     * 
      * @param filename
      *            The file for which to search.
      * @return The list of cards stored in the specified library file.
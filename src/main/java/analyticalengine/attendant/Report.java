@@ -0,0 +1,163 @@
+/**
+ * Report.java - output written by the attendant, rendered on demand
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.attendant;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import analyticalengine.components.Printer;
+
+/**
+ * The report written by the attendant, in which the decimal rendering of
+ * printed values is deferred until the report is read.
+ * 
+ * Annotations and line breaks are recorded as text. A value received from
+ * the printer is recorded as the raw integer, along with the printer and the
+ * picture format in effect when it was printed, and is converted to text only
+ * when {@link #render()} is invoked. Converting a {@link BigInteger} to a
+ * decimal string is much more costly than recording it, so a program that
+ * prints many values pays that cost once, in a single batch, at the end.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+final class Report {
+
+    /**
+     * A value received from the printer whose conversion to text has been
+     * deferred.
+     * 
+     * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+     * @since 0.0.1
+     */
+    private static final class DeferredValue {
+
+        /**
+         * The picture format in effect when the value was printed, or
+         * {@code null} if the value is written as is.
+         */
+        private final String format;
+
+        /** The printer that converts the value to text. */
+        private final Printer printer;
+
+        /** The printed value. */
+        private final BigInteger value;
+
+        /**
+         * Records the specified value along with the printer and format with
+         * which it will be rendered.
+         * 
+         * @param value
+         *            The printed value.
+         * @param printer
+         *            The printer that converts the value to text.
+         * @param format
+         *            The picture format in effect when the value was printed,
+         *            or {@code null} if the value is written as is.
+         */
+        DeferredValue(final BigInteger value, final Printer printer,
+                final String format) {
+            this.value = value;
+            this.printer = printer;
+            this.format = format;
+        }
+
+        /**
+         * Converts the value to text using the printer and format recorded
+         * with it.
+         * 
+         * @return The formatted text of the value.
+         */
+        String render() {
+            return DefaultAttendant.formatted(this.printer.print(this.value),
+                    this.format);
+        }
+    }
+
+    /**
+     * Entries that have not yet been rendered, in the order they were
+     * written; each element is either a {@link String} or a
+     * {@link DeferredValue}.
+     */
+    private final List<Object> pending = new ArrayList<Object>();
+
+    /** The text of every entry that has already been rendered. */
+    private final StringBuilder rendered = new StringBuilder();
+
+    /**
+     * Appends the specified text to the report.
+     * 
+     * @param text
+     *            The text to append.
+     */
+    void append(final String text) {
+        if (this.pending.isEmpty()) {
+            this.rendered.append(text);
+        } else {
+            this.pending.add(text);
+        }
+    }
+
+    /**
+     * Appends the specified value to the report, deferring its conversion to
+     * text until the report is rendered.
+     * 
+     * @param value
+     *            The printed value.
+     * @param printer
+     *            The printer that converts the value to text.
+     * @param format
+     *            The picture format in effect when the value was printed, or
+     *            {@code null} if the value is written as is.
+     */
+    void append(final BigInteger value, final Printer printer,
+            final String format) {
+        this.pending.add(new DeferredValue(value, printer, format));
+    }
+
+    /** Removes everything written to the report. */
+    void clear() {
+        this.pending.clear();
+        this.rendered.setLength(0);
+    }
+
+    /**
+     * Renders every deferred value and returns the text of the whole report.
+     * 
+     * Rendered entries are kept as text, so invoking this method repeatedly
+     * only renders the values appended since the previous invocation.
+     * 
+     * @return The text of the report.
+     */
+    String render() {
+        for (Object entry : this.pending) {
+            if (entry instanceof DeferredValue) {
+                this.rendered.append(((DeferredValue) entry).render());
+            } else {
+                this.rendered.append((String) entry);
+            }
+        }
+        this.pending.clear();
+        return this.rendered.toString();
+    }
+}
@@ -89,6 +89,21 @@ public abstract class CardException extends Exception {
         super(message, cause);
     }
 
+    /**
+     * Instantiates this exception with the specified error message and no
+     * stack trace, for exceptions that signal an ordinary event rather than
+     * an error and may therefore be created once and thrown many times.
+     * 
+     * @param message
+     *            The error message.
+     * @param writableStackTrace
+     *            Whether the stack trace should be recorded.
+     */
+    protected CardException(final String message,
+            final boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
+
     /**
      * Gets the card that caused this exception.
      * 
@@ -0,0 +1,476 @@
+/**
+ * CardLexer.java - parses lines of a program into cards
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.cards;
+
+import java.util.Arrays;
+
+/**
+ * Parses single lines of an Analytical Engine program into cards, as
+ * described in {@link Card#fromString(String)}.
+ * 
+ * Each line is scanned once, by index, without creating intermediate
+ * strings; only the arguments of the card are copied out of the line. The
+ * attendant requests that begin with {@code A} are recognized with a prefix
+ * trie instead of by testing each request in turn, and cards without
+ * arguments are shared, since cards are immutable.
+ * 
+ * The text of the line after its first character is called the
+ * <em>rest</em> of the line. Characters at most {@code ' '} are removed from
+ * both ends of the rest, as by {@link String#trim()}, and then whitespace
+ * characters are removed from its beginning, as by
+ * {@link Card#leftTrim(String)}.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+final class CardLexer {
+
+    /**
+     * A node of the trie of attendant requests.
+     * 
+     * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+     * @since 0.0.1
+     */
+    private static final class Node {
+
+        /**
+         * The index in the rest of the line at which the argument of the
+         * request begins, if the argument is taken from the trimmed rest of
+         * the line, or -1.
+         */
+        private int argumentInRest = -1;
+
+        /**
+         * The index in the line at which the argument of the request
+         * begins, if the argument is taken from the untrimmed line, or -1.
+         */
+        private int argumentInLine = -1;
+
+        /** The child of this node for each character in {@link #labels}. */
+        private Node[] children = new Node[0];
+
+        /** The character leading to each child of this node. */
+        private char[] labels = new char[0];
+
+        /**
+         * The type of card requested, if the path to this node spells a
+         * complete request, or {@code null}.
+         */
+        private CardType type = null;
+
+        /**
+         * Returns the child of this node for the specified character.
+         * 
+         * @param label
+         *            The next character of the request.
+         * @return The child, or {@code null} if there is none.
+         */
+        Node child(final char label) {
+            for (int i = 0; i < this.labels.length; i++) {
+                if (this.labels[i] == label) {
+                    return this.children[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the child of this node for the specified character,
+         * creating it if necessary.
+         * 
+         * @param label
+         *            The next character of the request.
+         * @return The child.
+         */
+        Node childOrNew(final char label) {
+            Node child = this.child(label);
+            if (child == null) {
+                int n = this.labels.length;
+                this.labels = Arrays.copyOf(this.labels, n + 1);
+                this.children = Arrays.copyOf(this.children, n + 1);
+                child = new Node();
+                this.labels[n] = label;
+                this.children[n] = child;
+            }
+            return child;
+        }
+    }
+
+    /** The cards that have no arguments, indexed by the ordinal of type. */
+    private static final Card[] NO_ARGUMENTS =
+            new Card[CardType.values().length];
+
+    /**
+     * The root of the trie of attendant requests.
+     * 
+     * No request is a prefix of another, so the first complete request found
+     * while walking down the trie is the only one that matches.
+     */
+    private static final Node REQUESTS = new Node();
+
+    static {
+        for (CardType type : CardType.values()) {
+            NO_ARGUMENTS[type.ordinal()] = new Card(type);
+        }
+        // the offsets of the arguments are those used by earlier versions of
+        // this program, which skip a single space after the request
+        request("include cards", CardType.INCLUDE, 14, -1);
+        request("include from library cards for", CardType.INCLUDELIB, 31,
+                -1);
+        request("set decimal places to", CardType.DECIMALEXPAND, 22, -1);
+        request("write numbers as", CardType.WRITEPICTURE, -1, 19);
+        request("write numbers with decimal point", CardType.WRITEDECIMAL, -1,
+                -1);
+        request("write in rows", CardType.WRITEROWS, -1, -1);
+        request("write in columns", CardType.WRITECOLUMNS, -1, -1);
+        request("write new line", CardType.NEWLINE, -1, -1);
+        request("write annotation", CardType.ANNOTATE, -1, 19);
+    }
+
+    /**
+     * Returns the argument of the specified attendant request.
+     * 
+     * @param line
+     *            The line.
+     * @param node
+     *            The node of the trie for the request.
+     * @param begin
+     *            The index of the beginning of the rest of the line.
+     * @param end
+     *            The index of the end of the rest of the line.
+     * @return The card.
+     */
+    private static Card attendantRequest(final String line, final Node node,
+            final int begin, final int end) {
+        if (node.argumentInRest >= 0) {
+            return new Card(node.type, new String[] {
+                    line.substring(begin + node.argumentInRest, end) });
+        } else if (node.argumentInLine >= 0) {
+            return new Card(node.type,
+                    new String[] { line.substring(node.argumentInLine) });
+        }
+        return NO_ARGUMENTS[node.type.ordinal()];
+    }
+
+    /**
+     * Returns the combinatorial card on the specified line.
+     * 
+     * @param line
+     *            The line, which begins with {@code C}.
+     * @return The card.
+     * @throws UnknownCard
+     *             if the line does not begin with {@code CF+}, {@code CF?},
+     *             {@code CB+}, or {@code CB?}.
+     */
+    private static Card combinatorial(final String line) throws UnknownCard {
+        char direction = line.charAt(1);
+        if (direction == 'F') {
+            char condition = line.charAt(2);
+            if (condition == '?') {
+                return new Card(CardType.CFORWARD,
+                        new String[] { line.substring(3) });
+            } else if (condition == '+') {
+                return new Card(CardType.FORWARD,
+                        new String[] { line.substring(3) });
+            }
+            throw new UnknownCard(
+                    "Forward card must be either CF+ or CF?, got: " + line);
+        } else if (direction == 'B') {
+            char condition = line.charAt(2);
+            if (condition == '?') {
+                return new Card(CardType.CBACKWARD,
+                        new String[] { line.substring(3) });
+            } else if (condition == '+') {
+                return new Card(CardType.BACKWARD,
+                        new String[] { line.substring(3) });
+            }
+            throw new UnknownCard(
+                    "Backward card must be either CB+ or CB?, got: " + line);
+        }
+        throw new UnknownCard(
+                "Combinatorial card must be either CF or CB, got: " + line);
+    }
+
+    /**
+     * Returns the first character of the rest of the line.
+     * 
+     * @param line
+     *            The line.
+     * @param begin
+     *            The index of the beginning of the rest of the line.
+     * @param end
+     *            The index of the end of the rest of the line.
+     * @return The first character of the rest of the line.
+     * @throws StringIndexOutOfBoundsException
+     *             if the rest of the line is empty.
+     */
+    private static char first(final String line, final int begin,
+            final int end) {
+        if (begin == end) {
+            throw new StringIndexOutOfBoundsException(0);
+        }
+        return line.charAt(begin);
+    }
+
+    /**
+     * Returns the card on the specified line.
+     * 
+     * @param line
+     *            A single line of an Analytical Engine program.
+     * @return The card on that line.
+     * @throws UnknownCard
+     *             if the line does not correspond to a known card.
+     */
+    static Card lex(final String line) throws UnknownCard {
+        int length = line.length();
+        if (length == 0) {
+            return Card.commentCard("");
+        }
+        // find the rest of the line, as described in the class comment
+        int begin = 1;
+        int end = length;
+        while (begin < end && line.charAt(begin) <= ' ') {
+            begin++;
+        }
+        while (begin < end && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        while (begin < end && Character.isWhitespace(line.charAt(begin))) {
+            begin++;
+        }
+        // TODO need to account for possible inline comments after period
+        char firstChar = line.charAt(0);
+        switch (firstChar) {
+        case '+':
+            return NO_ARGUMENTS[CardType.ADD.ordinal()];
+        case '*':
+            return NO_ARGUMENTS[CardType.MULTIPLY.ordinal()];
+        case '/':
+            return NO_ARGUMENTS[CardType.DIVIDE.ordinal()];
+        case '-':
+            return NO_ARGUMENTS[CardType.SUBTRACT.ordinal()];
+        case 'N':
+            return new Card(CardType.NUMBER, words(line, begin, end));
+        case 'L':
+            return primed(line, begin, end, CardType.LOAD,
+                    CardType.LOADPRIME);
+        case 'Z':
+            return primed(line, begin, end, CardType.ZLOAD,
+                    CardType.ZLOADPRIME);
+        case 'S':
+            return primed(line, begin, end, CardType.STORE,
+                    CardType.STOREPRIME);
+        case '<':
+            if (begin < end) {
+                return new Card(CardType.LSHIFTN,
+                        new String[] { line.substring(begin, end) });
+            }
+            return NO_ARGUMENTS[CardType.LSHIFT.ordinal()];
+        case '>':
+            if (begin < end) {
+                return new Card(CardType.RSHIFTN,
+                        new String[] { line.substring(begin, end) });
+            }
+            return NO_ARGUMENTS[CardType.RSHIFT.ordinal()];
+        case 'C':
+            return combinatorial(line);
+        case 'B':
+            return NO_ARGUMENTS[CardType.BELL.ordinal()];
+        case 'P':
+            return NO_ARGUMENTS[CardType.PRINT.ordinal()];
+        case 'H':
+            return NO_ARGUMENTS[CardType.HALT.ordinal()];
+        case 'D':
+            switch (first(line, begin, end)) {
+            case '+':
+                return NO_ARGUMENTS[CardType.DRAW.ordinal()];
+            case '-':
+                return NO_ARGUMENTS[CardType.MOVE.ordinal()];
+            case 'X':
+                return NO_ARGUMENTS[CardType.SETX.ordinal()];
+            case 'Y':
+                return NO_ARGUMENTS[CardType.SETY.ordinal()];
+            default:
+                throw new UnknownCard(
+                        "Draw card must be one of DX, DY, D+, or D-, got: "
+                                + line);
+            }
+        case 'A':
+            Node node = REQUESTS;
+            for (int i = begin; i < end && node != null
+                    && node.type == null; i++) {
+                node = node.child(line.charAt(i));
+            }
+            if (node == null || node.type == null) {
+                throw new UnknownCard("Unknown attendant request: " + line);
+            }
+            return attendantRequest(line, node, begin, end);
+        case '(':
+            if (begin < end && line.charAt(begin) == '?') {
+                return NO_ARGUMENTS[CardType.CBACKSTART.ordinal()];
+            }
+            return NO_ARGUMENTS[CardType.BACKSTART.ordinal()];
+        case ')':
+            return NO_ARGUMENTS[CardType.BACKEND.ordinal()];
+        case '{':
+            if (begin < end && line.charAt(begin) == '?') {
+                return NO_ARGUMENTS[CardType.CFORWARDSTART.ordinal()];
+            }
+            return NO_ARGUMENTS[CardType.FORWARDSTART.ordinal()];
+        case '}':
+            if (begin < end && line.charAt(begin) == '{') {
+                return NO_ARGUMENTS[CardType.ALTERNATION.ordinal()];
+            }
+            return NO_ARGUMENTS[CardType.FORWARDEND.ordinal()];
+        case 'T':
+            char state = first(line, begin, end);
+            if (state == '1') {
+                return NO_ARGUMENTS[CardType.TRACEON.ordinal()];
+            } else if (state == '0') {
+                return NO_ARGUMENTS[CardType.TRACEOFF.ordinal()];
+            }
+            throw new UnknownCard("Expected T0 or T1 but got: " + line);
+        case ' ':
+        case '.':
+            return Card.commentCard(line.substring(begin, end));
+        default:
+            throw new UnknownCard("Unable to parse: " + line);
+        }
+    }
+
+    /**
+     * Returns the memory access card on the specified line, which refers to
+     * the prime axis if its argument ends with an apostrophe.
+     * 
+     * @param line
+     *            The line.
+     * @param begin
+     *            The index of the beginning of the rest of the line.
+     * @param end
+     *            The index of the end of the rest of the line.
+     * @param type
+     *            The type of card if the argument does not end with an
+     *            apostrophe.
+     * @param primeType
+     *            The type of card if the argument ends with an apostrophe.
+     * @return The card.
+     */
+    private static Card primed(final String line, final int begin,
+            final int end, final CardType type, final CardType primeType) {
+        if (begin < end && line.charAt(end - 1) == '\'') {
+            return new Card(primeType,
+                    new String[] { line.substring(begin, end - 1) });
+        }
+        return new Card(type, new String[] { line.substring(begin, end) });
+    }
+
+    /**
+     * Adds the specified request to the trie of attendant requests.
+     * 
+     * @param text
+     *            The text of the request.
+     * @param type
+     *            The type of card requested.
+     * @param argumentInRest
+     *            The index in the rest of the line at which the argument
+     *            begins, or -1.
+     * @param argumentInLine
+     *            The index in the untrimmed line at which the argument
+     *            begins, or -1.
+     */
+    private static void request(final String text, final CardType type,
+            final int argumentInRest, final int argumentInLine) {
+        Node node = REQUESTS;
+        for (int i = 0; i < text.length(); i++) {
+            node = node.childOrNew(text.charAt(i));
+        }
+        node.type = type;
+        node.argumentInRest = argumentInRest;
+        node.argumentInLine = argumentInLine;
+    }
+
+    /**
+     * Returns whether the specified character separates the arguments of a
+     * number card; these are the characters matched by the regular
+     * expression {@code \s}.
+     * 
+     * @param c
+     *            A character.
+     * @return Whether the character is a separator.
+     */
+    private static boolean separator(final char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B'
+                || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Returns the arguments of a number card, which are the words of the
+     * rest of the line, each with characters at most {@code ' '} removed
+     * from both ends.
+     * 
+     * @param line
+     *            The line.
+     * @param begin
+     *            The index of the beginning of the rest of the line.
+     * @param end
+     *            The index of the end of the rest of the line.
+     * @return The words; a single empty string if the rest is empty.
+     */
+    private static String[] words(final String line, final int begin,
+            final int end) {
+        int count = 1;
+        for (int i = begin; i < end; i++) {
+            if (separator(line.charAt(i))
+                    && !separator(line.charAt(i - 1))) {
+                count++;
+            }
+        }
+        String[] result = new String[count];
+        int word = 0;
+        int i = begin;
+        while (word < count) {
+            int j = i;
+            while (j < end && !separator(line.charAt(j))) {
+                j++;
+            }
+            int wordBegin = i;
+            int wordEnd = j;
+            while (wordBegin < wordEnd && line.charAt(wordBegin) <= ' ') {
+                wordBegin++;
+            }
+            while (wordBegin < wordEnd && line.charAt(wordEnd - 1) <= ' ') {
+                wordEnd--;
+            }
+            result[word] = line.substring(wordBegin, wordEnd);
+            word++;
+            while (j < end && separator(line.charAt(j))) {
+                j++;
+            }
+            i = j;
+        }
+        return result;
+    }
+
+    /** Instantiation disallowed. */
+    private CardLexer() {
+        // intentionally unimplemented
+    }
+}
@@ -35,6 +35,16 @@ public class Halt extends CardException {
      */
     private static final long serialVersionUID = -8026821124810632777L;
 
+    /**
+     * The signal that the card reader has read every card in the chain.
+     * 
+     * Reaching the end of the chain is the ordinary way for a program to
+     * stop, so this signal has no stack trace and is shared by all card
+     * readers instead of being created each time.
+     */
+    public static final Halt END_OF_CHAIN = new Halt(
+            "Reached end of card chain.", false);
+
     /**
      * Instantiates this exception with the specified error message.
      * 
@@ -45,6 +55,19 @@ public class Halt extends CardException {
         super(message);
     }
 
+    /**
+     * Instantiates this exception with the specified error message and no
+     * stack trace.
+     * 
+     * @param message
+     *            The error message.
+     * @param writableStackTrace
+     *            Whether the stack trace should be recorded.
+     */
+    private Halt(final String message, final boolean writableStackTrace) {
+        super(message, writableStackTrace);
+    }
+
     /**
      * Instantiates this exception with the specified error message and the
      * specified exception that caused the exception.
@@ -0,0 +1,87 @@
+/**
+ * InvalidChain.java - every problem found while verifying a card chain
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.cards;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This exception is raised when a card chain is verified before it is run
+ * and one or more of its cards would cause an error when read.
+ * 
+ * Unlike the other exceptions caused by cards, this exception describes
+ * every problem in the card chain, so that they can all be corrected at
+ * once. The card returned by {@link #card()} is the first bad card.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class InvalidChain extends BadCard {
+
+    /**
+     * A default generated serial version UID.
+     */
+    private static final long serialVersionUID = 4410287613530517325L;
+
+    /**
+     * Returns a message that lists the specified problems, one per line.
+     * 
+     * @param problems
+     *            The problems in the card chain.
+     * @return A message describing every problem.
+     */
+    private static String describe(final List<BadCard> problems) {
+        StringBuilder message = new StringBuilder();
+        message.append(problems.size()).append(" bad card(s) in chain");
+        for (BadCard problem : problems) {
+            message.append(System.lineSeparator()).append("    ")
+                    .append(problem.getMessage()).append(": ")
+                    .append(problem.card());
+        }
+        return message.toString();
+    }
+
+    /** The problems in the card chain, in the order of the cards. */
+    private final List<BadCard> problems;
+
+    /**
+     * Instantiates this exception with the specified problems.
+     * 
+     * @param problems
+     *            The problems in the card chain, in the order of the cards;
+     *            must not be empty.
+     */
+    public InvalidChain(final List<BadCard> problems) {
+        super(describe(problems), problems.get(0).card());
+        this.problems = Collections.unmodifiableList(new ArrayList<BadCard>(
+                problems));
+    }
+
+    /**
+     * Returns every problem in the card chain.
+     * 
+     * @return The problems in the card chain, in the order of the cards.
+     */
+    public List<BadCard> problems() {
+        return this.problems;
+    }
+}
@@ -54,6 +54,9 @@ public class ArrayListCardReader implements CardReader {
      */
     private int currentCard = -1;
 
+    /** The number of times the card chain has been changed. */
+    private long mounts = 0;
+
     /**
      * {@inheritDoc}
      * 
@@ -93,6 +96,27 @@ public class ArrayListCardReader implements CardReader {
     public void mountCards(final List<Card> cardChain) {
         LOG.debug("Mounting card chain {}", cardChain);
         this.cardChain = new ArrayList<Card>(cardChain);
+        this.mounts++;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @return {@inheritDoc}
+     */
+    @Override
+    public long mounts() {
+        return this.mounts;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @return {@inheritDoc}
+     */
+    @Override
+    public int position() {
+        return this.currentCard;
     }
 
     /**
@@ -106,7 +130,7 @@ public class ArrayListCardReader implements CardReader {
     @Override
     public Card readAndAdvance() throws Halt {
         if (this.currentCard + 1 == this.cardChain.size()) {
-            throw new Halt("Reached end of card chain.");
+            throw Halt.END_OF_CHAIN;
         }
         this.currentCard += 1;
         return this.cardChain.get(this.currentCard);
@@ -139,6 +163,7 @@ public class ArrayListCardReader implements CardReader {
     public void unmountCards() {
         this.currentCard = -1;
         this.cardChain.clear();
+        this.mounts++;
     }
 
 }
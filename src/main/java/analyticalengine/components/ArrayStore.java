@@ -0,0 +1,253 @@
+/**
+ * ArrayStore.java - a memory store backed by an array
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.components;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.LongAdder;
+
+import analyticalengine.metrics.Metrics;
+
+/**
+ * A memory store for the Analytical Engine backed by an array with one
+ * element per column, which tracks the columns that have been written.
+ * 
+ * The number of columns and the width of each column are specified by an
+ * {@link EngineConfig}. Resetting this store only zeroes the columns written
+ * since the previous reset, so resetting the store between short programs is
+ * cheap.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class ArrayStore implements DirtyTrackingStore {
+
+    /**
+     * The columns that are dirty, as defined by {@link DirtyTrackingStore}.
+     */
+    private final BitSet dirty;
+
+    /** The largest value that can be stored. */
+    private final BigInteger maxValue;
+
+    /** The smallest value that can be stored. */
+    private final BigInteger minValue;
+
+    /**
+     * The number of values read from this store, or {@code null} if metrics
+     * are not recorded.
+     */
+    private LongAdder reads = null;
+
+    /** The value stored in each column. */
+    private final BigInteger[] rack;
+
+    /** The columns that have been written since the last reset. */
+    private final BitSet written;
+
+    /**
+     * The number of values written to this store, or {@code null} if metrics
+     * are not recorded.
+     */
+    private LongAdder writes = null;
+
+    /**
+     * Instantiates this object with the default configuration and every
+     * column set to zero.
+     */
+    public ArrayStore() {
+        this(EngineConfig.DEFAULT);
+    }
+
+    /**
+     * Instantiates this object with the specified configuration and every
+     * column set to zero.
+     * 
+     * @param config
+     *            The configuration of the Engine.
+     */
+    public ArrayStore(final EngineConfig config) {
+        this.rack = new BigInteger[config.columns()];
+        this.dirty = new BitSet(config.columns());
+        this.written = new BitSet(config.columns());
+        this.maxValue = config.maxValue();
+        this.minValue = config.minValue();
+        Arrays.fill(this.rack, BigInteger.ZERO);
+    }
+
+    /**
+     * Throws an exception if the specified address is not a column of this
+     * store.
+     * 
+     * @param address
+     *            A memory location.
+     * @throws IndexOutOfBoundsException
+     *             if the address is negative or too large for the store.
+     */
+    private void checkAddress(final int address) {
+        if (address < 0 || address >= this.rack.length) {
+            throw new IndexOutOfBoundsException("Bad address: " + address);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clearDirty() {
+        this.dirty.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param address
+     *            {@inheritDoc}
+     * @return {@inheritDoc}
+     * @throws IndexOutOfBoundsException
+     *             {@inheritDoc}
+     */
+    @Override
+    public BigInteger get(final int address) {
+        this.checkAddress(address);
+        if (this.reads != null) {
+            this.reads.increment();
+        }
+        return this.rack[address];
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param addresses
+     *            {@inheritDoc}
+     * @param values
+     *            {@inheritDoc}
+     * @throws IllegalArgumentException
+     *             {@inheritDoc}
+     * @throws IndexOutOfBoundsException
+     *             {@inheritDoc}
+     */
+    @Override
+    public void loadAll(final int[] addresses, final BigInteger[] values) {
+        if (addresses.length != values.length) {
+            throw new IllegalArgumentException("Got " + addresses.length
+                    + " addresses but " + values.length + " values");
+        }
+        for (int i = 0; i < addresses.length; i++) {
+            this.put(addresses[i], values[i]);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param fromAddress
+     *            {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    public int nextDirty(final int fromAddress) {
+        return this.dirty.nextSetBit(fromAddress);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param address
+     *            {@inheritDoc}
+     * @param value
+     *            {@inheritDoc}
+     * @throws IndexOutOfBoundsException
+     *             {@inheritDoc}
+     */
+    @Override
+    public void put(final int address, final BigInteger value) {
+        if (address < 0 || address >= this.rack.length) {
+            throw new IndexOutOfBoundsException("Address " + address
+                    + " must be between " + 0 + " and "
+                    + (this.rack.length - 1));
+        }
+        if (value.compareTo(this.minValue) < 0
+                || value.compareTo(this.maxValue) > 0) {
+            throw new IllegalArgumentException("Value " + value
+                    + " must be between " + this.minValue + " and "
+                    + this.maxValue);
+        }
+        this.rack[address] = value;
+        this.dirty.set(address);
+        this.written.set(address);
+        if (this.writes != null) {
+            this.writes.increment();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * Only the columns written since the previous reset are zeroed.
+     */
+    @Override
+    public void reset() {
+        for (int i = this.written.nextSetBit(0); i >= 0; i = this.written
+                .nextSetBit(i + 1)) {
+            this.rack[i] = BigInteger.ZERO;
+        }
+        this.written.clear();
+        this.dirty.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param metrics
+     *            {@inheritDoc}
+     */
+    @Override
+    public void setMetrics(final Metrics metrics) {
+        if (metrics == null) {
+            this.reads = null;
+            this.writes = null;
+        } else {
+            this.reads = metrics.counter(Metrics.STORE_READS);
+            this.writes = metrics.counter(Metrics.STORE_WRITES);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param addresses
+     *            {@inheritDoc}
+     * @return {@inheritDoc}
+     * @throws IndexOutOfBoundsException
+     *             {@inheritDoc}
+     */
+    @Override
+    public BigInteger[] snapshot(final int[] addresses) {
+        BigInteger[] result = new BigInteger[addresses.length];
+        for (int i = 0; i < addresses.length; i++) {
+            result[i] = this.get(addresses[i]);
+        }
+        return result;
+    }
+}
@@ -20,6 +20,7 @@
  */
 package analyticalengine.components;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import analyticalengine.cards.Card;
@@ -53,6 +54,22 @@ public interface CardReader {
      */
     List<Card> cards();
 
+    /**
+     * Returns a new, empty list to which a card chain may be appended before
+     * it is mounted with {@link #mountCards(List)}.
+     * 
+     * A card reader that stores its cards somewhere other than in a list of
+     * cards may return a list that stores the cards there as they are added,
+     * so that mounting the list does not copy the cards again. The list
+     * supports adding cards and replacing cards, but need not support
+     * removing them efficiently.
+     * 
+     * @return A new, empty list of cards.
+     */
+    default List<Card> newChain() {
+        return new ArrayList<Card>();
+    }
+
     /**
      * Make the specified card chain available to the card reader.
      * 
@@ -61,6 +78,26 @@ public interface CardReader {
      */
     void mountCards(List<Card> cardChain);
 
+    /**
+     * Returns the number of times a card chain has been mounted in or
+     * unmounted from this reader.
+     * 
+     * The count changes whenever the cards provided by {@link #cards()} may
+     * have changed, so that a different chain can be recognized without
+     * comparing its cards.
+     * 
+     * @return The number of times the card chain has been changed.
+     */
+    long mounts();
+
+    /**
+     * Returns the index in the card chain of the card most recently read.
+     * 
+     * @return The index of the card most recently read, or -1 if no card has
+     *         been read since the card chain was mounted.
+     */
+    int position();
+
     /**
      * Reads the current card in the card chain and prepares the following card
      * to be read on the next invocation of this method.
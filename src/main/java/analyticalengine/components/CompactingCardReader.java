@@ -0,0 +1,249 @@
+/**
+ * CompactingCardReader.java - card reader that skips cards with no effect
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.components;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import analyticalengine.cards.Card;
+import analyticalengine.cards.CardType;
+import analyticalengine.cards.Halt;
+
+/**
+ * A card reader that never gives the Engine a card that has no effect, such
+ * as the comment cards inserted by the attendant.
+ * 
+ * When a card chain is mounted, this reader compacts it into an array of the
+ * remaining cards, along with a table that maps each compacted card back to
+ * its index in the chain as mounted. {@link #cards()} and {@link #position()}
+ * refer to the chain as mounted, so listings, error messages, and the
+ * numbers of cards by which to advance or reverse need not change. An advance
+ * or reverse that lands on a removed card leaves the reader positioned so
+ * that the next card read is the first remaining card after it.
+ * 
+ * Because removed cards are never read, the Engine's interpreter does not
+ * count them toward the number of cards executed by
+ * {@link analyticalengine.AnalyticalEngine#run(long)}. A cycle compiled by
+ * {@link analyticalengine.DefaultAnalyticalEngine} is compiled from the chain
+ * as mounted, starting from the card after {@link #position()}, so while a
+ * compiled cycle runs, the removed cards within it are counted like any
+ * other card.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class CompactingCardReader implements CardReader {
+
+    /**
+     * The logger for this class.
+     */
+    private static final transient Logger LOG = LoggerFactory
+            .getLogger(CompactingCardReader.class);
+
+    /**
+     * Returns whether reading the specified card has no effect on the Engine.
+     * 
+     * @param card
+     *            A card.
+     * @return Whether the card can be removed from the card chain.
+     */
+    private static boolean isNoOp(final Card card) {
+        CardType type = card.type();
+        return type == CardType.COMMENT || type == CardType.TRACEON
+                || type == CardType.TRACEOFF;
+    }
+
+    /** The sequence of cards as mounted, including the removed cards. */
+    private List<Card> cardChain = new ArrayList<Card>();
+
+    /** The cards that have not been removed, in order. */
+    private Card[] compacted = new Card[0];
+
+    /**
+     * For each index in the card chain as mounted, the index in
+     * {@link #compacted} of the last card at or before it that has not been
+     * removed, or -1 if there is none.
+     */
+    private int[] compactedIndex = new int[0];
+
+    /** The index in {@link #compacted} of the most recently read card. */
+    private int currentCard = -1;
+
+    /** The number of times the card chain has been changed. */
+    private long mounts = 0;
+
+    /**
+     * For each card in {@link #compacted}, its index in the card chain as
+     * mounted.
+     */
+    private int[] sourceIndex = new int[0];
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param n
+     *            {@inheritDoc}
+     * @throws IndexOutOfBoundsException
+     *             {@inheritDoc}
+     */
+    @Override
+    public void advance(final int n) {
+        int target = this.position() + n;
+        if (target >= this.cardChain.size()) {
+            throw new IndexOutOfBoundsException("No more cards to read.");
+        }
+        this.moveTo(target);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @return {@inheritDoc}
+     */
+    @Override
+    public List<Card> cards() {
+        return Collections.unmodifiableList(this.cardChain);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param cardChain
+     *            {@inheritDoc}
+     */
+    @Override
+    public void mountCards(final List<Card> cardChain) {
+        LOG.debug("Mounting card chain {}", cardChain);
+        int position = this.position();
+        this.cardChain = new ArrayList<Card>(cardChain);
+        List<Card> remaining = new ArrayList<Card>();
+        List<Integer> sources = new ArrayList<Integer>();
+        this.compactedIndex = new int[this.cardChain.size()];
+        for (int i = 0; i < this.compactedIndex.length; i++) {
+            Card card = this.cardChain.get(i);
+            if (!isNoOp(card)) {
+                remaining.add(card);
+                sources.add(i);
+            }
+            this.compactedIndex[i] = remaining.size() - 1;
+        }
+        this.compacted = remaining.toArray(new Card[remaining.size()]);
+        this.sourceIndex = new int[sources.size()];
+        for (int i = 0; i < this.sourceIndex.length; i++) {
+            this.sourceIndex[i] = sources.get(i);
+        }
+        LOG.debug("Removed {} of {} cards", this.cardChain.size()
+                - this.compacted.length, this.cardChain.size());
+        this.moveTo(Math.min(position, this.cardChain.size() - 1));
+        this.mounts++;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @return {@inheritDoc}
+     */
+    @Override
+    public long mounts() {
+        return this.mounts;
+    }
+
+    /**
+     * Positions this reader so that the next card read is the first card
+     * after the specified index in the card chain as mounted.
+     * 
+     * @param index
+     *            The index of a card in the card chain, or -1 to position
+     *            this reader at the beginning.
+     * @throws IndexOutOfBoundsException
+     *             if the index is less than -1.
+     */
+    private void moveTo(final int index) {
+        if (index < -1) {
+            throw new IndexOutOfBoundsException(
+                    "Cannot reverse beyond beginning.");
+        }
+        if (index == -1) {
+            this.currentCard = -1;
+        } else {
+            this.currentCard = this.compactedIndex[index];
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * This is the index in the card chain as mounted of the most recently
+     * read card, or of the last card before the position to which the reader
+     * was most recently advanced or reversed that has not been removed.
+     * 
+     * @return {@inheritDoc}
+     */
+    @Override
+    public int position() {
+        if (this.currentCard < 0) {
+            return -1;
+        }
+        return this.sourceIndex[this.currentCard];
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @return {@inheritDoc}
+     * @throws Halt
+     *             {@inheritDoc}
+     */
+    @Override
+    public Card readAndAdvance() throws Halt {
+        if (this.currentCard + 1 == this.compacted.length) {
+            throw Halt.END_OF_CHAIN;
+        }
+        this.currentCard += 1;
+        return this.compacted[this.currentCard];
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param n
+     *            {@inheritDoc}
+     * @throws IndexOutOfBoundsException
+     *             {@inheritDoc}
+     */
+    @Override
+    public void reverse(final int n) {
+        this.moveTo(this.position() - n);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void unmountCards() {
+        this.mountCards(Collections.<Card> emptyList());
+        this.currentCard = -1;
+    }
+}
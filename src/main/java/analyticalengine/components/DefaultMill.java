@@ -23,18 +23,20 @@ package analyticalengine.components;
 import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import analyticalengine.metrics.Metrics;
+
 /**
  * Basic implementation of a mill, the arithmetic logic unit of the Analytical
  * Engine.
  * 
- * The {@link #MAX} and {@link #MIN} bounds for integers in this mill should
- * agree with the {@link analyticalengine.components.HashMapStore#MAX_VALUE} and
- * {@link analyticalengine.components.HashMapStore#MIN_VALUE} fields of
- * {@link analyticalengine.components.HashMapStore}.
+ * The width of the axes of this mill is specified by an {@link EngineConfig},
+ * which should be the same configuration used to create the store of the
+ * Engine.
  * 
  * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
  * @since 0.0.1
@@ -46,22 +48,61 @@ public class DefaultMill implements Mill {
             .getLogger(DefaultMill.class);
 
     /**
-     * The width (number of digits) of an integer on which this mill can
-     * operate.
+     * The width (number of digits) of an integer on which a mill with the
+     * default configuration can operate.
      */
-    public static final int WIDTH = 50;
+    public static final int WIDTH = EngineConfig.DEFAULT_WIDTH;
 
     /**
-     * One more than the maximum value of an integer that can be stored in
-     * mill's axes.
+     * The maximum value of an integer that can be stored in the axes of a
+     * mill with the default configuration.
      */
-    private static final BigInteger MAXPLUSONE = BigInteger.TEN.pow(WIDTH);
+    public static final BigInteger MAX = EngineConfig.DEFAULT.maxValue();
+
+    /**
+     * The minimum value of an integer that can be stored in the axes of a
+     * mill with the default configuration.
+     */
+    public static final BigInteger MIN = MAX.negate();
+
+    /**
+     * Integers whose bit length is strictly less than this number can be
+     * divided using {@code long} arithmetic without overflow.
+     */
+    private static final int LONG_BITS = Long.SIZE - 1;
 
     /** The maximum value of an integer that can be stored in mill's axes. */
-    public static final BigInteger MAX = MAXPLUSONE.subtract(BigInteger.ONE);
+    private final BigInteger max;
+
+    /**
+     * One more than the maximum value of an integer that can be stored in
+     * mill's axes.
+     */
+    private final BigInteger maxPlusOne;
 
     /** The minimum value of an integer that can be stored in mill's axes. */
-    public static final BigInteger MIN = MAX.negate();
+    private final BigInteger min;
+
+    /**
+     * Powers of ten by which the axes may be shifted, indexed by exponent.
+     * 
+     * Shifts are bounded by the width of the double-width axes, so every
+     * shift factor is computed once here instead of on each shift.
+     */
+    private final BigInteger[] powersOfTen;
+
+    /**
+     * Integers whose bit length is strictly less than this number are known
+     * to fit in a single axis without comparing them to {@link #max}.
+     * 
+     * Since {@link #maxPlusOne} is not a power of two, any integer {@code x}
+     * with {@code x.bitLength() < maxPlusOne.bitLength() - 1} satisfies
+     * {@code |x| < maxPlusOne}.
+     */
+    private final int singleWidthBits;
+
+    /** The width (number of digits) of each axis. */
+    private final int width;
 
     /**
      * The index of the next axis to which a number will be loaded, either
@@ -103,6 +144,12 @@ public class DefaultMill implements Mill {
      */
     private BigInteger mostRecentValue = null;
 
+    /**
+     * The number of completed operations of each kind, indexed by ordinal,
+     * or {@code null} if metrics are not recorded.
+     */
+    private LongAdder[] operations = null;
+
     /**
      * Indicates either an overflow or a change of sign that occurred while
      * computing the result of an arithmetic operation.
@@ -112,6 +159,110 @@ public class DefaultMill implements Mill {
      */
     private boolean runUp;
 
+    /**
+     * The number of times the run up lever has been set, or {@code null} if
+     * metrics are not recorded.
+     */
+    private LongAdder runUps = null;
+
+    /** Creates a new mill with the default configuration. */
+    public DefaultMill() {
+        this(EngineConfig.DEFAULT);
+    }
+
+    /**
+     * Creates a new mill whose axes have the width specified by the
+     * configuration.
+     * 
+     * @param config
+     *            The configuration of the Engine.
+     */
+    public DefaultMill(final EngineConfig config) {
+        this.width = config.width();
+        this.max = config.maxValue();
+        this.min = config.minValue();
+        this.maxPlusOne = this.max.add(BigInteger.ONE);
+        this.singleWidthBits = this.maxPlusOne.bitLength() - 1;
+        this.powersOfTen = new BigInteger[2 * this.width + 1];
+        this.powersOfTen[0] = BigInteger.ONE;
+        for (int i = 1; i < this.powersOfTen.length; i++) {
+            this.powersOfTen[i] = this.powersOfTen[i - 1]
+                    .multiply(BigInteger.TEN);
+        }
+    }
+
+    /**
+     * Divides the (possibly double-width) dividend in the first main ingress
+     * axis and the prime ingress axis by the divisor in the second main
+     * ingress axis, placing the remainder in the main egress axis and the
+     * quotient in the prime egress axis.
+     * 
+     * If the divisor is zero or the quotient does not fit in a single axis,
+     * both egress axes are cleared and the run up lever is set.
+     * 
+     * A single-width dividend never overflows, so it is divided directly (in
+     * {@code long} arithmetic if both operands are small enough). For a
+     * double-width dividend, comparing the high-order digits to the divisor
+     * decides overflow without dividing in all but one case: if
+     * {@code |high| < |divisor|} the quotient fits, and if
+     * {@code |high| > |divisor|} it does not.
+     */
+    private void divide() {
+        BigInteger low = this.ingressAxes[0];
+        BigInteger divisor = this.ingressAxes[1];
+        BigInteger high = this.ingressAxes[2];
+
+        // check for division by zero
+        if (divisor.signum() == 0) {
+            LOG.warn("Division by zero detected.");
+            this.overflow();
+            return;
+        }
+
+        if (high.signum() == 0) {
+            if (low.bitLength() < LONG_BITS
+                    && divisor.bitLength() < LONG_BITS) {
+                long n = low.longValue();
+                long d = divisor.longValue();
+                this.egressAxes[0] = BigInteger.valueOf(n % d);
+                this.egressAxes[1] = BigInteger.valueOf(n / d);
+            } else {
+                BigInteger[] qr = low.divideAndRemainder(divisor);
+                this.egressAxes[0] = qr[1];
+                this.egressAxes[1] = qr[0];
+            }
+            LOG.debug("Remainder and quotient: {}",
+                    Arrays.toString(this.egressAxes));
+            return;
+        }
+
+        int comparison = high.abs().compareTo(divisor.abs());
+        if (comparison > 0) {
+            LOG.debug("Overflow detected.");
+            this.overflow();
+            return;
+        }
+
+        // add the high-order digits to the dividend
+        BigInteger dividend = this.join(low, high);
+        LOG.debug("Computed dividend: {}", dividend);
+
+        // compute the quotient and the remainder
+        BigInteger[] qr = dividend.divideAndRemainder(divisor);
+
+        // overflow if the quotient is more than maximum number of digits
+        if (comparison == 0 && qr[0].abs().compareTo(this.max) > 0) {
+            LOG.debug("Overflow detected.");
+            this.overflow();
+            return;
+        }
+
+        this.egressAxes[0] = qr[1];
+        this.egressAxes[1] = qr[0];
+        LOG.debug("Remainder and quotient: {}",
+                Arrays.toString(this.egressAxes));
+    }
+
     /**
      * Executes the arithmetic operation specified by the value of
      * {@link #currentOperation} and stores the result in the egress axes.
@@ -126,20 +277,23 @@ public class DefaultMill implements Mill {
      * flag will be set to {@code true}.
      */
     private void execute() {
-        LOG.debug("Executing operation: " + this.currentOperation);
-        LOG.debug("Ingress axes: " + Arrays.toString(this.ingressAxes));
+        LOG.debug("Executing operation: {}", this.currentOperation);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Ingress axes: {}", Arrays.toString(this.ingressAxes));
+        }
         this.runUp = false;
         this.currentAxis = 0;
         BigInteger result = null;
         switch (this.currentOperation) {
         case ADD:
             result = this.ingressAxes[0].add(this.ingressAxes[1]);
-            LOG.debug("Adding " + this.ingressAxes[0] + " to "
-                    + this.ingressAxes[1]);
+            LOG.debug("Adding {} to {}", this.ingressAxes[0],
+                    this.ingressAxes[1]);
             /*
-             * If the sum is greater than MAX, compensate for the overflow by
-             * subtracting MAX from the sum (essentially computing the sum
-             * modulo MAX) and setting the run up (overflow) flag.
+             * If the sum is greater than the maximum, compensate for the
+             * overflow by subtracting one more than the maximum from the sum
+             * (essentially computing the sum modulo the maximum) and setting
+             * the run up (overflow) flag.
              * 
              * If the first addend is nonnegative but the sum is negative, set
              * the run up (overflow) flag.
@@ -148,10 +302,10 @@ public class DefaultMill implements Mill {
              * sign, and it is not possible to distinguish which has happened
              * without knowing the addends.
              */
-            if (result.compareTo(MAXPLUSONE) >= 0) {
+            if (result.compareTo(this.maxPlusOne) >= 0) {
                 LOG.debug("Run up lever set: compensating for overflow.");
                 this.runUp = true;
-                result = result.subtract(MAXPLUSONE);
+                result = result.subtract(this.maxPlusOne);
             } else if (this.ingressAxes[0].signum() >= 0
                     && result.signum() < 0) {
                 LOG.debug("Run up lever set: change of sign.");
@@ -159,59 +313,19 @@ public class DefaultMill implements Mill {
             }
             this.egressAxes[0] = result;
             this.egressAxes[1] = BigInteger.ZERO;
-            LOG.debug("Sum: " + this.egressAxes[0]);
+            LOG.debug("Sum: {}", this.egressAxes[0]);
             break;
         case DIVIDE:
-            BigInteger dividend = this.ingressAxes[0];
-
-            // check for division by zero
-            if (this.ingressAxes[1].signum() == 0) {
-                LOG.warn("Division by zero detected.");
-                this.egressAxes[0] = BigInteger.ZERO;
-                this.egressAxes[1] = BigInteger.ZERO;
-                this.runUp = true;
-                break;
-            }
-
-            // add the high-order digits to the dividend
-            if (this.ingressAxes[2].signum() != 0) {
-                dividend = dividend.add(this.ingressAxes[2]
-                        .multiply(MAXPLUSONE));
-            }
-            LOG.debug("Computed dividend: " + dividend);
-
-            // compute the quotient and the remainder
-            BigInteger[] quotientRemainder = dividend
-                    .divideAndRemainder(this.ingressAxes[1]);
-
-            // overflow if the quotient is more than maximum number of digits
-            if (quotientRemainder[0].abs().compareTo(MAX) > 0) {
-                LOG.debug("Overflow detected.");
-                this.egressAxes[0] = BigInteger.ZERO;
-                this.egressAxes[1] = BigInteger.ZERO;
-                this.runUp = true;
-                break;
-            }
-
-            this.egressAxes[0] = quotientRemainder[1];
-            this.egressAxes[1] = quotientRemainder[0];
-            LOG.debug("Remainder and quotient: "
-                    + Arrays.toString(this.egressAxes));
+            this.divide();
             break;
         case MULTIPLY:
-            result = this.ingressAxes[0].multiply(this.ingressAxes[1]);
             /*
-             * Check for product longer than one column and set the primed
-             * egress axis to the upper part.
+             * Place the low-order digits of the product in the main egress
+             * axis and any digits longer than one column in the primed egress
+             * axis.
              */
-            if (result.abs().compareTo(MAX) > 0) {
-                BigInteger[] qr = result.divideAndRemainder(MAXPLUSONE);
-                this.egressAxes[0] = qr[1];
-                this.egressAxes[1] = qr[0];
-            } else {
-                this.egressAxes[0] = result;
-                this.egressAxes[1] = BigInteger.ZERO;
-            }
+            result = this.ingressAxes[0].multiply(this.ingressAxes[1]);
+            this.split(result, this.egressAxes, 0, 1);
             break;
         case SUBTRACT:
             result = this.ingressAxes[0].subtract(this.ingressAxes[1]);
@@ -219,9 +333,9 @@ public class DefaultMill implements Mill {
              * Check for passage through negative infinity (borrow) and set run
              * up and trim value as a result.
              */
-            if (result.compareTo(MIN) < 0) {
+            if (result.compareTo(this.min) < 0) {
                 this.runUp = true;
-                result = result.add(MAXPLUSONE).negate();
+                result = result.add(this.maxPlusOne).negate();
             } else if (this.ingressAxes[0].signum() >= 0
                     && result.signum() < 0) {
                 /*
@@ -239,6 +353,12 @@ public class DefaultMill implements Mill {
             break;
         }
         this.mostRecentValue = this.egressAxes[0];
+        if (this.operations != null) {
+            this.operations[this.currentOperation.ordinal()].increment();
+            if (this.runUp) {
+                this.runUps.increment();
+            }
+        }
     }
 
     /**
@@ -251,6 +371,23 @@ public class DefaultMill implements Mill {
         return this.runUp;
     }
 
+    /**
+     * Combines the low-order and high-order halves of a double-width value
+     * held in two axes into a single integer.
+     * 
+     * @param low
+     *            The low-order digits of the value.
+     * @param high
+     *            The high-order digits of the value.
+     * @return The integer {@code high * maxPlusOne + low}.
+     */
+    private BigInteger join(final BigInteger low, final BigInteger high) {
+        if (high.signum() == 0) {
+            return low;
+        }
+        return high.multiply(this.maxPlusOne).add(low);
+    }
+
     /**
      * {@inheritDoc}
      * 
@@ -262,7 +399,7 @@ public class DefaultMill implements Mill {
     @Override
     public void leftShift(final int shift) {
         LOG.debug("Performing left shift by {}", shift);
-        if (shift < 0 || shift > 2 * WIDTH) {
+        if (shift < 0 || shift > 2 * this.width) {
             throw new IllegalArgumentException("Shift is out of bounds: "
                     + shift);
         }
@@ -270,25 +407,14 @@ public class DefaultMill implements Mill {
          * A left shift is performed before a fixed point division, so the two
          * ingress axes containing the dividend are shifted.
          */
-        BigInteger value = this.ingressAxes[0];
-        if (this.ingressAxes[2].signum() != 0) {
-            value = value.add(this.ingressAxes[2].multiply(MAXPLUSONE));
-        }
+        BigInteger value = this.join(this.ingressAxes[0], this.ingressAxes[2]);
         LOG.debug("Value to shift: {}", value);
 
-        BigInteger sf = BigInteger.TEN.pow(shift);
-        BigInteger pr = value.multiply(sf);
+        BigInteger pr = value.multiply(this.powersOfTen[shift]);
 
         LOG.debug("Shifted to: {}", pr);
 
-        if (pr.compareTo(MAX) == 0) {
-            this.ingressAxes[0] = pr;
-            this.ingressAxes[2] = BigInteger.ZERO;
-        } else {
-            BigInteger[] pq = pr.divideAndRemainder(MAXPLUSONE);
-            this.ingressAxes[0] = pq[1];
-            this.ingressAxes[2] = pq[0];
-        }
+        this.split(pr, this.ingressAxes, 0, 2);
         LOG.debug("Set new ingress axes: {}",
                 Arrays.toString(this.ingressAxes));
         this.mostRecentValue = this.ingressAxes[0];
@@ -304,6 +430,16 @@ public class DefaultMill implements Mill {
         return Optional.ofNullable(this.mostRecentValue);
     }
 
+    /**
+     * Clears both egress axes and sets the run up lever, as happens when a
+     * division cannot produce a result that fits in the egress axes.
+     */
+    private void overflow() {
+        this.egressAxes[0] = BigInteger.ZERO;
+        this.egressAxes[1] = BigInteger.ZERO;
+        this.runUp = true;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -316,6 +452,26 @@ public class DefaultMill implements Mill {
         this.runUp = false;
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * This is also used by {@link LongMill} to continue a computation in
+     * arbitrary precision from the point at which its own axes became too
+     * narrow.
+     * 
+     * @param state
+     *            {@inheritDoc}
+     */
+    @Override
+    public void restore(final MillState state) {
+        this.currentOperation = state.operation();
+        this.currentAxis = state.axis();
+        this.ingressAxes = state.ingress();
+        this.egressAxes = state.egress();
+        this.runUp = state.runUp();
+        this.mostRecentValue = state.recent();
+    }
+
     /**
      * {@inheritDoc}
      * 
@@ -327,7 +483,7 @@ public class DefaultMill implements Mill {
     @Override
     public void rightShift(final int shift) {
         LOG.debug("Performing right shift by {}", shift);
-        if (shift < 0 || shift > 2 * WIDTH) {
+        if (shift < 0 || shift > 2 * this.width) {
             throw new IllegalArgumentException("Shift is out of bounds: "
                     + shift);
         }
@@ -335,24 +491,31 @@ public class DefaultMill implements Mill {
          * A right shift is used to normalise after a fixed point
          * multiplication, so the egress axes are used.
          */
-        BigInteger value = this.egressAxes[0];
-        if (this.egressAxes[1].signum() != 0) {
-            value = value.add(this.egressAxes[1].multiply(MAXPLUSONE));
+        BigInteger value = this.join(this.egressAxes[0], this.egressAxes[1]);
+        if (shift > 0) {
+            value = value.divide(this.powersOfTen[shift]);
         }
+        this.split(value, this.egressAxes, 0, 1);
 
-        BigInteger shiftFactor = BigInteger.TEN.pow(shift);
-        BigInteger[] qr = value.divideAndRemainder(shiftFactor);
+        this.mostRecentValue = this.egressAxes[0];
+    }
 
-        if (qr[0].compareTo(MAX) == 0) {
-            this.egressAxes[0] = qr[0];
-            this.egressAxes[1] = BigInteger.ZERO;
+    /**
+     * {@inheritDoc}
+     * 
+     * @param metrics
+     *            {@inheritDoc}
+     */
+    @Override
+    public void setMetrics(final Metrics metrics) {
+        if (metrics == null) {
+            this.operations = null;
+            this.runUps = null;
         } else {
-            qr = qr[0].divideAndRemainder(MAXPLUSONE);
-            this.egressAxes[0] = qr[1];
-            this.egressAxes[1] = qr[0];
+            this.operations = metrics.counters(Metrics.MILL_OPERATIONS,
+                    "operation", Operation.values());
+            this.runUps = metrics.counter(Metrics.RUN_UPS);
         }
-
-        this.mostRecentValue = this.egressAxes[0];
     }
 
     /**
@@ -367,6 +530,48 @@ public class DefaultMill implements Mill {
         this.currentAxis = 0;
     }
 
+    /**
+     * Splits a double-width value into its low-order and high-order halves
+     * and places them in the specified axes.
+     * 
+     * The halves are the remainder and quotient, respectively, of dividing
+     * {@code value} by {@link #maxPlusOne}, so they both carry the sign of
+     * {@code value}. Values that are known to fit in one axis are not
+     * divided at all.
+     * 
+     * @param value
+     *            The double-width value to split.
+     * @param axes
+     *            The axes in which to place the halves.
+     * @param low
+     *            The index of the axis which receives the low-order digits.
+     * @param high
+     *            The index of the axis which receives the high-order digits.
+     */
+    private void split(final BigInteger value, final BigInteger[] axes,
+            final int low, final int high) {
+        if (value.bitLength() < this.singleWidthBits) {
+            axes[low] = value;
+            axes[high] = BigInteger.ZERO;
+            return;
+        }
+        BigInteger[] qr = value.divideAndRemainder(this.maxPlusOne);
+        axes[low] = qr[1];
+        axes[high] = qr[0];
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @return {@inheritDoc}
+     */
+    @Override
+    public MillState state() {
+        return new MillState(this.currentOperation, this.currentAxis,
+                this.ingressAxes, this.egressAxes, this.runUp,
+                this.mostRecentValue);
+    }
+
     /**
      * {@inheritDoc}
      * 
@@ -392,10 +597,10 @@ public class DefaultMill implements Mill {
      */
     @Override
     public void transferIn(final BigInteger value, final boolean prime) {
-        if (value.compareTo(MAX) > 0) {
+        if (value.compareTo(this.max) > 0) {
             throw new IllegalArgumentException("Value too large to load: "
                     + value);
-        } else if (value.compareTo(MIN) < 0) {
+        } else if (value.compareTo(this.min) < 0) {
             throw new IllegalArgumentException("Value too small to load: "
                     + value);
         }
@@ -0,0 +1,95 @@
+/**
+ * DirtyTrackingStore.java - a store that records which columns were written
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.components;
+
+import java.math.BigInteger;
+
+/**
+ * A store that records which of its columns have been written.
+ * 
+ * A column is <em>dirty</em> if a value has been stored in it since the store
+ * was last reset or since {@link #clearDirty()} was last invoked, whichever
+ * is later. Dirty columns can be used to take incremental checkpoints of the
+ * store, or to show which columns a program has changed.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public interface DirtyTrackingStore extends Store {
+
+    /**
+     * Marks every column of the store as clean, without changing any of the
+     * values in the store.
+     */
+    void clearDirty();
+
+    /**
+     * Stores each of the specified values in the column at the corresponding
+     * address.
+     * 
+     * This is equivalent to invoking {@link #put(int, BigInteger)} once for
+     * each address, so the columns become dirty.
+     * 
+     * @param addresses
+     *            The columns in which to store the values.
+     * @param values
+     *            The values to store; must have the same length as
+     *            {@code addresses}.
+     * @throws IllegalArgumentException
+     *             if the arrays have different lengths.
+     * @throws IndexOutOfBoundsException
+     *             if one of the addresses is negative or too large for the
+     *             store.
+     */
+    void loadAll(int[] addresses, BigInteger[] values);
+
+    /**
+     * Returns the address of the first dirty column whose address is greater
+     * than or equal to the specified address.
+     * 
+     * To iterate over the dirty columns, use a loop like the following.
+     * 
+     * <pre>
+     * for (int i = store.nextDirty(0); i &gt;= 0; i = store.nextDirty(i + 1)) {
+     *     // operate on column i here
+     * }
+     * </pre>
+     * 
+     * @param fromAddress
+     *            The address at which to start looking.
+     * @return The address of the next dirty column, or -1 if there is no such
+     *         column.
+     */
+    int nextDirty(int fromAddress);
+
+    /**
+     * Returns the values stored in the columns at the specified addresses.
+     * 
+     * @param addresses
+     *            The columns whose values to return.
+     * @return An array containing the value of each column, in the same order
+     *         as {@code addresses}.
+     * @throws IndexOutOfBoundsException
+     *             if one of the addresses is negative or too large for the
+     *             store.
+     */
+    BigInteger[] snapshot(int[] addresses);
+}
@@ -0,0 +1,176 @@
+/**
+ * EngineConfig.java - the dimensions of the store and mill of an Engine
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.components;
+
+import java.math.BigInteger;
+
+/**
+ * The dimensions of the store and the mill of an Analytical Engine: the
+ * number of columns in the store, and the number of digits in each column
+ * and each axis of the mill.
+ * 
+ * The mill and the store of an Engine must be created with the same
+ * configuration, so that every value the mill produces fits in the store and
+ * vice versa. The {@link #newMill()} and {@link #newStore()} methods create
+ * components that agree with this configuration.
+ * 
+ * Instances of this class are immutable.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public final class EngineConfig {
+
+    /** The number of columns in the store of Babbage's design. */
+    public static final int DEFAULT_COLUMNS = 1001;
+
+    /** The number of digits in each column of Babbage's design. */
+    public static final int DEFAULT_WIDTH = 50;
+
+    /**
+     * The largest number of columns for which {@link #newStore()} allocates
+     * every column up front.
+     */
+    public static final int PAGED_COLUMNS = 1 << 16;
+
+    /** The configuration of the Engine as Babbage designed it. */
+    public static final EngineConfig DEFAULT = new EngineConfig(
+            DEFAULT_COLUMNS, DEFAULT_WIDTH);
+
+    /** The number of columns in the store. */
+    private final int columns;
+
+    /** The largest value that fits in a column or an axis. */
+    private final BigInteger maxValue;
+
+    /** The number of digits in each column and each axis. */
+    private final int width;
+
+    /**
+     * Creates a new configuration with the specified dimensions.
+     * 
+     * @param columns
+     *            The number of columns in the store; must be positive.
+     * @param width
+     *            The number of digits in each column and each axis; must be
+     *            positive.
+     * @throws IllegalArgumentException
+     *             if either argument is not positive.
+     */
+    public EngineConfig(final int columns, final int width) {
+        if (columns <= 0) {
+            throw new IllegalArgumentException(
+                    "Number of columns must be positive: " + columns);
+        }
+        if (width <= 0) {
+            throw new IllegalArgumentException(
+                    "Width must be positive: " + width);
+        }
+        this.columns = columns;
+        this.width = width;
+        this.maxValue = BigInteger.TEN.pow(width).subtract(BigInteger.ONE);
+    }
+
+    /**
+     * Returns the number of columns in the store.
+     * 
+     * @return The number of columns in the store.
+     */
+    public int columns() {
+        return this.columns;
+    }
+
+    /**
+     * Returns the largest address of a column in the store.
+     * 
+     * @return The largest address of a column in the store.
+     */
+    public int maxAddress() {
+        return this.columns - 1;
+    }
+
+    /**
+     * Returns the largest value that fits in a column or an axis.
+     * 
+     * @return The largest value that fits in a column or an axis.
+     */
+    public BigInteger maxValue() {
+        return this.maxValue;
+    }
+
+    /**
+     * Returns the smallest value that fits in a column or an axis.
+     * 
+     * @return The smallest value that fits in a column or an axis.
+     */
+    public BigInteger minValue() {
+        return this.maxValue.negate();
+    }
+
+    /**
+     * Creates a new mill whose axes have the width of this configuration.
+     * 
+     * The mill computes in {@code long} arithmetic until a value becomes too
+     * large, as described in {@link LongMill}.
+     * 
+     * @return A new mill.
+     */
+    public Mill newMill() {
+        return new LongMill(this);
+    }
+
+    /**
+     * Creates a new store with the number of columns and the width of this
+     * configuration.
+     * 
+     * A configuration with more than {@link #PAGED_COLUMNS} columns gets a
+     * {@link PagedStore}, which allocates only the columns that are written;
+     * otherwise, an {@link ArrayStore}.
+     * 
+     * @return A new store.
+     */
+    public Store newStore() {
+        if (this.columns > PAGED_COLUMNS) {
+            return new PagedStore(this);
+        }
+        return new ArrayStore(this);
+    }
+
+    /**
+     * Returns the number of digits in each column and each axis.
+     * 
+     * @return The number of digits in each column and each axis.
+     */
+    public int width() {
+        return this.width;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @return {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "EngineConfig[columns=" + this.columns + ", width="
+                + this.width + "]";
+    }
+}
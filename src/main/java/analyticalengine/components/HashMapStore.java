@@ -21,41 +21,90 @@
 package analyticalengine.components;
 
 import java.math.BigInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import analyticalengine.metrics.Metrics;
 
 /**
  * A memory store for the Analytical Engine backed by a
  * {@link java.util.HashMap}.
  * 
- * The {@link #MAX_VALUE} and {@link #MIN_VALUE} fields of this store should
- * agree with the {@link analyticalengine.components.DefaultMill#MAX} and
- * {@link analyticalengine.components.DefaultMill#MIN} fields of
- * {@link analyticalengine.components.DefaultMill}.
+ * The number of columns and the width of each column are specified by an
+ * {@link EngineConfig}, which should be the same configuration used to
+ * create the mill of the Engine. The {@link #MAX_ADDRESS},
+ * {@link #MAX_VALUE}, and {@link #MIN_VALUE} fields give the bounds of a
+ * store with the default configuration.
  * 
  * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
  * @since 0.0.1
  */
 public class HashMapStore implements Store {
 
-    /** The maximum number of cells in the store. */
-    public static final int MAX_ADDRESS = 1000;
+    /** The largest address in a store with the default configuration. */
+    public static final int MAX_ADDRESS = EngineConfig.DEFAULT.maxAddress();
 
-    /** The width (number of digits) of an integer that can be stored. */
-    public static final int WIDTH = 50;
+    /**
+     * The width (number of digits) of an integer that can be stored in a
+     * store with the default configuration.
+     */
+    public static final int WIDTH = EngineConfig.DEFAULT_WIDTH;
+
+    /**
+     * The maximum value of an integer that can be stored in a store with the
+     * default configuration.
+     */
+    public static final BigInteger MAX_VALUE = EngineConfig.DEFAULT
+            .maxValue();
+
+    /**
+     * The minimum value of an integer that can be stored in a store with the
+     * default configuration.
+     */
+    public static final BigInteger MIN_VALUE = MAX_VALUE.negate();
+
+    /** The largest address in this store. */
+    private final int maxAddress;
 
     /** The maximum value of an integer that can be stored. */
-    public static final BigInteger MAX_VALUE = BigInteger.TEN.pow(WIDTH)
-            .subtract(BigInteger.ONE);
+    private final BigInteger maxValue;
 
     /** The minimum value of an integer that can be stored. */
-    public static final BigInteger MIN_VALUE = MAX_VALUE.negate();
+    private final BigInteger minValue;
+
+    /**
+     * The number of values read from this store, or {@code null} if metrics
+     * are not recorded.
+     */
+    private LongAdder reads = null;
 
     /** The hash map that provides the addressable, random-access storage. */
     private final DefaultHashMap<Integer, BigInteger> rack = new DefaultHashMap<Integer, BigInteger>();
 
     /**
-     * Instantiates this object and initializes the underlying hash map.
+     * The number of values written to this store, or {@code null} if metrics
+     * are not recorded.
+     */
+    private LongAdder writes = null;
+
+    /**
+     * Instantiates this object with the default configuration and
+     * initializes the underlying hash map.
      */
     public HashMapStore() {
+        this(EngineConfig.DEFAULT);
+    }
+
+    /**
+     * Instantiates this object with the specified configuration and
+     * initializes the underlying hash map.
+     * 
+     * @param config
+     *            The configuration of the Engine.
+     */
+    public HashMapStore(final EngineConfig config) {
+        this.maxAddress = config.maxAddress();
+        this.maxValue = config.maxValue();
+        this.minValue = config.minValue();
         this.rack.setValueGenerator(k -> BigInteger.ZERO);
     }
 
@@ -71,15 +120,20 @@ public class HashMapStore implements Store {
      */
     @Override
     public void put(final int address, final BigInteger value) {
-        if (address < 0 || address > MAX_ADDRESS) {
+        if (address < 0 || address > this.maxAddress) {
             throw new IndexOutOfBoundsException("Address " + address
-                    + " must be between " + 0 + " and " + MAX_ADDRESS);
+                    + " must be between " + 0 + " and " + this.maxAddress);
         }
-        if (value.compareTo(MIN_VALUE) < 0 || value.compareTo(MAX_VALUE) > 0) {
+        if (value.compareTo(this.minValue) < 0
+                || value.compareTo(this.maxValue) > 0) {
             throw new IllegalArgumentException("Value " + value
-                    + " must be between " + MIN_VALUE + " and " + MAX_VALUE);
+                    + " must be between " + this.minValue + " and "
+                    + this.maxValue);
         }
         this.rack.put(address, value);
+        if (this.writes != null) {
+            this.writes.increment();
+        }
     }
 
     /**
@@ -93,9 +147,12 @@ public class HashMapStore implements Store {
      */
     @Override
     public BigInteger get(final int address) {
-        if (address < 0 || address > MAX_ADDRESS) {
+        if (address < 0 || address > this.maxAddress) {
             throw new IndexOutOfBoundsException("Bad address: " + address);
         }
+        if (this.reads != null) {
+            this.reads.increment();
+        }
         return this.rack.get(address);
     }
 
@@ -107,4 +164,21 @@ public class HashMapStore implements Store {
         this.rack.clear();
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * @param metrics
+     *            {@inheritDoc}
+     */
+    @Override
+    public void setMetrics(final Metrics metrics) {
+        if (metrics == null) {
+            this.reads = null;
+            this.writes = null;
+        } else {
+            this.reads = metrics.counter(Metrics.STORE_READS);
+            this.writes = metrics.counter(Metrics.STORE_WRITES);
+        }
+    }
+
 }
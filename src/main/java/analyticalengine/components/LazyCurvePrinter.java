@@ -0,0 +1,126 @@
+/**
+ * LazyCurvePrinter.java - creates a curve printer when it is first used
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.components;
+
+import java.math.BigInteger;
+import java.util.function.Supplier;
+
+/**
+ * A curve printer that creates the curve printer that actually plots the
+ * curve only when the Engine first reads a curve drawing card.
+ * 
+ * Creating a curve printer that displays its plot, like
+ * {@link analyticalengine.gui.JFrameCurvePrinter}, may start a windowing
+ * toolkit, which takes a noticeable amount of time; most programs never plot
+ * a curve, so they need not pay for it.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class LazyCurvePrinter implements CurvePrinter {
+
+    /** The curve printer, or {@code null} if it has not yet been created. */
+    private CurvePrinter delegate = null;
+
+    /** Creates the curve printer when it is first needed. */
+    private final Supplier<? extends CurvePrinter> factory;
+
+    /**
+     * Creates a new curve printer that creates the curve printer returned by
+     * the specified factory when the Engine first reads a curve drawing
+     * card.
+     * 
+     * @param factory
+     *            Creates the curve printer that plots the curve.
+     */
+    public LazyCurvePrinter(final Supplier<? extends CurvePrinter> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Returns the curve printer, creating it if necessary.
+     * 
+     * @return The curve printer.
+     */
+    private CurvePrinter delegate() {
+        if (this.delegate == null) {
+            this.delegate = this.factory.get();
+        }
+        return this.delegate;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void draw() {
+        this.delegate().draw();
+    }
+
+    /**
+     * Returns whether the curve printer that plots the curve has been
+     * created.
+     * 
+     * @return Whether a curve drawing card has been read.
+     */
+    public boolean isCreated() {
+        return this.delegate != null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void move() {
+        this.delegate().move();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * If the curve printer has not yet been created, there is nothing to
+     * reset, so it is not created.
+     */
+    @Override
+    public void reset() {
+        if (this.delegate != null) {
+            this.delegate.reset();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param x
+     *            {@inheritDoc}
+     */
+    @Override
+    public void setX(final BigInteger x) {
+        this.delegate().setX(x);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param y
+     *            {@inheritDoc}
+     */
+    @Override
+    public void setY(final BigInteger y) {
+        this.delegate().setY(y);
+    }
+}
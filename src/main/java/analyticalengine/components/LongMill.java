@@ -0,0 +1,738 @@
+/**
+ * LongMill.java - mill that computes in long arithmetic while it can
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.components;
+
+import java.math.BigInteger;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import analyticalengine.metrics.Metrics;
+
+/**
+ * A mill whose axes are {@code long} integers for as long as the values in
+ * them are small enough, and which otherwise behaves exactly like a
+ * {@link DefaultMill}.
+ * 
+ * Every value loaded into the ingress axes of this mill must satisfy
+ * {@code -2^62 <= value < 2^62}, so that sums and differences never overflow
+ * a {@code long}. Products, double-width dividends, and shifts are computed
+ * with overflow detection. As soon as a value or a result would leave that
+ * range, the entire state of this mill is copied into a {@link DefaultMill},
+ * which repeats the operation in arbitrary precision and handles every
+ * subsequent request. Resetting this mill returns it to {@code long}
+ * arithmetic.
+ * 
+ * If the width of the axes is at most {@value #LONG_WIDTH} digits, every
+ * single-width value fits in the range above, so only products and
+ * double-width values cause this mill to switch to arbitrary precision. For
+ * wider axes, this mill runs in {@code long} arithmetic as long as the
+ * program only uses small numbers.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class LongMill implements Mill {
+
+    /**
+     * Integers whose bit length is strictly less than this number may be
+     * loaded into the {@code long} axes of this mill.
+     */
+    private static final int FAST_BITS = Long.SIZE - 1;
+
+    /** The logger for this class. */
+    private static final transient Logger LOG = LoggerFactory
+            .getLogger(LongMill.class);
+
+    /**
+     * The largest width (number of digits) for which one more than the
+     * largest value of an axis fits in a {@code long}.
+     */
+    static final int LONG_WIDTH = 18;
+
+    /** Powers of ten that fit in a {@code long}, indexed by exponent. */
+    private static final long[] POWERS_OF_TEN = new long[LONG_WIDTH + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * Returns whether the specified value may be loaded into a {@code long}
+     * axis of this mill.
+     * 
+     * @param value
+     *            A value.
+     * @return Whether {@code -2^62 <= value < 2^62}.
+     */
+    private static boolean fits(final long value) {
+        return (value >> (FAST_BITS - 1)) == (value >> (Long.SIZE - 1));
+    }
+
+    /**
+     * Returns the specified value as a {@link BigInteger}, or {@code null} if
+     * the value has not been set.
+     * 
+     * @param value
+     *            A value.
+     * @param set
+     *            Whether the value has been set.
+     * @return The value, or {@code null}.
+     */
+    private static BigInteger valueOf(final long value, final boolean set) {
+        if (set) {
+            return BigInteger.valueOf(value);
+        }
+        return null;
+    }
+
+    /**
+     * The index of the next main ingress axis to which a number will be
+     * loaded.
+     */
+    private int currentAxis = 0;
+
+    /** The operation to apply to the next two numbers loaded into the mill. */
+    private Operation currentOperation = null;
+
+    /**
+     * The main egress axis followed by the prime egress axis, as in
+     * {@link DefaultMill}.
+     */
+    private final long[] egressAxes = new long[2];
+
+    /** Whether the egress axes have been set since the last reset. */
+    private boolean egressSet = false;
+
+    /**
+     * The two main ingress axes followed by the prime ingress axis, as in
+     * {@link DefaultMill}.
+     */
+    private final long[] ingressAxes = new long[3];
+
+    /** Whether each ingress axis has been set since the last reset. */
+    private final boolean[] ingressSet = new boolean[3];
+
+    /**
+     * The largest value of an axis, if the axes are narrow; otherwise
+     * unused.
+     */
+    private final long max;
+
+    /**
+     * One more than the largest value of an axis, if the axes are narrow;
+     * otherwise unused.
+     */
+    private final long maxPlusOne;
+
+    /** The value in the most recently used axis. */
+    private long mostRecentValue = 0;
+
+    /** Whether there is a most recently used axis. */
+    private boolean mostRecentSet = false;
+
+    /**
+     * Whether the axes are at most {@value #LONG_WIDTH} digits wide, so that
+     * overflow of an axis can be detected in {@code long} arithmetic.
+     */
+    private final boolean narrow;
+
+    /**
+     * The number of operations of each kind completed in {@code long}
+     * arithmetic, indexed by ordinal, or {@code null} if metrics are not
+     * recorded.
+     */
+    private LongAdder[] operations = null;
+
+    /**
+     * Whether requests are currently handled by {@link #wide} instead of the
+     * {@code long} axes.
+     */
+    private boolean promoted = false;
+
+    /** Whether the run up lever is set. */
+    private boolean runUp = false;
+
+    /**
+     * The number of times the run up lever has been set in {@code long}
+     * arithmetic, or {@code null} if metrics are not recorded.
+     */
+    private LongAdder runUps = null;
+
+    /** The mill that handles requests after a value becomes too large. */
+    private final DefaultMill wide;
+
+    /** The width (number of digits) of each axis. */
+    private final int width;
+
+    /** Creates a new mill with the default configuration. */
+    public LongMill() {
+        this(EngineConfig.DEFAULT);
+    }
+
+    /**
+     * Creates a new mill whose axes have the width specified by the
+     * configuration.
+     * 
+     * @param config
+     *            The configuration of the Engine.
+     */
+    public LongMill(final EngineConfig config) {
+        this.wide = new DefaultMill(config);
+        this.width = config.width();
+        this.narrow = this.width <= LONG_WIDTH;
+        if (this.narrow) {
+            this.maxPlusOne = POWERS_OF_TEN[this.width];
+            this.max = this.maxPlusOne - 1;
+        } else {
+            this.maxPlusOne = 0;
+            this.max = 0;
+        }
+    }
+
+    /**
+     * Throws an exception if the specified shift is out of bounds.
+     * 
+     * @param shift
+     *            The number of digits by which to shift.
+     * @throws IllegalArgumentException
+     *             if the shift is negative or greater than the width of the
+     *             double-width axes.
+     */
+    private void checkShift(final int shift) {
+        if (shift < 0 || shift > 2 * this.width) {
+            throw new IllegalArgumentException("Shift is out of bounds: "
+                    + shift);
+        }
+    }
+
+    /**
+     * Executes the current operation on the first main ingress axis and the
+     * specified operand, as {@link DefaultMill} does once its second main
+     * ingress axis has been loaded.
+     * 
+     * If the operation cannot be completed in {@code long} arithmetic, this
+     * method returns {@code false} without changing the state of this mill.
+     * 
+     * @param operand
+     *            The value being loaded into the second main ingress axis.
+     * @return Whether the operation was executed.
+     */
+    private boolean execute(final long operand) {
+        if (this.currentOperation == null) {
+            return false;
+        }
+        long first = this.ingressAxes[0];
+        long low = 0;
+        long high = 0;
+        boolean lever = false;
+        switch (this.currentOperation) {
+        case ADD:
+            // cannot overflow, since both addends are less than 2^62
+            low = first + operand;
+            if (this.narrow && low >= this.maxPlusOne) {
+                lever = true;
+                low -= this.maxPlusOne;
+            } else if (first >= 0 && low < 0) {
+                lever = true;
+            }
+            break;
+        case DIVIDE:
+            if (operand == 0) {
+                LOG.warn("Division by zero detected.");
+                lever = true;
+                break;
+            }
+            long dividend = first;
+            long prime = this.ingressAxes[2];
+            // negative if the dividend is single-width
+            int comparison = -1;
+            if (prime != 0) {
+                if (!this.narrow) {
+                    return false;
+                }
+                comparison = Long.compare(Math.abs(prime),
+                        Math.abs(operand));
+                if (comparison > 0) {
+                    lever = true;
+                    break;
+                }
+                try {
+                    dividend = Math.addExact(
+                            Math.multiplyExact(prime, this.maxPlusOne),
+                            first);
+                } catch (ArithmeticException exception) {
+                    return false;
+                }
+                if (dividend == Long.MIN_VALUE) {
+                    return false;
+                }
+            }
+            long quotient = dividend / operand;
+            if (comparison == 0 && this.narrow
+                    && Math.abs(quotient) > this.max) {
+                lever = true;
+                break;
+            }
+            low = dividend % operand;
+            high = quotient;
+            break;
+        case MULTIPLY:
+            long product;
+            try {
+                product = Math.multiplyExact(first, operand);
+            } catch (ArithmeticException exception) {
+                return false;
+            }
+            if (this.narrow) {
+                low = product % this.maxPlusOne;
+                high = product / this.maxPlusOne;
+            } else {
+                low = product;
+            }
+            break;
+        case SUBTRACT:
+            // cannot overflow, since both operands are less than 2^62
+            low = first - operand;
+            if (this.narrow && low < -this.max) {
+                lever = true;
+                low = -(low + this.maxPlusOne);
+            } else if (first >= 0 && low < 0) {
+                lever = true;
+            }
+            break;
+        default:
+            return false;
+        }
+        this.ingressAxes[1] = operand;
+        this.ingressSet[1] = true;
+        this.currentAxis = 0;
+        this.egressAxes[0] = low;
+        this.egressAxes[1] = high;
+        this.egressSet = true;
+        this.runUp = lever;
+        this.mostRecentValue = low;
+        this.mostRecentSet = true;
+        if (this.operations != null) {
+            this.operations[this.currentOperation.ordinal()].increment();
+            if (lever) {
+                this.runUps.increment();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @return {@inheritDoc}
+     */
+    @Override
+    public boolean hasRunUp() {
+        if (this.promoted) {
+            return this.wide.hasRunUp();
+        }
+        return this.runUp;
+    }
+
+    /**
+     * Combines the low-order and high-order halves of a double-width value.
+     * 
+     * @param low
+     *            The low-order digits of the value.
+     * @param high
+     *            The high-order digits of the value.
+     * @return The integer {@code high * maxPlusOne + low}.
+     * @throws ArithmeticException
+     *             if the value does not fit in a {@code long}.
+     */
+    private long join(final long low, final long high) {
+        if (high == 0) {
+            return low;
+        }
+        if (!this.narrow) {
+            throw new ArithmeticException("Double-width value");
+        }
+        return Math.addExact(Math.multiplyExact(high, this.maxPlusOne), low);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param shift
+     *            {@inheritDoc}
+     * @throws IllegalArgumentException
+     *             {@inheritDoc}
+     */
+    @Override
+    public void leftShift(final int shift) {
+        if (this.promoted) {
+            this.wide.leftShift(shift);
+            return;
+        }
+        this.checkShift(shift);
+        if (!this.ingressSet[0] || !this.ingressSet[2]) {
+            this.promote();
+            this.wide.leftShift(shift);
+            return;
+        }
+        long low;
+        long high = 0;
+        try {
+            long value = this.join(this.ingressAxes[0], this.ingressAxes[2]);
+            if (value != 0 && shift > LONG_WIDTH) {
+                throw new ArithmeticException("Shift too large");
+            }
+            if (value != 0) {
+                value = Math.multiplyExact(value, POWERS_OF_TEN[shift]);
+            }
+            if (this.narrow) {
+                low = value % this.maxPlusOne;
+                high = value / this.maxPlusOne;
+            } else if (fits(value)) {
+                low = value;
+            } else {
+                throw new ArithmeticException("Shifted value too large");
+            }
+        } catch (ArithmeticException exception) {
+            this.promote();
+            this.wide.leftShift(shift);
+            return;
+        }
+        this.ingressAxes[0] = low;
+        this.ingressAxes[2] = high;
+        this.mostRecentValue = low;
+        this.mostRecentSet = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Optional<BigInteger> mostRecentValue() {
+        if (this.promoted) {
+            return this.wide.mostRecentValue();
+        }
+        return Optional.ofNullable(valueOf(this.mostRecentValue,
+                this.mostRecentSet));
+    }
+
+    /**
+     * Returns a snapshot of the {@code long} axes of this mill.
+     * 
+     * @return The state of this mill while it is not promoted.
+     */
+    private MillState longState() {
+        BigInteger[] ingress = new BigInteger[this.ingressAxes.length];
+        for (int i = 0; i < ingress.length; i++) {
+            ingress[i] = valueOf(this.ingressAxes[i], this.ingressSet[i]);
+        }
+        BigInteger[] egress = new BigInteger[this.egressAxes.length];
+        for (int i = 0; i < egress.length; i++) {
+            egress[i] = valueOf(this.egressAxes[i], this.egressSet);
+        }
+        return new MillState(this.currentOperation, this.currentAxis, ingress,
+                egress, this.runUp,
+                valueOf(this.mostRecentValue, this.mostRecentSet));
+    }
+
+    /**
+     * Copies the state of this mill into {@link #wide}, which handles every
+     * request from now until this mill is reset.
+     */
+    private void promote() {
+        LOG.debug("Switching to arbitrary precision arithmetic");
+        this.wide.restore(this.longState());
+        this.promoted = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The most recent value survives a reset, as it does in
+     * {@link DefaultMill}, so this mill only returns to {@code long}
+     * arithmetic if that value is small enough.
+     */
+    @Override
+    public void reset() {
+        if (this.promoted) {
+            Optional<BigInteger> recent = this.wide.mostRecentValue();
+            this.wide.reset();
+            if (recent.isPresent() && recent.get().bitLength() >= FAST_BITS) {
+                return;
+            }
+            this.promoted = false;
+            this.mostRecentSet = recent.isPresent();
+            if (this.mostRecentSet) {
+                this.mostRecentValue = recent.get().longValue();
+            }
+        }
+        this.currentOperation = null;
+        this.currentAxis = 0;
+        this.ingressSet[0] = false;
+        this.ingressSet[1] = false;
+        this.ingressSet[2] = false;
+        this.egressSet = false;
+        this.runUp = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * If every value in the specified state may be loaded into a
+     * {@code long} axis, this mill continues in {@code long} arithmetic;
+     * otherwise it continues in arbitrary precision until it is reset.
+     * 
+     * @param state
+     *            {@inheritDoc}
+     */
+    @Override
+    public void restore(final MillState state) {
+        BigInteger[] ingress = state.ingress();
+        BigInteger[] egress = state.egress();
+        BigInteger[] all = new BigInteger[] { ingress[0], ingress[1],
+                ingress[2], egress[0], egress[1], state.recent() };
+        for (BigInteger value : all) {
+            if (value != null && value.bitLength() >= FAST_BITS) {
+                this.wide.restore(state);
+                this.promoted = true;
+                return;
+            }
+        }
+        this.promoted = false;
+        this.currentOperation = state.operation();
+        this.currentAxis = state.axis();
+        for (int i = 0; i < ingress.length; i++) {
+            this.ingressSet[i] = ingress[i] != null;
+            if (this.ingressSet[i]) {
+                this.ingressAxes[i] = ingress[i].longValue();
+            }
+        }
+        this.egressSet = egress[0] != null && egress[1] != null;
+        if (this.egressSet) {
+            this.egressAxes[0] = egress[0].longValue();
+            this.egressAxes[1] = egress[1].longValue();
+        }
+        this.runUp = state.runUp();
+        this.mostRecentSet = state.recent() != null;
+        if (this.mostRecentSet) {
+            this.mostRecentValue = state.recent().longValue();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param shift
+     *            {@inheritDoc}
+     * @throws IllegalArgumentException
+     *             {@inheritDoc}
+     */
+    @Override
+    public void rightShift(final int shift) {
+        if (this.promoted) {
+            this.wide.rightShift(shift);
+            return;
+        }
+        this.checkShift(shift);
+        if (!this.egressSet) {
+            this.promote();
+            this.wide.rightShift(shift);
+            return;
+        }
+        long value;
+        try {
+            value = this.join(this.egressAxes[0], this.egressAxes[1]);
+        } catch (ArithmeticException exception) {
+            this.promote();
+            this.wide.rightShift(shift);
+            return;
+        }
+        if (shift > LONG_WIDTH) {
+            // the magnitude of every long is less than 10^19
+            value = 0;
+        } else {
+            value /= POWERS_OF_TEN[shift];
+        }
+        if (this.narrow) {
+            this.egressAxes[0] = value % this.maxPlusOne;
+            this.egressAxes[1] = value / this.maxPlusOne;
+        } else {
+            this.egressAxes[0] = value;
+            this.egressAxes[1] = 0;
+        }
+        this.mostRecentValue = this.egressAxes[0];
+        this.mostRecentSet = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * Operations completed after this mill has switched to arbitrary
+     * precision arithmetic are recorded by the mill to which it delegates.
+     * 
+     * @param metrics
+     *            {@inheritDoc}
+     */
+    @Override
+    public void setMetrics(final Metrics metrics) {
+        this.wide.setMetrics(metrics);
+        if (metrics == null) {
+            this.operations = null;
+            this.runUps = null;
+        } else {
+            this.operations = metrics.counters(Metrics.MILL_OPERATIONS,
+                    "operation", Operation.values());
+            this.runUps = metrics.counter(Metrics.RUN_UPS);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param operation
+     *            {@inheritDoc}
+     */
+    @Override
+    public void setOperation(final Operation operation) {
+        if (this.promoted) {
+            this.wide.setOperation(operation);
+            return;
+        }
+        this.currentOperation = operation;
+        this.currentAxis = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @return {@inheritDoc}
+     */
+    @Override
+    public MillState state() {
+        if (this.promoted) {
+            return this.wide.state();
+        }
+        return this.longState();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param value
+     *            {@inheritDoc}
+     * @throws IllegalArgumentException
+     *             {@inheritDoc}
+     */
+    @Override
+    public void transferIn(final BigInteger value) {
+        this.transferIn(value, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param value
+     *            {@inheritDoc}
+     * @param prime
+     *            {@inheritDoc}
+     * @throws IllegalArgumentException
+     *             {@inheritDoc}
+     */
+    @Override
+    public void transferIn(final BigInteger value, final boolean prime) {
+        if (this.promoted) {
+            this.wide.transferIn(value, prime);
+            return;
+        }
+        if (value.bitLength() >= FAST_BITS) {
+            this.promote();
+            this.wide.transferIn(value, prime);
+            return;
+        }
+        long v = value.longValue();
+        if (this.narrow && v > this.max) {
+            throw new IllegalArgumentException("Value too large to load: "
+                    + value);
+        } else if (this.narrow && v < -this.max) {
+            throw new IllegalArgumentException("Value too small to load: "
+                    + value);
+        }
+
+        if (prime) {
+            this.ingressAxes[2] = v;
+            this.ingressSet[2] = true;
+        } else if (this.currentAxis == 0) {
+            this.ingressAxes[0] = v;
+            this.ingressAxes[2] = 0;
+            this.ingressSet[0] = true;
+            this.ingressSet[2] = true;
+            this.currentAxis = 1;
+        } else {
+            // the result of the operation becomes the most recent value
+            if (!this.execute(v)) {
+                this.promote();
+                this.wide.transferIn(value, prime);
+            }
+            return;
+        }
+        this.mostRecentValue = v;
+        this.mostRecentSet = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @return {@inheritDoc}
+     */
+    @Override
+    public BigInteger transferOut() {
+        return this.transferOut(false);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param prime
+     *            {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    public BigInteger transferOut(final boolean prime) {
+        if (this.promoted) {
+            return this.wide.transferOut(prime);
+        }
+        int axis = 0;
+        if (prime) {
+            axis = 1;
+        }
+        this.mostRecentValue = this.egressAxes[axis];
+        this.mostRecentSet = this.egressSet;
+        return valueOf(this.egressAxes[axis], this.egressSet);
+    }
+}
@@ -0,0 +1,894 @@
+/**
+ * MappedCardReader.java - card reader backed by a memory-mapped file
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.components;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import analyticalengine.cards.Card;
+import analyticalengine.cards.CardType;
+import analyticalengine.cards.Halt;
+
+/**
+ * A card reader that keeps the card chain in memory-mapped files instead of
+ * on the heap, for card chains too long to fit in memory.
+ * 
+ * Each card is compiled to a fixed-width record in an index file, holding
+ * the type of the card, the number of its arguments, and the offset and
+ * length of the text of its arguments and comment in a separate data file.
+ * The card at any index is found by arithmetic on that index alone, so
+ * advancing, reversing, and reading a card never depend on the length of
+ * the chain. Only a small, fixed number of recently read cards are kept as
+ * objects on the heap.
+ * 
+ * The files are created in a directory of temporary files and deleted as
+ * soon as they have been mapped; the operating system reclaims their space
+ * once the mapping is no longer reachable. The list returned by
+ * {@link #newChain()} writes each card to a new pair of files as it is
+ * added, so a chain built in that list is never held on the heap; mounting
+ * any other list copies it to a new pair of files first. Creating a new chain
+ * unmounts the current one. Several new chains may be built at once, for
+ * example a program read from a file and the chain the attendant prepares
+ * from it; mounting a chain discards every other new chain.
+ * 
+ * The list returned by {@link #cards()} reads cards from the files as well,
+ * but anything that copies it, such as verifying the chain or memoizing
+ * library functions, holds the whole chain on the heap again.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class MappedCardReader implements CardReader {
+
+    /**
+     * A list of cards that writes each card added to it to a new index file
+     * and data file.
+     * 
+     * Records and text are buffered before they are written, and a card
+     * replaced with {@link #set(int, Card)} has its record overwritten in
+     * place and its new text appended. Removing a card shifts every record
+     * after it, which the attendant needs only for malformed programs.
+     * 
+     * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+     * @since 0.0.1
+     */
+    private final class Chain extends AbstractList<Card> implements
+            RandomAccess {
+
+        /** The text of the cards not yet written to the data file. */
+        private final ByteBuffer dataBuffer = ByteBuffer.allocate(BUFFER);
+
+        /** The data file, open for reading and writing. */
+        private final FileChannel dataFile;
+
+        /** The number of bytes written to the data file. */
+        private long dataFlushed = 0;
+
+        /** The number of bytes of text written or buffered. */
+        private long dataSize = 0;
+
+        /** The records of the cards not yet written to the index file. */
+        private final ByteBuffer indexBuffer = ByteBuffer.allocate(BUFFER);
+
+        /** The index file, open for reading and writing. */
+        private final FileChannel indexFile;
+
+        /** The number of records written to the index file. */
+        private int indexFlushed = 0;
+
+        /** Whether this chain has been mounted or discarded. */
+        private boolean closed = false;
+
+        /** The number of cards in this chain. */
+        private int size = 0;
+
+        /**
+         * Creates a new, empty chain stored in a new pair of temporary files
+         * in the directory of this card reader.
+         * 
+         * @throws IOException
+         *             if the files cannot be created.
+         */
+        Chain() throws IOException {
+            MappedCardReader reader = MappedCardReader.this;
+            this.indexFile = open(Files.createTempFile(reader.directory,
+                    "cards", ".index"));
+            this.dataFile = open(Files.createTempFile(reader.directory,
+                    "cards", ".data"));
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @param card
+         *            {@inheritDoc}
+         * @return {@inheritDoc}
+         */
+        @Override
+        public boolean add(final Card card) {
+            this.checkOpen();
+            if (this.size == Integer.MAX_VALUE) {
+                throw new IllegalStateException("Card chain is full");
+            }
+            try {
+                if (this.indexBuffer.remaining() < RECORD) {
+                    this.flushIndex();
+                }
+                this.indexBuffer.put(this.write(card));
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+            this.size += 1;
+            this.modCount += 1;
+            return true;
+        }
+
+        /** Fails if this chain has been mounted or discarded. */
+        private void checkOpen() {
+            if (this.closed) {
+                throw new IllegalStateException(
+                        "Card chain has already been mounted or discarded");
+            }
+        }
+
+        /**
+         * Writes any buffered records and text to the files, maps them, and
+         * closes them, which deletes them.
+         * 
+         * @return The mapped segments of the index file followed by the
+         *         mapped segments of the data file.
+         * @throws IOException
+         *             if there is a problem writing or mapping the files.
+         */
+        MappedByteBuffer[][] close() throws IOException {
+            this.checkOpen();
+            this.closed = true;
+            try {
+                this.flushIndex();
+                this.flushData();
+                return new MappedByteBuffer[][] {
+                        map(this.indexFile, (long) this.size * RECORD),
+                        map(this.dataFile, this.dataSize) };
+            } finally {
+                this.discard();
+            }
+        }
+
+        /** Closes the files without mapping them, which deletes them. */
+        void discard() {
+            this.closed = true;
+            try {
+                this.indexFile.close();
+            } catch (IOException exception) {
+                LOG.warn("Could not close index file", exception);
+            }
+            try {
+                this.dataFile.close();
+            } catch (IOException exception) {
+                LOG.warn("Could not close data file", exception);
+            }
+        }
+
+        /**
+         * Writes the buffered text to the data file.
+         * 
+         * @throws IOException
+         *             if there is a problem writing to the file.
+         */
+        private void flushData() throws IOException {
+            this.dataBuffer.flip();
+            this.dataFlushed += writeFully(this.dataFile, this.dataBuffer,
+                    this.dataFlushed);
+            this.dataBuffer.clear();
+        }
+
+        /**
+         * Writes the buffered records to the index file.
+         * 
+         * @throws IOException
+         *             if there is a problem writing to the file.
+         */
+        private void flushIndex() throws IOException {
+            this.indexBuffer.flip();
+            int records = this.indexBuffer.remaining() / RECORD;
+            writeFully(this.indexFile, this.indexBuffer,
+                    (long) this.indexFlushed * RECORD);
+            this.indexFlushed += records;
+            this.indexBuffer.clear();
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @param index
+         *            {@inheritDoc}
+         * @return {@inheritDoc}
+         */
+        @Override
+        public Card get(final int index) {
+            this.checkOpen();
+            if (index < 0 || index >= this.size) {
+                throw new IndexOutOfBoundsException("Index: " + index
+                        + ", Size: " + this.size);
+            }
+            try {
+                ByteBuffer record = this.record(index);
+                long offset = record.getLong(OFFSET);
+                int length = record.getInt(LENGTH);
+                ByteBuffer text;
+                if (offset >= this.dataFlushed) {
+                    text = this.dataBuffer.duplicate();
+                    text.flip();
+                    text.position((int) (offset - this.dataFlushed));
+                    text.limit(text.position() + length);
+                } else {
+                    text = ByteBuffer.allocate(length);
+                    readFully(this.dataFile, text, offset);
+                    text.flip();
+                }
+                return decode(record, text);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+
+        /**
+         * Returns the record of the card at the specified index.
+         * 
+         * @param index
+         *            The index of a card in this chain.
+         * @return A buffer whose first {@link #RECORD} bytes are the record.
+         * @throws IOException
+         *             if there is a problem reading from the index file.
+         */
+        private ByteBuffer record(final int index) throws IOException {
+            if (index >= this.indexFlushed) {
+                ByteBuffer record = this.indexBuffer.duplicate();
+                record.position((index - this.indexFlushed) * RECORD);
+                return record.slice();
+            }
+            ByteBuffer record = ByteBuffer.allocate(RECORD);
+            readFully(this.indexFile, record, (long) index * RECORD);
+            return record;
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @param index
+         *            {@inheritDoc}
+         * @return {@inheritDoc}
+         */
+        @Override
+        public Card remove(final int index) {
+            Card removed = this.get(index);
+            try {
+                this.flushIndex();
+                ByteBuffer shift = ByteBuffer.allocate(BUFFER);
+                long from = (long) (index + 1) * RECORD;
+                long end = (long) this.size * RECORD;
+                while (from < end) {
+                    shift.clear();
+                    if (end - from < shift.capacity()) {
+                        shift.limit((int) (end - from));
+                    }
+                    readFully(this.indexFile, shift, from);
+                    shift.flip();
+                    writeFully(this.indexFile, shift, from - RECORD);
+                    from += shift.limit();
+                }
+                this.size -= 1;
+                this.indexFlushed = this.size;
+                this.indexFile.truncate((long) this.size * RECORD);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+            this.modCount += 1;
+            return removed;
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @param index
+         *            {@inheritDoc}
+         * @param card
+         *            {@inheritDoc}
+         * @return {@inheritDoc}
+         */
+        @Override
+        public Card set(final int index, final Card card) {
+            Card previous = this.get(index);
+            try {
+                ByteBuffer record = this.write(card);
+                if (index >= this.indexFlushed) {
+                    int position = (index - this.indexFlushed) * RECORD;
+                    for (int i = 0; i < RECORD; i++) {
+                        this.indexBuffer.put(position + i, record.get(i));
+                    }
+                } else {
+                    writeFully(this.indexFile, record, (long) index * RECORD);
+                }
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+            return previous;
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @return {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return this.size;
+        }
+
+        /**
+         * Appends the text of the specified card to the data file and returns
+         * its record.
+         * 
+         * @param card
+         *            The card to write, or {@code null} to reserve a place for
+         *            a card that will be set later.
+         * @return A buffer containing the record of the card.
+         * @throws IOException
+         *             if there is a problem writing to the data file.
+         */
+        private ByteBuffer write(final Card card) throws IOException {
+            ByteBuffer record = ByteBuffer.allocate(RECORD);
+            if (card == null) {
+                record.putShort(TYPE, (short) -1);
+                return record;
+            }
+            String[] arguments = card.arguments();
+            byte[][] strings = new byte[arguments.length + 1][];
+            int length = 0;
+            for (int i = 0; i < strings.length; i++) {
+                if (i < arguments.length) {
+                    strings[i] = arguments[i].getBytes(StandardCharsets.UTF_8);
+                } else {
+                    strings[i] = card.comment().getBytes(
+                            StandardCharsets.UTF_8);
+                }
+                length += Integer.BYTES + strings[i].length;
+            }
+            if (length > this.dataBuffer.remaining()) {
+                this.flushData();
+            }
+            ByteBuffer text = this.dataBuffer;
+            if (length > text.capacity()) {
+                text = ByteBuffer.allocate(length);
+            }
+            for (byte[] string : strings) {
+                text.putInt(string.length);
+                text.put(string);
+            }
+            if (text != this.dataBuffer) {
+                text.flip();
+                this.dataFlushed += writeFully(this.dataFile, text,
+                        this.dataFlushed);
+            }
+            record.putShort(TYPE, (short) card.type().ordinal());
+            record.putShort(ARGUMENTS, (short) arguments.length);
+            record.putInt(LENGTH, length);
+            record.putLong(OFFSET, this.dataSize);
+            this.dataSize += length;
+            return record;
+        }
+    }
+
+    /**
+     * The offset within a record of the number of arguments on the card, a
+     * {@code short}.
+     */
+    private static final int ARGUMENTS = 2;
+
+    /** The size in bytes of the buffers used while writing a chain. */
+    private static final int BUFFER = 1 << 16;
+
+    /**
+     * The number of decoded cards to keep; a power of two, since a card is
+     * kept in the slot given by the low bits of its index.
+     */
+    private static final int CACHE = 1 << 12;
+
+    /**
+     * The offset within a record of the length of the text of the card, an
+     * {@code int}.
+     */
+    private static final int LENGTH = 4;
+
+    /**
+     * The logger for this class.
+     */
+    private static final transient Logger LOG = LoggerFactory
+            .getLogger(MappedCardReader.class);
+
+    /**
+     * The offset within a record of the offset of the text of the card in the
+     * data file, a {@code long}.
+     */
+    private static final int OFFSET = 8;
+
+    /** The size in bytes of the record of a card. */
+    private static final int RECORD = 16;
+
+    /**
+     * The base 2 logarithm of the size of each mapped segment of a file,
+     * since a single mapping is limited to two gigabytes. Each segment of the
+     * index file holds a whole number of records.
+     */
+    private static final int SEGMENT_BITS = 30;
+
+    /** The size in bytes of each mapped segment of a file. */
+    private static final long SEGMENT = 1L << SEGMENT_BITS;
+
+    /**
+     * The offset within a record of the ordinal of the type of the card, a
+     * {@code short}, or -1 if no card was set at that index.
+     */
+    private static final int TYPE = 0;
+
+    /** All types of card, indexed by ordinal. */
+    private static final CardType[] TYPES = CardType.values();
+
+    /**
+     * Decodes a card from its record and text.
+     * 
+     * @param record
+     *            A buffer whose first {@link #RECORD} bytes are the record of
+     *            the card.
+     * @param text
+     *            A buffer whose remaining bytes are the text of the card.
+     * @return The card, or {@code null} if no card was set.
+     */
+    private static Card decode(final ByteBuffer record, final ByteBuffer text) {
+        short type = record.getShort(TYPE);
+        if (type < 0) {
+            return null;
+        }
+        String[] arguments = new String[record.getShort(ARGUMENTS)];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = string(text);
+        }
+        return new Card(TYPES[type], arguments, string(text));
+    }
+
+    /**
+     * Maps the first bytes of the specified file, in segments of at most
+     * {@link #SEGMENT} bytes.
+     * 
+     * @param file
+     *            The file to map.
+     * @param length
+     *            The number of bytes to map.
+     * @return The mapped segments, in order.
+     * @throws IOException
+     *             if there is a problem mapping the file.
+     */
+    private static MappedByteBuffer[] map(final FileChannel file,
+            final long length) throws IOException {
+        MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((length
+                + SEGMENT - 1) >>> SEGMENT_BITS)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = (long) i << SEGMENT_BITS;
+            segments[i] = file.map(FileChannel.MapMode.READ_ONLY, start,
+                    Math.min(SEGMENT, length - start));
+        }
+        return segments;
+    }
+
+    /**
+     * Opens the specified file for reading and writing, to be deleted when
+     * it is closed.
+     * 
+     * @param path
+     *            The file to open.
+     * @return The open file.
+     * @throws IOException
+     *             if the file cannot be opened.
+     */
+    private static FileChannel open(final Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    /**
+     * Reads bytes from the specified file into the remainder of the specified
+     * buffer.
+     * 
+     * @param file
+     *            The file to read.
+     * @param buffer
+     *            The buffer to fill.
+     * @param position
+     *            The position in the file of the first byte to read.
+     * @throws IOException
+     *             if there is a problem reading the file, or it ends first.
+     */
+    private static void readFully(final FileChannel file,
+            final ByteBuffer buffer, final long position) throws IOException {
+        long next = position;
+        while (buffer.hasRemaining()) {
+            int n = file.read(buffer, next);
+            if (n < 0) {
+                throw new IOException("Unexpected end of card file");
+            }
+            next += n;
+        }
+    }
+
+    /**
+     * Reads a string, preceded by its length in bytes, from the specified
+     * buffer.
+     * 
+     * @param text
+     *            The buffer from which to read.
+     * @return The string.
+     */
+    private static String string(final ByteBuffer text) {
+        byte[] bytes = new byte[text.getInt()];
+        text.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the remainder of the specified buffer to the specified file.
+     * 
+     * @param file
+     *            The file to write.
+     * @param buffer
+     *            The bytes to write.
+     * @param position
+     *            The position in the file at which to write the first byte.
+     * @return The number of bytes written.
+     * @throws IOException
+     *             if there is a problem writing the file.
+     */
+    private static int writeFully(final FileChannel file,
+            final ByteBuffer buffer, final long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += file.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    /** The most recently read cards, each in the slot given by its index. */
+    private final Card[] cache = new Card[CACHE];
+
+    /** The index of the card in each slot of the cache, or -1 if none. */
+    private final int[] cached = new int[CACHE];
+
+    /** The view of the mounted card chain returned by {@link #cards()}. */
+    private final List<Card> cards = new AbstractList<Card>() {
+        @Override
+        public Card get(final int index) {
+            if (index < 0 || index >= MappedCardReader.this.size) {
+                throw new IndexOutOfBoundsException("Index: " + index
+                        + ", Size: " + MappedCardReader.this.size);
+            }
+            return MappedCardReader.this.read(index);
+        }
+
+        @Override
+        public int size() {
+            return MappedCardReader.this.size;
+        }
+    };
+
+    /**
+     * The index of the card before the next card to read in the card chain.
+     */
+    private int currentCard = -1;
+
+    /** The mapped segments of the data file of the mounted chain. */
+    private MappedByteBuffer[] data = new MappedByteBuffer[0];
+
+    /** The directory in which to create files. */
+    private final Path directory;
+
+    /** The mapped segments of the index file of the mounted chain. */
+    private MappedByteBuffer[] index = new MappedByteBuffer[0];
+
+    /** The number of times the card chain has been changed. */
+    private long mounts = 0;
+
+    /**
+     * The chains returned by {@link #newChain()} that have been neither
+     * mounted nor discarded.
+     */
+    private final List<Chain> pending = new ArrayList<Chain>();
+
+    /** The number of cards in the mounted chain. */
+    private int size = 0;
+
+    /**
+     * Creates a new card reader that creates its files in the default
+     * directory for temporary files.
+     */
+    public MappedCardReader() {
+        this(Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Creates a new card reader that creates its files in the specified
+     * directory.
+     * 
+     * @param directory
+     *            The directory in which to create files.
+     */
+    public MappedCardReader(final Path directory) {
+        this.directory = directory;
+        Arrays.fill(this.cached, -1);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param n
+     *            {@inheritDoc}
+     * @throws IndexOutOfBoundsException
+     *             {@inheritDoc}
+     * @see analyticalengine.components.CardReader#advance(int)
+     */
+    @Override
+    public void advance(final int n) {
+        if ((long) this.currentCard + n >= this.size) {
+            throw new IndexOutOfBoundsException("No more cards to read.");
+        }
+        this.currentCard += n;
+    }
+
+    /**
+     * Returns the specified number of bytes starting at the specified offset
+     * in the mapped data file.
+     * 
+     * @param offset
+     *            The offset of the first byte.
+     * @param length
+     *            The number of bytes.
+     * @return A buffer whose remaining bytes are the requested bytes.
+     */
+    private ByteBuffer bytes(final long offset, final int length) {
+        if (length == 0) {
+            return ByteBuffer.allocate(0);
+        }
+        int segment = (int) (offset >>> SEGMENT_BITS);
+        int position = (int) (offset & (SEGMENT - 1));
+        ByteBuffer bytes = this.data[segment].duplicate();
+        if (position + length <= bytes.limit()) {
+            bytes.position(position);
+            bytes.limit(position + length);
+            return bytes;
+        }
+        // the text crosses the end of a segment, so copy it out of both
+        byte[] copy = new byte[length];
+        int first = bytes.limit() - position;
+        bytes.position(position);
+        bytes.get(copy, 0, first);
+        ByteBuffer next = this.data[segment + 1].duplicate();
+        next.get(copy, first, length - first);
+        return ByteBuffer.wrap(copy);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The cards in the returned list are read from the mapped files.
+     * 
+     * @return {@inheritDoc}
+     * @see analyticalengine.components.CardReader#cards()
+     */
+    @Override
+    public List<Card> cards() {
+        return this.cards;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param cardChain
+     *            {@inheritDoc}
+     * @throws UncheckedIOException
+     *             if there is a problem writing or mapping the files.
+     * @see analyticalengine.components.CardReader#mountCards(List)
+     */
+    @Override
+    public void mountCards(final List<Card> cardChain) {
+        Chain mounted = null;
+        for (Chain chain : this.pending) {
+            if (chain == cardChain) {
+                mounted = chain;
+            }
+        }
+        try {
+            // the chain may be read from the files currently mounted, or
+            // from another new chain, so copy it before discarding them
+            if (mounted == null) {
+                mounted = new Chain();
+                for (Card card : cardChain) {
+                    mounted.add(card);
+                }
+            }
+            for (Chain chain : this.pending) {
+                if (chain != mounted) {
+                    chain.discard();
+                }
+            }
+            this.pending.clear();
+            this.unmountCards();
+            LOG.debug("Mounting card chain of {} cards", mounted.size());
+            this.size = mounted.size();
+            MappedByteBuffer[][] segments = mounted.close();
+            this.index = segments[0];
+            this.data = segments[1];
+        } catch (IOException exception) {
+            this.unmountCards();
+            throw new UncheckedIOException(exception);
+        }
+        this.currentCard = -1;
+        Arrays.fill(this.cache, null);
+        Arrays.fill(this.cached, -1);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @return {@inheritDoc}
+     */
+    @Override
+    public long mounts() {
+        return this.mounts;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The returned list writes each card added to it to a new pair of files,
+     * and is mounted without copying. The current chain is unmounted, but
+     * other new chains that have not been mounted remain usable until a
+     * chain is mounted.
+     * 
+     * @return {@inheritDoc}
+     * @throws UncheckedIOException
+     *             if the files cannot be created.
+     */
+    @Override
+    public List<Card> newChain() {
+        this.unmountCards();
+        Chain chain;
+        try {
+            chain = new Chain();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        this.pending.add(chain);
+        return chain;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @return {@inheritDoc}
+     */
+    @Override
+    public int position() {
+        return this.currentCard;
+    }
+
+    /**
+     * Returns the card at the specified index in the mounted chain.
+     * 
+     * @param i
+     *            The index of the card, which must be less than the number of
+     *            cards.
+     * @return The card at that index.
+     */
+    private Card read(final int i) {
+        int slot = i & (CACHE - 1);
+        if (this.cached[slot] == i) {
+            return this.cache[slot];
+        }
+        long offset = (long) i * RECORD;
+        ByteBuffer record = this.index[(int) (offset >>> SEGMENT_BITS)]
+                .duplicate();
+        record.position((int) (offset & (SEGMENT - 1)));
+        record = record.slice();
+        Card card = decode(record, this.bytes(record.getLong(OFFSET),
+                record.getInt(LENGTH)));
+        this.cache[slot] = card;
+        this.cached[slot] = i;
+        return card;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @return {@inheritDoc}
+     * @throws Halt
+     *             {@inheritDoc}
+     * @see analyticalengine.components.CardReader#readAndAdvance()
+     */
+    @Override
+    public Card readAndAdvance() throws Halt {
+        if (this.currentCard + 1 == this.size) {
+            throw Halt.END_OF_CHAIN;
+        }
+        this.currentCard += 1;
+        return this.read(this.currentCard);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param n
+     *            {@inheritDoc}
+     * @throws IndexOutOfBoundsException
+     *             {@inheritDoc}
+     * @see analyticalengine.components.CardReader#advance(int)
+     */
+    @Override
+    public void reverse(final int n) {
+        if ((long) this.currentCard - n < -1) {
+            throw new IndexOutOfBoundsException(
+                    "Cannot reverse beyond beginning.");
+        }
+        this.currentCard -= n;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The mapped files are released once they are no longer reachable.
+     * 
+     * @see analyticalengine.components.CardReader#unmountCards()
+     */
+    @Override
+    public void unmountCards() {
+        this.currentCard = -1;
+        this.size = 0;
+        this.index = new MappedByteBuffer[0];
+        this.data = new MappedByteBuffer[0];
+        Arrays.fill(this.cache, null);
+        Arrays.fill(this.cached, -1);
+        this.mounts++;
+    }
+
+}
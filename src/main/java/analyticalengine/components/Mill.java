@@ -23,6 +23,8 @@ package analyticalengine.components;
 import java.math.BigInteger;
 import java.util.Optional;
 
+import analyticalengine.metrics.Metrics;
+
 /**
  * Device that performs the arithmetic operations required by the Analytical
  * Engine.
@@ -108,6 +110,16 @@ public interface Mill {
      */
     void reset();
 
+    /**
+     * Replaces the entire state of this mill with the specified state, as
+     * previously returned by {@link #state()} on a mill with the same
+     * configuration.
+     * 
+     * @param state
+     *            The state to restore.
+     */
+    void restore(MillState state);
+
     /**
      * Performs a left shift on the ingress axes by the specified number of
      * digits.
@@ -153,6 +165,29 @@ public interface Mill {
      */
     void setOperation(Operation operation);
 
+    /**
+     * Records the operations completed by this mill and the times its run up
+     * lever is set in the specified registry, or stops recording them if the
+     * registry is {@code null}.
+     * 
+     * By default, nothing is recorded.
+     * 
+     * @param metrics
+     *            The registry of metrics, or {@code null}.
+     */
+    default void setMetrics(final Metrics metrics) {
+        // intentionally unimplemented
+    }
+
+    /**
+     * Returns a snapshot of the entire state of this mill.
+     * 
+     * Later requests to this mill do not change the returned snapshot.
+     * 
+     * @return The current state of this mill.
+     */
+    MillState state();
+
     /**
      * Transfers the specified value into one of the main ingress axes.
      * 
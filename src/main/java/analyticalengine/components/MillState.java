@@ -0,0 +1,139 @@
+/**
+ * MillState.java - snapshot of the state of a mill
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.components;
+
+import java.math.BigInteger;
+
+/**
+ * An immutable snapshot of the entire state of a {@link Mill}.
+ * 
+ * Any axis that has not been set since the mill was reset is represented by
+ * {@code null}.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class MillState {
+
+    /** The index of the next main ingress axis to be loaded. */
+    private final int axis;
+
+    /** The values of the main egress axis and the prime egress axis. */
+    private final BigInteger[] egress;
+
+    /**
+     * The values of the two main ingress axes and the prime ingress axis.
+     */
+    private final BigInteger[] ingress;
+
+    /** The current operation, or {@code null} if none has been set. */
+    private final Operation operation;
+
+    /** The most recent value, or {@code null} if there is none. */
+    private final BigInteger recent;
+
+    /** Whether the run up lever is set. */
+    private final boolean runUp;
+
+    /**
+     * Creates a new snapshot of the state of a mill.
+     * 
+     * @param operation
+     *            The current operation.
+     * @param axis
+     *            The index of the next main ingress axis to be loaded.
+     * @param ingress
+     *            The values of the two main ingress axes and the prime
+     *            ingress axis.
+     * @param egress
+     *            The values of the main egress axis and the prime egress
+     *            axis.
+     * @param runUp
+     *            Whether the run up lever is set.
+     * @param recent
+     *            The most recent value, or {@code null} if there is none.
+     */
+    public MillState(final Operation operation, final int axis,
+            final BigInteger[] ingress, final BigInteger[] egress,
+            final boolean runUp, final BigInteger recent) {
+        this.operation = operation;
+        this.axis = axis;
+        this.ingress = ingress.clone();
+        this.egress = egress.clone();
+        this.runUp = runUp;
+        this.recent = recent;
+    }
+
+    /**
+     * Returns the index of the next main ingress axis to be loaded.
+     * 
+     * @return The index of the next main ingress axis to be loaded.
+     */
+    public int axis() {
+        return this.axis;
+    }
+
+    /**
+     * Returns the values of the main egress axis and the prime egress axis.
+     * 
+     * @return A new array containing the values of the egress axes.
+     */
+    public BigInteger[] egress() {
+        return this.egress.clone();
+    }
+
+    /**
+     * Returns the values of the two main ingress axes and the prime ingress
+     * axis.
+     * 
+     * @return A new array containing the values of the ingress axes.
+     */
+    public BigInteger[] ingress() {
+        return this.ingress.clone();
+    }
+
+    /**
+     * Returns the current operation.
+     * 
+     * @return The current operation, or {@code null} if none has been set.
+     */
+    public Operation operation() {
+        return this.operation;
+    }
+
+    /**
+     * Returns the most recent value.
+     * 
+     * @return The most recent value, or {@code null} if there is none.
+     */
+    public BigInteger recent() {
+        return this.recent;
+    }
+
+    /**
+     * Returns whether the run up lever is set.
+     * 
+     * @return Whether the run up lever is set.
+     */
+    public boolean runUp() {
+        return this.runUp;
+    }
+}
@@ -0,0 +1,352 @@
+/**
+ * PagedStore.java - a sparse store that allocates columns in pages
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.components;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import analyticalengine.metrics.Metrics;
+
+/**
+ * A memory store for the Analytical Engine that allocates its columns in
+ * fixed-size pages, each allocated the first time one of its columns is
+ * written.
+ * 
+ * Columns in a page that has never been written read as zero without
+ * allocating the page, so the memory used by this store is proportional to
+ * the number of pages actually written rather than to the number of columns
+ * in the configuration. This makes it suitable for stores with millions of
+ * columns, of which a program uses only some.
+ * 
+ * Within a page, each value that fits in a {@code long} is kept in an array
+ * of {@code long}; only values that do not fit, as in {@link LongMill}, are
+ * kept as {@link BigInteger} objects, in a second array allocated for the
+ * page only when such a value is first written. Resetting this store
+ * releases every page.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class PagedStore implements DirtyTrackingStore {
+
+    /**
+     * A fixed-size block of consecutive columns.
+     * 
+     * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+     * @since 0.0.1
+     */
+    private static final class Page {
+
+        /** One bit for each column of this page that is dirty. */
+        private final long[] dirty = new long[PAGE_SIZE / Long.SIZE];
+
+        /**
+         * The values in this page that do not fit in a {@code long}, or
+         * {@code null} if no such value has been written; an element is
+         * {@code null} if the value of that column is in {@link #values}.
+         */
+        private BigInteger[] large = null;
+
+        /** The values in this page that fit in a {@code long}. */
+        private final long[] values = new long[PAGE_SIZE];
+    }
+
+    /** The base 2 logarithm of the number of columns in each page. */
+    private static final int PAGE_BITS = 10;
+
+    /** The number of columns in each page. */
+    public static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    /** The largest address in this store. */
+    private final int maxAddress;
+
+    /** The largest value that can be stored. */
+    private final BigInteger maxValue;
+
+    /** The smallest value that can be stored. */
+    private final BigInteger minValue;
+
+    /**
+     * The pages of this store, indexed by the address of their first column
+     * divided by {@link #PAGE_SIZE}; an element is {@code null} if the page
+     * has not been written. This array grows only as far as the page of the
+     * largest address written.
+     */
+    private Page[] pages = new Page[0];
+
+    /**
+     * The number of values read from this store, or {@code null} if metrics
+     * are not recorded.
+     */
+    private LongAdder reads = null;
+
+    /**
+     * The number of values written to this store, or {@code null} if metrics
+     * are not recorded.
+     */
+    private LongAdder writes = null;
+
+    /**
+     * Instantiates this object with the default configuration and every
+     * column set to zero.
+     */
+    public PagedStore() {
+        this(EngineConfig.DEFAULT);
+    }
+
+    /**
+     * Instantiates this object with the specified configuration and every
+     * column set to zero.
+     * 
+     * @param config
+     *            The configuration of the Engine.
+     */
+    public PagedStore(final EngineConfig config) {
+        this.maxAddress = config.maxAddress();
+        this.maxValue = config.maxValue();
+        this.minValue = config.minValue();
+    }
+
+    /**
+     * Returns the number of pages that have been allocated since this store
+     * was created or last reset.
+     * 
+     * @return The number of allocated pages.
+     */
+    public int allocatedPages() {
+        int count = 0;
+        for (Page page : this.pages) {
+            if (page != null) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Throws an exception if the specified address is not a column of this
+     * store.
+     * 
+     * @param address
+     *            A memory location.
+     * @throws IndexOutOfBoundsException
+     *             if the address is negative or too large for the store.
+     */
+    private void checkAddress(final int address) {
+        if (address < 0 || address > this.maxAddress) {
+            throw new IndexOutOfBoundsException("Address " + address
+                    + " must be between " + 0 + " and " + this.maxAddress);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clearDirty() {
+        for (Page page : this.pages) {
+            if (page != null) {
+                Arrays.fill(page.dirty, 0);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param address
+     *            {@inheritDoc}
+     * @return {@inheritDoc}
+     * @throws IndexOutOfBoundsException
+     *             {@inheritDoc}
+     */
+    @Override
+    public BigInteger get(final int address) {
+        this.checkAddress(address);
+        if (this.reads != null) {
+            this.reads.increment();
+        }
+        int p = address >>> PAGE_BITS;
+        if (p >= this.pages.length || this.pages[p] == null) {
+            return BigInteger.ZERO;
+        }
+        Page page = this.pages[p];
+        int column = address & (PAGE_SIZE - 1);
+        if (page.large != null && page.large[column] != null) {
+            return page.large[column];
+        }
+        return BigInteger.valueOf(page.values[column]);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param addresses
+     *            {@inheritDoc}
+     * @param values
+     *            {@inheritDoc}
+     * @throws IllegalArgumentException
+     *             {@inheritDoc}
+     * @throws IndexOutOfBoundsException
+     *             {@inheritDoc}
+     */
+    @Override
+    public void loadAll(final int[] addresses, final BigInteger[] values) {
+        if (addresses.length != values.length) {
+            throw new IllegalArgumentException("Got " + addresses.length
+                    + " addresses but " + values.length + " values");
+        }
+        for (int i = 0; i < addresses.length; i++) {
+            this.put(addresses[i], values[i]);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * Pages that have not been allocated are skipped without examining their
+     * columns.
+     * 
+     * @param fromAddress
+     *            {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    public int nextDirty(final int fromAddress) {
+        if (fromAddress < 0) {
+            throw new IndexOutOfBoundsException("fromAddress < 0: "
+                    + fromAddress);
+        }
+        int first = fromAddress >>> PAGE_BITS;
+        for (int p = first; p < this.pages.length; p++) {
+            Page page = this.pages[p];
+            int start = 0;
+            if (p == first) {
+                start = fromAddress & (PAGE_SIZE - 1);
+            }
+            for (int w = start / Long.SIZE; page != null
+                    && w < page.dirty.length; w++) {
+                long word = page.dirty[w];
+                if (w == start / Long.SIZE) {
+                    word &= -1L << start;
+                }
+                if (word != 0) {
+                    return (p << PAGE_BITS) + w * Long.SIZE
+                            + Long.numberOfTrailingZeros(word);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param address
+     *            {@inheritDoc}
+     * @param value
+     *            {@inheritDoc}
+     * @throws IndexOutOfBoundsException
+     *             {@inheritDoc}
+     */
+    @Override
+    public void put(final int address, final BigInteger value) {
+        this.checkAddress(address);
+        if (value.compareTo(this.minValue) < 0
+                || value.compareTo(this.maxValue) > 0) {
+            throw new IllegalArgumentException("Value " + value
+                    + " must be between " + this.minValue + " and "
+                    + this.maxValue);
+        }
+        int p = address >>> PAGE_BITS;
+        if (p >= this.pages.length) {
+            int maxPages = (this.maxAddress >>> PAGE_BITS) + 1;
+            this.pages = Arrays.copyOf(this.pages, Math.min(maxPages,
+                    Math.max(p + 1, 2 * this.pages.length)));
+        }
+        if (this.pages[p] == null) {
+            this.pages[p] = new Page();
+        }
+        Page page = this.pages[p];
+        int column = address & (PAGE_SIZE - 1);
+        if (value.bitLength() < Long.SIZE) {
+            page.values[column] = value.longValue();
+            if (page.large != null) {
+                page.large[column] = null;
+            }
+        } else {
+            if (page.large == null) {
+                page.large = new BigInteger[PAGE_SIZE];
+            }
+            page.large[column] = value;
+        }
+        page.dirty[column / Long.SIZE] |= 1L << column;
+        if (this.writes != null) {
+            this.writes.increment();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * Every page is released.
+     */
+    @Override
+    public void reset() {
+        this.pages = new Page[0];
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param metrics
+     *            {@inheritDoc}
+     */
+    @Override
+    public void setMetrics(final Metrics metrics) {
+        if (metrics == null) {
+            this.reads = null;
+            this.writes = null;
+        } else {
+            this.reads = metrics.counter(Metrics.STORE_READS);
+            this.writes = metrics.counter(Metrics.STORE_WRITES);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @param addresses
+     *            {@inheritDoc}
+     * @return {@inheritDoc}
+     * @throws IndexOutOfBoundsException
+     *             {@inheritDoc}
+     */
+    @Override
+    public BigInteger[] snapshot(final int[] addresses) {
+        BigInteger[] result = new BigInteger[addresses.length];
+        for (int i = 0; i < addresses.length; i++) {
+            result[i] = this.get(addresses[i]);
+        }
+        return result;
+    }
+}
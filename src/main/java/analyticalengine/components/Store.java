@@ -22,6 +22,8 @@ package analyticalengine.components;
 
 import java.math.BigInteger;
 
+import analyticalengine.metrics.Metrics;
+
 /**
  * The memory of the Analytical Engine; stores values in random access memory.
  * 
@@ -56,4 +58,18 @@ public interface Store {
      * Clears all values in the store.
      */
     void reset();
+
+    /**
+     * Records the values read from and written to this store in the
+     * specified registry, or stops recording them if the registry is
+     * {@code null}.
+     * 
+     * By default, nothing is recorded.
+     * 
+     * @param metrics
+     *            The registry of metrics, or {@code null}.
+     */
+    default void setMetrics(final Metrics metrics) {
+        // intentionally unimplemented
+    }
 }
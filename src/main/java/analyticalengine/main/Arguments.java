@@ -29,6 +29,9 @@ import java.util.List;
 import com.beust.jcommander.IStringConverter;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.converters.IParameterSplitter;
+import com.beust.jcommander.validators.PositiveInteger;
+
+import analyticalengine.components.EngineConfig;
 
 /**
  * Stores arguments parsed from the command-line.
@@ -76,6 +79,28 @@ public class Arguments {
     @Parameter(description = "<filename>")
     private List<String> args = new ArrayList<String>();
 
+    /**
+     * Whether the attendant should record output on a separate thread from
+     * the one running the Analytical Engine.
+     */
+    @Parameter(names = { "-a", "--asynchronous-output" },
+            description = "record output on a separate thread")
+    private boolean asynchronousOutput = false;
+
+    /** The number of columns in the store. */
+    @Parameter(names = { "--columns" },
+            description = "number of columns in the store")
+    private int columns = EngineConfig.DEFAULT_COLUMNS;
+
+    /**
+     * The number of times a cycle must be repeated before the Engine compiles
+     * it, or zero to never compile cycles.
+     */
+    @Parameter(names = { "--compile-threshold" },
+            description = "compile cycles repeated this many times (0: never)",
+            validateWith = PositiveInteger.class)
+    private int compileThreshold = 0;
+
     /** Whether to run the program in headless mode. */
     @Parameter(names = { "-X", "--headless" },
             description = "run the program without displaying curve printer output")
@@ -102,6 +127,39 @@ public class Arguments {
             description = "list the card chain as mounted by the attendant")
     private boolean listOnly = false;
 
+    /**
+     * Whether the card reader should keep the card chain in memory-mapped
+     * files instead of on the heap.
+     */
+    @Parameter(names = { "--mapped-cards" },
+            description = "keep the card chain in memory-mapped files")
+    private boolean mappedCards = false;
+
+    /**
+     * The number of results of library functions to remember, or zero to
+     * always run library functions.
+     */
+    @Parameter(names = { "--memoize" },
+            description = "remember this many library results (0: never)")
+    private int memoize = 0;
+
+    /**
+     * The format in which to write metrics to standard error after the
+     * program has run, or {@code null} to record no metrics.
+     */
+    @Parameter(names = { "--metrics" },
+            description = "write metrics to stderr as json or prometheus")
+    private String metrics = null;
+
+    /**
+     * The number of Engines among which to divide the rows of a table, or
+     * zero to run the program on a single Engine.
+     */
+    @Parameter(names = { "--parallel-rows" },
+            description = "divide the rows of a table among this many threads"
+                    + " (each reruns the cards before the table)")
+    private int parallelRows = 0;
+
     /**
      * Whether the attendant should remove comment cards from the card chain
      * before mounting them in the card reader.
@@ -110,11 +168,36 @@ public class Arguments {
             description = "remove comment cards from the card chain")
     private boolean stripComments = false;
 
+    /**
+     * The local port on which to run as a service, or -1 to run a single
+     * program and exit.
+     */
+    @Parameter(names = { "--serve" },
+            description = "run as a service listening on this local port")
+    private int servePort = -1;
+
+    /** The number of threads with which the service handles requests. */
+    @Parameter(names = { "--threads" },
+            description = "number of threads running programs in the service")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Whether to check the entire card chain for errors before running it.
+     */
+    @Parameter(names = { "--verify" },
+            description = "check every card for errors before running")
+    private boolean verify = false;
+
     /** The amount of information to display while running the program. */
     @Parameter(names = { "-v", "--verbose" },
             description = "set verbosity level")
     private int verbosity = 0;
 
+    /** The number of digits in each column and each axis. */
+    @Parameter(names = { "--width" },
+            description = "number of digits in each column and axis")
+    private int width = EngineConfig.DEFAULT_WIDTH;
+
     /**
      * The positional command-line arguments (excluding the program name) that
      * are not given as options.
@@ -125,6 +208,36 @@ public class Arguments {
         return this.args;
     }
 
+    /**
+     * Whether the attendant should record output on a separate thread from
+     * the one running the Analytical Engine.
+     * 
+     * @return Whether to record output on a separate thread.
+     */
+    boolean asynchronousOutput() {
+        return this.asynchronousOutput;
+    }
+
+    /**
+     * The number of columns in the store.
+     * 
+     * @return The number of columns in the store.
+     */
+    int columns() {
+        return this.columns;
+    }
+
+    /**
+     * The number of times a cycle must be repeated before the Engine compiles
+     * it.
+     * 
+     * @return The compile threshold, or zero if cycles should never be
+     *         compiled.
+     */
+    int compileThreshold() {
+        return this.compileThreshold;
+    }
+
     /**
      * Returns whether the program should be run in "headless" mode, which
      * means curve printer commands will be ignored.
@@ -162,6 +275,55 @@ public class Arguments {
         return this.listOnly;
     }
 
+    /**
+     * Whether to keep the card chain in memory-mapped files.
+     * 
+     * @return Whether to keep the card chain in memory-mapped files.
+     */
+    boolean mappedCards() {
+        return this.mappedCards;
+    }
+
+    /**
+     * The number of results of library functions to remember.
+     * 
+     * @return The capacity of the memo of library results, or zero if
+     *         library functions should always be run.
+     */
+    int memoize() {
+        return this.memoize;
+    }
+
+    /**
+     * The format in which to write metrics after the program has run.
+     * 
+     * @return Either {@code "json"} or {@code "prometheus"}, or {@code null}
+     *         if no metrics should be recorded.
+     */
+    String metrics() {
+        return this.metrics;
+    }
+
+    /**
+     * The number of Engines among which to divide the rows of a table.
+     * 
+     * @return The number of Engines among which to divide the rows of a
+     *         table, or zero if the program should run on a single Engine.
+     */
+    int parallelRows() {
+        return this.parallelRows;
+    }
+
+    /**
+     * The local port on which to run as a service.
+     * 
+     * @return The local port on which to run as a service, or -1 if a single
+     *         program should be run instead.
+     */
+    int servePort() {
+        return this.servePort;
+    }
+
     /**
      * Whether to remove comments from the program when loading the card chain.
      * 
@@ -171,6 +333,15 @@ public class Arguments {
         return this.stripComments;
     }
 
+    /**
+     * The number of threads with which the service handles requests.
+     * 
+     * @return The number of threads with which to handle requests.
+     */
+    int threads() {
+        return this.threads;
+    }
+
     /**
      * Returns the verbosity level, an integer between 0 and 2, inclusive.
      * 
@@ -179,4 +350,23 @@ public class Arguments {
     int verbosity() {
         return this.verbosity;
     }
+
+    /**
+     * Whether to check the entire card chain for errors before running it.
+     * 
+     * @return Whether to verify the card chain.
+     */
+    boolean verify() {
+        return this.verify;
+    }
+
+    /**
+     * The number of digits in each column of the store and each axis of the
+     * mill.
+     * 
+     * @return The number of digits in each column and axis.
+     */
+    int width() {
+        return this.width;
+    }
 }
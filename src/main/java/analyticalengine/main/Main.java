@@ -20,11 +20,11 @@
  */
 package analyticalengine.main;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -32,23 +32,28 @@ import org.slf4j.LoggerFactory;
 
 import com.beust.jcommander.JCommander;
 
-import analyticalengine.AnalyticalEngine;
 import analyticalengine.DefaultAnalyticalEngine;
+import analyticalengine.LibraryMemo;
+import analyticalengine.ParallelTable;
+import analyticalengine.attendant.AsynchronousAttendant;
 import analyticalengine.attendant.Attendant;
 import analyticalengine.attendant.DefaultAttendant;
 import analyticalengine.attendant.DefaultLibrary;
-import analyticalengine.attendant.Library;
 import analyticalengine.attendant.LibraryLookupException;
 import analyticalengine.cards.BadCard;
 import analyticalengine.cards.Card;
+import analyticalengine.cards.InvalidChain;
 import analyticalengine.cards.UnknownCard;
-import analyticalengine.components.ArrayListCardReader;
 import analyticalengine.components.CardReader;
-import analyticalengine.components.DefaultMill;
-import analyticalengine.components.HashMapStore;
+import analyticalengine.components.CompactingCardReader;
+import analyticalengine.components.EngineConfig;
+import analyticalengine.components.LazyCurvePrinter;
+import analyticalengine.components.MappedCardReader;
 import analyticalengine.components.NullCurvePrinter;
 import analyticalengine.components.StringPrinter;
 import analyticalengine.gui.JFrameCurvePrinter;
+import analyticalengine.metrics.Metrics;
+import analyticalengine.server.EngineServer;
 
 /**
  * A command-line driver for the Analytical Engine simulation.
@@ -79,11 +84,20 @@ public final class Main {
         Arguments arguments = new Arguments();
         JCommander argparser = new JCommander(arguments, argv);
 
-        if (arguments.help() || arguments.args().size() != 1) {
+        boolean serve = arguments.servePort() >= 0;
+        if (arguments.help() || (!serve && arguments.args().size() != 1)) {
             argparser.usage();
             return;
         }
 
+        // the Engines running a table keep their own cards and reports
+        if (arguments.parallelRows() > 0 && (arguments.asynchronousOutput()
+                || arguments.mappedCards())) {
+            LOG.error("--parallel-rows cannot be combined with"
+                    + " --asynchronous-output or --mapped-cards");
+            return;
+        }
+
         if (arguments.verbosity() == 1) {
             // TODO increase debugging level to info
             LOG.debug("Requested verbosity 1; not yet implemented.");
@@ -92,6 +106,31 @@ public final class Main {
             LOG.debug("Requested verbosity 2; not yet implemented.");
         }
 
+        EngineConfig config;
+        try {
+            config = new EngineConfig(arguments.columns(), arguments.width());
+        } catch (IllegalArgumentException e) {
+            LOG.error("Bad engine configuration", e);
+            return;
+        }
+        LibraryMemo memo = null;
+        if (arguments.memoize() > 0) {
+            memo = new LibraryMemo(arguments.memoize());
+        }
+
+        // If requested, run as a service instead of running a single program.
+        // The threads handling requests keep the program running after this
+        // method returns.
+        if (serve) {
+            try {
+                new EngineServer(arguments.servePort(), arguments.threads(),
+                        arguments.libraryPath(), config, memo).start();
+            } catch (IOException e) {
+                LOG.error("Could not start service", e);
+            }
+            return;
+        }
+
         // Create and hook up the components of the engine.
         //
         // The engine has a mill (ALU), a store (memory), a card reader
@@ -100,10 +139,28 @@ public final class Main {
         //
         // The attendant has access to a library of built-in functions, and
         // access to the card reader used by the engine.
-        Attendant attendant = new DefaultAttendant();
-        CardReader cardReader = new ArrayListCardReader();
+        //
+        // If requested, the components record metrics while the program runs.
+        Metrics metrics = null;
+        if (arguments.metrics() != null) {
+            if (!arguments.metrics().equals("json")
+                    && !arguments.metrics().equals("prometheus")) {
+                LOG.error("Unknown metrics format: {}", arguments.metrics());
+                return;
+            }
+            metrics = new Metrics();
+        }
+        DefaultAttendant defaultAttendant = new DefaultAttendant();
+        defaultAttendant.setMetrics(metrics);
+        Attendant attendant = defaultAttendant;
+        CardReader cardReader = new CompactingCardReader();
+        if (arguments.mappedCards()) {
+            // keep a card chain too long for the heap in memory-mapped files
+            cardReader = new MappedCardReader();
+        }
         attendant.setCardReader(cardReader);
-        Library library = new DefaultLibrary();
+        DefaultLibrary library = new DefaultLibrary();
+        library.setMetrics(metrics);
         attendant.setLibrary(library);
 
         // apply any attendant-specific configuration from command-line args
@@ -111,26 +168,41 @@ public final class Main {
         // always search the current directory as well
         library.addLibraryPath(Paths.get("."));
         attendant.setStripComments(arguments.stripComments());
+        // record output on a separate thread if requested
+        if (arguments.asynchronousOutput()) {
+            attendant = new AsynchronousAttendant(attendant);
+        }
 
-        AnalyticalEngine engine = new DefaultAnalyticalEngine();
+        DefaultAnalyticalEngine engine = new DefaultAnalyticalEngine();
+        engine.setCompileThreshold(arguments.compileThreshold());
+        engine.setLibraryMemo(memo);
         engine.setAttendant(attendant);
         engine.setCardReader(cardReader);
-        engine.setMill(new DefaultMill());
+        engine.setMill(config.newMill());
         engine.setPrinter(new StringPrinter());
-        engine.setStore(new HashMapStore());
-        // if this is a headless execution, ignore curve printer commands
+        engine.setStore(config.newStore());
+        engine.setMetrics(metrics);
+        // if this is a headless execution, ignore curve printer commands;
+        // otherwise, start the windowing toolkit only if a curve is plotted
+        // (a lambda rather than a constructor reference, so that the class
+        // of the window is not even loaded until then)
         if (arguments.headless()) {
             engine.setCurvePrinter(new NullCurvePrinter());
         } else {
-            engine.setCurvePrinter(new JFrameCurvePrinter());
+            engine.setCurvePrinter(
+                    new LazyCurvePrinter(() -> new JFrameCurvePrinter()));
         }
 
-        // load the file specified in the command-line argument
+        // load the file specified in the command-line argument, one line at a
+        // time, into a list provided by the card reader, so that a memory-
+        // mapped card reader never holds the whole program on the heap
         Path program = Paths.get(arguments.args().get(0));
-        List<Card> cards = new ArrayList<Card>();
-        try {
-            for (String line : Files.readAllLines(program)) {
+        List<Card> cards = cardReader.newChain();
+        try (BufferedReader reader = Files.newBufferedReader(program)) {
+            String line = reader.readLine();
+            while (line != null) {
                 cards.add(Card.fromString(line));
+                line = reader.readLine();
             }
         } catch (IOException e) {
             LOG.error("Could not open file", e);
@@ -168,15 +240,52 @@ public final class Main {
             return;
         }
 
-        // finally, run the analytical engine with the specified program
-        try {
-            engine.run();
-        } catch (BadCard e) {
-            LOG.error("Encountered invalid card", e);
-            return;
+        // if requested, report every bad card before running any of them
+        if (arguments.verify()) {
+            try {
+                engine.verify(config);
+            } catch (InvalidChain e) {
+                LOG.error(e.getMessage());
+                return;
+            }
+        }
+
+        // finally, run the analytical engine with the specified program, or
+        // if requested, divide the rows of a table among several Engines
+        String report;
+        if (arguments.parallelRows() > 0) {
+            ParallelTable table = new ParallelTable(config,
+                    arguments.parallelRows());
+            table.setCompileThreshold(arguments.compileThreshold());
+            table.setLibraryMemo(memo);
+            table.setMetrics(metrics);
+            try {
+                report = table.run(cardReader.cards());
+            } catch (BadCard e) {
+                LOG.error("Encountered invalid card", e);
+                return;
+            }
+        } else {
+            try {
+                engine.run();
+            } catch (BadCard e) {
+                LOG.error("Encountered invalid card", e);
+                return;
+            }
+            report = attendant.finalReport();
         }
 
         // print the attendant's report to standard output
-        System.out.println(attendant.finalReport());
+        System.out.println(report);
+        if (attendant instanceof AsynchronousAttendant) {
+            ((AsynchronousAttendant) attendant).close();
+        }
+
+        // if requested, write the metrics to standard error
+        if (metrics != null && arguments.metrics().equals("json")) {
+            System.err.println(metrics.toJson());
+        } else if (metrics != null) {
+            System.err.print(metrics.toPrometheus());
+        }
     }
 }
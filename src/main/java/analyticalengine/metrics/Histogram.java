@@ -0,0 +1,132 @@
+/**
+ * Histogram.java - distribution of values recorded by the Engine
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A distribution of nonnegative values, such as durations or sizes, divided
+ * into buckets whose upper bounds are powers of two.
+ * 
+ * Values are recorded into striped counters, so many threads may record
+ * values at once without contending with one another.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public final class Histogram {
+
+    /**
+     * The number of buckets; the last bucket has no upper bound.
+     */
+    static final int BUCKETS = Long.SIZE;
+
+    /**
+     * Returns the index of the bucket that counts the specified value.
+     * 
+     * @param value
+     *            A recorded value.
+     * @return The least {@code i} such that the value is at most
+     *         {@code 2^i}.
+     */
+    static int bucket(final long value) {
+        if (value <= 1) {
+            return 0;
+        }
+        return Long.SIZE - Long.numberOfLeadingZeros(value - 1);
+    }
+
+    /**
+     * The number of values in each bucket; bucket {@code i} counts the
+     * values greater than {@code 2^(i-1)} and at most {@code 2^i}.
+     */
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+    /** The number of recorded values. */
+    private final LongAdder count = new LongAdder();
+
+    /** The greatest recorded value. */
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /** The sum of the recorded values. */
+    private final LongAdder sum = new LongAdder();
+
+    /** Creates a new, empty histogram. */
+    Histogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Returns the number of recorded values in the specified bucket.
+     * 
+     * @param index
+     *            The index of the bucket, as returned by {@link #bucket(long)}.
+     * @return The number of values in the bucket.
+     */
+    long bucketCount(final int index) {
+        return this.buckets[index].sum();
+    }
+
+    /**
+     * Returns the number of recorded values.
+     * 
+     * @return The number of recorded values.
+     */
+    public long count() {
+        return this.count.sum();
+    }
+
+    /**
+     * Returns the greatest recorded value.
+     * 
+     * @return The greatest recorded value, or zero if no values have been
+     *         recorded.
+     */
+    public long max() {
+        return this.max.get();
+    }
+
+    /**
+     * Records the specified value; negative values are recorded as zero.
+     * 
+     * @param value
+     *            The value to record.
+     */
+    public void record(final long value) {
+        long nonnegative = Math.max(value, 0);
+        this.buckets[bucket(nonnegative)].increment();
+        this.count.increment();
+        this.sum.add(nonnegative);
+        this.max.accumulate(nonnegative);
+    }
+
+    /**
+     * Returns the sum of the recorded values.
+     * 
+     * @return The sum of the recorded values.
+     */
+    public long sum() {
+        return this.sum.sum();
+    }
+}
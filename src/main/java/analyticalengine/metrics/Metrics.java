@@ -0,0 +1,372 @@
+/**
+ * Metrics.java - counters and histograms of the Engine
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A registry of named counters and histograms recording what the components
+ * of one or more Engines do while they run.
+ * 
+ * Components record metrics only once a registry has been given to them, for
+ * example with
+ * {@link analyticalengine.DefaultAnalyticalEngine#setMetrics(Metrics)}, and
+ * look up the counters they use when it is given, so that recording a value
+ * while a program runs costs no more than incrementing a counter. Counters
+ * and histograms are striped, so a single registry may be shared by Engines
+ * running on many threads without contention.
+ * 
+ * The names of the metrics recorded by the components of this program are
+ * the constants of this class. A counter may have one label, in which case
+ * there is a separate count for each value of the label.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public final class Metrics {
+
+    /**
+     * The counts of a counter for each value of its label.
+     * 
+     * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+     * @since 0.0.1
+     */
+    private static final class Family {
+
+        /** The name of the label, or {@code null} if there is none. */
+        private final String label;
+
+        /** The count for each value of the label. */
+        private final ConcurrentMap<String, LongAdder> values =
+                new ConcurrentSkipListMap<String, LongAdder>();
+
+        /**
+         * Creates a new family of counters with the specified label.
+         * 
+         * @param label
+         *            The name of the label, or {@code null}.
+         */
+        Family(final String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * The number of cards executed by the Engine one at a time, labeled by
+     * the type of card.
+     */
+    public static final String CARDS_EXECUTED =
+            "analyticalengine_cards_executed_total";
+
+    /** The number of cards executed as part of a compiled cycle. */
+    public static final String COMPILED_CARDS_EXECUTED =
+            "analyticalengine_compiled_cards_executed_total";
+
+    /**
+     * The number of library files found in the cache of built-in library
+     * files.
+     */
+    public static final String LIBRARY_CACHE_HITS =
+            "analyticalengine_library_cache_hits_total";
+
+    /**
+     * The number of library files that were not in the cache of built-in
+     * library files.
+     */
+    public static final String LIBRARY_CACHE_MISSES =
+            "analyticalengine_library_cache_misses_total";
+
+    /**
+     * The number of arithmetic operations completed by the mill, labeled by
+     * the operation.
+     */
+    public static final String MILL_OPERATIONS =
+            "analyticalengine_mill_operations_total";
+
+    /**
+     * The time taken by the attendant to prepare and mount each program, in
+     * nanoseconds.
+     */
+    public static final String MOUNT_NANOSECONDS =
+            "analyticalengine_mount_nanoseconds";
+
+    /** The number of characters in each final report of the attendant. */
+    public static final String REPORT_CHARACTERS =
+            "analyticalengine_report_characters";
+
+    /**
+     * The time taken by each request to the Engine to run cards, in
+     * nanoseconds.
+     */
+    public static final String RUN_NANOSECONDS =
+            "analyticalengine_run_nanoseconds";
+
+    /** The number of times the run up lever of the mill has been set. */
+    public static final String RUN_UPS = "analyticalengine_mill_run_ups_total";
+
+    /** The number of values read from the store. */
+    public static final String STORE_READS =
+            "analyticalengine_store_reads_total";
+
+    /** The number of values written to the store. */
+    public static final String STORE_WRITES =
+            "analyticalengine_store_writes_total";
+
+    /**
+     * Returns the value of the specified label as a Prometheus label set.
+     * 
+     * @param label
+     *            The name of the label, or {@code null}.
+     * @param value
+     *            The value of the label.
+     * @return The label set, or the empty string if there is no label.
+     */
+    private static String labelSet(final String label, final String value) {
+        if (label == null) {
+            return "";
+        }
+        return "{" + label + "=\"" + value + "\"}";
+    }
+
+    /**
+     * Returns the upper bound of the specified bucket of a histogram as it
+     * is written in the exported metrics.
+     * 
+     * @param index
+     *            The index of the bucket.
+     * @return The upper bound of the bucket.
+     */
+    private static String upperBound(final int index) {
+        if (index == Histogram.BUCKETS - 1) {
+            return "+Inf";
+        }
+        return String.valueOf(1L << index);
+    }
+
+    /** The counters, keyed by name. */
+    private final ConcurrentMap<String, Family> counters =
+            new ConcurrentSkipListMap<String, Family>();
+
+    /** The histograms, keyed by name. */
+    private final ConcurrentMap<String, Histogram> histograms =
+            new ConcurrentSkipListMap<String, Histogram>();
+
+    /**
+     * Returns the counter with the specified name and no label, creating it
+     * if necessary.
+     * 
+     * @param name
+     *            The name of the counter.
+     * @return The counter.
+     * @throws IllegalArgumentException
+     *             if a counter with the same name has a label.
+     */
+    public LongAdder counter(final String name) {
+        return this.counter(name, null, "");
+    }
+
+    /**
+     * Returns the count of the counter with the specified name for the
+     * specified value of its label, creating it if necessary.
+     * 
+     * @param name
+     *            The name of the counter.
+     * @param label
+     *            The name of the label, or {@code null} if the counter has
+     *            no label.
+     * @param value
+     *            The value of the label.
+     * @return The counter.
+     * @throws IllegalArgumentException
+     *             if a counter with the same name has a different label.
+     */
+    public LongAdder counter(final String name, final String label,
+            final String value) {
+        Family family = this.counters.computeIfAbsent(name,
+                key -> new Family(label));
+        if (family.label == null && label != null
+                || family.label != null && !family.label.equals(label)) {
+            throw new IllegalArgumentException("Counter " + name
+                    + " has label " + family.label + ", not " + label);
+        }
+        return family.values.computeIfAbsent(value, key -> new LongAdder());
+    }
+
+    /**
+     * Returns the counts of the counter with the specified name for each of
+     * the specified constants of an enumerated type, creating them if
+     * necessary.
+     * 
+     * The value of the label for each constant is its name. Components use
+     * the returned array to count events of each kind without looking up a
+     * counter for each event.
+     * 
+     * @param name
+     *            The name of the counter.
+     * @param label
+     *            The name of the label.
+     * @param values
+     *            All the constants of an enumerated type, in order, as
+     *            returned by its {@code values()} method.
+     * @return The counter for each constant, indexed by its ordinal.
+     * @throws IllegalArgumentException
+     *             if a counter with the same name has a different label.
+     */
+    public LongAdder[] counters(final String name, final String label,
+            final Enum<?>[] values) {
+        LongAdder[] result = new LongAdder[values.length];
+        for (Enum<?> value : values) {
+            result[value.ordinal()] = this.counter(name, label, value.name());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the histogram with the specified name, creating it if
+     * necessary.
+     * 
+     * @param name
+     *            The name of the histogram.
+     * @return The histogram.
+     */
+    public Histogram histogram(final String name) {
+        return this.histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * Returns the current values of the metrics as a JSON object.
+     * 
+     * The object has the members {@code counters}, which maps the name of
+     * each counter to its count, or to an object mapping each value of its
+     * label to its count, and {@code histograms}, which maps the name of each
+     * histogram to an object with the members {@code count}, {@code sum},
+     * {@code max}, and {@code buckets}. The last maps the upper bound of
+     * each nonempty bucket to the number of values in that bucket.
+     * 
+     * @return The metrics as a JSON object.
+     */
+    public String toJson() {
+        StringBuilder result = new StringBuilder("{\"counters\":{");
+        String separator = "";
+        for (Map.Entry<String, Family> entry : this.counters.entrySet()) {
+            Family family = entry.getValue();
+            result.append(separator).append('"').append(entry.getKey())
+                    .append("\":");
+            if (family.label == null) {
+                result.append(family.values.get("").sum());
+            } else {
+                result.append('{');
+                String inner = "";
+                for (Map.Entry<String, LongAdder> value : family.values
+                        .entrySet()) {
+                    result.append(inner).append('"').append(value.getKey())
+                            .append("\":").append(value.getValue().sum());
+                    inner = ",";
+                }
+                result.append('}');
+            }
+            separator = ",";
+        }
+        result.append("},\"histograms\":{");
+        separator = "";
+        for (Map.Entry<String, Histogram> entry : this.histograms
+                .entrySet()) {
+            Histogram histogram = entry.getValue();
+            result.append(separator).append('"').append(entry.getKey())
+                    .append("\":{\"count\":").append(histogram.count())
+                    .append(",\"sum\":").append(histogram.sum())
+                    .append(",\"max\":").append(histogram.max())
+                    .append(",\"buckets\":{");
+            String inner = "";
+            for (int i = 0; i < Histogram.BUCKETS; i++) {
+                long count = histogram.bucketCount(i);
+                if (count > 0) {
+                    result.append(inner).append('"').append(upperBound(i))
+                            .append("\":").append(count);
+                    inner = ",";
+                }
+            }
+            result.append("}}");
+            separator = ",";
+        }
+        result.append("}}");
+        return result.toString();
+    }
+
+    /**
+     * Returns the current values of the metrics in the Prometheus text
+     * exposition format.
+     * 
+     * The buckets of each histogram are cumulative, as the format requires,
+     * and buckets above the greatest nonempty bucket are omitted.
+     * 
+     * @return The metrics in the Prometheus text format.
+     */
+    public String toPrometheus() {
+        StringBuilder result = new StringBuilder();
+        for (Map.Entry<String, Family> entry : this.counters.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            result.append("# TYPE ").append(name).append(" counter\n");
+            for (Map.Entry<String, LongAdder> value : family.values
+                    .entrySet()) {
+                result.append(name)
+                        .append(labelSet(family.label, value.getKey()))
+                        .append(' ').append(value.getValue().sum())
+                        .append('\n');
+            }
+        }
+        for (Map.Entry<String, Histogram> entry : this.histograms
+                .entrySet()) {
+            String name = entry.getKey();
+            Histogram histogram = entry.getValue();
+            result.append("# TYPE ").append(name).append(" histogram\n");
+            long[] counts = new long[Histogram.BUCKETS];
+            int last = 0;
+            for (int i = 0; i < Histogram.BUCKETS; i++) {
+                counts[i] = histogram.bucketCount(i);
+                if (counts[i] > 0) {
+                    last = i;
+                }
+            }
+            long cumulative = 0;
+            for (int i = 0; i < Histogram.BUCKETS; i++) {
+                cumulative += counts[i];
+                if (i <= last && i < Histogram.BUCKETS - 1) {
+                    result.append(name).append("_bucket")
+                            .append(labelSet("le", upperBound(i)))
+                            .append(' ').append(cumulative).append('\n');
+                }
+            }
+            result.append(name).append("_bucket")
+                    .append(labelSet("le", upperBound(Histogram.BUCKETS - 1)))
+                    .append(' ').append(cumulative).append('\n');
+            result.append(name).append("_sum ").append(histogram.sum())
+                    .append('\n');
+            result.append(name).append("_count ").append(cumulative)
+                    .append('\n');
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,378 @@
+/**
+ * EngineServer.java - runs Analytical Engine programs submitted over HTTP
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import analyticalengine.LibraryMemo;
+import analyticalengine.cards.Card;
+import analyticalengine.cards.UnknownCard;
+import analyticalengine.components.EngineConfig;
+import analyticalengine.metrics.Metrics;
+
+/**
+ * A long-running service that runs Analytical Engine programs submitted over
+ * HTTP by clients on the local machine.
+ * 
+ * A client submits a program by sending a {@code POST} request to
+ * {@code /run} whose body is the program, in the same format as a program
+ * file given to the command-line program. The optional query parameters
+ * {@code maxCards} and {@code timeoutMillis} limit the number of cards the
+ * program may execute and the amount of time it may run, respectively, up
+ * to {@link #MAX_CARDS_CAP} cards and {@link #TIMEOUT_MILLIS_CAP}
+ * milliseconds, so that no request holds a thread indefinitely. The
+ * response is a JSON object as described in {@link JobResult#toJson()}. A
+ * program containing a malformed card is answered with status 400. Programs
+ * may include library functions but not other files.
+ * 
+ * A {@code GET} request to {@code /metrics} returns the metrics recorded by
+ * all the engines of the service, as described in {@link Metrics}, in the
+ * Prometheus text format, or as a JSON object if the query parameter
+ * {@code format} is {@code json}.
+ * 
+ * Requests are handled by a fixed number of threads, each of which keeps its
+ * own {@link EngineWorker}, so the engines stay warm from one request to the
+ * next.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class EngineServer {
+
+    /**
+     * The default maximum number of cards a program may execute, if the
+     * request does not specify one.
+     */
+    public static final long DEFAULT_MAX_CARDS = 100000000;
+
+    /**
+     * The default maximum amount of time a program may run, in milliseconds,
+     * if the request does not specify one.
+     */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 10000;
+
+    /** The largest maximum number of cards a request may specify. */
+    public static final long MAX_CARDS_CAP = 10000000000L;
+
+    /**
+     * The largest maximum amount of time a request may specify, in
+     * milliseconds.
+     */
+    public static final long TIMEOUT_MILLIS_CAP = 600000;
+
+    /**
+     * The logger for this class.
+     */
+    private static final transient Logger LOG = LoggerFactory
+            .getLogger(EngineServer.class);
+
+    /**
+     * Returns the query parameters of the specified request.
+     * 
+     * @param exchange
+     *            The request.
+     * @return A map from query parameter name to value.
+     * @throws UnsupportedEncodingException
+     *             if UTF-8 is not supported.
+     */
+    private static Map<String, String> queryParameters(
+            final HttpExchange exchange) throws UnsupportedEncodingException {
+        Map<String, String> result = new HashMap<String, String>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return result;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                String name = URLDecoder.decode(pair.substring(0, equals),
+                        "UTF-8");
+                String value = URLDecoder.decode(pair.substring(equals + 1),
+                        "UTF-8");
+                result.put(name, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sends the specified response to the client.
+     * 
+     * @param exchange
+     *            The request being answered.
+     * @param code
+     *            The HTTP status code of the response.
+     * @param json
+     *            The body of the response, a JSON object.
+     * @throws IOException
+     *             if there is a problem writing the response.
+     */
+    private static void respond(final HttpExchange exchange, final int code,
+            final String json) throws IOException {
+        respond(exchange, code, json, "application/json; charset=utf-8");
+    }
+
+    /**
+     * Sends the specified response to the client with the specified content
+     * type.
+     * 
+     * @param exchange
+     *            The request being answered.
+     * @param code
+     *            The HTTP status code of the response.
+     * @param text
+     *            The body of the response.
+     * @param contentType
+     *            The value of the {@code Content-Type} header.
+     * @throws IOException
+     *             if there is a problem writing the response.
+     */
+    private static void respond(final HttpExchange exchange, final int code,
+            final String text, final String contentType) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /** The threads that handle requests. */
+    private final ExecutorService executor;
+
+    /** The metrics recorded by the engines of every thread. */
+    private final Metrics metrics = new Metrics();
+
+    /** The HTTP server that accepts requests. */
+    private final HttpServer server;
+
+    /** The engine kept by each thread that handles requests. */
+    private final ThreadLocal<EngineWorker> workers;
+
+    /**
+     * Creates a new service listening on the specified port of the loopback
+     * interface.
+     * 
+     * The service does not accept requests until {@link #start()} is invoked.
+     * 
+     * @param port
+     *            The port on which to listen, or 0 to choose any free port.
+     * @param threads
+     *            The number of threads with which to handle requests.
+     * @param libraryPaths
+     *            The paths in which to search for library files.
+     * @throws IOException
+     *             if the service cannot listen on the specified port.
+     */
+    public EngineServer(final int port, final int threads,
+            final List<Path> libraryPaths) throws IOException {
+        this(port, threads, libraryPaths, EngineConfig.DEFAULT, null);
+    }
+
+    /**
+     * Creates a new service listening on the specified port of the loopback
+     * interface, whose Engines have the specified configuration and share
+     * the specified memo of library results.
+     * 
+     * The service does not accept requests until {@link #start()} is invoked.
+     * 
+     * @param port
+     *            The port on which to listen, or 0 to choose any free port.
+     * @param threads
+     *            The number of threads with which to handle requests.
+     * @param libraryPaths
+     *            The paths in which to search for library files.
+     * @param config
+     *            The dimensions of the store and the mill of each Engine.
+     * @param memo
+     *            The memo in which the Engines remember the results of
+     *            library functions, or {@code null} to always run them.
+     * @throws IOException
+     *             if the service cannot listen on the specified port.
+     */
+    public EngineServer(final int port, final int threads,
+            final List<Path> libraryPaths, final EngineConfig config,
+            final LibraryMemo memo) throws IOException {
+        final List<Path> paths = new ArrayList<Path>(libraryPaths);
+        this.workers = ThreadLocal.withInitial(() -> new EngineWorker(config,
+                memo, paths, this.metrics));
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.server = HttpServer.create(new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), port), 0);
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/run", exchange -> {
+            try {
+                this.handleRun(exchange);
+            } finally {
+                exchange.close();
+            }
+        });
+        this.server.createContext("/metrics", exchange -> {
+            try {
+                this.handleMetrics(exchange);
+            } finally {
+                exchange.close();
+            }
+        });
+    }
+
+    /**
+     * Handles a request for the metrics recorded by the engines.
+     * 
+     * @param exchange
+     *            The request.
+     * @throws IOException
+     *             if there is a problem writing the response.
+     */
+    private void handleMetrics(final HttpExchange exchange)
+            throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            respond(exchange, 405, "{\"message\":\"Use GET\"}");
+            return;
+        }
+        if ("json".equals(queryParameters(exchange).get("format"))) {
+            respond(exchange, 200, this.metrics.toJson());
+        } else {
+            respond(exchange, 200, this.metrics.toPrometheus(),
+                    "text/plain; version=0.0.4; charset=utf-8");
+        }
+    }
+
+    /**
+     * Handles a request to run a program.
+     * 
+     * @param exchange
+     *            The request.
+     * @throws IOException
+     *             if there is a problem reading the request or writing the
+     *             response.
+     */
+    private void handleRun(final HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            respond(exchange, 405, "{\"message\":\"Use POST\"}");
+            return;
+        }
+
+        long maxCards;
+        long timeoutMillis;
+        try {
+            Map<String, String> parameters = queryParameters(exchange);
+            maxCards = Long.parseLong(parameters.getOrDefault("maxCards",
+                    String.valueOf(DEFAULT_MAX_CARDS)));
+            timeoutMillis = Long.parseLong(parameters.getOrDefault(
+                    "timeoutMillis", String.valueOf(DEFAULT_TIMEOUT_MILLIS)));
+        } catch (NumberFormatException exception) {
+            respond(exchange, 400, "{\"message\":"
+                    + JobResult.quote(exception.getMessage()) + "}");
+            return;
+        }
+        if (maxCards <= 0 || timeoutMillis <= 0) {
+            respond(exchange, 400,
+                    "{\"message\":\"Limits must be positive\"}");
+            return;
+        }
+        if (maxCards > MAX_CARDS_CAP || timeoutMillis > TIMEOUT_MILLIS_CAP) {
+            respond(exchange, 400, "{\"message\":" + JobResult.quote(
+                    "Limits must be at most " + MAX_CARDS_CAP + " cards and "
+                            + TIMEOUT_MILLIS_CAP + " milliseconds") + "}");
+            return;
+        }
+
+        List<Card> cards = new ArrayList<Card>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            while (line != null) {
+                cards.add(Card.fromString(line));
+                line = reader.readLine();
+            }
+        } catch (UnknownCard exception) {
+            JobResult result = new JobResult(JobStatus.ERROR, "",
+                    exception.getMessage(), 0);
+            respond(exchange, 400, result.toJson());
+            return;
+        } catch (RuntimeException exception) {
+            // for example, a card with a missing operand
+            LOG.debug("Malformed card", exception);
+            JobResult result = new JobResult(JobStatus.ERROR, "",
+                    "Malformed card " + (cards.size() + 1) + ": "
+                            + exception, 0);
+            respond(exchange, 400, result.toJson());
+            return;
+        }
+
+        JobResult result = this.workers.get().run(cards, maxCards,
+                timeoutMillis);
+        LOG.debug("Job finished with status {} in {} ns", result.status(),
+                result.elapsedNanos());
+        respond(exchange, 200, result.toJson());
+    }
+
+    /**
+     * Returns the port on which this service is listening.
+     * 
+     * @return The port on which this service is listening.
+     */
+    public int port() {
+        return this.server.getAddress().getPort();
+    }
+
+    /** Starts accepting requests. */
+    public void start() {
+        this.server.start();
+        LOG.info("Listening on {}", this.server.getAddress());
+    }
+
+    /**
+     * Stops accepting requests and stops the threads that handle them, after
+     * waiting up to the specified number of seconds for requests in progress
+     * to finish.
+     * 
+     * @param delay
+     *            The maximum number of seconds to wait for requests in
+     *            progress to finish.
+     */
+    public void stop(final int delay) {
+        this.server.stop(delay);
+        this.executor.shutdown();
+    }
+}
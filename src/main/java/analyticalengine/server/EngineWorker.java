@@ -0,0 +1,254 @@
+/**
+ * EngineWorker.java - a reusable engine that runs jobs for the service
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.server;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import analyticalengine.DefaultAnalyticalEngine;
+import analyticalengine.LibraryMemo;
+import analyticalengine.RunStatus;
+import analyticalengine.attendant.DefaultAttendant;
+import analyticalengine.attendant.DefaultLibrary;
+import analyticalengine.attendant.LibraryLookupException;
+import analyticalengine.cards.BadCard;
+import analyticalengine.cards.Card;
+import analyticalengine.cards.UnknownCard;
+import analyticalengine.components.CardReader;
+import analyticalengine.components.CompactingCardReader;
+import analyticalengine.components.EngineConfig;
+import analyticalengine.components.NullCurvePrinter;
+import analyticalengine.components.StringPrinter;
+import analyticalengine.metrics.Metrics;
+
+/**
+ * An Analytical Engine that is kept between jobs, so that each job run by the
+ * service does not pay the cost of assembling a new one.
+ * 
+ * The mill, store, and card reader are reset before each job. The attendant
+ * and its library are replaced for each job, since the attendant remembers
+ * settings such as the picture format from one program to the next. Loading
+ * a built-in library function is cheap after the first time, since
+ * {@link DefaultLibrary} caches the built-in library files.
+ * 
+ * Each program is verified before it is run, so that a job with bad cards
+ * fails immediately with a list of all of them, and a valid program runs in
+ * the verified mode of {@link DefaultAnalyticalEngine}. The program is run in
+ * slices of at most {@link #SLICE} cards, and the budget and deadline of the
+ * job are checked between slices.
+ * 
+ * Instances of this class are not thread-safe; the service keeps one per
+ * thread.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class EngineWorker {
+
+    /**
+     * The logger for this class.
+     */
+    private static final transient Logger LOG = LoggerFactory
+            .getLogger(EngineWorker.class);
+
+    /**
+     * The maximum number of cards to execute between checks of the budget and
+     * deadline of a job.
+     */
+    public static final long SLICE = 10000;
+
+    /** The dimensions of the store and the mill of the Engine. */
+    private final EngineConfig config;
+
+    /** The Analytical Engine that runs each job. */
+    private final DefaultAnalyticalEngine engine =
+            new DefaultAnalyticalEngine();
+
+    /** The paths in which the library searches for library files. */
+    private final List<Path> libraryPaths;
+
+    /**
+     * The registry in which the components of each job record metrics, or
+     * {@code null} if metrics are not recorded.
+     */
+    private final Metrics metrics;
+
+    /** The card reader of the Analytical Engine. */
+    private final CardReader reader = new CompactingCardReader();
+
+    /**
+     * Creates a new worker whose attendant searches the specified paths for
+     * library files.
+     * 
+     * @param libraryPaths
+     *            The paths in which to search for library files.
+     */
+    public EngineWorker(final List<Path> libraryPaths) {
+        this(libraryPaths, null);
+    }
+
+    /**
+     * Creates a new worker whose attendant searches the specified paths for
+     * library files, and whose components record metrics in the specified
+     * registry.
+     * 
+     * @param libraryPaths
+     *            The paths in which to search for library files.
+     * @param metrics
+     *            The registry of metrics, which may be shared with other
+     *            workers, or {@code null} to record no metrics.
+     */
+    public EngineWorker(final List<Path> libraryPaths,
+            final Metrics metrics) {
+        this(EngineConfig.DEFAULT, null, libraryPaths, metrics);
+    }
+
+    /**
+     * Creates a new worker whose Engine has the specified configuration and
+     * remembers the results of library functions in the specified memo,
+     * whose attendant searches the specified paths for library files, and
+     * whose components record metrics in the specified registry.
+     * 
+     * @param config
+     *            The dimensions of the store and the mill of the Engine.
+     * @param memo
+     *            The memo in which to remember the results of library
+     *            functions, which may be shared with other workers whose
+     *            Engines have the same configuration, or {@code null} to
+     *            always run library functions.
+     * @param libraryPaths
+     *            The paths in which to search for library files.
+     * @param metrics
+     *            The registry of metrics, which may be shared with other
+     *            workers, or {@code null} to record no metrics.
+     */
+    public EngineWorker(final EngineConfig config, final LibraryMemo memo,
+            final List<Path> libraryPaths, final Metrics metrics) {
+        this.config = config;
+        this.libraryPaths = new ArrayList<Path>(libraryPaths);
+        this.metrics = metrics;
+        this.engine.setLibraryMemo(memo);
+        this.engine.setCardReader(this.reader);
+        this.engine.setMill(this.config.newMill());
+        this.engine.setStore(this.config.newStore());
+        this.engine.setPrinter(new StringPrinter());
+        this.engine.setCurvePrinter(new NullCurvePrinter());
+        this.engine.setMetrics(metrics);
+    }
+
+    /**
+     * Runs the specified program until it halts, executes the specified
+     * number of cards, or runs for the specified amount of time, whichever
+     * comes first.
+     * 
+     * The deadline is checked only between slices of {@link #SLICE} cards,
+     * so a job may run slightly longer than the specified time.
+     * 
+     * @param program
+     *            The cards of the program to run.
+     * @param maxCards
+     *            The maximum number of cards to execute; must be positive.
+     * @param timeoutMillis
+     *            The maximum amount of time to run, in milliseconds.
+     * @return The result of running the program.
+     */
+    public JobResult run(final List<Card> program, final long maxCards,
+            final long timeoutMillis) {
+        long start = System.nanoTime();
+        // the conversion saturates, and the deadline is compared by the
+        // difference of the two times, so even the largest timeout neither
+        // overflows nor passes at once
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        this.engine.reset();
+        this.reader.unmountCards();
+        DefaultLibrary library = new DefaultLibrary();
+        library.addLibraryPaths(this.libraryPaths);
+        library.setMetrics(this.metrics);
+        DefaultAttendant attendant = new DefaultAttendant();
+        attendant.setMetrics(this.metrics);
+        attendant.setIncludeFiles(false);
+        attendant.setCardReader(this.reader);
+        attendant.setLibrary(library);
+        this.engine.setAttendant(attendant);
+
+        JobStatus status;
+        String message = null;
+        try {
+            attendant.loadProgram(program);
+            this.engine.verify(this.config);
+            status = this.runSlices(maxCards, deadline);
+        } catch (BadCard | IOException
+                | LibraryLookupException exception) {
+            status = JobStatus.ERROR;
+            message = exception.getMessage();
+        } catch (UnknownCard exception) {
+            // the message quotes the offending line of a library file,
+            // which is not shown to the client
+            LOG.debug("Library file failed to parse", exception);
+            status = JobStatus.ERROR;
+            message = "Unable to parse library file";
+        } catch (RuntimeException exception) {
+            // for example, advancing beyond the end of the card chain
+            LOG.debug("Program failed", exception);
+            status = JobStatus.ERROR;
+            message = exception.toString();
+        }
+        String report = attendant.finalReport();
+        return new JobResult(status, report, message,
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Runs the loaded program in slices until it halts, executes the
+     * specified number of cards, or passes the specified deadline.
+     * 
+     * @param maxCards
+     *            The maximum number of cards to execute.
+     * @param deadline
+     *            The time, as given by {@link System#nanoTime()}, after which
+     *            no further slices are run.
+     * @return The outcome of the program.
+     * @throws BadCard
+     *             if the program contains an invalid card.
+     */
+    private JobStatus runSlices(final long maxCards, final long deadline)
+            throws BadCard {
+        long remaining = maxCards;
+        while (remaining > 0) {
+            long slice = Math.min(remaining, SLICE);
+            if (this.engine.run(slice) == RunStatus.HALTED) {
+                return JobStatus.HALTED;
+            }
+            remaining -= slice;
+            if (remaining > 0 && System.nanoTime() - deadline > 0) {
+                return JobStatus.TIMEOUT;
+            }
+        }
+        return JobStatus.CARD_LIMIT;
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * JobResult.java - the result of a job run by the engine service
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.server;
+
+/**
+ * The result of a program run by the engine service: its outcome, the report
+ * written by the attendant, and how long it took.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class JobResult {
+
+    /**
+     * Returns the specified string as a JSON string literal, including the
+     * surrounding quotation marks.
+     * 
+     * @param value
+     *            The string to quote.
+     * @return The JSON string literal representing the specified string.
+     */
+    static String quote(final String value) {
+        StringBuilder result = new StringBuilder(value.length() + 2);
+        result.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                result.append("\\\"");
+                break;
+            case '\\':
+                result.append("\\\\");
+                break;
+            case '\n':
+                result.append("\\n");
+                break;
+            case '\r':
+                result.append("\\r");
+                break;
+            case '\t':
+                result.append("\\t");
+                break;
+            default:
+                if (c < ' ') {
+                    result.append(String.format("\\u%04x", (int) c));
+                } else {
+                    result.append(c);
+                }
+            }
+        }
+        result.append('"');
+        return result.toString();
+    }
+
+    /** The time taken to load and run the program, in nanoseconds. */
+    private final long elapsedNanos;
+
+    /**
+     * A description of the error that stopped the program, or {@code null}
+     * if there was no error.
+     */
+    private final String message;
+
+    /** The report written by the attendant while the program ran. */
+    private final String report;
+
+    /** The outcome of the program. */
+    private final JobStatus status;
+
+    /**
+     * Creates a new result with the specified attributes.
+     * 
+     * @param status
+     *            The outcome of the program.
+     * @param report
+     *            The report written by the attendant while the program ran.
+     * @param message
+     *            A description of the error that stopped the program, or
+     *            {@code null} if there was no error.
+     * @param elapsedNanos
+     *            The time taken to load and run the program, in nanoseconds.
+     */
+    public JobResult(final JobStatus status, final String report,
+            final String message, final long elapsedNanos) {
+        this.status = status;
+        this.report = report;
+        this.message = message;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Returns the time taken to load and run the program, in nanoseconds.
+     * 
+     * @return The time taken to load and run the program, in nanoseconds.
+     */
+    public long elapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    /**
+     * Returns a description of the error that stopped the program.
+     * 
+     * @return A description of the error that stopped the program, or
+     *         {@code null} if there was no error.
+     */
+    public String message() {
+        return this.message;
+    }
+
+    /**
+     * Returns the report written by the attendant while the program ran.
+     * 
+     * If the program did not halt, this is the report up to the point at
+     * which it was stopped.
+     * 
+     * @return The report written by the attendant while the program ran.
+     */
+    public String report() {
+        return this.report;
+    }
+
+    /**
+     * Returns the outcome of the program.
+     * 
+     * @return The outcome of the program.
+     */
+    public JobStatus status() {
+        return this.status;
+    }
+
+    /**
+     * Returns this result as a JSON object.
+     * 
+     * The object has the members {@code status} (the name of the outcome in
+     * lowercase), {@code report}, {@code elapsedMicros}, and, if there was an
+     * error, {@code message}.
+     * 
+     * @return This result as a JSON object.
+     */
+    public String toJson() {
+        StringBuilder result = new StringBuilder();
+        result.append("{\"status\":");
+        result.append(quote(this.status.name().toLowerCase()));
+        result.append(",\"elapsedMicros\":");
+        result.append(this.elapsedNanos / 1000);
+        result.append(",\"report\":");
+        result.append(quote(this.report));
+        if (this.message != null) {
+            result.append(",\"message\":");
+            result.append(quote(this.message));
+        }
+        result.append('}');
+        return result.toString();
+    }
+}
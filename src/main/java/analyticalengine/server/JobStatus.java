@@ -0,0 +1,38 @@
+/**
+ * JobStatus.java - the outcome of a job run by the engine service
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.server;
+
+/**
+ * The outcome of a program run by the engine service.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public enum JobStatus {
+    /** The program halted normally. */
+    HALTED,
+    /** The program executed the maximum number of cards without halting. */
+    CARD_LIMIT,
+    /** The program ran for the maximum amount of time without halting. */
+    TIMEOUT,
+    /** The program could not be loaded or contained an invalid card. */
+    ERROR;
+}
@@ -0,0 +1,81 @@
+#!/bin/sh
+#
+# startup-benchmark.sh - compares startup latency of the JVM and native builds
+#
+# Copyright 2014-2016 Jeffrey Finkelstein.
+#
+# This file is part of analyticalengine.
+#
+# analyticalengine is free software: you can redistribute it and/or modify it
+# under the terms of the GNU General Public License as published by the Free
+# Software Foundation, either version 3 of the License, or (at your option)
+# any later version.
+#
+# analyticalengine is distributed in the hope that it will be useful, but
+# WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+# or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+# more details.
+#
+# You should have received a copy of the GNU General Public License along with
+# analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+#
+# Runs the command-line program several times in each of three scenarios and
+# prints the median wall-clock time of each, in milliseconds:
+#
+#   startup     parse the command line and exit (--help)
+#   first-card  mount and run a program whose first card halts the Engine
+#   table       run examples/functable.ae, which includes library functions
+#
+# The JVM build is run from target/classes, so run "mvn compile" first. The
+# native build, target/analyticalengine, is measured too if it exists; build
+# it with "mvn -Pnative package" on GraalVM.
+#
+# Usage: sh src/main/scripts/startup-benchmark.sh [RUNS]
+
+set -e
+
+RUNS=${1:-20}
+cd "$(dirname "$0")/../../.."
+
+if [ ! -d target/classes ]; then
+    echo "target/classes not found; run 'mvn compile' first" >&2
+    exit 1
+fi
+if [ ! -f target/classpath.txt ]; then
+    mvn -q dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+fi
+CLASSPATH="target/classes:$(cat target/classpath.txt)"
+
+PROGRAM=$(mktemp)
+trap 'rm -f "$PROGRAM"' EXIT
+echo H > "$PROGRAM"
+
+# Prints the median time, in milliseconds, of RUNS runs of the given command.
+median() {
+    i=0
+    while [ $i -lt "$RUNS" ]; do
+        start=$(date +%s%N)
+        "$@" > /dev/null 2>&1
+        end=$(date +%s%N)
+        echo $(( (end - start) / 1000000 ))
+        i=$((i + 1))
+    done | sort -n | sed -n "$(( (RUNS + 1) / 2 ))p"
+}
+
+# Prints one line of timings for the given command prefix.
+measure() {
+    name=$1
+    shift
+    printf '%-8s %10s %12s %8s\n' "$name" \
+        "$(median "$@" --help)" \
+        "$(median "$@" -X "$PROGRAM")" \
+        "$(median "$@" -X examples/functable.ae)"
+}
+
+printf '%-8s %10s %12s %8s\n' build startup first-card table
+measure jvm java -cp "$CLASSPATH" analyticalengine.main.Main
+if [ -x target/analyticalengine ]; then
+    measure native target/analyticalengine
+else
+    echo "native   (target/analyticalengine not found; skipped)"
+fi
@@ -0,0 +1,186 @@
+/**
+ * ChainVerifierTest.java - tests for verifying card chains before running them
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine;
+
+import static analyticalengine.TestUtils.shouldHaveThrownException;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.List;
+
+import org.junit.Test;
+
+import analyticalengine.attendant.LibraryLookupException;
+import analyticalengine.cards.BadCard;
+import analyticalengine.cards.InvalidChain;
+import analyticalengine.cards.UnknownCard;
+import analyticalengine.components.EngineConfig;
+
+/**
+ * Tests for verifying a card chain before it is run.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class ChainVerifierTest extends EngineTestBase {
+
+    /** Test programs, with and without cycles and library calls. */
+    private static final String[] PROGRAMS = { "test_arctan.ae",
+            "test_arithmetic.ae", "test_backloop.ae", "test_cback.ae",
+            "test_cforward.ae", "test_divide.ae", "test_forwardloop.ae",
+            "test_shift.ae", "test_sqrt.ae" };
+
+    /**
+     * Runs the specified program, verifying it first if requested, and
+     * returns the report.
+     * 
+     * @param filename
+     *            The name of the file containing the program.
+     * @param verify
+     *            Whether to verify the card chain before running it.
+     * @return The final report of the attendant.
+     * @throws URISyntaxException
+     *             if there is a problem loading the file.
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    private String report(final String filename, final boolean verify)
+            throws BadCard, URISyntaxException, IOException, UnknownCard,
+            LibraryLookupException {
+        this.tearDown();
+        this.setUp();
+        this.loadProgram(filename);
+        if (verify) {
+            ((DefaultAnalyticalEngine) this.engine())
+                    .verify(EngineConfig.DEFAULT);
+        }
+        this.engine().run();
+        return this.attendant().finalReport();
+    }
+
+    /**
+     * Tests that each test program passes verification and produces the same
+     * report in verified mode.
+     * 
+     * @throws URISyntaxException
+     *             if there is a problem loading the file.
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    @Test
+    public void testSameReport() throws BadCard, URISyntaxException,
+            IOException, UnknownCard, LibraryLookupException {
+        for (String program : PROGRAMS) {
+            assertEquals(program, this.report(program, false),
+                    this.report(program, true));
+        }
+    }
+
+    /**
+     * Tests that verification reports every bad card in the chain.
+     * 
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    @Test
+    public void testAllProblems() throws UnknownCard, BadCard, IOException,
+            LibraryLookupException {
+        this.loadProgramString("N0 5\nN1001 1\nL0\nLx\n<101\n>100\n"
+                + "N2 1" + "0000000000" + "0000000000" + "0000000000"
+                + "0000000000" + "0000000000\nCB+8\nCF+1\nCF+2\nH\n");
+        try {
+            ((DefaultAnalyticalEngine) this.engine())
+                    .verify(EngineConfig.DEFAULT);
+            shouldHaveThrownException();
+        } catch (InvalidChain exception) {
+            List<BadCard> problems = exception.problems();
+            assertEquals(5, problems.size());
+            assertEquals(this.reader().cards().get(1), exception.card());
+            assertEquals(this.reader().cards().get(3),
+                    problems.get(1).card());
+            assertEquals(this.reader().cards().get(4),
+                    problems.get(2).card());
+            assertEquals(this.reader().cards().get(6),
+                    problems.get(3).card());
+            assertEquals(this.reader().cards().get(9),
+                    problems.get(4).card());
+        }
+        // a card that is never reached is still reported
+        this.attendant().reset();
+        this.loadProgramString("N0 5\nCF+1\nN1001 1\nH\n");
+        try {
+            ((DefaultAnalyticalEngine) this.engine())
+                    .verify(EngineConfig.DEFAULT);
+            shouldHaveThrownException();
+        } catch (InvalidChain exception) {
+            assertEquals(1, exception.problems().size());
+        }
+    }
+
+    /**
+     * Tests that the Engine leaves verified mode when a different chain is
+     * mounted, even one of the same length.
+     * 
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    @Test
+    public void testRemount() throws UnknownCard, BadCard, IOException,
+            LibraryLookupException {
+        this.loadProgramString("N0 5\n+\nL0\nL0\nP\nH\n");
+        ((DefaultAnalyticalEngine) this.engine()).verify(EngineConfig.DEFAULT);
+        this.engine().run();
+        assertEquals("10" + System.lineSeparator(),
+                this.attendant().finalReport());
+
+        this.engine().reset();
+        this.attendant().reset();
+        this.loadProgramString("N0 7\n+\nL0\nL0\nP\nH\n");
+        this.engine().run();
+        assertEquals("14" + System.lineSeparator(),
+                this.attendant().finalReport());
+    }
+}
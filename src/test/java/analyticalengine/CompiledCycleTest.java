@@ -0,0 +1,166 @@
+/**
+ * CompiledCycleTest.java - tests for compiling cycles of cards
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+
+import org.junit.Test;
+
+import analyticalengine.attendant.LibraryLookupException;
+import analyticalengine.cards.BadCard;
+import analyticalengine.cards.UnknownCard;
+
+/**
+ * Tests that running compiled cycles has the same effect as interpreting the
+ * cards from which they were compiled.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class CompiledCycleTest extends EngineTestBase {
+
+    /** Test programs containing cycles, with and without library calls. */
+    private static final String[] PROGRAMS = { "test_alternation.ae",
+            "test_arctan.ae", "test_backloop.ae", "test_cback.ae",
+            "test_cforward.ae", "test_cosine.ae", "test_exp.ae",
+            "test_forwardloop.ae", "test_ln.ae", "test_sine.ae",
+            "test_sqrt.ae" };
+
+    /**
+     * Runs the specified program with the specified compile threshold, in
+     * slices of the specified number of cards, and returns the report.
+     * 
+     * @param filename
+     *            The name of the file containing the program.
+     * @param threshold
+     *            The compile threshold.
+     * @param slice
+     *            The maximum number of cards to execute in each slice.
+     * @return The final report of the attendant.
+     * @throws URISyntaxException
+     *             if there is a problem loading the file.
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    private String report(final String filename, final int threshold,
+            final long slice) throws BadCard, URISyntaxException, IOException,
+            UnknownCard, LibraryLookupException {
+        this.tearDown();
+        this.setUp();
+        ((DefaultAnalyticalEngine) this.engine())
+                .setCompileThreshold(threshold);
+        this.loadProgram(filename);
+        while (this.engine().run(slice) == RunStatus.SUSPENDED) {
+            // keep running until the program halts
+        }
+        return this.attendant().finalReport();
+    }
+
+    /**
+     * Runs the specified program with the specified compile threshold and
+     * returns the report.
+     * 
+     * @param program
+     *            The cards of the program.
+     * @param threshold
+     *            The compile threshold.
+     * @return The final report of the attendant.
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    private String reportString(final String[] program, final int threshold)
+            throws BadCard, IOException, UnknownCard, LibraryLookupException {
+        this.tearDown();
+        this.setUp();
+        ((DefaultAnalyticalEngine) this.engine())
+                .setCompileThreshold(threshold);
+        this.runProgramString(String.join(System.lineSeparator(), program));
+        return this.attendant().finalReport();
+    }
+
+    /**
+     * Tests that columns which a cycle only reads, or only fills with the
+     * same number, have the same values when the cycle is compiled.
+     * 
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    @Test
+    public void testInvariantColumns() throws BadCard, IOException,
+            UnknownCard, LibraryLookupException {
+        // V1 and V2 are invariant, but V5 receives two different numbers
+        String[] program = { "N0 5", "N3 0", "N1 1", "-", "L0", "L1", "S0",
+                "+", "L3", "L1", "S3", "N2 7", "N2 7", "L2", "L1", "S4", "P",
+                "N5 1", "+", "L5", "L3", "N5 2", "L5", "S6", "P", "-", "L1",
+                "L0", "CB?27", "P", "H" };
+        String expected = this.reportString(program, 0);
+        assertEquals(expected, this.reportString(program, 1));
+        assertEquals(expected, this.reportString(program, 3));
+    }
+
+    /**
+     * Tests that each test program produces the same report whether or not
+     * its cycles are compiled, and whether or not it is suspended and
+     * resumed in the middle of a compiled cycle.
+     * 
+     * @throws URISyntaxException
+     *             if there is a problem loading the file.
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    @Test
+    public void testSameReport() throws BadCard, URISyntaxException,
+            IOException, UnknownCard, LibraryLookupException {
+        for (String program : PROGRAMS) {
+            String expected = this.report(program, 0, Long.MAX_VALUE);
+            assertEquals(program, expected,
+                    this.report(program, 1, Long.MAX_VALUE));
+            assertEquals(program, expected, this.report(program, 2, 7));
+        }
+    }
+}
@@ -172,6 +172,46 @@ public class DefaultAnalyticalEngineTest extends EngineTestBase {
         assertEquals(join(squares), this.attendant().finalReport());
     }
 
+    /**
+     * Tests that running the Engine with a budget of cards suspends the
+     * program and that resuming it produces the same output as running it
+     * without a budget.
+     * 
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     * @throws URISyntaxException
+     *             if there is a problem loading the file.
+     */
+    @Test
+    public void testRunBudget() throws BadCard, URISyntaxException,
+            IOException, UnknownCard, LibraryLookupException {
+        this.loadProgram("test_backloop.ae");
+        int slices = 0;
+        while (this.engine().run(7) == RunStatus.SUSPENDED) {
+            slices++;
+        }
+        assertTrue(slices > 1);
+        String[] squares = new String[10];
+        for (int i = 1; i < 11; i++) {
+            squares[i - 1] = String.valueOf(i * i);
+        }
+        assertEquals(join(squares), this.attendant().finalReport());
+
+        // a program that never halts is suspended each time it is run
+        this.attendant().reset();
+        this.engine().reset();
+        this.loadProgramString("N0 1" + System.lineSeparator() + "CB+1");
+        for (int i = 0; i < 3; i++) {
+            assertEquals(RunStatus.SUSPENDED, this.engine().run(1000));
+        }
+    }
+
     /**
      * Test backward.
      * 
@@ -0,0 +1,148 @@
+/**
+ * EnsembleTest.java - tests for Ensemble
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import analyticalengine.attendant.LibraryLookupException;
+import analyticalengine.cards.BadCard;
+import analyticalengine.cards.Card;
+import analyticalengine.cards.CardType;
+import analyticalengine.cards.UnknownCard;
+import analyticalengine.components.EngineConfig;
+
+/**
+ * Tests for the Ensemble class.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class EnsembleTest extends EngineTestBase {
+
+    /**
+     * A program that prints the value in column 0, decremented until it is
+     * negative, so the number of repetitions of its cycle depends on the
+     * initial value; the value in column 2 is printed at the end.
+     */
+    static final String COUNTDOWN = String.join(
+            System.lineSeparator(), "N0 %s", "N1 1", "-", "L0", "L1", "S0",
+            "P", "CF?1", "CB+7", "+", "L2", "L1", "P", "H");
+
+    /**
+     * Tests that a number card whose number cannot be parsed is reported as a
+     * bad card.
+     * 
+     * @throws BadCard
+     *             always.
+     */
+    @Test(expected = BadCard.class)
+    public void testBadNumber() throws BadCard {
+        Map<Integer, BigInteger> none = Collections.emptyMap();
+        new Ensemble(EngineConfig.DEFAULT).run(Arrays.asList(
+                new Card(CardType.NUMBER, new String[] { "0", "1x" }),
+                new Card(CardType.HALT)), Arrays.asList(none));
+    }
+
+    /**
+     * Tests that lanes whose cycles repeat a different number of times each
+     * produce the same report as a single Engine given the same initial
+     * values.
+     * 
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    @Test
+    public void testDivergingLanes() throws BadCard, IOException,
+            UnknownCard, LibraryLookupException {
+        int[] inputs = { 3, 0, 7, 3, 1, 12 };
+        List<Map<Integer, BigInteger>> lanes =
+                new ArrayList<Map<Integer, BigInteger>>();
+        List<String> expected = new ArrayList<String>();
+        for (int input : inputs) {
+            Map<Integer, BigInteger> overrides =
+                    new HashMap<Integer, BigInteger>();
+            overrides.put(0, BigInteger.valueOf(input));
+            overrides.put(2, BigInteger.valueOf(100 * input));
+            lanes.add(overrides);
+            this.tearDown();
+            this.setUp();
+            this.store().put(2, BigInteger.valueOf(100 * input));
+            this.runProgramString(String.format(COUNTDOWN, input));
+            expected.add(this.attendant().finalReport());
+        }
+        this.tearDown();
+        this.setUp();
+        this.loadProgramString(String.format(COUNTDOWN, 5));
+        List<String> reports = new Ensemble(EngineConfig.DEFAULT).run(
+                this.reader().cards(), lanes);
+        assertEquals(expected, reports);
+    }
+
+    /**
+     * Tests that lanes without overrides each produce the same report as a
+     * single Engine.
+     * 
+     * @throws URISyntaxException
+     *             if there is a problem loading the file.
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    @Test
+    public void testSameReport() throws BadCard, URISyntaxException,
+            IOException, UnknownCard, LibraryLookupException {
+        Map<Integer, BigInteger> none = Collections.emptyMap();
+        for (String program : Arrays.asList("test_alternation.ae",
+                "test_backloop.ae", "test_cback.ae", "test_cforward.ae",
+                "test_sqrt.ae")) {
+            this.tearDown();
+            this.setUp();
+            this.runProgram(program);
+            String expected = this.attendant().finalReport();
+            assertEquals(program, Arrays.asList(expected, expected),
+                    new Ensemble(EngineConfig.DEFAULT).run(
+                            this.reader().cards(), Arrays.asList(none, none)));
+        }
+    }
+}
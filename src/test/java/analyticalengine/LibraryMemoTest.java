@@ -0,0 +1,268 @@
+/**
+ * LibraryMemoTest.java - tests for remembering library function results
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import analyticalengine.attendant.DefaultAttendant;
+import analyticalengine.attendant.LibraryLookupException;
+import analyticalengine.cards.BadCard;
+import analyticalengine.cards.Card;
+import analyticalengine.cards.CardType;
+import analyticalengine.cards.UnknownCard;
+
+/**
+ * Tests that skipping library functions whose results are remembered has the
+ * same effect as running them.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class LibraryMemoTest extends EngineTestBase {
+
+    /** Test programs that include functions from the library. */
+    private static final String[] PROGRAMS = { "test_arctan.ae",
+            "test_cosine.ae", "test_exp.ae", "test_ln.ae", "test_sine.ae",
+            "test_sqrt.ae" };
+
+    /**
+     * Prints the square root of 2, then of 3, then of 2 again, followed by
+     * the most recent value in the mill.
+     */
+    private static final String[] SQUARE_ROOTS = { "A set decimal places to 5",
+            "A write numbers as 9.99999", "N0 2.0", "A include from library "
+                    + "cards for sqrt", "+", "L0", "P", "N0 3.0",
+            "A include from library cards for sqrt", "+", "L0", "P", "N0 2.0",
+            "A include from library cards for sqrt", "P", "H" };
+
+    /**
+     * Runs the specified program with the specified memo, or without a memo,
+     * and returns the report.
+     * 
+     * @param filename
+     *            The name of the file containing the program.
+     * @param memo
+     *            The memo, or {@code null}.
+     * @return The final report of the attendant.
+     * @throws URISyntaxException
+     *             if there is a problem loading the file.
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    private String report(final String filename, final LibraryMemo memo)
+            throws BadCard, URISyntaxException, IOException, UnknownCard,
+            LibraryLookupException {
+        this.tearDown();
+        this.setUp();
+        ((DefaultAnalyticalEngine) this.engine()).setLibraryMemo(memo);
+        this.runProgram(filename);
+        return this.attendant().finalReport();
+    }
+
+    /**
+     * Runs the specified program with the specified memo, or without a memo,
+     * and returns the report.
+     * 
+     * @param program
+     *            The cards of the program.
+     * @param memo
+     *            The memo, or {@code null}.
+     * @return The final report of the attendant.
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    private String reportString(final String[] program,
+            final LibraryMemo memo) throws BadCard, IOException, UnknownCard,
+            LibraryLookupException {
+        this.tearDown();
+        this.setUp();
+        ((DefaultAnalyticalEngine) this.engine()).setLibraryMemo(memo);
+        this.runProgramString(String.join(System.lineSeparator(), program));
+        return this.attendant().finalReport();
+    }
+
+    /**
+     * Tests that the least recently used result is forgotten once the memo
+     * is full.
+     * 
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    @Test
+    public void testEviction() throws BadCard, IOException, UnknownCard,
+            LibraryLookupException {
+        String expected = this.reportString(SQUARE_ROOTS, null);
+        LibraryMemo memo = new LibraryMemo(1);
+        assertEquals(expected, this.reportString(SQUARE_ROOTS, memo));
+        assertEquals(0, memo.hits());
+        assertEquals(3, memo.misses());
+        assertEquals(1, memo.size());
+    }
+
+    /**
+     * Tests that a column written only on some paths through a function is
+     * part of the key of its result, so that a remembered result does not
+     * replace the value the column had when the write was skipped.
+     * 
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    @Test
+    public void testConditionalWrite() throws BadCard, IOException,
+            UnknownCard, LibraryLookupException {
+        Path tempDir = Files.createTempDirectory(null);
+        tempDir.toFile().deleteOnExit();
+        Path function = tempDir.resolve("condf.ae");
+        Files.write(function, Arrays.asList("+", "L0", "L1", "CF?1", "S5"));
+        function.toFile().deleteOnExit();
+        String[] program = { "N0 0", "N1 -1", "N5 111",
+                "A include from library cards for condf", "N5 222",
+                "A include from library cards for condf", "+", "L5", "L6",
+                "P", "H" };
+
+        this.tearDown();
+        this.setUp();
+        this.library().addLibraryPath(tempDir);
+        this.runProgramString(String.join(System.lineSeparator(), program));
+        String expected = this.attendant().finalReport();
+        assertEquals("222" + System.lineSeparator(), expected);
+
+        this.tearDown();
+        this.setUp();
+        this.library().addLibraryPath(tempDir);
+        ((DefaultAnalyticalEngine) this.engine())
+                .setLibraryMemo(new LibraryMemo(16));
+        this.runProgramString(String.join(System.lineSeparator(), program));
+        assertEquals(expected, this.attendant().finalReport());
+    }
+
+    /**
+     * Tests that a library function that prints is never remembered.
+     */
+    @Test
+    public void testImpure() {
+        String name = "printer";
+        List<Card> chain = Arrays.asList(
+                Card.commentCard(DefaultAttendant.LIBRARY_BEGIN + name
+                        + DefaultAttendant.LIBRARY_SUFFIX),
+                Card.commentCard(""), new Card(CardType.ADD),
+                new Card(CardType.LOAD, new String[] { "0" }),
+                new Card(CardType.LOAD, new String[] { "1" }),
+                new Card(CardType.PRINT),
+                Card.commentCard(DefaultAttendant.LIBRARY_END + name
+                        + DefaultAttendant.LIBRARY_SUFFIX));
+        assertTrue(LibraryBlock.find(chain).isEmpty());
+        chain.set(5, new Card(CardType.STORE, new String[] { "2" }));
+        assertEquals(1, LibraryBlock.find(chain).size());
+        assertTrue(LibraryBlock.find(chain).containsKey(2));
+        // a store before any operation depends on the state of the mill
+        chain.set(2, new Card(CardType.STORE, new String[] { "2" }));
+        assertTrue(LibraryBlock.find(chain).isEmpty());
+    }
+
+    /**
+     * Tests that a function requested again with the same inputs is skipped,
+     * and leaves the store and the mill as if it had been run.
+     * 
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    @Test
+    public void testRepeatedInputs() throws BadCard, IOException, UnknownCard,
+            LibraryLookupException {
+        String expected = this.reportString(SQUARE_ROOTS, null);
+        LibraryMemo memo = new LibraryMemo();
+        assertEquals(expected, this.reportString(SQUARE_ROOTS, memo));
+        assertEquals(1, memo.hits());
+        assertEquals(2, memo.misses());
+        assertEquals(2, memo.size());
+    }
+
+    /**
+     * Tests that each test program produces the same report whether or not
+     * the results of library functions are remembered, including when every
+     * result is remembered from an earlier run of the same program.
+     * 
+     * @throws URISyntaxException
+     *             if there is a problem loading the file.
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    @Test
+    public void testSameReport() throws BadCard, URISyntaxException,
+            IOException, UnknownCard, LibraryLookupException {
+        for (String program : PROGRAMS) {
+            String expected = this.report(program, null);
+            LibraryMemo memo = new LibraryMemo();
+            assertEquals(program, expected, this.report(program, memo));
+            long misses = memo.misses();
+            assertEquals(program, expected, this.report(program, memo));
+            assertEquals(program, misses, memo.misses());
+            assertTrue(program, memo.hits() > 0);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * ParallelTableTest.java - tests for running the rows of a table at once
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+
+import org.junit.Test;
+
+import analyticalengine.attendant.LibraryLookupException;
+import analyticalengine.cards.BadCard;
+import analyticalengine.cards.UnknownCard;
+import analyticalengine.components.EngineConfig;
+
+/**
+ * Tests that dividing the rows of a table among several Engines produces the
+ * same report as running the program on a single Engine.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class ParallelTableTest extends EngineTestBase {
+
+    /** Test programs, which may or may not compute a table. */
+    private static final String[] PROGRAMS = { "test_backloop.ae",
+            "test_cback.ae", "test_cforward.ae", "test_exp.ae",
+            "test_forwardloop.ae", "test_sqrt.ae" };
+
+    /** Prints the squares of the numbers from one to twenty. */
+    private static final String[] SQUARES = { "N1 1", "N2 1", "N3 21",
+            "(?", "*", "L1", "L1", "P", "+", "L1", "L2", "S1", "-", "L1", "L3",
+            ")", "A write annotation done", "H" };
+
+    /** Prints the running sum of the numbers from one to twenty. */
+    private static final String[] SUMS = { "N1 1", "N2 1", "N3 21", "N4 0",
+            "(?", "+", "L4", "L1", "S4", "P", "+", "L1", "L2", "S1", "-",
+            "L1", "L3", ")", "H" };
+
+    /**
+     * Prints the numbers from zero to nine, but steps the counter again in an
+     * inner cycle while it is below three.
+     */
+    private static final String[] INNER_CYCLE = { "N1 0", "N2 1", "N3 10",
+            "N4 0", "N6 3", "+", "L1", "L4", "P", "A write new line", "+",
+            "L1", "L2", "S1", "-", "L1", "L6", "CB?8", "-", "L1", "L3",
+            "CB?17", "H" };
+
+    /** Prints the square roots of the numbers from one to ten. */
+    private static final String[] SQUARE_ROOTS = {
+            "A set decimal places to 5", "A write numbers as 9.99999",
+            "N101 10.0", "N103 1.0", "N104 1.0", "N105 0", "(?", "+", "L104",
+            "L105", "S000", "A include from library cards for sqrt", "+",
+            "L000", "P", "A write new line", "+", "L104", "L103", "S104", "-",
+            "L104", "L101", ")", "H" };
+
+    /**
+     * Loads the specified program and returns the report of running it on
+     * several Engines at once, after checking that it is the same as the
+     * report of running it on a single Engine.
+     * 
+     * @param program
+     *            The cards of the program.
+     * @return The report.
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    private String compare(final String[] program) throws BadCard,
+            IOException, UnknownCard, LibraryLookupException {
+        this.tearDown();
+        this.setUp();
+        this.runProgramString(String.join(System.lineSeparator(), program));
+        String expected = this.attendant().finalReport();
+        for (int threads = 1; threads <= 4; threads++) {
+            String actual = new ParallelTable(EngineConfig.DEFAULT, threads)
+                    .run(this.reader().cards());
+            assertEquals(expected, actual);
+        }
+        return expected;
+    }
+
+    /**
+     * Tests that a cycle is recognized as a table only if its repetitions
+     * depend on one another through its counter alone.
+     * 
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    @Test
+    public void testFind() throws BadCard, IOException, UnknownCard,
+            LibraryLookupException {
+        this.loadProgramString(String.join(System.lineSeparator(), SQUARES));
+        TableCycle cycle = TableCycle.find(this.reader().cards());
+        assertNotNull(cycle);
+        assertEquals(1, cycle.counter());
+        this.loadProgramString(String.join(System.lineSeparator(), SUMS));
+        assertNull(TableCycle.find(this.reader().cards()));
+        this.loadProgramString(String.join(System.lineSeparator(),
+                INNER_CYCLE));
+        assertNull(TableCycle.find(this.reader().cards()));
+        this.loadProgramString(String.join(System.lineSeparator(),
+                SQUARE_ROOTS));
+        cycle = TableCycle.find(this.reader().cards());
+        assertNotNull(cycle);
+        assertEquals(104, cycle.counter());
+    }
+
+    /**
+     * Tests that tables and other programs produce the same report whether
+     * they run on one Engine or several.
+     * 
+     * @throws URISyntaxException
+     *             if there is a problem loading the file.
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    @Test
+    public void testSameReport() throws BadCard, URISyntaxException,
+            IOException, UnknownCard, LibraryLookupException {
+        assertEquals(20 + 1, this.compare(SQUARES).split(
+                System.lineSeparator()).length);
+        this.compare(SUMS);
+        assertEquals("0 3 4 5 6 7 8 9", String.join(" ",
+                this.compare(INNER_CYCLE).trim().split("\\s+")));
+        this.compare(SQUARE_ROOTS);
+        for (String program : PROGRAMS) {
+            this.tearDown();
+            this.setUp();
+            this.runProgram(program);
+            String expected = this.attendant().finalReport();
+            assertEquals(program, expected, new ParallelTable(
+                    EngineConfig.DEFAULT, 3).run(this.reader().cards()));
+        }
+    }
+
+    /** Tests that the number of threads must be positive. */
+    @Test(expected = IllegalArgumentException.class)
+    public void testThreads() {
+        new ParallelTable(EngineConfig.DEFAULT, 0);
+    }
+}
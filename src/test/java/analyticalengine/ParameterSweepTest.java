@@ -0,0 +1,198 @@
+/**
+ * ParameterSweepTest.java - tests for ParameterSweep and Program
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import analyticalengine.attendant.LibraryLookupException;
+import analyticalengine.cards.BadCard;
+import analyticalengine.cards.Card;
+import analyticalengine.cards.Halt;
+import analyticalengine.cards.UnknownCard;
+import analyticalengine.components.CardReader;
+import analyticalengine.components.EngineConfig;
+
+/**
+ * Tests for the ParameterSweep and Program classes.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class ParameterSweepTest extends EngineTestBase {
+
+    /**
+     * Returns the cards in the specified string, one per line.
+     * 
+     * @param program
+     *            The cards of the program.
+     * @return The list of cards.
+     * @throws UnknownCard
+     *             if one of the lines is not a card.
+     */
+    private static List<Card> cards(final String program)
+            throws UnknownCard {
+        List<Card> cards = new ArrayList<Card>();
+        for (String line : program.split(System.lineSeparator())) {
+            cards.add(Card.fromString(line));
+        }
+        return cards;
+    }
+
+    /**
+     * Tests that a program loaded once produces, for each input, the same
+     * report as the program loaded and run by a single Engine, and the same
+     * reports as an ensemble.
+     * 
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    @Test
+    public void testSweep() throws BadCard, IOException, UnknownCard,
+            LibraryLookupException {
+        List<Map<Integer, BigInteger>> inputs =
+                new ArrayList<Map<Integer, BigInteger>>();
+        List<String> expected = new ArrayList<String>();
+        for (int input = 0; input < 20; input++) {
+            inputs.add(Collections.singletonMap(0, BigInteger.valueOf(input)));
+            this.tearDown();
+            this.setUp();
+            this.runProgramString(String.format(EnsembleTest.COUNTDOWN,
+                    input));
+            expected.add(this.attendant().finalReport());
+        }
+        Program program = Program.load(
+                cards(String.format(EnsembleTest.COUNTDOWN, 5)),
+                this.library(), true);
+        ParameterSweep sweep = new ParameterSweep(EngineConfig.DEFAULT, 4);
+        assertEquals(expected, sweep.run(program, inputs));
+        // the program is unchanged by running it
+        assertEquals(expected, sweep.run(program, inputs));
+        assertEquals(expected, new Ensemble(EngineConfig.DEFAULT).run(
+                program.cards(), inputs));
+    }
+
+    /**
+     * Tests that a program that includes library functions produces the
+     * same report as the program loaded by the attendant of a single Engine.
+     * 
+     * @throws URISyntaxException
+     *             if there is a problem loading the file.
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    @Test
+    public void testLibrary() throws BadCard, URISyntaxException,
+            IOException, UnknownCard, LibraryLookupException {
+        this.runProgram("test_sqrt.ae");
+        String expected = this.attendant().finalReport();
+        Path file = Paths.get(this.getClass().getResource("/test_sqrt.ae")
+                .toURI());
+        List<Card> cards = new ArrayList<Card>();
+        for (String line : Files.readAllLines(file)) {
+            cards.add(Card.fromString(line));
+        }
+        Program program = Program.load(cards, this.library(), false);
+        Map<Integer, BigInteger> none = Collections.emptyMap();
+        List<Map<Integer, BigInteger>> inputs =
+                new ArrayList<Map<Integer, BigInteger>>();
+        inputs.add(none);
+        inputs.add(none);
+        List<String> reports = new ParameterSweep(EngineConfig.DEFAULT, 2)
+                .run(program, inputs);
+        assertEquals(expected, reports.get(0));
+        assertEquals(expected, reports.get(1));
+    }
+
+    /**
+     * Tests that the cards of a program cannot be modified.
+     * 
+     * @throws UnknownCard
+     *             if a card string is malformed.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable() throws UnknownCard {
+        Program program = new Program(cards(String.join(
+                System.lineSeparator(), "N0 1", "H")));
+        assertEquals(2, program.size());
+        program.cards().set(0, Card.fromString("P"));
+    }
+
+    /**
+     * Tests that mounting a chain in the reader of a program replaces the
+     * program for that reader only.
+     * 
+     * @throws UnknownCard
+     *             if a card string is malformed.
+     * @throws Halt
+     *             if a reader has no more cards to read.
+     */
+    @Test
+    public void testMount() throws UnknownCard, Halt {
+        Program program = new Program(cards(String.join(
+                System.lineSeparator(), "N0 1", "H")));
+        CardReader reader = program.newReader(Collections.singletonMap(0,
+                BigInteger.valueOf(5)));
+        assertEquals("5", reader.readAndAdvance().argument(1));
+
+        List<Card> other = cards(String.join(System.lineSeparator(), "N0 2",
+                "P", "H"));
+        long mounts = reader.mounts();
+        reader.unmountCards();
+        reader.mountCards(other);
+        assertTrue(reader.mounts() > mounts);
+        assertEquals(other, reader.cards());
+        assertEquals("2", reader.readAndAdvance().argument(1));
+
+        assertEquals(2, program.size());
+        assertEquals("1", program.newReader(Collections
+                .<Integer, BigInteger> emptyMap()).readAndAdvance()
+                .argument(1));
+
+        reader.unmountCards();
+        assertEquals(0, reader.cards().size());
+    }
+}
@@ -0,0 +1,215 @@
+/**
+ * AsynchronousAttendantTest.java - tests for the asynchronous attendant
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.attendant;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import analyticalengine.EngineTestBase;
+import analyticalengine.TestUtils;
+import analyticalengine.cards.BadCard;
+import analyticalengine.cards.UnknownCard;
+
+/**
+ * Tests for the asynchronous attendant.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class AsynchronousAttendantTest extends EngineTestBase {
+
+    /**
+     * Tests that output recorded on the writer thread, through a queue small
+     * enough to force the Engine to wait, matches the output of the wrapped
+     * attendant, including changes of format and write direction.
+     * 
+     * @throws URISyntaxException
+     *             if there is a problem loading the file.
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    @Test
+    public void testWriteAs() throws BadCard, URISyntaxException, IOException,
+            UnknownCard, LibraryLookupException {
+        try (AsynchronousAttendant attendant = new AsynchronousAttendant(
+                this.attendant(), 2)) {
+            this.engine().setAttendant(attendant);
+            this.runProgram("test_writeas.ae");
+            String expected = "Total price for 337 items is"
+                    + " 1,114 pounds, 18 shillings, 2 pence.\n";
+            assertEquals(expected, attendant.finalReport());
+        }
+    }
+
+    /**
+     * Tests that many values printed in rows appear in the report in the
+     * order in which they were printed.
+     * 
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    @Test
+    public void testOrdering()
+            throws BadCard, IOException, UnknownCard, LibraryLookupException {
+        String newline = System.lineSeparator();
+        StringBuilder program = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            program.append("N0 " + i + newline);
+            program.append("+" + newline);
+            program.append("L0" + newline);
+            program.append("L0" + newline);
+            program.append("P" + newline);
+            expected.append(2 * i + newline);
+        }
+        try (AsynchronousAttendant attendant = new AsynchronousAttendant(
+                this.attendant(), 4)) {
+            this.engine().setAttendant(attendant);
+            this.runProgramString(program.toString());
+            assertEquals(expected.toString(), attendant.finalReport());
+        }
+    }
+
+    /**
+     * Tests that a request that fails on the writer thread is reported by the
+     * next flush, and only once.
+     */
+    @Test
+    public void testFailure() {
+        try (AsynchronousAttendant attendant = new AsynchronousAttendant(
+                this.attendant())) {
+            attendant.annotate("foo");
+            attendant.receiveOutput(BigInteger.ONE, (value) -> {
+                throw new IllegalArgumentException("bad printer");
+            });
+            attendant.receiveOutput(BigInteger.ONE, (value) -> {
+                throw new IllegalStateException("second failure");
+            });
+            try {
+                attendant.finalReport();
+                TestUtils.shouldHaveThrownException();
+            } catch (IllegalArgumentException exception) {
+                assertEquals("bad printer", exception.getMessage());
+            }
+            assertEquals("foo" + System.lineSeparator(),
+                    attendant.finalReport());
+        }
+    }
+
+    /** Tests that output cannot be recorded after the attendant is closed. */
+    @Test
+    public void testClosed() {
+        AsynchronousAttendant attendant = new AsynchronousAttendant(
+                this.attendant());
+        attendant.annotate("foo");
+        attendant.close();
+        assertEquals("foo" + System.lineSeparator(),
+                attendant.finalReport());
+        try {
+            attendant.annotate("bar");
+            TestUtils.shouldHaveThrownException();
+        } catch (IllegalStateException exception) {
+            // intentionally unimplemented; this exception is expected
+        }
+    }
+
+    /**
+     * Tests that closing the attendant while other threads are recording
+     * output neither loses an accepted request nor leaves a flush waiting
+     * forever.
+     * 
+     * @throws InterruptedException
+     *             if the test is interrupted while waiting for the threads.
+     */
+    @Test(timeout = 10000)
+    public void testCloseWhileWriting() throws InterruptedException {
+        AsynchronousAttendant attendant = new AsynchronousAttendant(
+                this.attendant(), 2);
+        AtomicInteger accepted = new AtomicInteger();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(() -> {
+                try {
+                    while (true) {
+                        attendant.annotate("x");
+                        accepted.incrementAndGet();
+                        attendant.flush();
+                    }
+                } catch (IllegalStateException exception) {
+                    // the attendant has been closed
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep(50);
+        attendant.close();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        String report = attendant.finalReport();
+        assertEquals(accepted.get(), report.replaceAll("[^x]", "").length());
+    }
+
+    /**
+     * Tests that waiting for the queue fails, instead of blocking forever,
+     * once the writer thread has stopped without being closed.
+     */
+    @Test(timeout = 10000)
+    public void testWriterStopped() {
+        try (AsynchronousAttendant attendant = new AsynchronousAttendant(
+                this.attendant())) {
+            attendant.receiveOutput(BigInteger.ONE, (value) -> {
+                // stops the writer thread once it next waits for a request
+                Thread.currentThread().interrupt();
+                return value.toString();
+            });
+            try {
+                attendant.flush();
+                attendant.flush();
+                TestUtils.shouldHaveThrownException();
+            } catch (IllegalStateException exception) {
+                // intentionally unimplemented; this exception is expected
+            }
+        }
+    }
+}
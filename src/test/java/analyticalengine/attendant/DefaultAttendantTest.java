@@ -20,17 +20,25 @@
  */
 package analyticalengine.attendant;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.math.BigInteger;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Test;
 
 import analyticalengine.TestUtils;
 import analyticalengine.cards.BadCard;
+import analyticalengine.cards.Card;
 import analyticalengine.cards.UnknownCard;
+import analyticalengine.components.StringPrinter;
 
 /**
  * Unit tets for the default attendant implementation.
@@ -98,4 +106,175 @@ public class DefaultAttendantTest extends AttendantTestBase {
             // intentionally unimplemented; this exception is expected
         }
     }
+
+    /**
+     * Tests that a printed value whose conversion to text is deferred is
+     * formatted according to the format in effect when it was printed, not
+     * when the report is rendered.
+     */
+    @Test
+    public void testDeferredFormat() {
+        Attendant attendant = this.attendant();
+        attendant.writeInDirection(WriteDirection.ROWS);
+        attendant.setFormat("9.99");
+        attendant.receiveOutput(BigInteger.valueOf(314), new StringPrinter());
+        attendant.setFormat(null);
+        attendant.receiveOutput(BigInteger.valueOf(-271),
+                new StringPrinter());
+        attendant.annotate("done");
+        String newline = System.lineSeparator();
+        assertEquals("3.14" + newline + "-271" + newline + "done" + newline,
+                attendant.finalReport());
+        attendant.reset();
+        assertEquals("", attendant.finalReport());
+    }
+
+    /**
+     * Tests that nested cycles, including an else clause, are translated
+     * into jump cards while the cards pass through the attendant.
+     * 
+     * @throws BadCard
+     *             if the cycles cannot be translated.
+     * @throws IOException
+     *             never.
+     * @throws UnknownCard
+     *             never.
+     * @throws LibraryLookupException
+     *             never.
+     */
+    @Test
+    public void testTranslateCycles() throws BadCard, IOException,
+            UnknownCard, LibraryLookupException {
+        this.attendant().setStripComments(true);
+        String newline = System.lineSeparator();
+        this.loadProgramString(String.join(newline, "N0 1", ". comment",
+                "{?", "(", "L0", ")", "}{", "+", "}"));
+        List<Card> cards = this.reader().cards();
+        assertEquals(6, cards.size());
+        assertEquals("N0 1", cards.get(0).toText());
+        assertEquals("CF?3", cards.get(1).toText());
+        assertEquals("L0", cards.get(2).toText());
+        assertEquals("CB+2", cards.get(3).toText());
+        assertEquals("CF+1", cards.get(4).toText());
+        assertEquals("+", cards.get(5).toText());
+    }
+
+    /**
+     * Tests that a cycle without an end is rejected.
+     * 
+     * @throws BadCard
+     *             always.
+     * @throws IOException
+     *             never.
+     * @throws UnknownCard
+     *             never.
+     * @throws LibraryLookupException
+     *             never.
+     */
+    @Test(expected = BadCard.class)
+    public void testUnendedCycle() throws BadCard, IOException, UnknownCard,
+            LibraryLookupException {
+        this.loadProgramString(String.join(System.lineSeparator(), "(", "{",
+                "}", "L0"));
+    }
+
+    /**
+     * Tests that files included by included files are spliced into the card
+     * chain in the order in which they are requested.
+     * 
+     * @throws BadCard
+     *             if a requested file cannot be found.
+     * @throws IOException
+     *             if there is a problem creating the temporary files.
+     * @throws UnknownCard
+     *             never.
+     * @throws LibraryLookupException
+     *             if a requested library file cannot be found.
+     */
+    @Test
+    public void testNestedIncludes() throws BadCard, IOException,
+            UnknownCard, LibraryLookupException {
+        Path tempDir = Files.createTempDirectory(null);
+        tempDir.toFile().deleteOnExit();
+        this.library().addLibraryPath(tempDir);
+        Path inner = tempDir.resolve("inner.ae");
+        Files.write(inner, Arrays.asList("N1 2"));
+        inner.toFile().deleteOnExit();
+        Path outer = tempDir.resolve("outer.ae");
+        Files.write(outer, Arrays.asList("N0 1",
+                "A include from library cards for inner", "N3 4"));
+        outer.toFile().deleteOnExit();
+
+        this.attendant().setStripComments(true);
+        String newline = System.lineSeparator();
+        this.loadProgramString(String.join(newline, "N5 6",
+                "A include cards " + outer, "A include cards " + inner,
+                "N7 8"));
+        List<Card> cards = this.reader().cards();
+        assertEquals(6, cards.size());
+        String[] expected = { "N5 6", "N0 1", "N1 2", "N3 4", "N1 2",
+                "N7 8" };
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], cards.get(i).toText());
+        }
+    }
+
+    /**
+     * Tests that a file that includes itself through another file is
+     * rejected.
+     * 
+     * @throws BadCard
+     *             always.
+     * @throws IOException
+     *             if there is a problem creating the temporary files.
+     * @throws UnknownCard
+     *             never.
+     * @throws LibraryLookupException
+     *             never.
+     */
+    @Test(expected = BadCard.class)
+    public void testCyclicInclude() throws BadCard, IOException,
+            UnknownCard, LibraryLookupException {
+        Path tempDir = Files.createTempDirectory(null);
+        tempDir.toFile().deleteOnExit();
+        Path first = tempDir.resolve("first.ae");
+        Path second = tempDir.resolve("second.ae");
+        Files.write(first, Arrays.asList("A include cards " + second));
+        Files.write(second, Arrays.asList("A include cards " + first));
+        first.toFile().deleteOnExit();
+        second.toFile().deleteOnExit();
+        this.loadProgramString("A include cards " + first);
+    }
+
+    /**
+     * Tests that loading many programs that include library functions shares
+     * a bounded pool of daemon threads instead of starting threads for each
+     * program.
+     * 
+     * @throws BadCard
+     *             never.
+     * @throws IOException
+     *             never.
+     * @throws UnknownCard
+     *             never.
+     * @throws LibraryLookupException
+     *             if the library function cannot be read.
+     */
+    @Test
+    public void testSharedIncludeThreads() throws BadCard, IOException,
+            UnknownCard, LibraryLookupException {
+        for (int i = 0; i < 4 * IncludeResolver.THREADS; i++) {
+            this.loadProgramString(String.join(System.lineSeparator(),
+                    "A set decimal places to 10",
+                    "A include from library cards for sqrt"));
+        }
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("include-resolver")) {
+                assertTrue(thread.isDaemon());
+                count++;
+            }
+        }
+        assertTrue(count <= IncludeResolver.THREADS);
+    }
 }
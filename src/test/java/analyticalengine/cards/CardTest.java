@@ -119,4 +119,78 @@ public class CardTest {
             assertTrue(true);
         }
     }
+
+    /**
+     * Tests that the arguments of cards are taken from the line exactly as
+     * before, including surrounding whitespace and the primes of memory
+     * access cards.
+     * 
+     * @throws UnknownCard
+     *             if a line cannot be parsed.
+     */
+    @Test
+    public void testArguments() throws UnknownCard {
+        Card card = Card.fromString("N001 \t +12  \r");
+        assertEquals(CardType.NUMBER, card.type());
+        assertEquals(2, card.numArguments());
+        assertEquals("001", card.argument(0));
+        assertEquals("+12", card.argument(1));
+        card = Card.fromString("N");
+        assertEquals("", card.argument(0));
+
+        card = Card.fromString("L 003' ");
+        assertEquals(CardType.LOADPRIME, card.type());
+        assertEquals("003", card.argument(0));
+        assertEquals(CardType.ZLOAD, Card.fromString("Z3").type());
+        assertEquals(CardType.STOREPRIME, Card.fromString("S3'").type());
+
+        assertEquals(CardType.LSHIFT, Card.fromString("<  ").type());
+        card = Card.fromString("> 12");
+        assertEquals(CardType.RSHIFTN, card.type());
+        assertEquals("12", card.argument(0));
+
+        card = Card.fromString("CB? 4 ");
+        assertEquals(CardType.CBACKWARD, card.type());
+        assertEquals(" 4 ", card.argument(0));
+
+        card = Card.fromString("A include from library cards for sqrt ");
+        assertEquals(CardType.INCLUDELIB, card.type());
+        assertEquals("sqrt", card.argument(0));
+        card = Card.fromString("A write numbers as 9.9 ");
+        assertEquals("9.9 ", card.argument(0));
+
+        card = Card.fromString(".  a comment ");
+        assertEquals(CardType.COMMENT, card.type());
+        assertEquals("a comment", card.argument(0));
+        assertEquals(CardType.COMMENT, Card.fromString("").type());
+
+        assertEquals(CardType.CBACKSTART, Card.fromString("( ?").type());
+        assertEquals(CardType.FORWARDSTART, Card.fromString("{").type());
+        assertEquals(CardType.ALTERNATION, Card.fromString("}{").type());
+        assertEquals(CardType.TRACEOFF, Card.fromString("T0").type());
+        assertEquals(CardType.SETY, Card.fromString("DY").type());
+    }
+
+    /**
+     * Tests that an attendant request which is only a prefix of a known
+     * request is rejected.
+     * 
+     * @throws UnknownCard
+     *             always.
+     */
+    @Test(expected = UnknownCard.class)
+    public void testIncompleteRequest() throws UnknownCard {
+        Card.fromString("A write in");
+    }
+
+    /**
+     * Tests that a combinatorial card without a direction is rejected.
+     * 
+     * @throws UnknownCard
+     *             always.
+     */
+    @Test(expected = UnknownCard.class)
+    public void testBadCombinatorial() throws UnknownCard {
+        Card.fromString("CX+1");
+    }
 }
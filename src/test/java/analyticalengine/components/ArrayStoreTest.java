@@ -0,0 +1,78 @@
+/**
+ * ArrayStoreTest.java - tests for the array-backed store
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.components;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests for the ArrayStore class.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class ArrayStoreTest {
+
+    /**
+     * Tests that writing columns marks them dirty, that clearing the dirty
+     * columns keeps their values, and that resetting zeroes them.
+     */
+    @Test
+    public void testDirtyColumns() {
+        DirtyTrackingStore store = new ArrayStore();
+        assertEquals(BigInteger.ZERO, store.get(HashMapStore.MAX_ADDRESS));
+        assertEquals(-1, store.nextDirty(0));
+
+        store.put(7, BigInteger.TEN);
+        store.loadAll(new int[] { 3, 1000 },
+                new BigInteger[] { BigInteger.ONE, BigInteger.ONE.negate() });
+        assertEquals(3, store.nextDirty(0));
+        assertEquals(3, store.nextDirty(3));
+        assertEquals(7, store.nextDirty(4));
+        assertEquals(1000, store.nextDirty(8));
+        assertEquals(-1, store.nextDirty(1001));
+
+        store.clearDirty();
+        assertEquals(-1, store.nextDirty(0));
+        assertArrayEquals(new BigInteger[] { BigInteger.ONE, BigInteger.TEN },
+                store.snapshot(new int[] { 3, 7 }));
+
+        store.put(5, BigInteger.ONE);
+        assertEquals(5, store.nextDirty(0));
+        store.reset();
+        assertEquals(-1, store.nextDirty(0));
+        assertArrayEquals(
+                new BigInteger[] { BigInteger.ZERO, BigInteger.ZERO,
+                        BigInteger.ZERO, BigInteger.ZERO },
+                store.snapshot(new int[] { 3, 5, 7, 1000 }));
+    }
+
+    /** Tests that addresses outside of the store are rejected. */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testBadAddress() {
+        new ArrayStore()
+                .snapshot(new int[] { 0, HashMapStore.MAX_ADDRESS + 1 });
+    }
+}
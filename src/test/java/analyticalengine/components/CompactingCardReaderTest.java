@@ -0,0 +1,174 @@
+/**
+ * CompactingCardReaderTest.java - tests for the compacting card reader
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.components;
+
+import static analyticalengine.TestUtils.shouldHaveThrownException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import analyticalengine.EngineTestBase;
+import analyticalengine.attendant.LibraryLookupException;
+import analyticalengine.cards.BadCard;
+import analyticalengine.cards.Card;
+import analyticalengine.cards.Halt;
+import analyticalengine.cards.UnknownCard;
+
+/**
+ * Tests for the CompactingCardReader class.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class CompactingCardReaderTest extends EngineTestBase {
+
+    /** Test programs containing comments, cycles, and library calls. */
+    private static final String[] PROGRAMS = { "test_alternation.ae",
+            "test_arctan.ae", "test_backloop.ae", "test_basic.ae",
+            "test_cback.ae", "test_cforward.ae", "test_cosine.ae",
+            "test_exp.ae", "test_forwardloop.ae", "test_ln.ae",
+            "test_sine.ae", "test_sqrt.ae" };
+
+    /**
+     * Runs the specified program, reading the cards from a compacting card
+     * reader if requested, and returns the report.
+     * 
+     * @param filename
+     *            The name of the file containing the program.
+     * @param compact
+     *            Whether to read the cards from a compacting card reader.
+     * @return The final report of the attendant.
+     * @throws URISyntaxException
+     *             if there is a problem loading the file.
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    private String report(final String filename, final boolean compact)
+            throws BadCard, URISyntaxException, IOException, UnknownCard,
+            LibraryLookupException {
+        this.tearDown();
+        this.setUp();
+        this.loadProgram(filename);
+        if (compact) {
+            CardReader reader = new CompactingCardReader();
+            reader.mountCards(this.reader().cards());
+            this.engine().setCardReader(reader);
+        }
+        this.engine().run();
+        return this.attendant().finalReport();
+    }
+
+    /**
+     * Tests that each test program produces the same report whether or not
+     * its comment cards are removed.
+     * 
+     * @throws URISyntaxException
+     *             if there is a problem loading the file.
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    @Test
+    public void testSameReport() throws BadCard, URISyntaxException,
+            IOException, UnknownCard, LibraryLookupException {
+        for (String program : PROGRAMS) {
+            assertEquals(program, this.report(program, false),
+                    this.report(program, true));
+        }
+    }
+
+    /**
+     * Tests that comment cards are never read, and that positions and jumps
+     * refer to the card chain as mounted.
+     * 
+     * @throws UnknownCard
+     *             if a card string is malformed.
+     * @throws Halt
+     *             if the reader reaches the end of the chain too early.
+     */
+    @Test
+    public void testPositions() throws UnknownCard, Halt {
+        List<Card> chain = Arrays.asList(Card.fromString("N0 1"),
+                Card.commentCard("a"), Card.commentCard("b"),
+                Card.fromString("L0"), Card.commentCard("c"),
+                Card.fromString("P"), Card.commentCard("d"));
+        CardReader reader = new CompactingCardReader();
+        reader.mountCards(chain);
+        assertEquals(chain, reader.cards());
+        assertEquals(-1, reader.position());
+
+        assertSame(chain.get(0), reader.readAndAdvance());
+        assertEquals(0, reader.position());
+        assertSame(chain.get(3), reader.readAndAdvance());
+        assertEquals(3, reader.position());
+
+        // advancing onto a comment card reads the next card after it
+        reader.reverse(2);
+        assertEquals(0, reader.position());
+        assertSame(chain.get(3), reader.readAndAdvance());
+        reader.advance(1);
+        assertSame(chain.get(5), reader.readAndAdvance());
+        assertEquals(5, reader.position());
+
+        reader.reverse(6);
+        assertEquals(-1, reader.position());
+        try {
+            reader.reverse(1);
+            shouldHaveThrownException();
+        } catch (IndexOutOfBoundsException exception) {
+            // this is expected
+        }
+        try {
+            reader.advance(8);
+            shouldHaveThrownException();
+        } catch (IndexOutOfBoundsException exception) {
+            // this is expected
+        }
+
+        // the trailing comment card is never read
+        reader.advance(6);
+        try {
+            reader.readAndAdvance();
+            shouldHaveThrownException();
+        } catch (Halt exception) {
+            // reaching the end of the chain is signaled without a stack trace
+            assertSame(Halt.END_OF_CHAIN, exception);
+            assertEquals(0, exception.getStackTrace().length);
+        }
+    }
+}
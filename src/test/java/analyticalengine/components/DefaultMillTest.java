@@ -0,0 +1,179 @@
+/**
+ * DefaultMillTest.java - tests for the default mill implementation
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.components;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the DefaultMill class.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class DefaultMillTest {
+
+    /** One more than the largest value that fits in a single axis. */
+    private static final BigInteger MAXPLUSONE = DefaultMill.MAX
+            .add(BigInteger.ONE);
+
+    /** The number of random trials to run for each operation. */
+    private static final int TRIALS = 2000;
+
+    /** The mill under test. */
+    private Mill mill = null;
+
+    /** The source of random operands; seeded so failures are reproducible. */
+    private Random random = null;
+
+    /**
+     * Returns a random integer that fits in a single axis, with a random
+     * number of digits and a random sign.
+     * 
+     * @return A random integer that fits in a single axis.
+     */
+    private BigInteger randomValue() {
+        int digits = 1 + this.random.nextInt(DefaultMill.WIDTH);
+        BigInteger bound = BigInteger.TEN.pow(digits);
+        BigInteger value = new BigInteger(bound.bitLength() + 8, this.random)
+                .mod(bound);
+        if (this.random.nextBoolean()) {
+            return value.negate();
+        }
+        return value;
+    }
+
+    /** Creates a fresh mill and random number generator for each test. */
+    @Before
+    public void setUp() {
+        this.mill = new DefaultMill();
+        this.random = new Random(1837);
+    }
+
+    /**
+     * Tests that division of single-width and double-width dividends matches
+     * {@link BigInteger#divideAndRemainder(BigInteger)}, including setting the
+     * run up lever on overflow.
+     */
+    @Test
+    public void testDivide() {
+        for (int i = 0; i < TRIALS; i++) {
+            BigInteger low = this.randomValue();
+            BigInteger divisor = this.randomValue();
+            BigInteger high = BigInteger.ZERO;
+            if (i % 2 == 0) {
+                high = this.randomValue();
+            }
+            // make sure the boundary |high| == |divisor| is exercised
+            if (i % 7 == 0) {
+                high = divisor.negate();
+            }
+
+            this.mill.setOperation(Operation.DIVIDE);
+            this.mill.transferIn(low);
+            this.mill.transferIn(high, true);
+            this.mill.transferIn(divisor);
+
+            if (divisor.signum() == 0) {
+                assertTrue(this.mill.hasRunUp());
+                continue;
+            }
+            BigInteger dividend = high.multiply(MAXPLUSONE).add(low);
+            BigInteger[] qr = dividend.divideAndRemainder(divisor);
+            if (qr[0].abs().compareTo(DefaultMill.MAX) > 0) {
+                assertTrue(this.mill.hasRunUp());
+                assertEquals(BigInteger.ZERO, this.mill.transferOut());
+                assertEquals(BigInteger.ZERO, this.mill.transferOut(true));
+            } else {
+                assertFalse(this.mill.hasRunUp());
+                assertEquals(qr[1], this.mill.transferOut());
+                assertEquals(qr[0], this.mill.transferOut(true));
+            }
+        }
+    }
+
+    /** Tests that division by zero sets the run up lever. */
+    @Test
+    public void testDivideByZero() {
+        this.mill.setOperation(Operation.DIVIDE);
+        this.mill.transferIn(BigInteger.TEN);
+        this.mill.transferIn(BigInteger.ZERO);
+        assertTrue(this.mill.hasRunUp());
+        assertEquals(BigInteger.ZERO, this.mill.transferOut());
+        assertEquals(BigInteger.ZERO, this.mill.transferOut(true));
+    }
+
+    /**
+     * Tests that a left shift followed by a division and a multiplication
+     * followed by a right shift agree with the corresponding operations on
+     * unbounded integers.
+     */
+    @Test
+    public void testShifts() {
+        for (int i = 0; i < TRIALS; i++) {
+            BigInteger a = this.randomValue();
+            BigInteger b = this.randomValue();
+            int shift = this.random.nextInt(DefaultMill.WIDTH + 1);
+            BigInteger factor = BigInteger.TEN.pow(shift);
+
+            this.mill.setOperation(Operation.MULTIPLY);
+            this.mill.transferIn(a);
+            this.mill.transferIn(b);
+            this.mill.rightShift(shift);
+            BigInteger[] expected = a.multiply(b).divide(factor)
+                    .divideAndRemainder(MAXPLUSONE);
+            assertEquals(expected[1], this.mill.transferOut());
+            assertEquals(expected[0], this.mill.transferOut(true));
+
+            this.mill.setOperation(Operation.DIVIDE);
+            this.mill.transferIn(a);
+            this.mill.leftShift(shift);
+            expected = a.multiply(factor).divideAndRemainder(MAXPLUSONE);
+            assertEquals(expected[1], this.mill.mostRecentValue().get());
+        }
+    }
+
+    /**
+     * Tests that the product is split between the main and prime egress axes
+     * exactly as dividing it by one more than the maximum value would.
+     */
+    @Test
+    public void testMultiply() {
+        for (int i = 0; i < TRIALS; i++) {
+            BigInteger a = this.randomValue();
+            BigInteger b = this.randomValue();
+            this.mill.setOperation(Operation.MULTIPLY);
+            this.mill.transferIn(a);
+            this.mill.transferIn(b);
+            BigInteger[] expected = a.multiply(b)
+                    .divideAndRemainder(MAXPLUSONE);
+            assertEquals(expected[1], this.mill.transferOut());
+            assertEquals(expected[0], this.mill.transferOut(true));
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * EngineConfigTest.java - tests for EngineConfig
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.components;
+
+import static analyticalengine.TestUtils.shouldHaveThrownException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests for the EngineConfig class.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class EngineConfigTest {
+
+    /** A configuration much narrower than Babbage's design. */
+    private static final EngineConfig NARROW = new EngineConfig(10, 5);
+
+    /** Tests that the default configuration matches the default components. */
+    @Test
+    public void testDefault() {
+        assertEquals(HashMapStore.MAX_ADDRESS,
+                EngineConfig.DEFAULT.maxAddress());
+        assertEquals(HashMapStore.MAX_VALUE, EngineConfig.DEFAULT.maxValue());
+        assertEquals(DefaultMill.MAX, EngineConfig.DEFAULT.maxValue());
+        assertEquals(DefaultMill.MIN, EngineConfig.DEFAULT.minValue());
+    }
+
+    /** Tests that the axes of a narrow mill overflow at the narrow width. */
+    @Test
+    public void testNarrowMill() {
+        BigInteger max = BigInteger.valueOf(99999);
+        assertEquals(max, NARROW.maxValue());
+
+        Mill mill = NARROW.newMill();
+        mill.setOperation(Operation.ADD);
+        mill.transferIn(max);
+        mill.transferIn(BigInteger.ONE);
+        assertTrue(mill.hasRunUp());
+        assertEquals(BigInteger.ZERO, mill.transferOut());
+
+        mill.reset();
+        mill.setOperation(Operation.MULTIPLY);
+        mill.transferIn(max);
+        mill.transferIn(max);
+        assertFalse(mill.hasRunUp());
+        // 99999 * 99999 = 99998 00001
+        assertEquals(BigInteger.ONE, mill.transferOut());
+        assertEquals(BigInteger.valueOf(99998), mill.transferOut(true));
+
+        mill.reset();
+        mill.setOperation(Operation.DIVIDE);
+        mill.transferIn(BigInteger.ZERO);
+        mill.transferIn(max, true);
+        mill.transferIn(BigInteger.ONE);
+        assertTrue(mill.hasRunUp());
+    }
+
+    /** Tests that a narrow store rejects addresses and values out of bounds. */
+    @Test
+    public void testNarrowStore() {
+        Store[] stores = { NARROW.newStore(), new HashMapStore(NARROW) };
+        BigInteger max = NARROW.maxValue();
+        for (Store store : stores) {
+            store.put(9, max);
+            store.put(0, max.negate());
+            assertEquals(max, store.get(9));
+            try {
+                store.put(10, BigInteger.ONE);
+                shouldHaveThrownException();
+            } catch (IndexOutOfBoundsException exception) {
+                // this is expected
+            }
+            try {
+                store.put(0, max.add(BigInteger.ONE));
+                shouldHaveThrownException();
+            } catch (IllegalArgumentException exception) {
+                // this is expected
+            }
+            try {
+                store.get(10);
+                shouldHaveThrownException();
+            } catch (IndexOutOfBoundsException exception) {
+                // this is expected
+            }
+        }
+    }
+
+    /** Tests that a configuration with non-positive dimensions is rejected. */
+    @Test
+    public void testBadConfig() {
+        try {
+            new EngineConfig(0, 5);
+            shouldHaveThrownException();
+        } catch (IllegalArgumentException exception) {
+            // this is expected
+        }
+        try {
+            new EngineConfig(10, -1);
+            shouldHaveThrownException();
+        } catch (IllegalArgumentException exception) {
+            // this is expected
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * LazyCurvePrinterTest.java - tests for the lazily created curve printer
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.components;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import analyticalengine.EngineTestBase;
+
+/**
+ * Tests for the LazyCurvePrinter class.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class LazyCurvePrinterTest extends EngineTestBase {
+
+    /** Tests that the curve printer is created once, on the first use. */
+    @Test
+    public void testCreatedOnce() {
+        AtomicInteger created = new AtomicInteger();
+        LazyCurvePrinter printer = new LazyCurvePrinter(() -> {
+            created.incrementAndGet();
+            return new NullCurvePrinter();
+        });
+        printer.reset();
+        assertFalse(printer.isCreated());
+        printer.setX(BigInteger.ONE);
+        printer.setY(BigInteger.ONE);
+        printer.draw();
+        printer.move();
+        printer.reset();
+        assertTrue(printer.isCreated());
+        assertEquals(1, created.get());
+    }
+
+    /**
+     * Tests that running a program without curve drawing cards does not
+     * create the curve printer, and that a program with one does.
+     * 
+     * @throws Exception
+     *             if there is a problem running the programs.
+     */
+    @Test
+    public void testEngine() throws Exception {
+        LazyCurvePrinter printer =
+                new LazyCurvePrinter(() -> new NullCurvePrinter());
+        this.engine().setCurvePrinter(printer);
+        this.runProgramString("N0 1\nN1 2\n+\nL0\nL1\nP\nH");
+        assertFalse(printer.isCreated());
+
+        this.tearDown();
+        this.setUp();
+        this.engine().setCurvePrinter(printer);
+        this.runProgramString("N0 1\nN1 2\n+\nL0\nL1\nDX\nDY\nD+\nH");
+        assertTrue(printer.isCreated());
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * LongMillTest.java - tests for the long-based mill implementation
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.components;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+/**
+ * Tests for the LongMill class.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class LongMillTest {
+
+    /** The number of random requests to make of each pair of mills. */
+    private static final int TRIALS = 20000;
+
+    /** The operations that a mill performs, indexed for random selection. */
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    /**
+     * Returns a random integer that fits in an axis of the specified width.
+     * 
+     * Most of the integers are small, but some are near the limit of the
+     * width, so that the long mill must switch to arbitrary precision.
+     * 
+     * @param random
+     *            The source of randomness.
+     * @param width
+     *            The width of the axis.
+     * @return A random integer of at most {@code width} digits.
+     */
+    private static BigInteger randomValue(final Random random,
+            final int width) {
+        int digits = 1 + random.nextInt(Math.min(width, 4));
+        if (random.nextInt(10) == 0) {
+            digits = 1 + random.nextInt(width);
+        }
+        BigInteger bound = BigInteger.TEN.pow(digits);
+        BigInteger value = new BigInteger(bound.bitLength() + 8, random)
+                .mod(bound);
+        if (random.nextBoolean()) {
+            return value.negate();
+        }
+        return value;
+    }
+
+    /**
+     * Makes the specified request of a mill and returns the class of the
+     * exception it throws, if any.
+     * 
+     * @param mill
+     *            The mill.
+     * @param request
+     *            The request to make of the mill.
+     * @return The class of the exception thrown by the mill, or {@code null}
+     *         if no exception is thrown.
+     */
+    private static Class<?> apply(final Mill mill,
+            final Consumer<Mill> request) {
+        try {
+            request.accept(mill);
+        } catch (RuntimeException exception) {
+            return exception.getClass();
+        }
+        return null;
+    }
+
+    /**
+     * Makes the same random sequence of requests of a long mill and a
+     * default mill with the specified width and checks that they respond
+     * identically.
+     * 
+     * @param width
+     *            The width of the axes of both mills.
+     */
+    private static void compare(final int width) {
+        EngineConfig config = new EngineConfig(10, width);
+        Mill expected = new DefaultMill(config);
+        Mill actual = new LongMill(config);
+        Random random = new Random(1834 + width);
+        for (int i = 0; i < TRIALS; i++) {
+            String step = "width " + width + ", request " + i;
+            int kind = random.nextInt(20);
+            Consumer<Mill> request;
+            if (kind == 0) {
+                request = m -> m.reset();
+            } else if (kind < 3) {
+                Operation operation = OPERATIONS[random
+                        .nextInt(OPERATIONS.length)];
+                request = m -> m.setOperation(operation);
+            } else if (kind < 5) {
+                int shift = random.nextInt(2 * width + 1);
+                request = m -> m.leftShift(shift);
+            } else if (kind < 7) {
+                int shift = random.nextInt(2 * width + 1);
+                request = m -> m.rightShift(shift);
+            } else if (kind < 9) {
+                boolean prime = random.nextBoolean();
+                assertEquals(step, expected.transferOut(prime),
+                        actual.transferOut(prime));
+                request = m -> m.hasRunUp();
+            } else if (kind == 9) {
+                MillState state = expected.state();
+                request = m -> m.restore(state);
+            } else {
+                BigInteger value = randomValue(random, width);
+                boolean prime = random.nextInt(5) == 0;
+                request = m -> m.transferIn(value, prime);
+            }
+            assertEquals(step, apply(expected, request),
+                    apply(actual, request));
+            assertEquals(step, expected.hasRunUp(), actual.hasRunUp());
+            assertEquals(step, expected.mostRecentValue(),
+                    actual.mostRecentValue());
+        }
+    }
+
+    /**
+     * Tests that a long mill behaves like a default mill when its axes are
+     * narrow enough for overflow to be detected in {@code long} arithmetic.
+     */
+    @Test
+    public void testNarrow() {
+        compare(3);
+        compare(9);
+        compare(LongMill.LONG_WIDTH);
+    }
+
+    /**
+     * Tests that a long mill behaves like a default mill when its axes are
+     * wider than a {@code long}.
+     */
+    @Test
+    public void testWide() {
+        compare(LongMill.LONG_WIDTH + 1);
+        compare(EngineConfig.DEFAULT_WIDTH);
+    }
+
+    /**
+     * Tests that a long mill switches to arbitrary precision when a product
+     * does not fit in a {@code long}, and switches back when it is reset.
+     */
+    @Test
+    public void testPromotion() {
+        Mill mill = new LongMill();
+        BigInteger big = BigInteger.TEN.pow(15);
+        mill.setOperation(Operation.MULTIPLY);
+        mill.transferIn(big);
+        mill.transferIn(big);
+        assertEquals(big.multiply(big), mill.transferOut());
+        mill.transferIn(big.multiply(big));
+        mill.transferIn(BigInteger.ONE);
+        assertEquals(big.multiply(big), mill.transferOut());
+
+        mill.reset();
+        mill.setOperation(Operation.ADD);
+        mill.transferIn(BigInteger.ONE);
+        mill.transferIn(BigInteger.ONE);
+        assertEquals(BigInteger.valueOf(2), mill.transferOut());
+    }
+}
@@ -0,0 +1,280 @@
+/**
+ * MappedCardReaderTest.java - tests for MappedCardReader
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.components;
+
+import static analyticalengine.TestUtils.shouldHaveThrownException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import analyticalengine.EngineTestBase;
+import analyticalengine.attendant.LibraryLookupException;
+import analyticalengine.cards.BadCard;
+import analyticalengine.cards.Card;
+import analyticalengine.cards.CardType;
+import analyticalengine.cards.Halt;
+import analyticalengine.cards.UnknownCard;
+
+/**
+ * Tests for the MappedCardReader class.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class MappedCardReaderTest extends EngineTestBase {
+
+    /** Test programs containing comments, cycles, and library calls. */
+    private static final String[] PROGRAMS = { "test_alternation.ae",
+            "test_arctan.ae", "test_backloop.ae", "test_basic.ae",
+            "test_cback.ae", "test_cforward.ae", "test_cosine.ae",
+            "test_exp.ae", "test_forwardloop.ae", "test_ln.ae",
+            "test_sine.ae", "test_sqrt.ae" };
+
+    /**
+     * Runs the specified program, reading the cards from a mapped card reader
+     * if requested, and returns the report.
+     * 
+     * @param filename
+     *            The name of the file containing the program.
+     * @param mapped
+     *            Whether to read the cards from a mapped card reader.
+     * @return The final report of the attendant.
+     * @throws URISyntaxException
+     *             if there is a problem loading the file.
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    private String report(final String filename, final boolean mapped)
+            throws BadCard, URISyntaxException, IOException, UnknownCard,
+            LibraryLookupException {
+        this.tearDown();
+        this.setUp();
+        if (mapped) {
+            CardReader reader = new MappedCardReader();
+            this.attendant().setCardReader(reader);
+            this.engine().setCardReader(reader);
+        }
+        this.loadProgram(filename);
+        this.engine().run();
+        return this.attendant().finalReport();
+    }
+
+    /**
+     * Tests that each test program produces the same report whether or not
+     * its cards are read from mapped files.
+     * 
+     * @throws URISyntaxException
+     *             if there is a problem loading the file.
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    @Test
+    public void testSameReport() throws BadCard, URISyntaxException,
+            IOException, UnknownCard, LibraryLookupException {
+        for (String program : PROGRAMS) {
+            assertEquals(program, this.report(program, false),
+                    this.report(program, true));
+        }
+    }
+
+    /**
+     * Tests that cards are read back with all their arguments and comments,
+     * and that positions and jumps behave as in the array list card reader.
+     * 
+     * @throws UnknownCard
+     *             if a card string is malformed.
+     * @throws Halt
+     *             if the reader reaches the end of the chain too early.
+     */
+    @Test
+    public void testPositions() throws UnknownCard, Halt {
+        List<Card> chain = Arrays.asList(Card.fromString("N0 1 extra"),
+                Card.commentCard("café ∑"), Card.fromString("L0"),
+                new Card(CardType.ANNOTATE, new String[] { "" }, "note"),
+                Card.fromString("P"));
+        CardReader reader = new MappedCardReader();
+        reader.mountCards(chain);
+        assertEquals(chain.size(), reader.cards().size());
+        for (int i = 0; i < chain.size(); i++) {
+            assertEquals(chain.get(i).toString(),
+                    reader.cards().get(i).toString());
+            assertEquals(chain.get(i).comment(),
+                    reader.cards().get(i).comment());
+        }
+        assertEquals(-1, reader.position());
+
+        assertEquals("NUMBER[0, 1, extra]", reader.readAndAdvance()
+                .toString());
+        reader.advance(2);
+        assertEquals(2, reader.position());
+        assertEquals("note", reader.readAndAdvance().comment());
+        assertEquals(CardType.PRINT, reader.readAndAdvance().type());
+        reader.reverse(5);
+        assertEquals(-1, reader.position());
+        try {
+            reader.reverse(1);
+            shouldHaveThrownException();
+        } catch (IndexOutOfBoundsException exception) {
+            // this is expected
+        }
+        try {
+            reader.advance(6);
+            shouldHaveThrownException();
+        } catch (IndexOutOfBoundsException exception) {
+            // this is expected
+        }
+
+        reader.advance(5);
+        try {
+            reader.readAndAdvance();
+            shouldHaveThrownException();
+        } catch (Halt exception) {
+            assertSame(Halt.END_OF_CHAIN, exception);
+        }
+
+        // mounting the cards of the reader itself copies them first
+        reader.mountCards(reader.cards());
+        assertEquals(chain.size(), reader.cards().size());
+        assertEquals(-1, reader.position());
+        assertEquals(CardType.NUMBER, reader.readAndAdvance().type());
+
+        reader.unmountCards();
+        assertEquals(0, reader.cards().size());
+    }
+
+    /**
+     * Tests that a chain larger than the buffers used to write it can be
+     * read, replaced, and removed from before it is mounted, and that its
+     * files are deleted once they are mapped.
+     * 
+     * @throws IOException
+     *             if the directory of files cannot be created or listed.
+     * @throws Halt
+     *             if the reader reaches the end of the chain too early.
+     */
+    @Test
+    public void testNewChain() throws IOException, Halt {
+        Path directory = Files.createTempDirectory(null);
+        directory.toFile().deleteOnExit();
+        CardReader reader = new MappedCardReader(directory);
+        List<Card> chain = reader.newChain();
+        char[] longComment = new char[100000];
+        Arrays.fill(longComment, 'x');
+        int size = 20000;
+        for (int i = 0; i < size; i++) {
+            if (i == 10) {
+                chain.add(null);
+            } else if (i == 15000) {
+                chain.add(new Card(CardType.COMMENT, new String[] { "" },
+                        new String(longComment)));
+            } else {
+                chain.add(new Card(CardType.NUMBER, new String[] {
+                        Integer.toString(i % 1000), Integer.toString(i) }));
+            }
+        }
+        assertNull(chain.get(10));
+        assertEquals("NUMBER[9, 9]", chain.get(9).toString());
+        assertEquals("NUMBER[999, 19999]", chain.get(size - 1).toString());
+        chain.set(10, new Card(CardType.LOAD, new String[] { "7" }));
+        chain.set(size - 1, new Card(CardType.STORE, new String[] { "8" }));
+        chain.remove(0);
+        assertEquals(size - 1, chain.size());
+        assertEquals("LOAD[7]", chain.get(9).toString());
+
+        reader.mountCards(chain);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+        assertEquals(size - 1, reader.cards().size());
+        assertEquals("NUMBER[1, 1]", reader.readAndAdvance().toString());
+        reader.advance(8);
+        assertEquals("LOAD[7]", reader.readAndAdvance().toString());
+        assertEquals(longComment.length,
+                reader.cards().get(14999).comment().length());
+        assertEquals("STORE[8]", reader.cards().get(size - 2).toString());
+        reader.advance(size - 12);
+        assertEquals("STORE[8]", reader.readAndAdvance().toString());
+    }
+
+    /**
+     * Tests that a program built in a new chain of the reader can be loaded
+     * by an attendant, which builds another new chain from it, and that the
+     * program is discarded once the prepared chain is mounted.
+     * 
+     * @throws IOException
+     *             if the directory of files cannot be created or listed.
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    @Test
+    public void testLoadNewChain() throws IOException, BadCard, UnknownCard,
+            LibraryLookupException {
+        Path directory = Files.createTempDirectory(null);
+        directory.toFile().deleteOnExit();
+        CardReader reader = new MappedCardReader(directory);
+        List<Card> program = reader.newChain();
+        for (String line : new String[] { "N0 1", "+", "L0", "L0", "P",
+                "H" }) {
+            program.add(Card.fromString(line));
+        }
+        this.attendant().setCardReader(reader);
+        this.engine().setCardReader(reader);
+        this.attendant().loadProgram(program);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+        try {
+            program.get(0);
+            shouldHaveThrownException();
+        } catch (IllegalStateException exception) {
+            // intentionally unimplemented; this exception is expected
+        }
+        this.engine().run();
+        assertEquals("2" + System.lineSeparator(),
+                this.attendant().finalReport());
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * PagedStoreTest.java - tests for PagedStore
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.components;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests for the PagedStore class.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class PagedStoreTest {
+
+    /** A configuration with ten million columns. */
+    private static final EngineConfig LARGE = new EngineConfig(10000000,
+            EngineConfig.DEFAULT_WIDTH);
+
+    /**
+     * Tests that columns read as zero without allocating pages, and that only
+     * the pages of written columns are allocated.
+     */
+    @Test
+    public void testSparse() {
+        PagedStore store = new PagedStore(LARGE);
+        assertEquals(BigInteger.ZERO, store.get(LARGE.maxAddress()));
+        assertEquals(0, store.allocatedPages());
+
+        store.put(0, BigInteger.ONE);
+        store.put(PagedStore.PAGE_SIZE - 1, BigInteger.TEN);
+        store.put(LARGE.maxAddress(), BigInteger.ONE.negate());
+        assertEquals(2, store.allocatedPages());
+        assertArrayEquals(new BigInteger[] { BigInteger.ONE, BigInteger.TEN,
+                BigInteger.ZERO, BigInteger.ONE.negate() },
+                store.snapshot(new int[] { 0, PagedStore.PAGE_SIZE - 1,
+                        PagedStore.PAGE_SIZE, LARGE.maxAddress() }));
+
+        store.reset();
+        assertEquals(0, store.allocatedPages());
+        assertEquals(BigInteger.ZERO, store.get(0));
+
+        assertTrue(LARGE.newStore() instanceof PagedStore);
+        assertTrue(EngineConfig.DEFAULT.newStore() instanceof ArrayStore);
+    }
+
+    /**
+     * Tests that values too large for a {@code long} are stored, and that
+     * replacing them with small values or zero reads back correctly.
+     */
+    @Test
+    public void testLargeValues() {
+        PagedStore store = new PagedStore(LARGE);
+        BigInteger max = LARGE.maxValue();
+        BigInteger big = BigInteger.valueOf(Long.MAX_VALUE).add(
+                BigInteger.ONE);
+        store.put(5, max);
+        store.put(6, LARGE.minValue());
+        store.put(7, big.negate());
+        store.put(8, BigInteger.valueOf(Long.MIN_VALUE));
+        assertArrayEquals(new BigInteger[] { max, LARGE.minValue(),
+                big.negate(), BigInteger.valueOf(Long.MIN_VALUE) },
+                store.snapshot(new int[] { 5, 6, 7, 8 }));
+
+        store.put(5, BigInteger.ONE);
+        store.put(6, BigInteger.ZERO);
+        assertArrayEquals(new BigInteger[] { BigInteger.ONE,
+                BigInteger.ZERO }, store.snapshot(new int[] { 5, 6 }));
+    }
+
+    /**
+     * Tests that writing columns marks them dirty, across pages, that
+     * clearing the dirty columns keeps their values, and that resetting
+     * zeroes them.
+     */
+    @Test
+    public void testDirtyColumns() {
+        DirtyTrackingStore store = new PagedStore(LARGE);
+        assertEquals(-1, store.nextDirty(0));
+
+        int far = 5000000;
+        store.put(7, BigInteger.TEN);
+        store.loadAll(new int[] { 3, 64, far },
+                new BigInteger[] { BigInteger.ONE, BigInteger.ONE,
+                        BigInteger.ONE.negate() });
+        assertEquals(3, store.nextDirty(0));
+        assertEquals(3, store.nextDirty(3));
+        assertEquals(7, store.nextDirty(4));
+        assertEquals(64, store.nextDirty(8));
+        assertEquals(far, store.nextDirty(65));
+        assertEquals(-1, store.nextDirty(far + 1));
+
+        store.clearDirty();
+        assertEquals(-1, store.nextDirty(0));
+        assertArrayEquals(new BigInteger[] { BigInteger.ONE, BigInteger.TEN },
+                store.snapshot(new int[] { 3, 7 }));
+
+        store.put(5, BigInteger.ONE);
+        assertEquals(5, store.nextDirty(0));
+        store.reset();
+        assertEquals(-1, store.nextDirty(0));
+        assertEquals(BigInteger.ZERO, store.get(far));
+    }
+
+    /** Tests that addresses outside of the store are rejected. */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testBadAddress() {
+        new PagedStore(LARGE).put(LARGE.columns(), BigInteger.ONE);
+    }
+}
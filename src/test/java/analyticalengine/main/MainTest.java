@@ -43,6 +43,8 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.beust.jcommander.ParameterException;
+
 import analyticalengine.TestUtils;
 
 /**
@@ -203,6 +205,16 @@ public class MainTest {
         assertEquals(expected, output.trim());
     }
 
+    /**
+     * Test that a negative compile threshold is rejected when the arguments
+     * are parsed.
+     */
+    @Test(expected = ParameterException.class)
+    public void testNegativeCompileThreshold() {
+        Main.main(new String[] { "-X", "--compile-threshold", "-1",
+                "program.ae" });
+    }
+
     /** Test for no command-line arguments. */
     @Test
     public void testNoArguments() {
@@ -0,0 +1,190 @@
+/**
+ * MetricsTest.java - tests for counters and histograms of the Engine
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+import org.junit.Test;
+
+import analyticalengine.DefaultAnalyticalEngine;
+import analyticalengine.EngineTestBase;
+import analyticalengine.attendant.DefaultAttendant;
+import analyticalengine.attendant.LibraryLookupException;
+import analyticalengine.cards.BadCard;
+import analyticalengine.cards.UnknownCard;
+import analyticalengine.components.Operation;
+
+/**
+ * Tests for recording and exporting metrics.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class MetricsTest extends EngineTestBase {
+
+    /**
+     * Tests that values are counted in the bucket whose upper bound is the
+     * least power of two that is not less than the value.
+     */
+    @Test
+    public void testBuckets() {
+        assertEquals(0, Histogram.bucket(0));
+        assertEquals(0, Histogram.bucket(1));
+        assertEquals(1, Histogram.bucket(2));
+        assertEquals(2, Histogram.bucket(3));
+        assertEquals(2, Histogram.bucket(4));
+        assertEquals(3, Histogram.bucket(5));
+        assertEquals(Histogram.BUCKETS - 1, Histogram.bucket(Long.MAX_VALUE));
+
+        Histogram histogram = new Metrics().histogram("h");
+        histogram.record(3);
+        histogram.record(4);
+        histogram.record(-1);
+        assertEquals(3, histogram.count());
+        assertEquals(7, histogram.sum());
+        assertEquals(4, histogram.max());
+        assertEquals(1, histogram.bucketCount(0));
+        assertEquals(2, histogram.bucketCount(2));
+    }
+
+    /**
+     * Tests that the components of an Engine record what they do while
+     * running a program.
+     * 
+     * @throws LibraryLookupException
+     *             if there is a problem included a built-in library function.
+     * @throws IOException
+     *             if there is a problem reading a list of cards from a file.
+     * @throws UnknownCard
+     *             if the specified program includes an unknown card.
+     * @throws BadCard
+     *             if there is a syntax error on one of the cards.
+     */
+    @Test
+    public void testEngine() throws BadCard, IOException, UnknownCard,
+            LibraryLookupException {
+        Metrics metrics = new Metrics();
+        ((DefaultAnalyticalEngine) this.engine()).setMetrics(metrics);
+        ((DefaultAttendant) this.attendant()).setMetrics(metrics);
+        this.runProgramString("N0 2\nN1 3\n+\nL0\nL1\nS2\n-\nL0\nL1\nP\nH");
+        String report = this.attendant().finalReport();
+
+        assertEquals(2, metrics.counter(Metrics.CARDS_EXECUTED, "type",
+                "NUMBER").sum());
+        assertEquals(4, metrics.counter(Metrics.CARDS_EXECUTED, "type",
+                "LOAD").sum());
+        assertEquals(1, metrics.counter(Metrics.CARDS_EXECUTED, "type",
+                "PRINT").sum());
+        assertEquals(1, metrics.counter(Metrics.MILL_OPERATIONS, "operation",
+                "ADD").sum());
+        assertEquals(1, metrics.counter(Metrics.MILL_OPERATIONS, "operation",
+                "SUBTRACT").sum());
+        assertEquals(1, metrics.counter(Metrics.RUN_UPS).sum());
+        assertEquals(4, metrics.counter(Metrics.STORE_READS).sum());
+        assertEquals(3, metrics.counter(Metrics.STORE_WRITES).sum());
+        assertEquals(1, metrics.histogram(Metrics.MOUNT_NANOSECONDS).count());
+        assertEquals(1, metrics.histogram(Metrics.RUN_NANOSECONDS).count());
+        assertEquals(report.length(),
+                metrics.histogram(Metrics.REPORT_CHARACTERS).sum());
+
+        // no longer recorded once the registry is removed
+        ((DefaultAnalyticalEngine) this.engine()).setMetrics(null);
+        this.mill().setOperation(Operation.ADD);
+        this.mill().transferIn(BigInteger.ONE);
+        this.mill().transferIn(BigInteger.ONE);
+        this.store().get(0);
+        assertEquals(4, metrics.counter(Metrics.STORE_READS).sum());
+        assertEquals(1, metrics.counter(Metrics.MILL_OPERATIONS, "operation",
+                "ADD").sum());
+    }
+
+    /** Tests the JSON and Prometheus forms of the metrics. */
+    @Test
+    public void testExport() {
+        Metrics metrics = new Metrics();
+        metrics.counter("b_total").add(2);
+        metrics.counter("a_total", "kind", "y").increment();
+        metrics.counter("a_total", "kind", "x").add(3);
+        Histogram histogram = metrics.histogram("c");
+        histogram.record(1);
+        histogram.record(3);
+        histogram.record(3);
+
+        assertEquals("{\"counters\":{\"a_total\":{\"x\":3,\"y\":1},"
+                + "\"b_total\":2},\"histograms\":{\"c\":{\"count\":3,"
+                + "\"sum\":7,\"max\":3,\"buckets\":{\"1\":1,\"4\":2}}}}",
+                metrics.toJson());
+        assertEquals("# TYPE a_total counter\n"
+                + "a_total{kind=\"x\"} 3\n"
+                + "a_total{kind=\"y\"} 1\n"
+                + "# TYPE b_total counter\n"
+                + "b_total 2\n"
+                + "# TYPE c histogram\n"
+                + "c_bucket{le=\"1\"} 1\n"
+                + "c_bucket{le=\"2\"} 1\n"
+                + "c_bucket{le=\"4\"} 3\n"
+                + "c_bucket{le=\"+Inf\"} 3\n"
+                + "c_sum 7\n"
+                + "c_count 3\n", metrics.toPrometheus());
+    }
+
+    /** Tests that a counter cannot be used with two different labels. */
+    @Test(expected = IllegalArgumentException.class)
+    public void testLabelMismatch() {
+        Metrics metrics = new Metrics();
+        metrics.counter("a_total", "kind", "x");
+        metrics.counter("a_total");
+    }
+
+    /**
+     * Tests that counts from Engines on several threads sharing a registry
+     * are all recorded.
+     * 
+     * @throws InterruptedException
+     *             if the test is interrupted while waiting for the threads.
+     */
+    @Test
+    public void testThreads() throws InterruptedException {
+        final Metrics metrics = new Metrics();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    metrics.counter(Metrics.STORE_READS).increment();
+                    metrics.histogram(Metrics.RUN_NANOSECONDS).record(j);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(4000, metrics.counter(Metrics.STORE_READS).sum());
+        assertEquals(4000,
+                metrics.histogram(Metrics.RUN_NANOSECONDS).count());
+        assertTrue(metrics.toPrometheus().contains(
+                Metrics.STORE_READS + " 4000\n"));
+    }
+}
@@ -0,0 +1,250 @@
+/**
+ * EngineServerTest.java - tests for the engine service
+ * 
+ * Copyright 2014-2016 Jeffrey Finkelstein.
+ * 
+ * This file is part of analyticalengine.
+ * 
+ * analyticalengine is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ * 
+ * analyticalengine is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * analyticalengine. If not, see <http://www.gnu.org/licenses/>.
+ */
+package analyticalengine.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Scanner;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import analyticalengine.cards.Card;
+import analyticalengine.cards.UnknownCard;
+import analyticalengine.metrics.Metrics;
+
+/**
+ * Tests for the engine service.
+ * 
+ * @author Jeffrey Finkelstein &lt;jeffrey.finkelstein@gmail.com&gt;
+ * @since 0.0.1
+ */
+public class EngineServerTest {
+
+    /** The service under test. */
+    private EngineServer server = null;
+
+    /**
+     * Submits the specified program to the service and returns the response.
+     * 
+     * @param query
+     *            The query string to append to the request URL, including
+     *            the leading question mark, or the empty string.
+     * @param program
+     *            The program to run.
+     * @return The HTTP status code followed by a space and the body of the
+     *         response.
+     * @throws IOException
+     *             if there is a problem communicating with the service.
+     */
+    private String submit(final String query, final String program)
+            throws IOException {
+        URL url = new URL("http://127.0.0.1:" + this.server.port() + "/run"
+                + query);
+        HttpURLConnection connection = (HttpURLConnection) url
+                .openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(program.getBytes(StandardCharsets.UTF_8));
+        }
+        int code = connection.getResponseCode();
+        InputStream in = connection.getErrorStream();
+        if (in == null) {
+            in = connection.getInputStream();
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try {
+            byte[] buffer = new byte[4096];
+            int n = in.read(buffer);
+            while (n >= 0) {
+                body.write(buffer, 0, n);
+                n = in.read(buffer);
+            }
+        } finally {
+            in.close();
+        }
+        return code + " " + body.toString("UTF-8");
+    }
+
+    /**
+     * Starts the service on a free port.
+     * 
+     * @throws IOException
+     *             if the service cannot be started.
+     */
+    @Before
+    public void setUp() throws IOException {
+        this.server = new EngineServer(0, 2,
+                Collections.<Path> emptyList());
+        this.server.start();
+    }
+
+    /** Stops the service. */
+    @After
+    public void tearDown() {
+        this.server.stop(0);
+    }
+
+    /**
+     * Tests that programs run by the service, one after the other on the
+     * same engines, each produce their own report.
+     * 
+     * @throws IOException
+     *             if there is a problem communicating with the service.
+     */
+    @Test
+    public void testRun() throws IOException {
+        String newline = System.lineSeparator();
+        for (int i = 0; i < 4; i++) {
+            String program = "N0 " + i + "\n+\nL0\nL0\nP\nA write annotation x"
+                    + "\nA write numbers as 9.9\nL0\nP\nH\n";
+            String response = this.submit("", program);
+            assertTrue(response, response.startsWith("200 "));
+            assertTrue(response, response.contains("\"status\":\"halted\""));
+            String expected = (2 * i) + newline + "x" + newline + "0." + i
+                    + newline;
+            assertTrue(response, response.contains("\"report\":"
+                    + JobResult.quote(expected)));
+        }
+    }
+
+    /**
+     * Tests that the service stops a program that exceeds its card budget and
+     * reports programs that contain an invalid or malformed card or that
+     * request limits beyond its caps.
+     * 
+     * @throws IOException
+     *             if there is a problem communicating with the service.
+     * @throws UnknownCard
+     *             if a card string is malformed.
+     */
+    @Test
+    public void testLimitsAndErrors() throws IOException, UnknownCard {
+        String response = this.submit("?maxCards=25000", "N0 1\nCB+1\n");
+        assertTrue(response, response.contains("\"status\":\"card_limit\""));
+
+        response = this.submit("?timeoutMillis=50", "N0 1\nCB+1\n");
+        assertTrue(response, response.contains("\"status\":\"timeout\""));
+
+        response = this.submit("", "XXX\n");
+        assertTrue(response, response.startsWith("400 "));
+        assertTrue(response, response.contains("\"status\":\"error\""));
+
+        response = this.submit("", "N0 1\nC\n");
+        assertTrue(response, response.startsWith("400 "));
+        assertTrue(response, response.contains("\"status\":\"error\""));
+
+        response = this.submit("?maxCards=bogus", "H\n");
+        assertTrue(response, response.startsWith("400 "));
+
+        response = this.submit("?maxCards=" + (EngineServer.MAX_CARDS_CAP + 1),
+                "H\n");
+        assertTrue(response, response.startsWith("400 "));
+
+        response = this.submit("?timeoutMillis="
+                + (EngineServer.TIMEOUT_MILLIS_CAP + 1), "H\n");
+        assertTrue(response, response.startsWith("400 "));
+
+        // the largest timeout must not pass at once
+        JobResult result = new EngineWorker(Collections.<Path> emptyList())
+                .run(Arrays.asList(Card.fromString("N0 1"),
+                        Card.fromString("CB+1")), 3 * EngineWorker.SLICE,
+                        Long.MAX_VALUE);
+        assertEquals(JobStatus.CARD_LIMIT, result.status());
+    }
+
+    /**
+     * Tests that the service refuses programs that include files by name,
+     * without revealing the contents of the file.
+     * 
+     * @throws IOException
+     *             if there is a problem communicating with the service or
+     *             creating the file.
+     */
+    @Test
+    public void testIncludeRejected() throws IOException {
+        Path file = Files.createTempFile(null, ".ae");
+        file.toFile().deleteOnExit();
+        Files.write(file, "secret\n".getBytes(StandardCharsets.UTF_8));
+
+        String response = this.submit("", "A include cards " + file
+                + "\nH\n");
+        assertTrue(response, response.contains("\"status\":\"error\""));
+        assertFalse(response, response.contains("secret"));
+    }
+
+    /**
+     * Tests that the metrics of the engines are returned in the Prometheus
+     * text format or as JSON.
+     * 
+     * @throws IOException
+     *             if there is a problem communicating with the service.
+     */
+    @Test
+    public void testMetrics() throws IOException {
+        this.submit("", "N0 1\n+\nL0\nL0\nP\nH\n");
+        URL url = new URL("http://127.0.0.1:" + this.server.port()
+                + "/metrics");
+        HttpURLConnection connection = (HttpURLConnection) url
+                .openConnection();
+        assertEquals(200, connection.getResponseCode());
+        String body;
+        try (Scanner scanner = new Scanner(connection.getInputStream(),
+                "UTF-8")) {
+            body = scanner.useDelimiter("\\A").next();
+        }
+        assertTrue(body, body.contains(Metrics.CARDS_EXECUTED
+                + "{type=\"PRINT\"} 1\n"));
+        assertTrue(body, body.contains(Metrics.MILL_OPERATIONS
+                + "{operation=\"ADD\"} 1\n"));
+
+        url = new URL("http://127.0.0.1:" + this.server.port()
+                + "/metrics?format=json");
+        connection = (HttpURLConnection) url.openConnection();
+        try (Scanner scanner = new Scanner(connection.getInputStream(),
+                "UTF-8")) {
+            body = scanner.useDelimiter("\\A").next();
+        }
+        assertTrue(body, body.startsWith("{\"counters\":{"));
+    }
+
+    /** Tests for escaping strings in JSON. */
+    @Test
+    public void testQuote() {
+        assertEquals("\"a\\\"b\\\\c\\nd\\u0001\"",
+                JobResult.quote("a\"b\\c\nd\u0001"));
+    }
+}